@@ -0,0 +1,94 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.benchmark;
+
+import java.io.File;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * <p>
+ * Runs the benchmarks matching the given regular expression (all of them by
+ * default) with 1, 2, 4 and as many threads as there are processors. The
+ * results of each number of threads, including the allocation rates measured
+ * by the GC profiler, are written in JSON to
+ * <code>target/benchmark-results/&lt;threads&gt;-threads.json</code>, to be
+ * compared with the results of another release.
+ * </p>
+ * <p>
+ * Usage: <code>java -jar target/benchmarks.jar [regexp]</code>
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public final class BenchmarkRunner {
+
+  private static final TimeValue ITERATION_TIME = TimeValue.seconds(1);
+
+  /**
+   * Opens the JDK packages accessed by reflection by XStream, on JVMs with
+   * modules.
+   */
+  private static final String[] OPEN_PACKAGES = {
+      "--add-opens=java.base/java.lang=ALL-UNNAMED",
+      "--add-opens=java.base/java.lang.reflect=ALL-UNNAMED",
+      "--add-opens=java.base/java.text=ALL-UNNAMED",
+      "--add-opens=java.base/java.util=ALL-UNNAMED",
+      "--add-opens=java.desktop/java.awt.font=ALL-UNNAMED" };
+
+  private BenchmarkRunner() {
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    String include = args.length > 0 ? args[0] : ".*";
+
+    Set threadCounts = new TreeSet();
+    threadCounts.add(new Integer(1));
+    threadCounts.add(new Integer(2));
+    threadCounts.add(new Integer(4));
+    threadCounts.add(new Integer(Runtime.getRuntime().availableProcessors()));
+
+    boolean modules = !System.getProperty("java.specification.version")
+        .startsWith("1.");
+
+    File results = new File("target", "benchmark-results");
+    results.mkdirs();
+
+    Integer[] threads = (Integer[]) threadCounts
+        .toArray(new Integer[threadCounts.size()]);
+    for (int i = 0; i < threads.length; i++) {
+      ChainedOptionsBuilder options = new OptionsBuilder().include(include)
+          .threads(threads[i].intValue()).forks(1).warmupIterations(5)
+          .warmupTime(ITERATION_TIME).measurementIterations(10)
+          .measurementTime(ITERATION_TIME).addProfiler(GCProfiler.class)
+          .resultFormat(ResultFormatType.JSON).result(
+              new File(results, threads[i] + "-threads.json").getPath());
+      if (modules) {
+        options.jvmArgsAppend(OPEN_PACKAGES);
+      }
+      new Runner(options.build()).run();
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.benchmark;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Implementation of <code>{@link BenchmarkService}</code> spending a fixed
+ * amount of CPU time on each call, standing for the cost of a database query.
+ *
+ * @author Alex Ruiz
+ */
+public class BenchmarkServiceImpl implements BenchmarkService {
+
+  /**
+   * Default cost of a call, in units of <code>Blackhole.consumeCPU</code>.
+   */
+  public static final long DEFAULT_TOKENS = 1000;
+
+  private final long tokens;
+
+  public BenchmarkServiceImpl() {
+    this(DEFAULT_TOKENS);
+  }
+
+  public BenchmarkServiceImpl(long newTokens) {
+    tokens = newTokens;
+  }
+
+  public Record get(Integer id) {
+    Blackhole.consumeCPU(tokens);
+    return new Record(id.intValue());
+  }
+
+  public void update(Integer id) {
+    Blackhole.consumeCPU(tokens);
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.benchmark;
+
+import java.beans.PropertyEditor;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.provider.CacheProviderFacade;
+
+/**
+ * Retrieval of a cached entry straight from each cache provider facade,
+ * without interceptor. Run with the GC profiler, <code>gc.alloc.rate.norm</code>
+ * reports the bytes allocated by a hit, which should be the ones allocated by
+ * the cache provider only.
+ *
+ * @author Alex Ruiz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CacheHitBenchmark {
+
+  private static final String KEY = "record";
+
+  @Param( { "memory", "offHeap", "near", "ehcache", "jbossCache", "osCache",
+      "jcs" })
+  public String provider;
+
+  private ConfigurableApplicationContext context;
+
+  private CacheProviderFacade facade;
+
+  private CachingModel model;
+
+  @Benchmark
+  public Object getFromCache() {
+    return facade.getFromCache(KEY, model);
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    context = Providers.load(provider);
+    facade = Providers.facade(context);
+
+    Properties cachingModels = (Properties) context.getBean("cachingModels");
+    PropertyEditor editor = facade.getCachingModelEditor();
+    editor.setAsText(cachingModels.getProperty("get*"));
+    model = (CachingModel) editor.getValue();
+
+    facade.putInCache(KEY, model, new Record(42));
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * <p>
+ * Calls to a method proxied by <code>CacheProxyFactoryBean</code>, through
+ * every cache provider facade and key generator, with a given ratio of cache
+ * hits.
+ * </p>
+ * <p>
+ * Hits read one of <code>{@link Providers#HOT_KEYS}</code> entries stored
+ * beforehand. Misses use keys never used before, so they invoke the service
+ * and store a new entry. The keys are drawn from a sequence seeded by the
+ * index of the thread, so runs are reproducible.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CacheProxyBenchmark {
+
+  /**
+   * Keys used by a thread.
+   */
+  @State(Scope.Thread)
+  public static class Keys {
+
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    private int nextMissKey;
+
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      int thread = threads.getAndIncrement();
+      random = new Random(thread);
+      // disjoint ranges of keys per thread, above the hot keys
+      nextMissKey = (thread + 1) << 24;
+    }
+
+    Integer next(double hitRatio) {
+      if (random.nextDouble() < hitRatio) {
+        return HOT_KEYS[random.nextInt(HOT_KEYS.length)];
+      }
+      return new Integer(nextMissKey++);
+    }
+  }
+
+  static final Integer[] HOT_KEYS = new Integer[Providers.HOT_KEYS];
+
+  static {
+    for (int i = 0; i < HOT_KEYS.length; i++) {
+      HOT_KEYS[i] = new Integer(i);
+    }
+  }
+
+  @Param( { "1.0", "0.9", "0.5" })
+  public double hitRatio;
+
+  @Param( { "hashCode", "arguments" })
+  public String keyGenerator;
+
+  @Param( { "memory", "offHeap", "near", "ehcache", "jbossCache", "osCache",
+      "jcs" })
+  public String provider;
+
+  private ConfigurableApplicationContext context;
+
+  private BenchmarkService service;
+
+  @Benchmark
+  public Record get(Keys keys) {
+    return service.get(keys.next(hitRatio));
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    context = Providers.load(provider);
+    service = Providers.proxy(context, Providers.keyGenerator(keyGenerator),
+        new BenchmarkServiceImpl());
+    for (int i = 0; i < HOT_KEYS.length; i++) {
+      service.get(HOT_KEYS[i]);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * <p>
+ * Reads of cached entries while other threads keep flushing the cache through
+ * the flushing interceptor. Measures how the throughput of the readers drops
+ * and how long a flush takes under contention.
+ * </p>
+ * <p>
+ * Each flush empties the cache, so the readers reload their entries until
+ * the next one.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FlushStormBenchmark {
+
+  /**
+   * Sequence of keys read by a thread.
+   */
+  @State(Scope.Thread)
+  public static class Keys {
+
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      random = new Random(Thread.currentThread().getName().hashCode());
+    }
+
+    Integer next() {
+      return CacheProxyBenchmark.HOT_KEYS[random
+          .nextInt(CacheProxyBenchmark.HOT_KEYS.length)];
+    }
+  }
+
+  @Param( { "memory", "offHeap", "near", "ehcache", "jbossCache", "osCache",
+      "jcs" })
+  public String provider;
+
+  private ConfigurableApplicationContext context;
+
+  private BenchmarkService service;
+
+  @Benchmark
+  @Group("flushStorm")
+  @GroupThreads(1)
+  public void flush(Keys keys) {
+    service.update(keys.next());
+  }
+
+  @Benchmark
+  @Group("flushStorm")
+  @GroupThreads(3)
+  public Record read(Keys keys) {
+    return service.get(keys.next());
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    context = Providers.load(provider);
+    service = Providers.proxy(context, Providers.keyGenerator("hashCode"),
+        new BenchmarkServiceImpl());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+}
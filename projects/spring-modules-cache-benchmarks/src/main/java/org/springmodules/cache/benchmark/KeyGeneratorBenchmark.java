@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springmodules.cache.key.ArgumentsCacheKeyGenerator;
+import org.springmodules.cache.key.CacheKeyGenerator;
+import org.springmodules.cache.key.HashCodeCacheKeyGenerator;
+
+/**
+ * Generation of the key of a call with a number, a string and a bean as
+ * arguments, by each key generator. The time and allocation of a key,
+ * reported by the GC profiler, add to every cached call.
+ *
+ * @author Alex Ruiz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KeyGeneratorBenchmark {
+
+  /**
+   * Key generators: <code>hashCode</code> uses the hash code of the
+   * arguments, <code>reflectionHashCode</code> computes it from their fields,
+   * <code>stableHashCode</code> uses the signature of the method instead of
+   * its identity and <code>arguments</code> keeps the arguments.
+   */
+  @Param( { "hashCode", "reflectionHashCode", "stableHashCode", "arguments" })
+  public String generator;
+
+  private CacheKeyGenerator keyGenerator;
+
+  private SimpleMethodInvocation invocation;
+
+  @Benchmark
+  public Object generateKey() {
+    return keyGenerator.generateKey(invocation);
+  }
+
+  /**
+   * Method whose calls are given keys.
+   */
+  public Record find(Integer id, String name, Record example) {
+    return example;
+  }
+
+  @Setup
+  public void setUp() throws NoSuchMethodException {
+    if ("arguments".equals(generator)) {
+      keyGenerator = new ArgumentsCacheKeyGenerator();
+    } else {
+      HashCodeCacheKeyGenerator hashCodeKeyGenerator = new HashCodeCacheKeyGenerator(
+          "reflectionHashCode".equals(generator));
+      hashCodeKeyGenerator.setStableKeys("stableHashCode".equals(generator));
+      keyGenerator = hashCodeKeyGenerator;
+    }
+    invocation = new SimpleMethodInvocation(this, getClass().getMethod("find",
+        new Class[] { Integer.class, String.class, Record.class }),
+        new Object[] { new Integer(42), "customer", new Record(42) });
+  }
+}
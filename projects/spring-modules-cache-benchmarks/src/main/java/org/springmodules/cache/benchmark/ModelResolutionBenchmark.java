@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.interceptor.caching.NameMatchCachingInterceptor;
+import org.springmodules.cache.interceptor.caching.NameMatchCachingModelSource;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+
+/**
+ * Resolution of the caching model of an intercepted method by the name-match
+ * model source, done by the caching interceptor on every call. The method is
+ * matched by a wildcard among several mapped patterns, not by its exact name.
+ * <code>invoke</code> measures the same resolution through the interceptor,
+ * from several threads, on a cache hit of the memory provider.
+ *
+ * @author Alex Ruiz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ModelResolutionBenchmark {
+
+  private static final String[] PATTERNS = { "find*", "load*", "list*",
+      "count*", "search*", "*ById", "*ByName", "read*", "fetch*", "g*" };
+
+  private ConfigurableApplicationContext context;
+
+  private NameMatchCachingInterceptor interceptor;
+
+  private MethodInvocation invocation;
+
+  private Method method;
+
+  private NameMatchCachingModelSource source;
+
+  @Benchmark
+  @Threads(4)
+  public Object invoke() throws Throwable {
+    return interceptor.invoke(invocation);
+  }
+
+  @Benchmark
+  public CachingModel model() {
+    return source.model(method, BenchmarkServiceImpl.class);
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    Map models = new HashMap();
+    for (int i = 0; i < PATTERNS.length; i++) {
+      models.put(PATTERNS[i], new MemoryCachingModel("benchmark"));
+    }
+    source = new NameMatchCachingModelSource();
+    source.setCachingModels(models);
+
+    method = BenchmarkService.class.getMethod("get",
+        new Class[] { Integer.class });
+
+    context = Providers.load("memory");
+    interceptor = new NameMatchCachingInterceptor();
+    interceptor.setCacheProviderFacade(Providers.facade(context));
+    interceptor.setCachingModels(models);
+    interceptor.afterPropertiesSet();
+
+    invocation = new SimpleMethodInvocation(new BenchmarkServiceImpl(), method,
+        new Object[] { new Integer(42) });
+    interceptor.invoke(invocation);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+}
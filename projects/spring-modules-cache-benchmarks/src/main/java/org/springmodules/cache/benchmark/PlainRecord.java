@@ -0,0 +1,58 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.benchmark;
+
+/**
+ * Same as <code>{@link Record}</code> but not serializable, so it has to be
+ * made serializable by a
+ * <code>{@link org.springmodules.cache.serializable.SerializableFactory}</code>
+ * before being stored by a cache provider.
+ *
+ * @author Alex Ruiz
+ */
+public class PlainRecord {
+
+  private int id;
+
+  private String name;
+
+  private long[] values;
+
+  public PlainRecord() {
+  }
+
+  public PlainRecord(int newId) {
+    id = newId;
+    name = "record-" + newId;
+    values = new long[16];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = newId * 31L + i;
+    }
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long[] getValues() {
+    return values;
+  }
+}
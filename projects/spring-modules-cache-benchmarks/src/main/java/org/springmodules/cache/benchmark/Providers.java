@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.benchmark;
+
+import java.util.Map;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springmodules.cache.interceptor.proxy.CacheProxyFactoryBean;
+import org.springmodules.cache.key.ArgumentsCacheKeyGenerator;
+import org.springmodules.cache.key.CacheKeyGenerator;
+import org.springmodules.cache.key.HashCodeCacheKeyGenerator;
+import org.springmodules.cache.provider.CacheProviderFacade;
+
+/**
+ * <p>
+ * Creates the cache providers and the proxies used by the benchmarks.
+ * </p>
+ * <p>
+ * Each provider is configured by the Spring context
+ * <code>&lt;provider&gt;Context.xml</code> of this package, which defines a
+ * facade named <code>cacheProviderFacade</code> and the caching and flushing
+ * models of the methods of <code>{@link BenchmarkService}</code>, named
+ * <code>cachingModels</code> and <code>flushingModels</code>. Every cache
+ * holds all the entries of the benchmarks but the misses, so hits are never
+ * evicted.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+final class Providers {
+
+  /**
+   * Number of distinct keys read by the cache hits.
+   */
+  static final int HOT_KEYS = 1000;
+
+  private Providers() {
+  }
+
+  static CacheProviderFacade facade(ApplicationContext context) {
+    return (CacheProviderFacade) context.getBean("cacheProviderFacade");
+  }
+
+  static CacheKeyGenerator keyGenerator(String name) {
+    if ("hashCode".equals(name)) {
+      return new HashCodeCacheKeyGenerator();
+    }
+    if ("arguments".equals(name)) {
+      return new ArgumentsCacheKeyGenerator();
+    }
+    throw new IllegalArgumentException("Unknown key generator " + name);
+  }
+
+  static ConfigurableApplicationContext load(String provider) {
+    return new ClassPathXmlApplicationContext(provider + "Context.xml",
+        Providers.class);
+  }
+
+  /**
+   * Creates a proxy caching and flushing the calls to the given service with
+   * the facade and the models of the given context.
+   */
+  static BenchmarkService proxy(ApplicationContext context,
+      CacheKeyGenerator keyGenerator, BenchmarkService target) {
+    CacheProxyFactoryBean factory = new CacheProxyFactoryBean();
+    factory.setCacheKeyGenerator(keyGenerator);
+    factory.setCacheProviderFacade(facade(context));
+    factory.setCachingModels((Map) context.getBean("cachingModels"));
+    factory.setFlushingModels((Map) context.getBean("flushingModels"));
+    factory.setTarget(target);
+    factory.afterPropertiesSet();
+    return (BenchmarkService) factory.getObject();
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.benchmark;
+
+import java.io.Serializable;
+
+/**
+ * Value returned by <code>{@link BenchmarkService}</code>: a few fields and a
+ * small payload, the size of a typical cached domain object.
+ *
+ * @author Alex Ruiz
+ */
+public class Record implements Serializable {
+
+  private static final long serialVersionUID = -2817372870341568106L;
+
+  private int id;
+
+  private String name;
+
+  private long[] values;
+
+  public Record() {
+  }
+
+  public Record(int newId) {
+    id = newId;
+    name = "record-" + newId;
+    values = new long[16];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = newId * 31L + i;
+    }
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long[] getValues() {
+    return values;
+  }
+}
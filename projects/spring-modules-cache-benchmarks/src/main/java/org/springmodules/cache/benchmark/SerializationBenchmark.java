@@ -0,0 +1,127 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.provider.AbstractCacheProviderFacade;
+import org.springmodules.cache.provider.ehcache.EhCacheCachingModel;
+import org.springmodules.cache.serializable.BinarySerializableFactory;
+import org.springmodules.cache.serializable.SerializableFactory;
+import org.springmodules.cache.serializable.XStreamSerializableFactory;
+
+/**
+ * <p>
+ * Storage and retrieval of a value that is not serializable, made
+ * serializable by <code>XStreamSerializableFactory</code> or
+ * <code>BinarySerializableFactory</code>, alone and through the EHCache
+ * facade.
+ * </p>
+ * <p>
+ * The number of bytes of a serialized entry is logged when the benchmark
+ * starts.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SerializationBenchmark {
+
+  private static final String KEY = "record";
+
+  private static final Log logger = LogFactory
+      .getLog(SerializationBenchmark.class);
+
+  @Param( { "xstream", "binary" })
+  public String factory;
+
+  private ConfigurableApplicationContext context;
+
+  private AbstractCacheProviderFacade facade;
+
+  private final CachingModel model = new EhCacheCachingModel("benchmark");
+
+  private SerializableFactory serializableFactory;
+
+  private final PlainRecord value = new PlainRecord(42);
+
+  @Benchmark
+  public Object putAndGet() {
+    facade.putInCache(KEY, model, value);
+    return facade.getFromCache(KEY, model);
+  }
+
+  @Benchmark
+  public Object roundTrip() {
+    return serializableFactory.getOriginalValue(serializableFactory
+        .makeSerializableIfNecessary(value));
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    if ("binary".equals(factory)) {
+      BinarySerializableFactory binaryFactory = new BinarySerializableFactory();
+      binaryFactory.setRegisteredClasses(new Class[] { PlainRecord.class });
+      serializableFactory = binaryFactory;
+    } else {
+      serializableFactory = new XStreamSerializableFactory();
+    }
+
+    context = Providers.load("ehcache");
+    facade = (AbstractCacheProviderFacade) Providers.facade(context);
+    facade.setSerializableFactory(serializableFactory);
+
+    if (logger.isInfoEnabled()) {
+      logger.info("Serialized entry of the " + factory + " factory: "
+          + serializedSize(serializableFactory.makeSerializableIfNecessary(value))
+          + " bytes");
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  private int serializedSize(Serializable entry) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream output = new ObjectOutputStream(bytes);
+    output.writeObject(entry);
+    output.close();
+    return bytes.size();
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.benchmark;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Invocation of a method with fixed arguments, passed to the key generators
+ * without going through a proxy.
+ *
+ * @author Alex Ruiz
+ */
+final class SimpleMethodInvocation implements MethodInvocation {
+
+  private final Object[] arguments;
+
+  private final Method method;
+
+  private final Object target;
+
+  SimpleMethodInvocation(Object newTarget, Method newMethod,
+      Object[] newArguments) {
+    target = newTarget;
+    method = newMethod;
+    arguments = newArguments;
+  }
+
+  public Object[] getArguments() {
+    return arguments;
+  }
+
+  public Method getMethod() {
+    return method;
+  }
+
+  public AccessibleObject getStaticPart() {
+    return method;
+  }
+
+  public Object getThis() {
+    return target;
+  }
+
+  public Object proceed() throws Throwable {
+    return method.invoke(target, arguments);
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.admission;
+
+import java.io.Serializable;
+
+import org.springmodules.cache.CachingModel;
+
+/**
+ * <p>
+ * Decides which new entries are worth storing in a cache, based on the
+ * accesses recorded by the cache provider facade and the load times recorded
+ * by the caching interceptor.
+ * </p>
+ * 
+ * @see org.springmodules.cache.provider.AbstractCacheProviderFacade#setAdmissionPolicy(AdmissionPolicy)
+ * @see org.springmodules.cache.interceptor.caching.AbstractCachingInterceptor#setAdmissionPolicy(AdmissionPolicy)
+ *
+ * @author Alex Ruiz
+ */
+public interface AdmissionPolicy {
+
+  /**
+   * Decides whether an entry should be stored in the cache.
+   * 
+   * @param key
+   *          the key of the entry
+   * @param model
+   *          the model used to store the entry
+   * @return <code>true</code> if the entry should be stored
+   */
+  boolean admit(Serializable key, CachingModel model);
+
+  /**
+   * Records the retrieval of an entry from the cache, whether it was found or
+   * not.
+   * 
+   * @param key
+   *          the key of the entry
+   * @param model
+   *          the model used to retrieve the entry
+   */
+  void recordAccess(Serializable key, CachingModel model);
+
+  /**
+   * Records the time spent loading an entry after a cache miss.
+   * 
+   * @param key
+   *          the key of the entry
+   * @param model
+   *          the model used to store the entry
+   * @param nanos
+   *          the time spent loading the entry, in nanoseconds
+   */
+  void recordLoad(Serializable key, CachingModel model, long nanos);
+}
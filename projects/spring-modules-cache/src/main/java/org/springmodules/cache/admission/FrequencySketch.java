@@ -0,0 +1,154 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.admission;
+
+/**
+ * <p>
+ * Count-min sketch of 4-bit counters, estimating a small number (at most 15)
+ * for each hash code in a fixed amount of memory: 8 bytes for every 16
+ * counters. Each hash code is mapped to four counters, and the estimate is
+ * the smallest of them.
+ * </p>
+ * <p>
+ * Counters are updated without locking. Concurrent updates may be lost, which
+ * only makes the estimates slightly lower.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+final class FrequencySketch {
+
+  static final int MAX_VALUE = 15;
+
+  private static final long ONE_MASK = 0x1111111111111111L;
+
+  private static final long RESET_MASK = 0x7777777777777777L;
+
+  private static final long[] SEEDS = { 0xc3a5c85c97cb3127L,
+      0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+  private final long[] table;
+
+  private final int tableMask;
+
+  /**
+   * Constructor.
+   * 
+   * @param capacity
+   *          the number of hash codes expected to be tracked
+   */
+  FrequencySketch(int capacity) {
+    int length = 1;
+    while (length < Math.max(capacity, 16) && length < (1 << 30)) {
+      length <<= 1;
+    }
+    table = new long[length];
+    tableMask = length - 1;
+  }
+
+  /**
+   * @return the estimate of the given hash code, between zero and
+   *         <code>MAX_VALUE</code>
+   */
+  int estimate(int hashCode) {
+    int hash = spread(hashCode);
+    int start = (hash & 3) << 2;
+    int estimate = MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int offset = (start + i) << 2;
+      int count = (int) ((table[indexOf(hash, i)] >>> offset) & 0xfL);
+      estimate = Math.min(estimate, count);
+    }
+    return estimate;
+  }
+
+  /**
+   * Increments the counters of the given hash code, unless they are already
+   * at their maximum value.
+   * 
+   * @return <code>true</code> if any counter was incremented
+   */
+  boolean increment(int hashCode) {
+    int hash = spread(hashCode);
+    int start = (hash & 3) << 2;
+    boolean incremented = false;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int offset = (start + i) << 2;
+      long mask = 0xfL << offset;
+      long value = table[index];
+      if ((value & mask) != mask) {
+        table[index] = value + (1L << offset);
+        incremented = true;
+      }
+    }
+    return incremented;
+  }
+
+  /**
+   * Raises the counters of the given hash code to the given value, if they
+   * are lower. The estimate is then the highest value recorded for the hash
+   * code, or for other hash codes mapped to the same counters.
+   */
+  void raise(int hashCode, int newValue) {
+    long value = Math.max(0, Math.min(MAX_VALUE, newValue));
+    int hash = spread(hashCode);
+    int start = (hash & 3) << 2;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int offset = (start + i) << 2;
+      long current = table[index];
+      if (((current >>> offset) & 0xfL) < value) {
+        table[index] = (current & ~(0xfL << offset)) | (value << offset);
+      }
+    }
+  }
+
+  /**
+   * Halves all the counters, so older events weigh less than recent ones.
+   * 
+   * @return the number of counters that had an odd value, i.e. the number of
+   *         increments lost by rounding down
+   */
+  int halve() {
+    int truncated = 0;
+    for (int i = 0; i < table.length; i++) {
+      truncated += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    return truncated;
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+
+  /**
+   * Spreads the bits of the given hash code, so similar hash codes are mapped
+   * to different counters.
+   */
+  private static int spread(int h) {
+    h ^= h >>> 17;
+    h *= 0xed5ad4bb;
+    h ^= h >>> 11;
+    h *= 0xac4c1b51;
+    h ^= h >>> 15;
+    return h;
+  }
+}
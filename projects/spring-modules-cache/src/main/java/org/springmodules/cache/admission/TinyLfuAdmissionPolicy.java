@@ -0,0 +1,318 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.admission;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.FlushingModel;
+import org.springmodules.cache.provider.CacheInvalidationListener;
+
+/**
+ * <p>
+ * Admission policy based on TinyLFU: a new entry is only stored if it has
+ * been accessed more often recently than the entry it would likely push out
+ * of the cache. One-hit wonders, such as the keys read by scans, are rejected
+ * once the cache is full, keeping the entries that are accessed often.
+ * </p>
+ * <p>
+ * The accesses of each caching model are counted in a
+ * <code>{@link FrequencySketch}</code> sized for the maximum number of
+ * entries of the model. The counters are halved every ten times that many
+ * accesses, so the frequencies reflect recent history. The policy also keeps
+ * the hash codes of the last admitted entries, the oldest ones standing for
+ * the entries the cache is about to evict: a new entry is admitted if it is
+ * more frequent than the least frequent of the oldest admitted entries, which
+ * it then replaces. An entry already admitted is admitted again without
+ * competing, since storing it replaces the cached one.
+ * </p>
+ * <p>
+ * Registered with an <code>AbstractCacheProviderFacade</code>, the policy
+ * forgets the entries removed from the cache, and all the admitted entries
+ * when a cache is flushed. Frequencies are kept.
+ * </p>
+ * <p>
+ * If <code>costAware</code> is enabled, frequencies are weighted by the load
+ * time recorded for each entry, so expensive entries are kept over cheap ones
+ * accessed as often.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public class TinyLfuAdmissionPolicy implements AdmissionPolicy,
+    CacheInvalidationListener {
+
+  /**
+   * State of a caching model.
+   */
+  private final class ModelAdmission {
+
+    /**
+     * Hash codes of the admitted entries, the oldest at <code>next</code>.
+     */
+    private final int[] admitted;
+
+    private int admittedCount;
+
+    /**
+     * Hash codes of the admitted entries, as <code>Integer</code>s.
+     */
+    private final Set admittedSet = new HashSet();
+
+    private final AtomicInteger accesses = new AtomicInteger();
+
+    private final FrequencySketch costs;
+
+    private final FrequencySketch frequencies;
+
+    private int next;
+
+    private final int sampleSize;
+
+    ModelAdmission() {
+      admitted = new int[maximumSize];
+      frequencies = new FrequencySketch(maximumSize);
+      costs = new FrequencySketch(maximumSize);
+      sampleSize = 10 * maximumSize;
+    }
+
+    synchronized boolean admit(int hashCode) {
+      Integer hash = new Integer(hashCode);
+      if (admittedSet.contains(hash)) {
+        return true;
+      }
+      if (admittedCount < admitted.length) {
+        admitted[admittedCount++] = hashCode;
+        admittedSet.add(hash);
+        return true;
+      }
+
+      int victim = next;
+      int victimValue = value(admitted[victim]);
+      for (int i = 1; i < VICTIM_SAMPLE_SIZE && i < admitted.length; i++) {
+        int candidate = (next + i) % admitted.length;
+        int candidateValue = value(admitted[candidate]);
+        if (candidateValue < victimValue) {
+          victim = candidate;
+          victimValue = candidateValue;
+        }
+      }
+      if (value(hashCode) <= victimValue) {
+        return false;
+      }
+
+      // the oldest entry survives in place of the victim and the new entry
+      // becomes the most recent one
+      admittedSet.remove(new Integer(admitted[victim]));
+      admitted[victim] = admitted[next];
+      admitted[next] = hashCode;
+      admittedSet.add(hash);
+      next = (next + 1) % admitted.length;
+      return true;
+    }
+
+    synchronized void clear() {
+      admittedCount = 0;
+      next = 0;
+      admittedSet.clear();
+    }
+
+    /**
+     * Forgets the admitted entries having the given hash codes, keeping the
+     * others from the oldest to the most recent.
+     */
+    synchronized void remove(Set hashCodes) {
+      if (!admittedSet.removeAll(hashCodes)) {
+        return;
+      }
+      int[] kept = new int[admittedSet.size()];
+      int count = 0;
+      for (int i = 0; i < admittedCount; i++) {
+        int hashCode = admitted[(next + i) % admitted.length];
+        if (admittedSet.contains(new Integer(hashCode))) {
+          kept[count++] = hashCode;
+        }
+      }
+      System.arraycopy(kept, 0, admitted, 0, count);
+      admittedCount = count;
+      next = 0;
+    }
+
+    void recordAccess(int hashCode) {
+      frequencies.increment(hashCode);
+      if (accesses.incrementAndGet() == sampleSize) {
+        int truncated = frequencies.halve();
+        accesses.addAndGet(-(sampleSize / 2 + truncated / 4));
+      }
+    }
+
+    void recordLoad(int hashCode, long nanos) {
+      costs.raise(hashCode, costClass(nanos));
+    }
+
+    private int value(int hashCode) {
+      int frequency = frequencies.estimate(hashCode);
+      return costAware ? frequency << costs.estimate(hashCode) : frequency;
+    }
+  }
+
+  public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+  /**
+   * Number of the oldest admitted entries among which the victim is chosen.
+   */
+  private static final int VICTIM_SAMPLE_SIZE = 8;
+
+  private final AtomicLong admissionCount = new AtomicLong();
+
+  private boolean costAware;
+
+  private int maximumSize = DEFAULT_MAXIMUM_SIZE;
+
+  private final ConcurrentHashMap models = new ConcurrentHashMap();
+
+  private final AtomicLong rejectionCount = new AtomicLong();
+
+  /**
+   * @see AdmissionPolicy#admit(Serializable, CachingModel)
+   */
+  public boolean admit(Serializable key, CachingModel model) {
+    boolean admitted = admission(model).admit(key.hashCode());
+    (admitted ? admissionCount : rejectionCount).incrementAndGet();
+    return admitted;
+  }
+
+  /**
+   * @return the number of entries admitted
+   */
+  public long getAdmissionCount() {
+    return admissionCount.get();
+  }
+
+  /**
+   * @return the number of entries rejected
+   */
+  public long getRejectionCount() {
+    return rejectionCount.get();
+  }
+
+  /**
+   * Forgets the admitted entries of all the caching models. The models of a
+   * flushing model depend on the cache provider, so all of them are
+   * affected.
+   *
+   * @see CacheInvalidationListener#onFlush(FlushingModel)
+   */
+  public void onFlush(FlushingModel model) {
+    for (Iterator i = models.values().iterator(); i.hasNext();) {
+      ((ModelAdmission) i.next()).clear();
+    }
+  }
+
+  /**
+   * Forgets the given admitted entries, so they do not stand for entries of
+   * the cache anymore.
+   *
+   * @see CacheInvalidationListener#onRemove(Collection, CachingModel)
+   */
+  public void onRemove(Collection keys, CachingModel model) {
+    ModelAdmission admission = (ModelAdmission) models.get(model);
+    if (admission == null) {
+      return;
+    }
+    Set hashCodes = new HashSet();
+    for (Iterator i = keys.iterator(); i.hasNext();) {
+      hashCodes.add(new Integer(i.next().hashCode()));
+    }
+    admission.remove(hashCodes);
+  }
+
+  /**
+   * @see AdmissionPolicy#recordAccess(Serializable, CachingModel)
+   */
+  public void recordAccess(Serializable key, CachingModel model) {
+    admission(model).recordAccess(key.hashCode());
+  }
+
+  /**
+   * @see AdmissionPolicy#recordLoad(Serializable, CachingModel, long)
+   */
+  public void recordLoad(Serializable key, CachingModel model, long nanos) {
+    if (costAware) {
+      admission(model).recordLoad(key.hashCode(), nanos);
+    }
+  }
+
+  /**
+   * Sets the flag that indicates if the frequency of an entry should be
+   * weighted by the time spent loading it. Disabled by default.
+   * 
+   * @param newCostAware
+   *          the new value of the flag
+   */
+  public void setCostAware(boolean newCostAware) {
+    costAware = newCostAware;
+  }
+
+  /**
+   * Sets the number of entries the cache of each caching model holds before
+   * evicting entries. New entries are always admitted until that many entries
+   * have been admitted. Should be set before the policy is used.
+   * 
+   * @param newMaximumSize
+   *          the new number of entries
+   * @throws IllegalArgumentException
+   *           if the number is not positive
+   */
+  public void setMaximumSize(int newMaximumSize)
+      throws IllegalArgumentException {
+    if (newMaximumSize <= 0) {
+      throw new IllegalArgumentException(
+          "The maximum size should be greater than zero");
+    }
+    maximumSize = newMaximumSize;
+  }
+
+  private ModelAdmission admission(CachingModel model) {
+    ModelAdmission admission = (ModelAdmission) models.get(model);
+    if (admission == null) {
+      ModelAdmission newAdmission = new ModelAdmission();
+      admission = (ModelAdmission) models.putIfAbsent(model, newAdmission);
+      if (admission == null) {
+        admission = newAdmission;
+      }
+    }
+    return admission;
+  }
+
+  /**
+   * @return the binary logarithm of the given time in microseconds, so each
+   *         class is twice as costly as the previous one
+   */
+  private static int costClass(long nanos) {
+    long micros = nanos / 1000;
+    return micros <= 0 ? 0 : Math.min(FrequencySketch.MAX_VALUE,
+        63 - Long.numberOfLeadingZeros(micros));
+  }
+}
@@ -18,16 +18,23 @@
 package org.springmodules.cache.impl;
 
 import java.io.Serializable;
+import java.util.Set;
 
 /**
  * <p>
- * Representation of a cache.
+ * Representation of a cache. Keys have to be serializable, values can be any
+ * object.
  * </p>
  * 
  * @author Alex Ruiz
  */
 public interface Cache extends Serializable {
 
+  /**
+   * Removes all the mappings from this cache.
+   */
+  void clear();
+
   /**
    * Returns <code>true</code> if this cache contains a mapping for the
    * specified key.
@@ -62,13 +69,22 @@ public interface Cache extends Serializable {
    * @see #containsKey(Serializable)
    * @see Element#isExpired()
    */
-  Serializable get(Serializable key) throws IllegalArgumentException;
+  Object get(Serializable key) throws IllegalArgumentException;
 
   /**
    * @return <code>true</code> if this cache contains no key-value mappings.
    */
   boolean isEmpty();
 
+  /**
+   * Returns a copy of the keys of this cache. Changes made to this cache after
+   * the copy is made are not reflected in the returned set.
+   * 
+   * @return the keys of the entries that had not expired when the copy was
+   *         made
+   */
+  Set keys();
+
   /**
    * Associates the specified value with the specified key in this cache. If the
    * cache previously contained a mapping for this key, the old value is
@@ -86,8 +102,7 @@ public interface Cache extends Serializable {
    * @throws IllegalArgumentException
    *           if the specified key is <code>null</code>
    */
-  Serializable put(Serializable key, Serializable value)
-      throws IllegalArgumentException;
+  Object put(Serializable key, Object value) throws IllegalArgumentException;
 
   /**
    * Associates the specified value with the specified key in this cache. If the
@@ -109,7 +124,7 @@ public interface Cache extends Serializable {
    * @throws IllegalArgumentException
    *           if the specified key is <code>null</code>
    */
-  Serializable put(Serializable key, Serializable value, long timeToLive)
+  Object put(Serializable key, Object value, long timeToLive)
       throws IllegalArgumentException;
 
   /**
@@ -123,7 +138,7 @@ public interface Cache extends Serializable {
    * @throws IllegalArgumentException
    *           if the key is <code>null</code>
    */
-  Serializable remove(Serializable key) throws IllegalArgumentException;
+  Object remove(Serializable key) throws IllegalArgumentException;
 
   /**
    * Returns the number of key-value mappings in this cache. If the cache
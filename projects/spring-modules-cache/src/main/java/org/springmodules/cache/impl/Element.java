@@ -46,7 +46,10 @@ public class Element implements Serializable, Cloneable {
 
   private static final long DEFAULT_TIME_TO_LIVE_MS = 120000;
 
-  private static final long EXPIRY_NEVER = -1l;
+  /**
+   * Time to live that marks an entry as eternal.
+   */
+  static final long EXPIRY_NEVER = -1l;
 
   private static Log logger = LogFactory.getLog(Element.class);
 
@@ -110,10 +113,40 @@ public class Element implements Serializable, Cloneable {
 
     setValue(newValue);
     creationTime = newCreationTime;
+    timeToLive = validTimeToLive(newTimeToLive);
+  }
 
-    boolean invalidTimeToLive = newTimeToLive <= 0
-        && newTimeToLive != EXPIRY_NEVER;
-    timeToLive = invalidTimeToLive ? DEFAULT_TIME_TO_LIVE_MS : newTimeToLive;
+  /**
+   * Returns the given time to live if it is positive or equal to
+   * <code>{@link #EXPIRY_NEVER}</code>, otherwise returns the default time to
+   * live.
+   *
+   * @param timeToLive
+   *          the number of milliseconds until a cache entry will expire
+   * @return the time to live to use
+   */
+  static long validTimeToLive(long timeToLive) {
+    boolean invalidTimeToLive = timeToLive <= 0 && timeToLive != EXPIRY_NEVER;
+    return invalidTimeToLive ? DEFAULT_TIME_TO_LIVE_MS : timeToLive;
+  }
+
+  /**
+   * Returns <code>true</code> if an entry created at the given time with the
+   * given time to live has not expired yet at <code>currentTime</code>.
+   *
+   * @param creationTime
+   *          the creation time (in milliseconds) of the entry
+   * @param timeToLive
+   *          the number of milliseconds until the entry will expire
+   * @param currentTime
+   *          the current time (in milliseconds)
+   * @return <code>true</code> if the entry is still alive
+   */
+  static boolean isAlive(long creationTime, long timeToLive, long currentTime) {
+    if (timeToLive == EXPIRY_NEVER) {
+      return true;
+    }
+    return currentTime - creationTime < timeToLive;
   }
 
   /**
@@ -188,14 +221,7 @@ public class Element implements Serializable, Cloneable {
    * @see #Element(Serializable, Serializable)
    */
   public final boolean isAlive() {
-    if (timeToLive == EXPIRY_NEVER) {
-      return true;
-    }
-
-    long currentTime = System.currentTimeMillis();
-    long delta = currentTime - creationTime;
-
-    return delta < timeToLive;
+    return isAlive(creationTime, timeToLive, System.currentTimeMillis());
   }
 
   /**
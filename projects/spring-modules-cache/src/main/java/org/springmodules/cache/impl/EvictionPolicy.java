@@ -0,0 +1,36 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.impl;
+
+/**
+ * Strategy used by a bounded <code>{@link MemoryCache}</code> to choose the
+ * entry to evict when the cache is full.
+ *
+ * @author Alex Ruiz
+ */
+public enum EvictionPolicy {
+
+  /**
+   * Evicts the least recently used entry.
+   */
+  LRU,
+
+  /**
+   * Evicts the least frequently used entry.
+   */
+  LFU
+}
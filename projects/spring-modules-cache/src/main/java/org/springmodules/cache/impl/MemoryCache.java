@@ -0,0 +1,517 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.impl;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * In-memory implementation of <code>{@link Cache}</code>. Values are stored by
+ * reference, so they don't need to be serializable and are never copied.
+ * </p>
+ *
+ * <p>
+ * Entries are spread over a number of independently locked segments, so
+ * threads accessing different keys rarely contend for the same lock. If the
+ * cache is bounded, each segment holds an equal share of the maximum number of
+ * elements and evicts entries according to the
+ * <code>{@link EvictionPolicy}</code> of the cache. <code>LFU</code> eviction
+ * picks the least used entry among the oldest entries of the segment.
+ * </p>
+ *
+ * <p>
+ * Expired entries are removed when they are accessed or chosen for eviction.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public class MemoryCache implements Cache {
+
+  private static final long serialVersionUID = 6154380297634516328L;
+
+  private static final int MAXIMUM_CONCURRENCY_LEVEL = 1 << 16;
+
+  private static final int MINIMUM_DEFAULT_CONCURRENCY_LEVEL = 16;
+
+  /**
+   * Number of entries examined when looking for a <code>LFU</code> victim.
+   */
+  private static final int LFU_EVICTION_SAMPLE_SIZE = 8;
+
+  private final EvictionPolicy evictionPolicy;
+
+  private final int maxElements;
+
+  private final Segment[] segments;
+
+  private final int segmentMask;
+
+  private final int segmentShift;
+
+  private volatile long defaultTimeToLive = Element.EXPIRY_NEVER;
+
+  /**
+   * Constructor. Creates an unbounded cache.
+   */
+  public MemoryCache() {
+    this(0);
+  }
+
+  /**
+   * Constructor. Creates a cache that evicts the least recently used entries
+   * when full.
+   *
+   * @param maxElements
+   *          the maximum number of elements to hold. Zero or a negative number
+   *          means no limit
+   */
+  public MemoryCache(int maxElements) {
+    this(maxElements, EvictionPolicy.LRU);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxElements
+   *          the maximum number of elements to hold. Zero or a negative number
+   *          means no limit
+   * @param evictionPolicy
+   *          the policy used to choose the entry to evict when the cache is
+   *          full
+   */
+  public MemoryCache(int maxElements, EvictionPolicy evictionPolicy) {
+    this(maxElements, evictionPolicy, defaultConcurrencyLevel());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param newMaxElements
+   *          the maximum number of elements to hold. Zero or a negative number
+   *          means no limit
+   * @param newEvictionPolicy
+   *          the policy used to choose the entry to evict when the cache is
+   *          full
+   * @param concurrencyLevel
+   *          the estimated number of threads updating the cache concurrently
+   * @throws IllegalArgumentException
+   *           if the eviction policy is <code>null</code> or the concurrency
+   *           level is not positive
+   */
+  public MemoryCache(int newMaxElements, EvictionPolicy newEvictionPolicy,
+      int concurrencyLevel) throws IllegalArgumentException {
+    super();
+    if (newEvictionPolicy == null) {
+      throw new IllegalArgumentException("The eviction policy should not be null");
+    }
+    if (concurrencyLevel <= 0) {
+      throw new IllegalArgumentException(
+          "The concurrency level should be greater than zero");
+    }
+    maxElements = Math.max(newMaxElements, 0);
+    evictionPolicy = newEvictionPolicy;
+
+    int level = Math.min(concurrencyLevel, MAXIMUM_CONCURRENCY_LEVEL);
+    if (maxElements > 0) {
+      level = Math.min(level, maxElements);
+    }
+
+    int shift = 0;
+    int segmentCount = 1;
+    while (segmentCount < level) {
+      ++shift;
+      segmentCount <<= 1;
+    }
+    segmentShift = 32 - shift;
+    segmentMask = segmentCount - 1;
+
+    boolean accessOrder = EvictionPolicy.LRU.equals(evictionPolicy);
+    segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      int capacity = 0;
+      if (maxElements > 0) {
+        capacity = maxElements / segmentCount
+            + (i < maxElements % segmentCount ? 1 : 0);
+      }
+      segments[i] = new Segment(capacity, accessOrder);
+    }
+  }
+
+  /**
+   * @see Cache#clear()
+   */
+  public void clear() {
+    for (int i = 0; i < segments.length; i++) {
+      segments[i].clear();
+    }
+  }
+
+  /**
+   * @see Cache#containsKey(Serializable)
+   */
+  public boolean containsKey(Serializable key) throws IllegalArgumentException {
+    assertKeyIsNotNull(key);
+    return segmentFor(key).containsKey(key);
+  }
+
+  /**
+   * @see Cache#get(Serializable)
+   */
+  public Object get(Serializable key) throws IllegalArgumentException {
+    assertKeyIsNotNull(key);
+    return segmentFor(key).get(key);
+  }
+
+  /**
+   * @return the time to live (in milliseconds) of the entries stored without
+   *         an explicit time to live
+   */
+  public final long getDefaultTimeToLive() {
+    return defaultTimeToLive;
+  }
+
+  /**
+   * @return the number of entries evicted because the cache was full
+   */
+  public final long getEvictionCount() {
+    long evictionCount = 0;
+    for (int i = 0; i < segments.length; i++) {
+      evictionCount += segments[i].evictionCount();
+    }
+    return evictionCount;
+  }
+
+  /**
+   * @return the policy used to choose the entry to evict when the cache is
+   *         full
+   */
+  public final EvictionPolicy getEvictionPolicy() {
+    return evictionPolicy;
+  }
+
+  /**
+   * @return the maximum number of elements this cache can hold, or zero if it
+   *         is unbounded
+   */
+  public final int getMaxElements() {
+    return maxElements;
+  }
+
+  /**
+   * @see Cache#isEmpty()
+   */
+  public boolean isEmpty() {
+    for (int i = 0; i < segments.length; i++) {
+      if (segments[i].size() > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @see Cache#keys()
+   */
+  public Set keys() {
+    Set keys = new HashSet();
+    for (int i = 0; i < segments.length; i++) {
+      segments[i].collectKeys(keys);
+    }
+    return keys;
+  }
+
+  /**
+   * Stores the given value using the default time to live of this cache.
+   *
+   * @see Cache#put(Serializable, Object)
+   * @see #setDefaultTimeToLive(long)
+   */
+  public Object put(Serializable key, Object value)
+      throws IllegalArgumentException {
+    return put(key, value, defaultTimeToLive);
+  }
+
+  /**
+   * @see Cache#put(Serializable, Object, long)
+   */
+  public Object put(Serializable key, Object value, long timeToLive)
+      throws IllegalArgumentException {
+    assertKeyIsNotNull(key);
+    Entry entry = new Entry(value, System.currentTimeMillis(), Element
+        .validTimeToLive(timeToLive));
+    return segmentFor(key).put(key, entry);
+  }
+
+  /**
+   * @see Cache#remove(Serializable)
+   */
+  public Object remove(Serializable key) throws IllegalArgumentException {
+    assertKeyIsNotNull(key);
+    return segmentFor(key).remove(key);
+  }
+
+  /**
+   * Sets the time to live of the entries stored without an explicit time to
+   * live. By default entries never expire.
+   *
+   * @param newDefaultTimeToLive
+   *          the number of milliseconds until an entry will expire, or
+   *          <code>-1</code> if entries should never expire
+   */
+  public final void setDefaultTimeToLive(long newDefaultTimeToLive) {
+    defaultTimeToLive = Element.validTimeToLive(newDefaultTimeToLive);
+  }
+
+  /**
+   * @see Cache#size()
+   */
+  public int size() {
+    long size = 0;
+    for (int i = 0; i < segments.length; i++) {
+      size += segments[i].size();
+    }
+    return size > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) size;
+  }
+
+  private void assertKeyIsNotNull(Serializable key) {
+    if (key == null) {
+      throw new IllegalArgumentException("The key should not be null");
+    }
+  }
+
+  private Segment segmentFor(Object key) {
+    int hash = hash(key.hashCode());
+    return segments[(hash >>> segmentShift) & segmentMask];
+  }
+
+  private static int defaultConcurrencyLevel() {
+    int processors = Runtime.getRuntime().availableProcessors();
+    return Math.max(MINIMUM_DEFAULT_CONCURRENCY_LEVEL, processors * 4);
+  }
+
+  /**
+   * Spreads the bits of the given hash code so keys with similar hash codes
+   * are assigned to different segments.
+   */
+  private static int hash(int h) {
+    h += (h << 15) ^ 0xffffcd7d;
+    h ^= (h >>> 10);
+    h += (h << 3);
+    h ^= (h >>> 6);
+    h += (h << 2) + (h << 14);
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Value stored in a segment, together with its expiration data and usage
+   * count.
+   */
+  private static final class Entry implements Serializable {
+
+    private static final long serialVersionUID = -2417563106233386519L;
+
+    final long creationTime;
+
+    int hits;
+
+    final long timeToLive;
+
+    final Object value;
+
+    Entry(Object newValue, long newCreationTime, long newTimeToLive) {
+      value = newValue;
+      creationTime = newCreationTime;
+      timeToLive = newTimeToLive;
+    }
+
+    boolean isExpired() {
+      return timeToLive != Element.EXPIRY_NEVER
+          && !Element.isAlive(creationTime, timeToLive, System
+              .currentTimeMillis());
+    }
+  }
+
+  /**
+   * Independently locked partition of the cache.
+   */
+  private static final class Segment extends ReentrantLock {
+
+    private static final long serialVersionUID = 3311962145781327425L;
+
+    private final boolean accessOrder;
+
+    /**
+     * Maximum number of entries in this segment. Zero means no limit.
+     */
+    private final int capacity;
+
+    private long evictionCount;
+
+    private final LinkedHashMap map;
+
+    Segment(int newCapacity, boolean newAccessOrder) {
+      super();
+      capacity = newCapacity;
+      accessOrder = newAccessOrder;
+      map = new LinkedHashMap(16, 0.75f, accessOrder);
+    }
+
+    void clear() {
+      lock();
+      try {
+        map.clear();
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Adds the keys of the entries that have not expired to the given set.
+     */
+    void collectKeys(Set keys) {
+      lock();
+      try {
+        for (Iterator i = map.entrySet().iterator(); i.hasNext();) {
+          Map.Entry entry = (Map.Entry) i.next();
+          if (!((Entry) entry.getValue()).isExpired()) {
+            keys.add(entry.getKey());
+          }
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    boolean containsKey(Object key) {
+      lock();
+      try {
+        Entry entry = (Entry) map.get(key);
+        if (entry == null) {
+          return false;
+        }
+        if (entry.isExpired()) {
+          map.remove(key);
+          return false;
+        }
+        return true;
+      } finally {
+        unlock();
+      }
+    }
+
+    long evictionCount() {
+      lock();
+      try {
+        return evictionCount;
+      } finally {
+        unlock();
+      }
+    }
+
+    Object get(Object key) {
+      lock();
+      try {
+        Entry entry = (Entry) map.get(key);
+        if (entry == null) {
+          return null;
+        }
+        if (entry.isExpired()) {
+          map.remove(key);
+          return null;
+        }
+        entry.hits++;
+        return entry.value;
+      } finally {
+        unlock();
+      }
+    }
+
+    Object put(Object key, Entry entry) {
+      lock();
+      try {
+        Entry oldEntry = (Entry) map.put(key, entry);
+        if (oldEntry == null) {
+          if (capacity > 0 && map.size() > capacity) {
+            evict(key);
+          }
+          return null;
+        }
+        entry.hits = oldEntry.hits;
+        return oldEntry.isExpired() ? null : oldEntry.value;
+      } finally {
+        unlock();
+      }
+    }
+
+    Object remove(Object key) {
+      lock();
+      try {
+        Entry oldEntry = (Entry) map.remove(key);
+        if (oldEntry == null || oldEntry.isExpired()) {
+          return null;
+        }
+        return oldEntry.value;
+      } finally {
+        unlock();
+      }
+    }
+
+    int size() {
+      lock();
+      try {
+        return map.size();
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Removes one entry other than the one stored under the given key. Must be
+     * called holding the lock of this segment.
+     */
+    private void evict(Object newKey) {
+      Iterator i = map.entrySet().iterator();
+      Map.Entry victim = (Map.Entry) i.next();
+
+      if (!accessOrder) {
+        Entry victimEntry = (Entry) victim.getValue();
+        for (int n = 1; n < LFU_EVICTION_SAMPLE_SIZE && i.hasNext()
+            && !victimEntry.isExpired(); n++) {
+          Map.Entry candidate = (Map.Entry) i.next();
+          if (candidate.getKey().equals(newKey)) {
+            continue;
+          }
+          Entry candidateEntry = (Entry) candidate.getValue();
+          if (candidateEntry.hits < victimEntry.hits
+              || candidateEntry.isExpired()) {
+            victim = candidate;
+            victimEntry = candidateEntry;
+          }
+        }
+      }
+
+      map.remove(victim.getKey());
+      evictionCount++;
+    }
+  }
+}
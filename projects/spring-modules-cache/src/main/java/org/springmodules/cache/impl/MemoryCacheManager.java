@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.impl;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Implementation of <code>{@link CacheManager}</code> that keeps its caches
+ * in memory. Caches can be added programmatically or set as a map of cache
+ * names to <code>{@link Cache}</code> instances, which makes this manager easy
+ * to configure in a Spring context.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public class MemoryCacheManager implements CacheManager {
+
+  private final ConcurrentHashMap caches = new ConcurrentHashMap();
+
+  /**
+   * @see CacheManager#addCache(String, Cache)
+   */
+  public void addCache(String cacheName, Cache cache)
+      throws CacheAlreadyExistsException {
+    if (cacheName == null) {
+      throw new IllegalArgumentException("The cache name should not be null");
+    }
+    if (cache == null) {
+      throw new IllegalArgumentException("The cache should not be null");
+    }
+    if (caches.putIfAbsent(cacheName, cache) != null) {
+      throw new CacheAlreadyExistsException(cacheName);
+    }
+  }
+
+  /**
+   * @see CacheManager#getCache(String)
+   */
+  public Cache getCache(String cacheName) {
+    return cacheName == null ? null : (Cache) caches.get(cacheName);
+  }
+
+  /**
+   * Adds the given caches to this manager.
+   *
+   * @param newCaches
+   *          the caches to add, stored using their names (Strings) as keys
+   * @throws CacheAlreadyExistsException
+   *           if there is already a cache stored under any of the given names
+   */
+  public void setCaches(Map newCaches) throws CacheAlreadyExistsException {
+    if (newCaches == null) {
+      return;
+    }
+    for (Iterator i = newCaches.entrySet().iterator(); i.hasNext();) {
+      Map.Entry entry = (Map.Entry) i.next();
+      addCache((String) entry.getKey(), (Cache) entry.getValue());
+    }
+  }
+
+  /**
+   * Clears and removes all the caches of this manager.
+   *
+   * @see CacheManager#shutDown()
+   */
+  public void shutDown() {
+    for (Iterator i = caches.values().iterator(); i.hasNext();) {
+      Cache cache = (Cache) i.next();
+      cache.clear();
+      i.remove();
+    }
+  }
+}
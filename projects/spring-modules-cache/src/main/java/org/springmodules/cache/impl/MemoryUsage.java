@@ -0,0 +1,139 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.impl;
+
+import java.io.Serializable;
+
+/**
+ * Snapshot of the memory used by an <code>{@link OffHeapCache}</code>, or by
+ * several of them.
+ *
+ * @author Alex Ruiz
+ */
+public final class MemoryUsage implements Serializable {
+
+  private static final long serialVersionUID = 5096712253446907181L;
+
+  private final long bytesAllocated;
+
+  private final long bytesEvicted;
+
+  private final long bytesReserved;
+
+  private final long bytesUsed;
+
+  private final int entryCount;
+
+  private final long evictionCount;
+
+  private final long maxBytes;
+
+  MemoryUsage(long newMaxBytes, long newBytesReserved,
+      long newBytesAllocated, long newBytesUsed, int newEntryCount,
+      long newEvictionCount, long newBytesEvicted) {
+    maxBytes = newMaxBytes;
+    bytesReserved = newBytesReserved;
+    bytesAllocated = newBytesAllocated;
+    bytesUsed = newBytesUsed;
+    entryCount = newEntryCount;
+    evictionCount = newEvictionCount;
+    bytesEvicted = newBytesEvicted;
+  }
+
+  /**
+   * Returns the memory usage of several caches together.
+   *
+   * @param usages
+   *          the memory usages to add up
+   * @return the total memory usage
+   */
+  public static MemoryUsage sum(MemoryUsage[] usages) {
+    long maxBytes = 0;
+    long reserved = 0;
+    long allocated = 0;
+    long used = 0;
+    long evictions = 0;
+    long evicted = 0;
+    int entries = 0;
+    for (int i = 0; i < usages.length; i++) {
+      MemoryUsage usage = usages[i];
+      maxBytes += usage.maxBytes;
+      reserved += usage.bytesReserved;
+      allocated += usage.bytesAllocated;
+      used += usage.bytesUsed;
+      entries += usage.entryCount;
+      evictions += usage.evictionCount;
+      evicted += usage.bytesEvicted;
+    }
+    return new MemoryUsage(maxBytes, reserved, allocated, used, entries,
+        evictions, evicted);
+  }
+
+  /**
+   * @return the number of bytes of the blocks holding entries, including the
+   *         unused end of their last block
+   */
+  public long getBytesAllocated() {
+    return bytesAllocated;
+  }
+
+  /**
+   * @return the total size of the entries evicted to make room for new ones,
+   *         or too large to be stored, in bytes
+   */
+  public long getBytesEvicted() {
+    return bytesEvicted;
+  }
+
+  /**
+   * @return the number of bytes of off-heap memory reserved so far, never
+   *         released until the cache is garbage collected
+   */
+  public long getBytesReserved() {
+    return bytesReserved;
+  }
+
+  /**
+   * @return the total size of the serialized entries, in bytes
+   */
+  public long getBytesUsed() {
+    return bytesUsed;
+  }
+
+  public int getEntryCount() {
+    return entryCount;
+  }
+
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * @return the maximum number of bytes of off-heap memory to reserve
+   */
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public String toString() {
+    return "MemoryUsage[maxBytes=" + maxBytes + ", bytesReserved="
+        + bytesReserved + ", bytesAllocated=" + bytesAllocated
+        + ", bytesUsed=" + bytesUsed + ", entryCount=" + entryCount
+        + ", evictionCount=" + evictionCount + ", bytesEvicted="
+        + bytesEvicted + "]";
+  }
+}
@@ -0,0 +1,695 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.ClassUtils;
+
+/**
+ * <p>
+ * Implementation of <code>{@link Cache}</code> that keeps its values out of
+ * the Java heap, so large cached values do not lengthen garbage collection
+ * pauses. Values are serialized into blocks of direct
+ * <code>ByteBuffer</code>s, while the keys and the location of the values stay
+ * on the heap. Values are read by deserializing a copy, so they must be
+ * serializable and are never shared between callers.
+ * </p>
+ *
+ * <p>
+ * Entries are spread over independently locked segments, each owning an equal
+ * share of the maximum number of bytes. A segment reserves direct memory one
+ * slab at a time, cuts slabs into fixed-size blocks and stores each value in
+ * as many blocks as needed. When a segment is full, the least recently used
+ * entries are evicted. Values larger than a segment are not stored and a
+ * warning is logged: a larger slab size or a lower concurrency level makes
+ * segments, and so the largest value stored, bigger.
+ * </p>
+ *
+ * <p>
+ * Reserved memory is reused but not released until the cache is garbage
+ * collected. The contents of the cache are not serialized with it.
+ * </p>
+ *
+ * @author Alex Ruiz
+ * @see #getMemoryUsage()
+ * @see #getMaxValueSize()
+ */
+public class OffHeapCache implements Cache {
+
+  private static final long serialVersionUID = -4416278331907520553L;
+
+  private static Log logger = LogFactory.getLog(OffHeapCache.class);
+
+  /**
+   * Default number of bytes of a block.
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 256;
+
+  /**
+   * Default number of bytes of off-heap memory reserved at once.
+   */
+  public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+  private static final int MAXIMUM_CONCURRENCY_LEVEL = 1 << 16;
+
+  private static final int MINIMUM_DEFAULT_CONCURRENCY_LEVEL = 16;
+
+  private final int blockSize;
+
+  private final int concurrencyLevel;
+
+  private volatile long defaultTimeToLive = Element.EXPIRY_NEVER;
+
+  private final long maxBytes;
+
+  private transient int segmentMask;
+
+  private transient Segment[] segments;
+
+  private transient int segmentShift;
+
+  private final int slabSize;
+
+  /**
+   * Constructor.
+   *
+   * @param maxBytes
+   *          the maximum number of bytes of off-heap memory to reserve
+   */
+  public OffHeapCache(long maxBytes) {
+    this(maxBytes, DEFAULT_BLOCK_SIZE, DEFAULT_SLAB_SIZE,
+        defaultConcurrencyLevel());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxBytes
+   *          the maximum number of bytes of off-heap memory to reserve
+   * @param blockSize
+   *          the number of bytes of a block. Each value wastes half a block on
+   *          average
+   */
+  public OffHeapCache(long maxBytes, int blockSize) {
+    this(maxBytes, blockSize, Math.max(blockSize, DEFAULT_SLAB_SIZE),
+        defaultConcurrencyLevel());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param newMaxBytes
+   *          the maximum number of bytes of off-heap memory to reserve
+   * @param newBlockSize
+   *          the number of bytes of a block. Each value wastes half a block on
+   *          average
+   * @param newSlabSize
+   *          the number of bytes of off-heap memory reserved at once, rounded
+   *          to a multiple of the block size
+   * @param newConcurrencyLevel
+   *          the estimated number of threads updating the cache concurrently
+   * @throws IllegalArgumentException
+   *           if any of the arguments is not positive, or the block size is
+   *           greater than the slab size
+   */
+  public OffHeapCache(long newMaxBytes, int newBlockSize, int newSlabSize,
+      int newConcurrencyLevel) throws IllegalArgumentException {
+    super();
+    if (newMaxBytes <= 0 || newBlockSize <= 0 || newSlabSize <= 0
+        || newConcurrencyLevel <= 0) {
+      throw new IllegalArgumentException(
+          "The maximum number of bytes, the block size, the slab size and the concurrency level should be greater than zero");
+    }
+    if (newBlockSize > newSlabSize) {
+      throw new IllegalArgumentException(
+          "The block size should not be greater than the slab size");
+    }
+    maxBytes = newMaxBytes;
+    blockSize = newBlockSize;
+    slabSize = newSlabSize - newSlabSize % newBlockSize;
+    concurrencyLevel = newConcurrencyLevel;
+    createSegments();
+  }
+
+  /**
+   * @see Cache#clear()
+   */
+  public void clear() {
+    for (int i = 0; i < segments.length; i++) {
+      segments[i].clear();
+    }
+  }
+
+  /**
+   * @see Cache#containsKey(Serializable)
+   */
+  public boolean containsKey(Serializable key) throws IllegalArgumentException {
+    assertKeyIsNotNull(key);
+    return segmentFor(key).containsKey(key);
+  }
+
+  /**
+   * @see Cache#get(Serializable)
+   */
+  public Object get(Serializable key) throws IllegalArgumentException {
+    assertKeyIsNotNull(key);
+    return deserialize(segmentFor(key).get(key));
+  }
+
+  public final int getBlockSize() {
+    return blockSize;
+  }
+
+  public final long getDefaultTimeToLive() {
+    return defaultTimeToLive;
+  }
+
+  public final long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * @return the number of bytes of the largest serialized value this cache
+   *         can store
+   */
+  public long getMaxValueSize() {
+    long maxValueSize = Long.MAX_VALUE;
+    for (int i = 0; i < segments.length; i++) {
+      maxValueSize = Math.min(maxValueSize, segments[i].maxValueSize());
+    }
+    return maxValueSize;
+  }
+
+  /**
+   * @return the current memory usage of this cache
+   */
+  public MemoryUsage getMemoryUsage() {
+    MemoryUsage[] usages = new MemoryUsage[segments.length];
+    for (int i = 0; i < segments.length; i++) {
+      usages[i] = segments[i].memoryUsage();
+    }
+    return MemoryUsage.sum(usages);
+  }
+
+  /**
+   * @see Cache#isEmpty()
+   */
+  public boolean isEmpty() {
+    for (int i = 0; i < segments.length; i++) {
+      if (segments[i].size() > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @see Cache#keys()
+   */
+  public Set keys() {
+    Set keys = new HashSet();
+    for (int i = 0; i < segments.length; i++) {
+      segments[i].collectKeys(keys);
+    }
+    return keys;
+  }
+
+  /**
+   * Stores a value. The previous value is not read back from off-heap memory.
+   *
+   * @return <code>null</code>
+   * @throws ObjectCannotBeCopiedException
+   *           if the value cannot be serialized
+   * @see Cache#put(Serializable, Object)
+   */
+  public Object put(Serializable key, Object value)
+      throws IllegalArgumentException, ObjectCannotBeCopiedException {
+    return put(key, value, defaultTimeToLive);
+  }
+
+  /**
+   * Stores a value. The previous value is not read back from off-heap memory.
+   * A value larger than <code>{@link #getMaxValueSize()}</code> bytes once
+   * serialized is not stored, but the previous value is still removed.
+   *
+   * @return <code>null</code>
+   * @throws ObjectCannotBeCopiedException
+   *           if the value cannot be serialized
+   * @see Cache#put(Serializable, Object, long)
+   */
+  public Object put(Serializable key, Object value, long timeToLive)
+      throws IllegalArgumentException, ObjectCannotBeCopiedException {
+    assertKeyIsNotNull(key);
+    byte[] bytes = serialize(value);
+    Segment segment = segmentFor(key);
+    if (!segment.put(key, bytes, System.currentTimeMillis(), timeToLive)) {
+      logger.warn("Unable to store the value with key <" + key
+          + "> out of the heap: it takes " + bytes.length
+          + " bytes, more than the " + segment.maxValueSize()
+          + " bytes of a segment");
+    }
+    return null;
+  }
+
+  /**
+   * @see Cache#remove(Serializable)
+   */
+  public Object remove(Serializable key) throws IllegalArgumentException {
+    assertKeyIsNotNull(key);
+    return deserialize(segmentFor(key).remove(key));
+  }
+
+  /**
+   * Sets the number of milliseconds entries stored without a time-to-live stay
+   * in the cache. By default they never expire.
+   */
+  public final void setDefaultTimeToLive(long newDefaultTimeToLive) {
+    defaultTimeToLive = newDefaultTimeToLive;
+  }
+
+  /**
+   * @see Cache#size()
+   */
+  public int size() {
+    long size = 0;
+    for (int i = 0; i < segments.length; i++) {
+      size += segments[i].size();
+    }
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  private void assertKeyIsNotNull(Serializable key) {
+    if (key == null) {
+      throw new IllegalArgumentException("The key should not be null");
+    }
+  }
+
+  private void createSegments() {
+    int level = Math.min(concurrencyLevel, MAXIMUM_CONCURRENCY_LEVEL);
+    // each segment should hold at least a slab
+    long slabCount = Math.max(1, maxBytes / slabSize);
+    level = (int) Math.min(level, slabCount);
+
+    int shift = 0;
+    int segmentCount = 1;
+    while (segmentCount < level) {
+      ++shift;
+      segmentCount <<= 1;
+    }
+    segmentShift = 32 - shift;
+    segmentMask = segmentCount - 1;
+
+    segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      long capacity = maxBytes / segmentCount
+          + (i < maxBytes % segmentCount ? 1 : 0);
+      segments[i] = new Segment(capacity, blockSize, slabSize);
+    }
+  }
+
+  private Object deserialize(byte[] bytes)
+      throws ObjectCannotBeCopiedException {
+    if (bytes == null) {
+      return null;
+    }
+    try {
+      ObjectInputStream input = new ClassLoaderObjectInputStream(
+          new ByteArrayInputStream(bytes));
+      return input.readObject();
+    } catch (Exception exception) {
+      throw new ObjectCannotBeCopiedException(
+          "Unable to read the value stored out of the heap", exception);
+    }
+  }
+
+  private void readObject(ObjectInputStream input) throws IOException,
+      ClassNotFoundException {
+    input.defaultReadObject();
+    createSegments();
+  }
+
+  private Segment segmentFor(Object key) {
+    int hash = hash(key.hashCode());
+    return segments[(hash >>> segmentShift) & segmentMask];
+  }
+
+  private byte[] serialize(Object value) throws ObjectCannotBeCopiedException {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(blockSize);
+      ObjectOutputStream output = new ObjectOutputStream(bytes);
+      output.writeObject(value);
+      output.close();
+      return bytes.toByteArray();
+    } catch (IOException exception) {
+      throw new ObjectCannotBeCopiedException("Unable to store the value <"
+          + value + "> out of the heap", exception);
+    }
+  }
+
+  private static int defaultConcurrencyLevel() {
+    int processors = Runtime.getRuntime().availableProcessors();
+    return Math.max(MINIMUM_DEFAULT_CONCURRENCY_LEVEL, processors * 4);
+  }
+
+  /**
+   * Spreads the bits of the given hash code so keys with similar hash codes
+   * are assigned to different segments.
+   */
+  private static int hash(int h) {
+    h += (h << 15) ^ 0xffffcd7d;
+    h ^= (h >>> 10);
+    h += (h << 3);
+    h ^= (h >>> 6);
+    h += (h << 2) + (h << 14);
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Resolves classes with the context class loader, so cached values of
+   * application classes can be read from any thread.
+   */
+  private static final class ClassLoaderObjectInputStream extends
+      ObjectInputStream {
+
+    ClassLoaderObjectInputStream(InputStream input) throws IOException {
+      super(input);
+    }
+
+    protected Class resolveClass(ObjectStreamClass description)
+        throws IOException, ClassNotFoundException {
+      try {
+        return ClassUtils.forName(description.getName());
+      } catch (ClassNotFoundException exception) {
+        return super.resolveClass(description);
+      }
+    }
+  }
+
+  /**
+   * Location of a value in the blocks of a segment, together with its
+   * expiration data.
+   */
+  private static final class Entry {
+
+    final int[] blocks;
+
+    final long creationTime;
+
+    final int length;
+
+    final long timeToLive;
+
+    Entry(int[] newBlocks, int newLength, long newCreationTime,
+        long newTimeToLive) {
+      blocks = newBlocks;
+      length = newLength;
+      creationTime = newCreationTime;
+      timeToLive = newTimeToLive;
+    }
+
+    boolean isExpired() {
+      return timeToLive != Element.EXPIRY_NEVER
+          && !Element.isAlive(creationTime, timeToLive, System
+              .currentTimeMillis());
+    }
+  }
+
+  /**
+   * Independently locked partition of the cache, owning its slabs.
+   */
+  private static final class Segment extends ReentrantLock {
+
+    private static final long serialVersionUID = -6121620497542702011L;
+
+    private final int blocksPerSlab;
+
+    private final int blockSize;
+
+    private long bytesEvicted;
+
+    private long bytesUsed;
+
+    private final long capacity;
+
+    private long evictionCount;
+
+    /**
+     * Identifiers of the free blocks: the index of their slab times the number
+     * of blocks per slab, plus their index in the slab.
+     */
+    private int[] freeBlocks = new int[0];
+
+    private int freeCount;
+
+    /**
+     * Entries stored by key, the least recently used first.
+     */
+    private final LinkedHashMap map = new LinkedHashMap(16, 0.75f, true);
+
+    private final int maxSlabs;
+
+    private final List slabs = new ArrayList();
+
+    Segment(long newCapacity, int newBlockSize, int slabSize) {
+      super();
+      capacity = newCapacity;
+      blockSize = newBlockSize;
+      long segmentSlabSize = Math.min(slabSize, roundUp(capacity, blockSize));
+      blocksPerSlab = (int) (segmentSlabSize / blockSize);
+      maxSlabs = (int) Math.max(1, capacity / segmentSlabSize);
+    }
+
+    void clear() {
+      lock();
+      try {
+        for (Iterator i = map.values().iterator(); i.hasNext();) {
+          release((Entry) i.next());
+        }
+        map.clear();
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Adds the keys of the entries that have not expired to the given set.
+     */
+    void collectKeys(Set keys) {
+      lock();
+      try {
+        for (Iterator i = map.entrySet().iterator(); i.hasNext();) {
+          Map.Entry entry = (Map.Entry) i.next();
+          if (!((Entry) entry.getValue()).isExpired()) {
+            keys.add(entry.getKey());
+          }
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    boolean containsKey(Object key) {
+      lock();
+      try {
+        return liveEntry(key) != null;
+      } finally {
+        unlock();
+      }
+    }
+
+    byte[] get(Object key) {
+      lock();
+      try {
+        Entry entry = liveEntry(key);
+        return (entry != null) ? read(entry) : null;
+      } finally {
+        unlock();
+      }
+    }
+
+    MemoryUsage memoryUsage() {
+      lock();
+      try {
+        long totalBlocks = (long) slabs.size() * blocksPerSlab;
+        return new MemoryUsage(capacity, totalBlocks * blockSize,
+            (totalBlocks - freeCount) * blockSize, bytesUsed, map.size(),
+            evictionCount, bytesEvicted);
+      } finally {
+        unlock();
+      }
+    }
+
+    long maxValueSize() {
+      return (long) maxSlabs * blocksPerSlab * blockSize;
+    }
+
+    /**
+     * Stores a value, evicting the least recently used entries if necessary.
+     * The previous value is removed even if the new one is too large.
+     *
+     * @return <code>true</code> if the value was stored, <code>false</code>
+     *         if it is larger than this segment
+     */
+    boolean put(Object key, byte[] value, long creationTime, long timeToLive) {
+      lock();
+      try {
+        Entry oldEntry = (Entry) map.remove(key);
+        if (oldEntry != null) {
+          release(oldEntry);
+        }
+
+        if (value.length > maxValueSize()) {
+          return false;
+        }
+        int blockCount = (value.length + blockSize - 1) / blockSize;
+
+        while (freeCount < blockCount) {
+          if (slabs.size() < maxSlabs) {
+            addSlab();
+          } else {
+            evictEldest();
+          }
+        }
+
+        int[] blocks = new int[blockCount];
+        for (int i = 0; i < blockCount; i++) {
+          blocks[i] = freeBlocks[--freeCount];
+          int offset = i * blockSize;
+          ByteBuffer slab = slabOf(blocks[i]);
+          slab.position(offsetOf(blocks[i]));
+          slab.put(value, offset, Math.min(blockSize, value.length - offset));
+        }
+        map.put(key, new Entry(blocks, value.length, creationTime, timeToLive));
+        bytesUsed += value.length;
+        return true;
+      } finally {
+        unlock();
+      }
+    }
+
+    byte[] remove(Object key) {
+      lock();
+      try {
+        Entry entry = (Entry) map.remove(key);
+        if (entry == null) {
+          return null;
+        }
+        byte[] value = entry.isExpired() ? null : read(entry);
+        release(entry);
+        return value;
+      } finally {
+        unlock();
+      }
+    }
+
+    int size() {
+      lock();
+      try {
+        return map.size();
+      } finally {
+        unlock();
+      }
+    }
+
+    private void addSlab() {
+      int slabIndex = slabs.size();
+      slabs.add(ByteBuffer.allocateDirect(blocksPerSlab * blockSize));
+
+      int[] newFreeBlocks = new int[freeBlocks.length + blocksPerSlab];
+      System.arraycopy(freeBlocks, 0, newFreeBlocks, 0, freeCount);
+      freeBlocks = newFreeBlocks;
+      // pushed in reverse order, so blocks are used in address order
+      for (int i = blocksPerSlab - 1; i >= 0; i--) {
+        freeBlocks[freeCount++] = slabIndex * blocksPerSlab + i;
+      }
+    }
+
+    private void evictEldest() {
+      Iterator i = map.values().iterator();
+      Entry eldest = (Entry) i.next();
+      i.remove();
+      release(eldest);
+      if (!eldest.isExpired()) {
+        evictionCount++;
+        bytesEvicted += eldest.length;
+      }
+    }
+
+    /**
+     * Returns the entry stored under the given key, removing it if expired.
+     * Must be called holding the lock of this segment.
+     */
+    private Entry liveEntry(Object key) {
+      Entry entry = (Entry) map.get(key);
+      if (entry != null && entry.isExpired()) {
+        map.remove(key);
+        release(entry);
+        return null;
+      }
+      return entry;
+    }
+
+    private int offsetOf(int block) {
+      return (block % blocksPerSlab) * blockSize;
+    }
+
+    private byte[] read(Entry entry) {
+      byte[] value = new byte[entry.length];
+      for (int i = 0; i < entry.blocks.length; i++) {
+        int offset = i * blockSize;
+        ByteBuffer slab = slabOf(entry.blocks[i]);
+        slab.position(offsetOf(entry.blocks[i]));
+        slab.get(value, offset, Math.min(blockSize, entry.length - offset));
+      }
+      return value;
+    }
+
+    private void release(Entry entry) {
+      for (int i = 0; i < entry.blocks.length; i++) {
+        freeBlocks[freeCount++] = entry.blocks[i];
+      }
+      bytesUsed -= entry.length;
+    }
+
+    private ByteBuffer slabOf(int block) {
+      return (ByteBuffer) slabs.get(block / blocksPerSlab);
+    }
+
+    private static long roundUp(long value, int multiple) {
+      return (value + multiple - 1) / multiple * multiple;
+    }
+  }
+}
@@ -32,6 +32,11 @@ import org.springmodules.cache.util.TextMatcher;
  * <p>
  * Template that allows attributes to be matched by registered name.
  * </p>
+ * <p>
+ * The model of a method is resolved once and then looked up without locking.
+ * The map of models should not be modified after the first lookup, unless it
+ * is set again.
+ * </p>
  * 
  * @author Alex Ruiz
  */
@@ -46,6 +51,16 @@ public abstract class AbstractNameMatchCacheModelSource {
    */
   private Map cacheModels;
 
+  /**
+   * Cache models already bound to methods.
+   */
+  private final MethodDispatchTable resolvedModels = new MethodDispatchTable(
+      new MethodDispatchTable.Resolver() {
+        public Object resolve(Method method, Class targetClass) {
+          return resolveCacheModel(method);
+        }
+      });
+
   /**
    * Returns the cache model bound to the intercepted method.
    * 
@@ -54,6 +69,11 @@ public abstract class AbstractNameMatchCacheModelSource {
    * @return the model bound to the intercepted method
    */
   protected final CacheModel getCacheModel(Method method) {
+    // models are bound by name, whatever the target class
+    return (CacheModel) resolvedModels.get(method, null);
+  }
+
+  private CacheModel resolveCacheModel(Method method) {
     String methodName = method.getName();
     CacheModel model = (CacheModel) cacheModels.get(methodName);
 
@@ -105,5 +125,6 @@ public abstract class AbstractNameMatchCacheModelSource {
    */
   protected final void setCacheModels(Map newCacheModels) {
     cacheModels = newCacheModels;
+    resolvedModels.clear();
   }
 }
\ No newline at end of file
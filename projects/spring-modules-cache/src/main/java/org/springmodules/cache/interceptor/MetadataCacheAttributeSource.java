@@ -22,15 +22,13 @@ import org.springframework.util.Assert;
 import org.springmodules.cache.CacheAttribute;
 
 import java.lang.reflect.Method;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Class that finds and holds {@link CacheAttribute} metadata.
  * <p/>
- * Discovered {@link CacheAttribute} are saved in a synchronized hashmap to
- * enhance performances of the framework.
+ * Discovered {@link CacheAttribute} are saved in a
+ * {@link MethodDispatchTable} to enhance performances of the framework.
+ * Attributes are looked up without locking once discovered.
  * <p/>
  * <Strong>Note</Strong> This class does not implement any support for flushing
  * the discovered CacheAttibutes since this is very unlikely to be required.
@@ -51,27 +49,22 @@ public class MetadataCacheAttributeSource {
 
 	public static final Object NULL_ATTRIBUTE = new Object();
 
-	private final Map attributeMap;
+	private final MethodDispatchTable attributes;
 
 	private final MetadataFinder finder;
 
 	public MetadataCacheAttributeSource(MetadataFinder f) {
 		Assert.notNull(f, "property 'finder' is required");
-		attributeMap = Collections.synchronizedMap(new HashMap());
 		finder = f;
+		attributes = new MethodDispatchTable(new MethodDispatchTable.Resolver() {
+			public Object resolve(Method m, Class t) {
+				return retrieve(m, t);
+			}
+		});
 	}
 
 	public CacheAttribute attribute(Method m, Class t) {
-		String key = key(m, t);
-		Object cached = attributeMap.get(key);
-		if (cached != null) return unmaskNull(cached);
-		CacheAttribute attribute = retrieve(m, t);
-		attributeMap.put(key, maskNull(attribute));
-		return attribute;
-	}
-
-	private String key(Method m, Class t) {
-		return t.toString() + System.identityHashCode(m);
+		return (CacheAttribute) attributes.get(m, t);
 	}
 
 	private CacheAttribute retrieve(Method m, Class t) {
@@ -82,12 +75,4 @@ public class MetadataCacheAttributeSource {
 		return null;
 	}
 
-	private Object maskNull(CacheAttribute c) {
-		return c == null ? NULL_ATTRIBUTE : c;
-	}
-
-	private CacheAttribute unmaskNull(Object o) {
-		return o == NULL_ATTRIBUTE ? null : (CacheAttribute) o;
-	}
-
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Table of the values (usually cache models or metadata attributes) bound to
+ * intercepted methods. Each value is resolved once per method and target
+ * class, and then looked up without locking, building keys nor allocating.
+ * </p>
+ * <p>
+ * Values are stored by method. The values of a method for its target classes
+ * form an immutable chain compared by identity of the target class, replaced
+ * atomically when a new target class is resolved.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public final class MethodDispatchTable {
+
+  /**
+   * Resolves the value bound to a method the first time the method is looked
+   * up for a target class.
+   */
+  public interface Resolver {
+
+    /**
+     * @param method
+     *          the intercepted method
+     * @param targetClass
+     *          the class of the target object, may be <code>null</code>
+     * @return the value bound to the method, or <code>null</code> if there is
+     *         none
+     */
+    Object resolve(Method method, Class targetClass);
+  }
+
+  /**
+   * Value resolved for a method and a target class.
+   */
+  private static final class Dispatch {
+
+    final Dispatch next;
+
+    final Class targetClass;
+
+    final Object value;
+
+    Dispatch(Class newTargetClass, Object newValue, Dispatch newNext) {
+      targetClass = newTargetClass;
+      value = newValue;
+      next = newNext;
+    }
+  }
+
+  private static final Object NULL_VALUE = new Object();
+
+  private final Resolver resolver;
+
+  /**
+   * Chains of dispatches stored by method.
+   */
+  private final ConcurrentHashMap table = new ConcurrentHashMap();
+
+  public MethodDispatchTable(Resolver newResolver) {
+    resolver = newResolver;
+  }
+
+  /**
+   * Removes all the resolved values, so they are resolved again on the next
+   * lookup.
+   */
+  public void clear() {
+    table.clear();
+  }
+
+  /**
+   * Returns the value bound to the given method and target class, resolving it
+   * on the first lookup.
+   *
+   * @param method
+   *          the intercepted method
+   * @param targetClass
+   *          the class of the target object, may be <code>null</code>
+   * @return the value bound to the method, or <code>null</code> if there is
+   *         none
+   */
+  public Object get(Method method, Class targetClass) {
+    Dispatch head = (Dispatch) table.get(method);
+    for (Dispatch d = head; d != null; d = d.next) {
+      if (d.targetClass == targetClass) return unmaskNull(d.value);
+    }
+
+    Object value = resolver.resolve(method, targetClass);
+    Dispatch dispatch = new Dispatch(targetClass, maskNull(value), head);
+    while (!register(method, head, dispatch)) {
+      head = (Dispatch) table.get(method);
+      for (Dispatch d = head; d != null; d = d.next) {
+        if (d.targetClass == targetClass) return unmaskNull(d.value);
+      }
+      dispatch = new Dispatch(targetClass, dispatch.value, head);
+    }
+    return value;
+  }
+
+  /**
+   * @return the number of methods having resolved values
+   */
+  public int size() {
+    return table.size();
+  }
+
+  private Object maskNull(Object value) {
+    return value == null ? NULL_VALUE : value;
+  }
+
+  private boolean register(Method method, Dispatch head, Dispatch dispatch) {
+    if (head == null) return table.putIfAbsent(method, dispatch) == null;
+    return table.replace(method, head, dispatch);
+  }
+
+  private Object unmaskNull(Object value) {
+    return value == NULL_VALUE ? null : value;
+  }
+}
@@ -25,7 +25,15 @@ import org.springmodules.cache.CacheModel;
 import org.springmodules.cache.util.TextMatcher;
 
 /**
- * TODO Describe this class
+ * <p>
+ * Binds cache models to methods by method name. Mapped names may start or end
+ * with a wildcard, the longest matching name wins.
+ * </p>
+ * <p>
+ * The model of a method is resolved once and then looked up without locking.
+ * The map of models should not be modified after the first lookup, unless it
+ * is set again.
+ * </p>
  * 
  * @author Alex Ruiz
  */
@@ -33,11 +41,24 @@ public final class NameMatchCacheModelSource {
 
   private Map models;
 
+  private final MethodDispatchTable resolvedModels = new MethodDispatchTable(
+      new MethodDispatchTable.Resolver() {
+        public Object resolve(Method method, Class targetClass) {
+          return resolveModel(method);
+        }
+      });
+
   public void setModels(Map m) {
     models = m;
+    resolvedModels.clear();
   }
 
   public CacheModel model(Method m) {
+    // models are bound by name, whatever the target class
+    return (CacheModel)resolvedModels.get(m, null);
+  }
+
+  private CacheModel resolveModel(Method m) {
     String key = m.getName();
     CacheModel model = model(key);
     if (model != null) return model;
@@ -20,25 +20,40 @@ package org.springmodules.cache.interceptor.caching;
 import java.beans.PropertyEditor;
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.aop.ProxyMethodInvocation;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 import org.springmodules.cache.CachingModel;
 import org.springmodules.cache.FatalCacheException;
+import org.springmodules.cache.admission.AdmissionPolicy;
 import org.springmodules.cache.key.CacheKeyGenerator;
 import org.springmodules.cache.key.HashCodeCacheKeyGenerator;
+import org.springmodules.cache.provider.AbstractCacheProviderFacade;
+import org.springmodules.cache.provider.AbstractCachingModel;
 import org.springmodules.cache.provider.CacheModelValidator;
 import org.springmodules.cache.provider.CacheProviderFacade;
+import org.springmodules.cache.statistics.CacheStatistics;
+import org.springmodules.cache.statistics.ModelStatistics;
+import org.springmodules.cache.tag.TagIndex;
+import org.springmodules.cache.tag.TagPattern;
 
 /**
  * Template for advises that store in a cache the return value of intercepted
@@ -59,10 +74,37 @@ public abstract class AbstractCachingInterceptor implements MethodInterceptor,
 
 	protected CacheKeyGenerator keyGenerator;
 
+	private AdmissionPolicy admissionPolicy;
+
 	private CachingListener[] listeners;
 
 	private Map modelMap;
 
+	/**
+	 * Futures returned by intercepted methods and not completed yet, stored by
+	 * model and cache key.
+	 */
+	private final ConcurrentHashMap pendingFutures = new ConcurrentHashMap();
+
+	/**
+	 * Loads in progress for models in single-flight mode, stored by model and
+	 * cache key.
+	 */
+	private final ConcurrentHashMap pendingLoads = new ConcurrentHashMap();
+
+	/**
+	 * Models and keys of the entries being refreshed in the background.
+	 */
+	private final ConcurrentHashMap pendingRefreshes = new ConcurrentHashMap();
+
+	private TaskExecutor refreshExecutor = defaultRefreshExecutor();
+
+	private CacheStatistics statistics;
+
+	private TagIndex tagIndex;
+
+	private final WriteBehindQueue writeBehindQueue = defaultWriteBehindQueue();
+
 	public final void afterPropertiesSet() throws FatalCacheException {
 		validateCache();
 		if (modelMap instanceof Properties)
@@ -84,19 +126,46 @@ public abstract class AbstractCachingInterceptor implements MethodInterceptor,
 		CachingModel model = model(mi);
 		if (model == null) return noModelFound(mi, method);
 
+		if (model instanceof AbstractCachingModel
+				&& ((AbstractCachingModel) model).isPerElement()) {
+			int index = elementsArgumentIndex(mi);
+			if (index >= 0) return elementsFromCache(mi, index, model);
+			if (logger.isDebugEnabled())
+				logger.debug("Unable to cache the elements returned by method <"
+						+ method + "> separately. Caching the whole return value");
+		}
+
 		Serializable key = keyGenerator.generateKey(mi);
 		Object cached = cache.getFromCache(key, model);
-
-		if (null == cached) return cachedValueFromSource(mi, key, model);
-		return unmaskNull(cached);
+		if (cached instanceof RefreshableEntry)
+			cached = refreshIfNecessary(mi, key, model, (RefreshableEntry) cached);
+		else if (cached instanceof NegativeEntry)
+			cached = cachedValue(cached, model);
+
+		if (isFuture(method))
+			return (null == cached) ? futureFromSource(mi, key, model)
+					: completedFuture(cached);
+		if (null == cached) return valueFromSource(mi, key, model);
+		return cachedResult(cached);
 	}
 
 	public final void setCacheKeyGenerator(CacheKeyGenerator k) {
 		keyGenerator = k;
 	}
 
+	/**
+	 * Sets the facade of the cache provider. Entries waiting to be stored in the
+	 * background are discarded when the cache is flushed or they are removed
+	 * through the facade, if it extends
+	 * <code>{@link AbstractCacheProviderFacade}</code>.
+	 *
+	 * @param c the facade of the cache provider
+	 */
 	public final void setCacheProviderFacade(CacheProviderFacade c) {
 		cache = c;
+		writeBehindQueue.setCache(c);
+		if (c instanceof AbstractCacheProviderFacade)
+			((AbstractCacheProviderFacade) c).addInvalidationListener(writeBehindQueue);
 	}
 
 	public final void setCachingListeners(CachingListener[] l) {
@@ -107,6 +176,91 @@ public abstract class AbstractCachingInterceptor implements MethodInterceptor,
 		modelMap = m;
 	}
 
+	/**
+	 * Sets the executor used to reload entries in the background, for models
+	 * that refresh entries ahead of time or serve them stale. By default a
+	 * new daemon thread is started for each refresh.
+	 *
+	 * @param e the new executor
+	 * @see AbstractCachingModel#setRefreshAfter(long)
+	 * @see AbstractCachingModel#setMaxStaleness(long)
+	 */
+	public final void setRefreshExecutor(TaskExecutor e) {
+		refreshExecutor = e;
+	}
+
+	/**
+	 * Sets the admission policy where the time spent invoking the intercepted
+	 * methods after a cache miss is recorded. Should be the policy used by the
+	 * cache provider facade. No load times are recorded by default.
+	 *
+	 * @param a the new admission policy
+	 * @see org.springmodules.cache.provider.AbstractCacheProviderFacade#setAdmissionPolicy(AdmissionPolicy)
+	 */
+	public final void setAdmissionPolicy(AdmissionPolicy a) {
+		admissionPolicy = a;
+	}
+
+	/**
+	 * Sets the statistics where the invocations of the intercepted methods
+	 * after a cache miss are recorded, per model. Usually the same statistics
+	 * used by the cache provider facade. No statistics are recorded by default.
+	 *
+	 * @param s the new statistics
+	 * @see org.springmodules.cache.provider.AbstractCacheProviderFacade#setStatistics(CacheStatistics)
+	 */
+	public final void setStatistics(CacheStatistics s) {
+		statistics = s;
+	}
+
+	/**
+	 * Sets the index where the dependency tags of the stored entries are
+	 * recorded, for models having tags. Should be the index used by the
+	 * flushing interceptors. No tags are recorded by default.
+	 *
+	 * @param t the new tag index
+	 * @see AbstractCachingModel#setTags(String[])
+	 */
+	public final void setTagIndex(TagIndex t) {
+		tagIndex = t;
+	}
+
+	/**
+	 * Sets the maximum number of entries stored in a single bulk put, for
+	 * models that store entries in the background. The default is 100.
+	 *
+	 * @param size the new number of entries
+	 * @see AbstractCachingModel#setWriteBehind(boolean)
+	 */
+	public final void setWriteBehindBatchSize(int size) {
+		writeBehindQueue.setBatchSize(size);
+	}
+
+	/**
+	 * Sets the maximum number of entries waiting to be stored in the
+	 * background. Entries that do not fit are stored in the caller thread. The
+	 * default is 10000.
+	 *
+	 * @param capacity the new number of entries
+	 * @see AbstractCachingModel#setWriteBehind(boolean)
+	 */
+	public final void setWriteBehindCapacity(int capacity) {
+		writeBehindQueue.setCapacity(capacity);
+	}
+
+	/**
+	 * Sets the executor used to store entries in the background, for models
+	 * that store entries in the background. Only one task at a time is given
+	 * to the executor. By default a new daemon thread is started for each
+	 * task.
+	 *
+	 * @param e the new executor
+	 * @see AbstractCachingModel#setWriteBehind(boolean)
+	 */
+	public final void setWriteBehindExecutor(TaskExecutor e) {
+		writeBehindQueue.setExecutor(e);
+	}
+
 	protected abstract CachingModel model(MethodInvocation mi);
 
 	protected final Map models() {
@@ -129,17 +283,424 @@ public abstract class AbstractCachingInterceptor implements MethodInterceptor,
      */
 	protected Object cachedValueFromSource(MethodInvocation mi, Serializable key,
 										 CachingModel m) throws Throwable {
+		return loadValue(mi, key, m, true);
+	}
+
+	/**
+	 * Invokes the proxied method and stores its return value in the cache.
+	 *
+	 * @param cacheFailures <code>false</code> if an exception thrown by the
+	 *          method should not be cached even if the model caches exceptions
+	 *          of its type
+	 */
+	private Object loadValue(MethodInvocation mi, Serializable key,
+			CachingModel m, boolean cacheFailures) throws Throwable {
 		boolean successful = true;
+		boolean failureCached = false;
+		ModelStatistics s = statisticsFor(m);
+		AdmissionPolicy a = admissionPolicy;
+		long start = (s != null || a != null) ? System.nanoTime() : 0;
 		try {
 			Object value = mi.proceed();
+			if (s != null || a != null) {
+				long nanos = System.nanoTime() - start;
+				if (s != null) s.recordLoad(true, nanos);
+				if (a != null) a.recordLoad(key, m, nanos);
+			}
+			tag(mi, key, m, value);
 			putInCache(key, m, value);
 			return value;
+		} catch (Throwable t) {
+			successful = false;
+			logger.debug("method " + mi.getMethod().getName() + " throwed a exception", t);
+			if (cacheFailures) failureCached = putFailureInCache(key, m, t);
+			throw t;
+		} finally {
+			if (!successful) {
+				if (s != null) s.recordLoad(false, System.nanoTime() - start);
+				if (!failureCached) cache.cancelCacheUpdate(key);
+			}
+		}
+	}
+
+	/**
+	 * Caches separately each element of the list returned by a method taking a
+	 * collection of identifiers. The cache key of each element is the key of
+	 * the method invoked with that single identifier. The method is invoked
+	 * only with the identifiers not found in the cache, and is expected to
+	 * return one element per identifier, in the same order.
+	 *
+	 * @param mi the proxied method to invoke
+	 * @param index the index of the argument holding the identifiers
+	 * @param m the backing {@link CachingModel}
+	 * @return the list of elements, one per identifier
+	 * @throws Throwable
+	 * @see AbstractCachingModel#setPerElement(boolean)
+	 */
+	protected Object elementsFromCache(MethodInvocation mi, int index,
+			CachingModel m) throws Throwable {
+		Collection ids = (Collection) mi.getArguments()[index];
+		List keys = new ArrayList(ids.size());
+		for (Iterator i = ids.iterator(); i.hasNext();)
+			keys.add(keyGenerator.generateKey(new ElementInvocation(mi, index, i
+					.next())));
+
+		Map cached = cache.getAllFromCache(keys, m);
+		Map values = new HashMap();
+		List missingIds = new ArrayList();
+		List missingKeys = new ArrayList();
+
+		Iterator k = keys.iterator();
+		for (Iterator i = ids.iterator(); i.hasNext();) {
+			Object id = i.next();
+			Object key = k.next();
+			Object value = cachedValue(cached.get(key), m);
+			if (value == null && isWriteBehind(m))
+				value = cachedValue(writeBehindQueue.pendingValue((Serializable) key, m),
+						m);
+			if (value == null) {
+				missingIds.add(id);
+				missingKeys.add(key);
+			} else
+				values.put(key, value);
+		}
+
+		if (!missingIds.isEmpty()) {
+			Object[] arguments = (Object[]) mi.getArguments().clone();
+			arguments[index] = missingIds;
+			List loaded = elementsFromSource(mi, arguments, missingKeys, m);
+
+			if (loaded == null || loaded.size() != missingIds.size()) {
+				logger.warn("Unable to cache the elements returned by method <"
+						+ mi.getMethod() + ">. " + missingIds.size()
+						+ " elements were expected");
+				return (missingIds.size() == ids.size()) ? loaded : mi.proceed();
+			}
+
+			Map entries = new HashMap();
+			for (int i = 0; i < missingKeys.size(); i++) {
+				Serializable key = (Serializable) missingKeys.get(i);
+				Object element = loaded.get(i);
+				entries.put(key, cacheEntry(m, element));
+				values.put(key, maskNull(element));
+			}
+			putAllInCache(entries, m);
+			for (int i = 0; i < missingKeys.size(); i++) {
+				Serializable key = (Serializable) missingKeys.get(i);
+				notifyListeners(key, loaded.get(i), m);
+				tag(new ElementInvocation(mi, index, missingIds.get(i)), key, m,
+						loaded.get(i));
+			}
+		}
+
+		List result = new ArrayList(keys.size());
+		for (Iterator i = keys.iterator(); i.hasNext();)
+			result.add(cachedResult(values.get(i.next())));
+		return result;
+	}
+
+	/**
+	 * Loads a missing entry of a method returning a <code>Future</code>. The
+	 * value of the <code>Future</code> is stored in the cache, and returned in
+	 * an already completed <code>Future</code> on a hit. Callers asking for the
+	 * same key while the value is being computed share the same computation,
+	 * without invoking the method again. Each of them gets its own
+	 * <code>Future</code>: the computation is only cancelled once all of them
+	 * are.
+	 * <p>
+	 * A <code>Future</code> does not notify its completion, so the value is
+	 * stored by the first caller that observes it, through <code>get</code>
+	 * or <code>isDone</code>, or by the next caller asking for the same key.
+	 * No thread is blocked waiting for it.
+	 * </p>
+	 *
+	 * @param mi the proxied method to invoke
+	 * @param key the key for the cache
+	 * @param m the backing {@link CachingModel}
+	 * @return the <code>Future</code> of the caller
+	 * @throws Throwable
+	 */
+	protected Object futureFromSource(MethodInvocation mi, Serializable key,
+			CachingModel m) throws Throwable {
+		return loadFuture(mi, key, m, true);
+	}
+
+	/**
+	 * Loads a missing entry of a method returning a <code>Future</code>.
+	 *
+	 * @param cacheFailures <code>false</code> if an exception thrown by the
+	 *          method or completing the <code>Future</code> should not be
+	 *          cached even if the model caches exceptions of its type
+	 */
+	private Object loadFuture(final MethodInvocation mi,
+			final Serializable key, final CachingModel m,
+			final boolean cacheFailures) throws Throwable {
+		if (isWriteBehind(m)) {
+			Object queued = cachedValue(writeBehindQueue.pendingValue(key, m), m);
+			if (queued != null) return completedFuture(queued);
+		}
+
+		final ModelKey futureKey = new ModelKey(key, m);
+		final ModelStatistics s = statisticsFor(m);
+		final AdmissionPolicy a = admissionPolicy;
+		final long start = System.nanoTime();
+		SharedFuture future = new SharedFuture() {
+			protected void onFailure(Throwable failure) {
+				try {
+					if (s != null) s.recordLoad(false, System.nanoTime() - start);
+					if (!cacheFailures || !putFailureInCache(key, m, failure))
+						cache.cancelCacheUpdate(key);
+				} finally {
+					pendingFutures.remove(futureKey, this);
+				}
+			}
+
+			protected void onSuccess(Object value) {
+				try {
+					long nanos = System.nanoTime() - start;
+					if (s != null) s.recordLoad(true, nanos);
+					if (a != null) a.recordLoad(key, m, nanos);
+					tag(mi, key, m, value);
+					putInCache(key, m, value);
+				} catch (RuntimeException exception) {
+					logger.warn("Unable to store the value of the Future with key <"
+							+ StringUtils.quoteIfString(key) + ">", exception);
+				} finally {
+					// removed once stored, so later callers find it in the cache
+					pendingFutures.remove(futureKey, this);
+				}
+			}
+		};
+
+		Future view = future.attach();
+		SharedFuture current;
+		while ((current = (SharedFuture) pendingFutures.putIfAbsent(futureKey,
+				future)) != null) {
+			if (!current.pollFailure()) {
+				Future currentView = current.attach();
+				if (currentView != null) return currentView;
+			}
+			pendingFutures.remove(futureKey, current);
+		}
+
+		Future source;
+		try {
+			source = (Future) mi.proceed();
+		} catch (Throwable t) {
+			logger.debug("method " + mi.getMethod().getName() + " throwed a exception", t);
+			future.start(CompletedFuture.failed(t));
+			future.poll();
+			throw t;
+		}
+		if (source == null) {
+			future.start(CompletedFuture.failed(new IllegalStateException("Method <"
+					+ mi.getMethod() + "> returned null instead of a Future")));
+			future.poll();
+			return null;
+		}
+		future.start(source);
+		future.poll();
+		return view;
+	}
+
+	/**
+	 * Loads a missing entry making sure only one caller at a time invokes the
+	 * intercepted method for the given key. Other callers asking for the same
+	 * key wait for the result, up to the single-flight timeout of the model,
+	 * and then invoke the method themselves.
+	 *
+	 * @param mi the proxied method to invoke
+	 * @param key the key for the cache
+	 * @param m the backing {@link CachingModel}
+	 * @return the looked up value
+	 * @throws Throwable
+	 * @see AbstractCachingModel#setSingleFlight(boolean)
+	 */
+	protected Object singleFlightValueFromSource(MethodInvocation mi,
+			Serializable key, AbstractCachingModel m) throws Throwable {
+		ModelKey loadKey = new ModelKey(key, m);
+		PendingLoad load = new PendingLoad();
+		PendingLoad current = (PendingLoad) pendingLoads.putIfAbsent(loadKey,
+				load);
+
+		if (current == null) {
+			try {
+				// the previous load may have finished after our cache miss
+				Object cached = cachedValue(cache.getFromCache(key, m), m);
+				Object value = (null == cached) ? cachedValueFromSource(mi, key, m)
+						: cachedResult(cached);
+				load.complete(value);
+				return value;
+			} catch (Throwable t) {
+				load.fail(t);
+				throw t;
+			} finally {
+				pendingLoads.remove(loadKey, load);
+			}
+		}
+
+		try {
+			if (current.await(m.getSingleFlightTimeout())) return current.result();
+			if (logger.isDebugEnabled())
+				logger.debug("Timed out waiting for the entry with key <"
+						+ StringUtils.quoteIfString(key) + "> to be loaded");
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+		}
+		return cachedValueFromSource(mi, key, m);
+	}
+
+	private Object valueFromSource(MethodInvocation mi, Serializable key,
+			CachingModel m) throws Throwable {
+		if (isWriteBehind(m)) {
+			// the entry may not have been stored yet
+			Object queued = cachedValue(writeBehindQueue.pendingValue(key, m), m);
+			if (queued != null) return cachedResult(queued);
+		}
+		if (m instanceof AbstractCachingModel
+				&& ((AbstractCachingModel) m).isSingleFlight())
+			return singleFlightValueFromSource(mi, key, (AbstractCachingModel) m);
+		return cachedValueFromSource(mi, key, m);
+	}
+
+	/**
+	 * Returns the value of a timestamped entry, reloading it in the background
+	 * if it is due for a refresh or expired but still within the maximum
+	 * staleness of the model.
+	 *
+	 * @return the (masked) cached value, or <code>null</code> if the entry is
+	 *         too old to be returned
+	 */
+	private Object refreshIfNecessary(MethodInvocation mi, Serializable key,
+			CachingModel m, RefreshableEntry entry) {
+		if (!(m instanceof AbstractCachingModel)) return entry.getValue();
+		AbstractCachingModel model = (AbstractCachingModel) m;
+
+		long age = System.currentTimeMillis() - entry.getCreationTime();
+		long expireAfter = model.getExpireAfter();
+		long refreshAfter = model.getRefreshAfter();
+
+		if (expireAfter > 0 && age >= expireAfter) {
+			if (age >= expireAfter + model.getMaxStaleness()) return null;
+			refreshAsynchronously(mi, key, model);
+		} else if (refreshAfter > 0 && age >= refreshAfter)
+			refreshAsynchronously(mi, key, model);
+
+		return entry.getValue();
+	}
+
+	/**
+	 * Returns the (masked) value of an entry retrieved from the cache, without
+	 * refreshing it.
+	 *
+	 * @return the value, or <code>null</code> if the entry is missing or too old
+	 *         to be returned
+	 */
+	private Object cachedValue(Object cached, CachingModel m) {
+		if (cached instanceof NegativeEntry)
+			return ((NegativeEntry) cached).isExpired() ? null : cached;
+		if (!(cached instanceof RefreshableEntry)) return cached;
+		RefreshableEntry entry = (RefreshableEntry) cached;
+		return isUsable(entry, m) ? entry.getValue() : null;
+	}
+
+	/**
+	 * Returns the index of the argument holding the collection of identifiers
+	 * of a method returning a list, or -1 if the elements returned by the
+	 * method cannot be cached separately.
+	 */
+	private int elementsArgumentIndex(MethodInvocation mi) {
+		if (!(mi instanceof ProxyMethodInvocation)) return -1;
+
+		Method method = mi.getMethod();
+		if (!isListType(method.getReturnType())) return -1;
+
+		Class[] types = method.getParameterTypes();
+		Object[] arguments = mi.getArguments();
+		for (int i = 0; i < types.length; i++)
+			if (isListType(types[i]) && arguments[i] instanceof Collection)
+				return i;
+		return -1;
+	}
+
+	private List elementsFromSource(MethodInvocation mi, Object[] arguments,
+			List keys, CachingModel m) throws Throwable {
+		boolean successful = true;
+		ModelStatistics s = statisticsFor(m);
+		long start = (s != null) ? System.nanoTime() : 0;
+		try {
+			List loaded = (List) ((ProxyMethodInvocation) mi).invocableClone(
+					arguments).proceed();
+			if (s != null) s.recordLoad(true, System.nanoTime() - start);
+			return loaded;
 		} catch (Throwable t) {
 			successful = false;
 			logger.debug("method " + mi.getMethod().getName() + " throwed a exception", t);
 			throw t;
 		} finally {
-			if (!successful) cache.cancelCacheUpdate(key);
+			if (!successful) {
+				if (s != null) s.recordLoad(false, System.nanoTime() - start);
+				for (Iterator i = keys.iterator(); i.hasNext();)
+					cache.cancelCacheUpdate((Serializable) i.next());
+			}
+		}
+	}
+
+	private boolean isFuture(Method method) {
+		return Future.class.equals(method.getReturnType());
+	}
+
+	private boolean isListType(Class type) {
+		return Collection.class.isAssignableFrom(type)
+				&& type.isAssignableFrom(ArrayList.class);
+	}
+
+	private boolean isUsable(RefreshableEntry entry, CachingModel m) {
+		if (!(m instanceof AbstractCachingModel)) return true;
+		AbstractCachingModel model = (AbstractCachingModel) m;
+		long expireAfter = model.getExpireAfter();
+		if (expireAfter <= 0) return true;
+		long age = System.currentTimeMillis() - entry.getCreationTime();
+		return age < expireAfter + model.getMaxStaleness();
+	}
+
+	private void refreshAsynchronously(MethodInvocation mi,
+			final Serializable key, final CachingModel m) {
+		if (!(mi instanceof ProxyMethodInvocation)) {
+			if (logger.isDebugEnabled())
+				logger.debug("Unable to refresh the entry with key <"
+						+ StringUtils.quoteIfString(key)
+						+ "> in the background. The invocation cannot be cloned");
+			return;
+		}
+		final ModelKey refreshKey = new ModelKey(key, m);
+		if (pendingRefreshes.putIfAbsent(refreshKey, Boolean.TRUE) != null) return;
+
+		final MethodInvocation invocation = ((ProxyMethodInvocation) mi)
+				.invocableClone();
+		Runnable refresh = new Runnable() {
+			public void run() {
+				try {
+					// a failed refresh keeps the current value instead of caching the failure
+					if (isFuture(invocation.getMethod())) {
+						Object future = loadFuture(invocation, key, m, false);
+						if (future instanceof Future) ((Future) future).get();
+					} else
+						loadValue(invocation, key, m, false);
+				} catch (Throwable t) {
+					logger.warn("Unable to refresh the entry with key <"
+							+ StringUtils.quoteIfString(key) + ">", t);
+				} finally {
+					pendingRefreshes.remove(refreshKey);
+				}
+			}
+		};
+		try {
+			refreshExecutor.execute(refresh);
+		} catch (RuntimeException exception) {
+			pendingRefreshes.remove(refreshKey);
+			logger.warn("Unable to schedule the refresh of the entry with key <"
+					+ StringUtils.quoteIfString(key) + ">", exception);
 		}
 	}
 
@@ -147,6 +708,22 @@ public abstract class AbstractCachingInterceptor implements MethodInterceptor,
 		return new HashCodeCacheKeyGenerator(true);
 	}
 
+	private WriteBehindQueue defaultWriteBehindQueue() {
+		SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(
+				"cache-write-behind-");
+		executor.setDaemon(true);
+		WriteBehindQueue queue = new WriteBehindQueue();
+		queue.setExecutor(executor);
+		return queue;
+	}
+
+	private TaskExecutor defaultRefreshExecutor() {
+		SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(
+				"cache-refresh-");
+		executor.setDaemon(true);
+		return executor;
+	}
+
 	private Object logAndProceed(String message, MethodInvocation mi)
 			throws Throwable {
 		logger.debug(message);
@@ -188,13 +765,115 @@ public abstract class AbstractCachingInterceptor implements MethodInterceptor,
 		return m;
 	}
 
+	private Object cacheEntry(CachingModel m, Object o) {
+		if (o == null && m instanceof AbstractCachingModel) {
+			long nullTimeToLive = ((AbstractCachingModel) m).getNullTimeToLive();
+			if (nullTimeToLive > 0) return new NegativeEntry(null, nullTimeToLive);
+		}
+		Object masked = maskNull(o);
+		if (m instanceof AbstractCachingModel
+				&& ((AbstractCachingModel) m).isRefreshable())
+			return new RefreshableEntry(masked, System.currentTimeMillis());
+		return masked;
+	}
+
 	protected void putInCache(Serializable key, CachingModel m, Object o) {
-		cache.putInCache(key, m, maskNull(o));
+		store(key, m, cacheEntry(m, o));
 		notifyListeners(key, o, m);
 	}
 
+	/**
+	 * Caches an exception thrown by an intercepted method, if the model caches
+	 * exceptions of its type. A failure to store the exception is logged, so
+	 * the caller still gets the original exception.
+	 *
+	 * @return <code>true</code> if the exception was cached
+	 */
+	private boolean putFailureInCache(Serializable key, CachingModel m,
+			Throwable t) {
+		if (!(m instanceof AbstractCachingModel)) return false;
+		AbstractCachingModel model = (AbstractCachingModel) m;
+		if (!model.isCachedException(t)) return false;
+		try {
+			store(key, m, new NegativeEntry(t, model.getExceptionTimeToLive()));
+			return true;
+		} catch (RuntimeException exception) {
+			logger.warn("Unable to cache the exception thrown for the entry with key <"
+					+ StringUtils.quoteIfString(key) + ">", exception);
+			return false;
+		}
+	}
+
+	private void store(Serializable key, CachingModel m, Object entry) {
+		if (!isWriteBehind(m) || !writeBehindQueue.offer(key, m, entry))
+			cache.putInCache(key, m, entry);
+	}
+
+	private void putAllInCache(Map entries, CachingModel m) {
+		if (!isWriteBehind(m)) {
+			cache.putAllInCache(entries, m);
+			return;
+		}
+		Map rejected = new HashMap();
+		for (Iterator i = entries.entrySet().iterator(); i.hasNext();) {
+			Map.Entry entry = (Map.Entry) i.next();
+			Serializable key = (Serializable) entry.getKey();
+			if (!writeBehindQueue.offer(key, m, entry.getValue()))
+				rejected.put(key, entry.getValue());
+		}
+		if (!rejected.isEmpty()) cache.putAllInCache(rejected, m);
+	}
+
+	/**
+	 * Records the dependency tags of an entry about to be stored, if the model
+	 * has tags.
+	 */
+	private void tag(MethodInvocation mi, Serializable key, CachingModel m,
+			Object value) {
+		if (tagIndex == null || !(m instanceof AbstractCachingModel)) return;
+		TagPattern[] patterns = ((AbstractCachingModel) m).getTagPatterns();
+		if (patterns.length == 0) return;
+		tagIndex.tag(key, m, TagPattern.tags(patterns, mi.getArguments(), value),
+				cache);
+	}
+
+	private boolean isWriteBehind(CachingModel m) {
+		return m instanceof AbstractCachingModel
+				&& ((AbstractCachingModel) m).isWriteBehind();
+	}
+
 	protected Object unmaskNull(Object obj) {
-		return NULL_ENTRY.equals(obj) ? null : obj;
+		return (NULL_ENTRY.equals(obj) || obj instanceof NegativeEntry) ? null
+				: obj;
+	}
+
+	/**
+	 * Returns the (unmasked) value of a cached entry, or rethrows the cached
+	 * exception.
+	 */
+	private Object cachedResult(Object cached) throws Throwable {
+		if (cached instanceof NegativeEntry) {
+			Throwable failure = ((NegativeEntry) cached).getFailure();
+			if (failure != null) throw failure;
+		}
+		return unmaskNull(cached);
+	}
+
+	/**
+	 * Returns an already completed <code>Future</code> holding the (unmasked)
+	 * value of a cached entry, or failing with the cached exception.
+	 */
+	private Future completedFuture(Object cached) {
+		if (cached instanceof NegativeEntry) {
+			Throwable failure = ((NegativeEntry) cached).getFailure();
+			if (failure != null) return CompletedFuture.failed(failure);
+		}
+		return new CompletedFuture(unmaskNull(cached));
+	}
+
+	private ModelStatistics statisticsFor(CachingModel m) {
+		CacheStatistics current = statistics;
+		return (current != null) ? current.forModel(m) : null;
 	}
 
 	private void validateCache() throws FatalCacheException {
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>Future</code> already completed with a value or a failure.
+ *
+ * @author Alex Ruiz
+ */
+final class CompletedFuture implements Future {
+
+  private final Throwable failure;
+
+  private final Object value;
+
+  CompletedFuture(Object newValue) {
+    this(newValue, null);
+  }
+
+  private CompletedFuture(Object newValue, Throwable newFailure) {
+    value = newValue;
+    failure = newFailure;
+  }
+
+  static CompletedFuture failed(Throwable failure) {
+    return new CompletedFuture(null, failure);
+  }
+
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    return false;
+  }
+
+  public Object get() throws ExecutionException {
+    if (failure != null) throw new ExecutionException(failure);
+    return value;
+  }
+
+  public Object get(long timeout, TimeUnit unit) throws ExecutionException {
+    return get();
+  }
+
+  public boolean isCancelled() {
+    return false;
+  }
+
+  public boolean isDone() {
+    return true;
+  }
+}
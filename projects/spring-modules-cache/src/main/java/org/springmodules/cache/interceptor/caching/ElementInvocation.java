@@ -0,0 +1,64 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.util.Collections;
+
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * View of a method invocation taking a collection of identifiers, as if the
+ * method had been invoked with a single identifier. Used to generate the cache
+ * key of each element returned by the method.
+ *
+ * @author Alex Ruiz
+ */
+final class ElementInvocation implements MethodInvocation {
+
+  private final Object[] arguments;
+
+  private final MethodInvocation invocation;
+
+  ElementInvocation(MethodInvocation invocation, int index, Object id) {
+    this.invocation = invocation;
+    arguments = (Object[]) invocation.getArguments().clone();
+    arguments[index] = Collections.singletonList(id);
+  }
+
+  public Object[] getArguments() {
+    return arguments;
+  }
+
+  public Method getMethod() {
+    return invocation.getMethod();
+  }
+
+  public AccessibleObject getStaticPart() {
+    return invocation.getStaticPart();
+  }
+
+  public Object getThis() {
+    return invocation.getThis();
+  }
+
+  public Object proceed() {
+    throw new UnsupportedOperationException(
+        "Element invocations cannot be proceeded");
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import java.io.Serializable;
+
+import org.springframework.util.ObjectUtils;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.util.Objects;
+
+/**
+ * Cache key qualified by the caching model it is stored with. Two models may
+ * point to different caches and still produce the same cache key, so loads in
+ * progress are tracked by both.
+ *
+ * @author Alex Ruiz
+ */
+final class ModelKey {
+
+  private final Serializable key;
+
+  private final CachingModel model;
+
+  ModelKey(Serializable key, CachingModel model) {
+    this.key = key;
+    this.model = model;
+  }
+
+  /**
+   * @see Object#equals(Object)
+   */
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof ModelKey)) {
+      return false;
+    }
+
+    ModelKey other = (ModelKey) obj;
+    return ObjectUtils.nullSafeEquals(key, other.key)
+        && ObjectUtils.nullSafeEquals(model, other.model);
+  }
+
+  /**
+   * @see Object#hashCode()
+   */
+  public int hashCode() {
+    return 31 * Objects.nullSafeHashCode(key)
+        + Objects.nullSafeHashCode(model);
+  }
+
+  /**
+   * @see Object#toString()
+   */
+  public String toString() {
+    return "[key=" + key + ", model=" + model + "]";
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import org.springmodules.cache.serializable.ValueHolder;
+
+/**
+ * Cached <code>null</code> return value or exception of an intercepted
+ * method, stored with its own expiration time so it does not live as long as
+ * regular entries. Cache provider facades make the exception serializable,
+ * as they do with return values.
+ *
+ * @author Alex Ruiz
+ * @see org.springmodules.cache.provider.AbstractCachingModel#setNullTimeToLive(long)
+ * @see org.springmodules.cache.provider.AbstractCachingModel#setCachedExceptions(Class[])
+ */
+final class NegativeEntry implements ValueHolder {
+
+  private static final long serialVersionUID = -2896172835117420873L;
+
+  private final long expirationTime;
+
+  /**
+   * The exception, or the serializable form given by a cache provider facade.
+   */
+  private final Object failure;
+
+  /**
+   * @param failure
+   *          the exception thrown by the method, or <code>null</code> if the
+   *          method returned <code>null</code>
+   * @param timeToLive
+   *          the number of milliseconds the entry is valid, or zero if it does
+   *          not expire
+   */
+  NegativeEntry(Throwable failure, long timeToLive) {
+    this((Object) failure, (timeToLive > 0) ? System.currentTimeMillis()
+        + timeToLive : 0);
+  }
+
+  private NegativeEntry(Object failure, long expirationTime) {
+    this.failure = failure;
+    this.expirationTime = expirationTime;
+  }
+
+  /**
+   * @return the exception thrown by the method, or <code>null</code> if the
+   *         method returned <code>null</code>
+   */
+  Throwable getFailure() {
+    return (Throwable) failure;
+  }
+
+  public Object getValue() {
+    return failure;
+  }
+
+  public ValueHolder withValue(Object newValue) {
+    return new NegativeEntry(newValue, expirationTime);
+  }
+
+  boolean isExpired() {
+    return expirationTime > 0 && System.currentTimeMillis() >= expirationTime;
+  }
+}
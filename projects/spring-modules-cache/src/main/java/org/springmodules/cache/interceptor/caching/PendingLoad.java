@@ -0,0 +1,68 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of a cache entry being loaded by one caller, shared with the callers
+ * waiting for the same entry.
+ *
+ * @author Alex Ruiz
+ */
+final class PendingLoad {
+
+  private final CountDownLatch done = new CountDownLatch(1);
+
+  private Throwable failure;
+
+  private Object value;
+
+  /**
+   * Waits until the load finishes or the given timeout expires.
+   *
+   * @param timeout
+   *          the maximum number of milliseconds to wait
+   * @return <code>true</code> if the load finished
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting
+   */
+  boolean await(long timeout) throws InterruptedException {
+    return done.await(timeout, TimeUnit.MILLISECONDS);
+  }
+
+  void complete(Object newValue) {
+    value = newValue;
+    done.countDown();
+  }
+
+  void fail(Throwable newFailure) {
+    failure = newFailure;
+    done.countDown();
+  }
+
+  /**
+   * @return the loaded value
+   * @throws Throwable
+   *           the exception thrown by the load, if it failed
+   */
+  Object result() throws Throwable {
+    if (failure != null) throw failure;
+    return value;
+  }
+}
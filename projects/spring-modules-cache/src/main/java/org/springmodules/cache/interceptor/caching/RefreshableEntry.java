@@ -0,0 +1,53 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import org.springmodules.cache.serializable.ValueHolder;
+
+/**
+ * Cached return value stored together with the time it was loaded, used by
+ * models that refresh entries ahead of time or serve them stale. Cache
+ * provider facades make the value serializable, not the entry, so the load
+ * time survives caches storing serializable objects only.
+ *
+ * @author Alex Ruiz
+ */
+final class RefreshableEntry implements ValueHolder {
+
+  private static final long serialVersionUID = 5853208390367129316L;
+
+  private final long creationTime;
+
+  private final Object value;
+
+  RefreshableEntry(Object value, long creationTime) {
+    this.value = value;
+    this.creationTime = creationTime;
+  }
+
+  long getCreationTime() {
+    return creationTime;
+  }
+
+  public Object getValue() {
+    return value;
+  }
+
+  public ValueHolder withValue(Object newValue) {
+    return new RefreshableEntry(newValue, creationTime);
+  }
+}
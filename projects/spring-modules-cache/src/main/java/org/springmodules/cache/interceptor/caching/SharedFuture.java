@@ -0,0 +1,227 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * <code>Future</code> returned by an intercepted method, shared by the
+ * callers asking for the same entry while it is being computed.
+ * </p>
+ * <p>
+ * A <code>Future</code> cannot notify its completion, so the completion is
+ * handled by the first caller observing it, through <code>get</code>,
+ * <code>isDone</code> or <code>{@link #poll()}</code>. No thread waits for
+ * it.
+ * </p>
+ * <p>
+ * Each caller gets its own view, from <code>{@link #attach()}</code>.
+ * Cancelling a view only cancels it for its caller. The computation itself is
+ * cancelled once all the views are, since no caller waits for it anymore.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+abstract class SharedFuture {
+
+  /**
+   * <code>Future</code> of a single caller.
+   */
+  private final class View implements Future {
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      if (poll() || !cancelled.compareAndSet(false, true)) return false;
+      detach(mayInterruptIfRunning);
+      return true;
+    }
+
+    public Object get() throws InterruptedException, ExecutionException {
+      assertNotCancelled();
+      return SharedFuture.this.get();
+    }
+
+    public Object get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      assertNotCancelled();
+      return SharedFuture.this.get(timeout, unit);
+    }
+
+    public boolean isCancelled() {
+      return cancelled.get() || SharedFuture.this.isCancelled();
+    }
+
+    public boolean isDone() {
+      return cancelled.get() || poll();
+    }
+
+    private void assertNotCancelled() {
+      if (cancelled.get()) throw new CancellationException();
+    }
+  }
+
+  /**
+   * Number of views not cancelled, or -1 once all of them have been.
+   */
+  private final AtomicInteger callers = new AtomicInteger();
+
+  private volatile boolean cancelRequested;
+
+  private final AtomicBoolean completed = new AtomicBoolean();
+
+  private volatile boolean failed;
+
+  private volatile boolean mayInterrupt;
+
+  private volatile Future source;
+
+  private final CountDownLatch started = new CountDownLatch(1);
+
+  final Object get() throws InterruptedException, ExecutionException {
+    started.await();
+    try {
+      return succeed(source.get());
+    } catch (ExecutionException exception) {
+      fail(exception.getCause());
+      throw exception;
+    } catch (CancellationException exception) {
+      fail(exception);
+      throw exception;
+    }
+  }
+
+  final Object get(long timeout, TimeUnit unit) throws InterruptedException,
+      ExecutionException, TimeoutException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    if (!started.await(timeout, unit)) throw new TimeoutException();
+    try {
+      return succeed(source.get(Math.max(0, deadline - System.nanoTime()),
+          TimeUnit.NANOSECONDS));
+    } catch (ExecutionException exception) {
+      fail(exception.getCause());
+      throw exception;
+    } catch (CancellationException exception) {
+      fail(exception);
+      throw exception;
+    }
+  }
+
+  final boolean isCancelled() {
+    Future current = source;
+    return current != null && current.isCancelled();
+  }
+
+  /**
+   * Returns a new view of the computation for a caller.
+   *
+   * @return the view, or <code>null</code> if all the previous views have
+   *         been cancelled
+   */
+  final Future attach() {
+    for (;;) {
+      int count = callers.get();
+      if (count < 0) return null;
+      if (callers.compareAndSet(count, count + 1)) return new View();
+    }
+  }
+
+  /**
+   * Handles the completion of the computation if it is done, without
+   * blocking.
+   *
+   * @return <code>true</code> if the computation is done
+   */
+  final boolean poll() {
+    Future current = source;
+    if (current == null || !current.isDone()) return false;
+    if (!completed.get()) {
+      try {
+        get();
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      } catch (Exception exception) {
+        // handled by the completion
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return <code>true</code> if the computation is done and failed
+   */
+  final boolean pollFailure() {
+    return poll() && failed;
+  }
+
+  /**
+   * Sets the <code>Future</code> returned by the intercepted method, and
+   * releases the callers waiting for it.
+   */
+  final void start(Future newSource) {
+    source = newSource;
+    started.countDown();
+    if (cancelRequested) cancelSource();
+  }
+
+  /**
+   * Called once, when the computation fails or is cancelled.
+   */
+  protected abstract void onFailure(Throwable failure);
+
+  /**
+   * Called once, when the computation completes successfully.
+   */
+  protected abstract void onSuccess(Object value);
+
+  private void cancelSource() {
+    Future current = source;
+    if (current != null && current.cancel(mayInterrupt))
+      fail(new CancellationException());
+  }
+
+  /**
+   * Removes a cancelled view, cancelling the computation if it was the last
+   * one.
+   */
+  private void detach(boolean mayInterruptIfRunning) {
+    if (callers.decrementAndGet() != 0 || !callers.compareAndSet(0, -1))
+      return;
+    mayInterrupt = mayInterruptIfRunning;
+    cancelRequested = true;
+    cancelSource();
+  }
+
+  private void fail(Throwable failure) {
+    if (!completed.compareAndSet(false, true)) return;
+    failed = true;
+    onFailure(failure);
+  }
+
+  private Object succeed(Object value) {
+    if (completed.compareAndSet(false, true)) onSuccess(value);
+    return value;
+  }
+}
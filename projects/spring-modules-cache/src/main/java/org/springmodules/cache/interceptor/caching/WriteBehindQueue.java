@@ -0,0 +1,266 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.util.ObjectUtils;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.FlushingModel;
+import org.springmodules.cache.provider.CacheInvalidationListener;
+import org.springmodules.cache.provider.CacheProviderFacade;
+
+/**
+ * <p>
+ * Bounded queue of cache entries waiting to be stored by a background task.
+ * An entry queued while another one with the same key and model is still
+ * waiting replaces it, so only the latest value is stored. The background
+ * task stores the entries in batches, one bulk put per model.
+ * </p>
+ * <p>
+ * At most one background task runs at a time. It is started when an entry is
+ * queued and stops when the queue is empty.
+ * </p>
+ * <p>
+ * Removing entries from the cache discards their queued values, and flushing
+ * the cache discards all the queued entries, so a flushed value is neither
+ * returned nor stored afterwards. A batch being stored when the cache is
+ * flushed or entries are removed is stored first.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+final class WriteBehindQueue implements CacheInvalidationListener {
+
+  /**
+   * Key and model of a queued entry.
+   */
+  private static final class EntryId {
+
+    final Serializable key;
+
+    final CachingModel model;
+
+    private final int hashCode;
+
+    EntryId(Serializable newKey, CachingModel newModel) {
+      key = newKey;
+      model = newModel;
+      hashCode = 31 * key.hashCode() + ObjectUtils.nullSafeHashCode(model);
+    }
+
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof EntryId)) return false;
+      EntryId other = (EntryId) obj;
+      return key.equals(other.key)
+          && ObjectUtils.nullSafeEquals(model, other.model);
+    }
+
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  static final int DEFAULT_BATCH_SIZE = 100;
+
+  static final int DEFAULT_CAPACITY = 10000;
+
+  private static final Log logger = LogFactory.getLog(WriteBehindQueue.class);
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  private volatile CacheProviderFacade cache;
+
+  private int capacity = DEFAULT_CAPACITY;
+
+  private final AtomicBoolean draining = new AtomicBoolean();
+
+  private TaskExecutor executor;
+
+  /**
+   * Identifiers of the queued entries, in the order they were first queued.
+   */
+  private final ConcurrentLinkedQueue order = new ConcurrentLinkedQueue();
+
+  /**
+   * Values of the queued entries, stored by identifier.
+   */
+  private final ConcurrentHashMap pending = new ConcurrentHashMap();
+
+  private final AtomicInteger size = new AtomicInteger();
+
+  private final Runnable drainTask = new Runnable() {
+    public void run() {
+      drain();
+    }
+  };
+
+  /**
+   * Queues an entry to be stored in the cache.
+   *
+   * @param key
+   *          the key of the entry
+   * @param model
+   *          the model used to store the entry
+   * @param value
+   *          the value to store
+   * @return <code>false</code> if the entry was not queued because the queue
+   *         is full
+   */
+  boolean offer(Serializable key, CachingModel model, Object value) {
+    EntryId id = new EntryId(key, model);
+    if (pending.put(id, value) == null) {
+      if (size.incrementAndGet() > capacity && pending.remove(id, value)) {
+        size.decrementAndGet();
+        return false;
+      }
+      order.offer(id);
+    }
+    scheduleDrain();
+    return true;
+  }
+
+  /**
+   * Discards all the queued entries, since the caches and models a flushing
+   * model applies to depend on the cache provider.
+   *
+   * @see CacheInvalidationListener#onFlush(FlushingModel)
+   */
+  public synchronized void onFlush(FlushingModel model) {
+    for (Iterator i = pending.keySet().iterator(); i.hasNext();) {
+      discard(i.next());
+    }
+  }
+
+  /**
+   * Discards the queued entries with the given keys and model.
+   *
+   * @see CacheInvalidationListener#onRemove(Collection, CachingModel)
+   */
+  public synchronized void onRemove(Collection keys, CachingModel model) {
+    if (pending.isEmpty()) return;
+    for (Iterator i = keys.iterator(); i.hasNext();) {
+      discard(new EntryId((Serializable) i.next(), model));
+    }
+  }
+
+  /**
+   * @return the value waiting to be stored under the given key and model, or
+   *         <code>null</code> if there is none
+   */
+  Object pendingValue(Serializable key, CachingModel model) {
+    return pending.isEmpty() ? null : pending.get(new EntryId(key, model));
+  }
+
+  void setBatchSize(int newBatchSize) {
+    batchSize = Math.max(1, newBatchSize);
+  }
+
+  void setCache(CacheProviderFacade newCache) {
+    cache = newCache;
+  }
+
+  void setCapacity(int newCapacity) {
+    capacity = newCapacity;
+  }
+
+  void setExecutor(TaskExecutor newExecutor) {
+    executor = newExecutor;
+  }
+
+  int size() {
+    return size.get();
+  }
+
+  /**
+   * Stores the queued entries until the queue is empty.
+   */
+  void drain() {
+    do {
+      try {
+        while (!order.isEmpty()) {
+          storeBatch();
+        }
+      } finally {
+        draining.set(false);
+      }
+      // entries queued after the last batch but before the flag was reset
+    } while (!order.isEmpty() && draining.compareAndSet(false, true));
+  }
+
+  private void discard(Object id) {
+    // the identifier stays in the order queue and is skipped when polled
+    if (pending.remove(id) != null) size.decrementAndGet();
+  }
+
+  private void scheduleDrain() {
+    if (!draining.compareAndSet(false, true)) return;
+    try {
+      executor.execute(drainTask);
+    } catch (RuntimeException exception) {
+      logger.warn("Unable to schedule the storage of the queued cache entries. "
+          + "Storing them in the caller thread", exception);
+      drain();
+    }
+  }
+
+  /**
+   * Stores the next batch. Holds the lock of the queue, so a flush or removal
+   * waits for the batch being stored.
+   */
+  private synchronized void storeBatch() {
+    Map batches = new LinkedHashMap();
+    for (int i = 0; i < batchSize; i++) {
+      EntryId id = (EntryId) order.poll();
+      if (id == null) break;
+
+      Object value = pending.remove(id);
+      if (value == null) continue;
+      size.decrementAndGet();
+
+      Map entries = (Map) batches.get(id.model);
+      if (entries == null) {
+        entries = new LinkedHashMap();
+        batches.put(id.model, entries);
+      }
+      entries.put(id.key, value);
+    }
+
+    for (Iterator i = batches.entrySet().iterator(); i.hasNext();) {
+      Map.Entry batch = (Map.Entry) i.next();
+      Map entries = (Map) batch.getValue();
+      try {
+        cache.putAllInCache(entries, (CachingModel) batch.getKey());
+      } catch (RuntimeException exception) {
+        logger.warn("Unable to store " + entries.size() + " cache entries",
+            exception);
+      }
+    }
+  }
+}
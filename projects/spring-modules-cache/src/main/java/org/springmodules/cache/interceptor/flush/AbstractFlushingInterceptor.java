@@ -34,8 +34,11 @@ import org.springframework.util.StringUtils;
 
 import org.springmodules.cache.FatalCacheException;
 import org.springmodules.cache.FlushingModel;
+import org.springmodules.cache.provider.AbstractFlushingModel;
 import org.springmodules.cache.provider.CacheModelValidator;
 import org.springmodules.cache.provider.CacheProviderFacade;
+import org.springmodules.cache.tag.TagIndex;
+import org.springmodules.cache.tag.TagPattern;
 
 /**
  * <p>
@@ -59,6 +62,8 @@ public abstract class AbstractFlushingInterceptor implements MethodInterceptor,
    */
   private Map flushingModels;
 
+  private TagIndex tagIndex;
+
   /**
    * @throws FatalCacheException
    *           if the cache provider facade is <code>null</code>.
@@ -146,12 +151,12 @@ public abstract class AbstractFlushingInterceptor implements MethodInterceptor,
     Object proceedReturnValue = null;
 
     if (model.flushBeforeMethodExecution()) {
-      cacheProviderFacade.flushCache(model);
+      flush(model, methodInvocation, null);
       proceedReturnValue = methodInvocation.proceed();
 
     } else {
       proceedReturnValue = methodInvocation.proceed();
-      cacheProviderFacade.flushCache(model);
+      flush(model, methodInvocation, proceedReturnValue);
     }
 
     return proceedReturnValue;
@@ -178,6 +183,19 @@ public abstract class AbstractFlushingInterceptor implements MethodInterceptor,
     flushingModels = newFlushingModels;
   }
 
+  /**
+   * Sets the index of the dependency tags of the cached entries, for flushing
+   * models having tags. Should be the index used by the caching interceptors.
+   * Without an index, flushing models having tags flush their caches.
+   *
+   * @param newTagIndex
+   *          the new tag index
+   * @see AbstractFlushingModel#setTags(String[])
+   */
+  public final void setTagIndex(TagIndex newTagIndex) {
+    tagIndex = newTagIndex;
+  }
+
   /**
    * @return the map that specifies how caching models should be bound to class
    *         methods
@@ -195,6 +213,26 @@ public abstract class AbstractFlushingInterceptor implements MethodInterceptor,
    */
   protected abstract FlushingModel getModel(MethodInvocation methodInvocation);
 
+  /**
+   * Removes the entries having the tags of the given model, or flushes the
+   * caches of the model if it has no tags.
+   */
+  private void flush(FlushingModel model, MethodInvocation methodInvocation,
+      Object returnValue) {
+    if (tagIndex == null || !(model instanceof AbstractFlushingModel)
+        || !((AbstractFlushingModel) model).isTagged()) {
+      cacheProviderFacade.flushCache(model);
+      return;
+    }
+
+    TagPattern[] patterns = ((AbstractFlushingModel) model).getTagPatterns();
+    int count = tagIndex.invalidate(TagPattern.tags(patterns, methodInvocation
+        .getArguments(), returnValue), cacheProviderFacade);
+    if (logger.isDebugEnabled()) {
+      logger.debug("Removed " + count + " tagged entries from the cache");
+    }
+  }
+
   /**
    * Gives subclasses the opportunity to set up their own properties.
    * 
@@ -28,8 +28,10 @@ import org.springframework.aop.support.AopUtils;
 import org.springframework.aop.target.SingletonTargetSource;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.util.ClassUtils;
 
+import org.springmodules.cache.admission.AdmissionPolicy;
 import org.springmodules.cache.interceptor.caching.CachingListener;
 import org.springmodules.cache.interceptor.caching.CachingModelSourceAdvisor;
 import org.springmodules.cache.interceptor.caching.NameMatchCachingInterceptor;
@@ -37,6 +39,8 @@ import org.springmodules.cache.interceptor.flush.FlushingModelSourceAdvisor;
 import org.springmodules.cache.interceptor.flush.NameMatchFlushingInterceptor;
 import org.springmodules.cache.key.CacheKeyGenerator;
 import org.springmodules.cache.provider.CacheProviderFacade;
+import org.springmodules.cache.statistics.CacheStatistics;
+import org.springmodules.cache.tag.TagIndex;
 
 /**
  * <p>
@@ -157,6 +161,19 @@ public final class CacheProxyFactoryBean extends ProxyConfig implements
     return true;
   }
 
+  /**
+   * Sets the admission policy where the loads performed by the caching
+   * interceptor are recorded.
+   * 
+   * @param admissionPolicy
+   *          the new admission policy
+   * 
+   * @see org.springmodules.cache.interceptor.caching.AbstractCachingInterceptor#setAdmissionPolicy(AdmissionPolicy)
+   */
+  public void setAdmissionPolicy(AdmissionPolicy admissionPolicy) {
+    cachingInterceptor.setAdmissionPolicy(admissionPolicy);
+  }
+
   /**
    * Sets the generator of cache entry keys.
    * 
@@ -234,6 +251,30 @@ public final class CacheProxyFactoryBean extends ProxyConfig implements
     }
   }
 
+  /**
+   * Sets the executor used to reload cache entries in the background.
+   * 
+   * @param refreshExecutor
+   *          the new executor
+   * 
+   * @see org.springmodules.cache.interceptor.caching.AbstractCachingInterceptor#setRefreshExecutor(TaskExecutor)
+   */
+  public void setRefreshExecutor(TaskExecutor refreshExecutor) {
+    cachingInterceptor.setRefreshExecutor(refreshExecutor);
+  }
+
+  /**
+   * Sets the executor used to store cache entries in the background.
+   * 
+   * @param writeBehindExecutor
+   *          the new executor
+   * 
+   * @see org.springmodules.cache.interceptor.caching.AbstractCachingInterceptor#setWriteBehindExecutor(TaskExecutor)
+   */
+  public void setWriteBehindExecutor(TaskExecutor writeBehindExecutor) {
+    cachingInterceptor.setWriteBehindExecutor(writeBehindExecutor);
+  }
+
   /**
    * <p>
    * Specify the set of interfaces being proxied.
@@ -253,6 +294,34 @@ public final class CacheProxyFactoryBean extends ProxyConfig implements
       throws ClassNotFoundException {
     proxyInterfaces = toInterfaceArray(interfaceNames);
   }
+
+  /**
+   * Sets the statistics where the loads performed by the caching interceptor
+   * are recorded.
+   * 
+   * @param statistics
+   *          the new statistics
+   * 
+   * @see org.springmodules.cache.interceptor.caching.AbstractCachingInterceptor#setStatistics(CacheStatistics)
+   */
+  public void setStatistics(CacheStatistics statistics) {
+    cachingInterceptor.setStatistics(statistics);
+  }
+
+  /**
+   * Sets the index of dependency tags shared by the caching interceptor and the
+   * flushing interceptor.
+   * 
+   * @param tagIndex
+   *          the new tag index
+   * 
+   * @see org.springmodules.cache.interceptor.caching.AbstractCachingInterceptor#setTagIndex(TagIndex)
+   * @see org.springmodules.cache.interceptor.flush.AbstractFlushingInterceptor#setTagIndex(TagIndex)
+   */
+  public void setTagIndex(TagIndex tagIndex) {
+    cachingInterceptor.setTagIndex(tagIndex);
+    flushingInterceptor.setTagIndex(tagIndex);
+  }
   
   private Class[] toInterfaceArray(String[] interfaceNames) throws ClassNotFoundException
   {
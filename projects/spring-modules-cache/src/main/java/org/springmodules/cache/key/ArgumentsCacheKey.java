@@ -0,0 +1,99 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.key;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Cache key that keeps the intercepted method and the values of its arguments.
+ * Two keys are equal only if their methods and arguments are equal, so
+ * different invocations never share the same cache entry.
+ * </p>
+ *
+ * @see ArgumentsCacheKeyGenerator
+ *
+ * @author Alex Ruiz
+ */
+public final class ArgumentsCacheKey implements Serializable {
+
+  private static final long serialVersionUID = -2817416011245963873L;
+
+  private final Object[] arguments;
+
+  private final int hashCode;
+
+  private final String method;
+
+  /**
+   * Construct an <code>ArgumentsCacheKey</code>.
+   *
+   * @param method
+   *          the signature of the intercepted method
+   * @param arguments
+   *          the values of the arguments of the intercepted method. The array
+   *          is not copied
+   */
+  public ArgumentsCacheKey(String method, Object[] arguments) {
+    this.method = method;
+    this.arguments = arguments;
+    hashCode = 31 * method.hashCode() + Arrays.deepHashCode(arguments);
+  }
+
+  /**
+   * @see Object#equals(Object)
+   */
+  public boolean equals(Object obj) {
+    if (this == obj) return true;
+    if (!(obj instanceof ArgumentsCacheKey)) return false;
+
+    ArgumentsCacheKey other = (ArgumentsCacheKey) obj;
+    if (hashCode != other.hashCode) return false;
+    if (!method.equals(other.method)) return false;
+
+    return Arrays.deepEquals(arguments, other.arguments);
+  }
+
+  /**
+   * @return the values of the arguments of the intercepted method
+   */
+  public Object[] getArguments() {
+    return arguments;
+  }
+
+  /**
+   * @return the signature of the intercepted method
+   */
+  public String getMethod() {
+    return method;
+  }
+
+  /**
+   * @see Object#hashCode()
+   */
+  public int hashCode() {
+    return hashCode;
+  }
+
+  /**
+   * @see Object#toString()
+   */
+  public String toString() {
+    return method + Arrays.deepToString(arguments);
+  }
+}
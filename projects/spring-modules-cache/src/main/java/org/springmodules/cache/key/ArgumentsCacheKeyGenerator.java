@@ -0,0 +1,207 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.key;
+
+import java.io.Serializable;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aopalliance.intercept.MethodInvocation;
+
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * <p>
+ * Generates the key for a cache entry using the signature of the intercepted
+ * method and the values of its arguments. Unlike
+ * <code>{@link HashCodeCacheKeyGenerator}</code>, different invocations
+ * never get equal keys.
+ * </p>
+ *
+ * <p>
+ * Arguments which class defines <code>equals</code> are kept as they are.
+ * The values of the fields of other arguments are copied into the key, using
+ * the non-static, non-transient fields of their class and superclasses. The
+ * fields of each class are looked up only once. Arrays are copied.
+ * </p>
+ *
+ * <p>
+ * The fields of JDK classes (in <code>java.*</code> and
+ * <code>javax.*</code>) are never read, since their internals are not
+ * accessible on recent JVMs. JDK arguments not defining <code>equals</code>,
+ * and arguments nested deeper than a fixed level, are represented by their
+ * class name and hash code, like <code>{@link HashCodeCacheKeyGenerator}</code>
+ * does.
+ * </p>
+ *
+ * <p>
+ * Arguments kept in the key should not be modified once the method has been
+ * invoked, and should be serializable if the cache provider serializes keys.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public class ArgumentsCacheKeyGenerator implements CacheKeyGenerator {
+
+  private static final Object[] NO_ARGUMENTS = new Object[0];
+
+  /**
+   * Marks the classes that define their own equality.
+   */
+  private static final Field[] OWN_EQUALITY = new Field[0];
+
+  /**
+   * Marks the classes which fields cannot be read.
+   */
+  private static final Field[] UNREADABLE = new Field[0];
+
+  /**
+   * Nesting level after which argument values are represented by their hash
+   * code, so cyclic object graphs do not recurse forever.
+   */
+  private static final int MAX_DEPTH = 8;
+
+  private final ConcurrentHashMap fieldsByClass = new ConcurrentHashMap();
+
+  private final ConcurrentHashMap signatures = new ConcurrentHashMap();
+
+  /**
+   * @see CacheKeyGenerator#generateKey(MethodInvocation)
+   */
+  public final Serializable generateKey(MethodInvocation methodInvocation) {
+    Method method = methodInvocation.getMethod();
+    Object[] arguments = methodInvocation.getArguments();
+
+    Object[] values = NO_ARGUMENTS;
+    if (arguments != null && arguments.length > 0) {
+      values = new Object[arguments.length];
+      for (int i = 0; i < arguments.length; i++) {
+        values[i] = valueOf(arguments[i], 0);
+      }
+    }
+    return new ArgumentsCacheKey(signature(method), values);
+  }
+
+  private Object copyOf(Object array, int depth) {
+    if (array instanceof Object[]) {
+      Object[] elements = (Object[]) array;
+      Object[] copy = new Object[elements.length];
+      for (int i = 0; i < elements.length; i++) {
+        copy[i] = valueOf(elements[i], depth + 1);
+      }
+      return copy;
+    }
+
+    int length = Array.getLength(array);
+    Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+    System.arraycopy(array, 0, copy, 0, length);
+    return copy;
+  }
+
+  private boolean definesEquality(Class targetClass) {
+    if (Class.class.equals(targetClass)) return true;
+    try {
+      Method equals = targetClass.getMethod("equals",
+          new Class[] { Object.class });
+      return !Object.class.equals(equals.getDeclaringClass());
+    } catch (NoSuchMethodException exception) {
+      return false;
+    }
+  }
+
+  private Field[] fields(Class targetClass) {
+    Field[] fields = (Field[]) fieldsByClass.get(targetClass);
+    if (fields == null) {
+      if (definesEquality(targetClass)) {
+        fields = OWN_EQUALITY;
+      } else if (isJdkClass(targetClass)) {
+        fields = UNREADABLE;
+      } else {
+        try {
+          fields = instanceFields(targetClass);
+        } catch (RuntimeException exception) {
+          // the module system or a security manager denied access
+          fields = UNREADABLE;
+        }
+      }
+      fieldsByClass.putIfAbsent(targetClass, fields);
+    }
+    return fields;
+  }
+
+  private Object hashCodeOf(Object argument) {
+    return argument.getClass().getName() + "@" + argument.hashCode();
+  }
+
+  private Field[] instanceFields(Class targetClass) {
+    List fields = new ArrayList();
+    for (Class c = targetClass; c != null && !isJdkClass(c); c = c
+        .getSuperclass()) {
+      Field[] declared = c.getDeclaredFields();
+      for (int i = 0; i < declared.length; i++) {
+        int modifiers = declared[i].getModifiers();
+        if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+          fields.add(declared[i]);
+        }
+      }
+    }
+    Field[] result = (Field[]) fields.toArray(new Field[fields.size()]);
+    AccessibleObject.setAccessible(result, true);
+    return result;
+  }
+
+  private boolean isJdkClass(Class targetClass) {
+    String name = targetClass.getName();
+    return name.startsWith("java.") || name.startsWith("javax.");
+  }
+
+  private String signature(Method method) {
+    String signature = (String) signatures.get(method);
+    if (signature == null) {
+      signature = method.toString();
+      signatures.putIfAbsent(method, signature);
+    }
+    return signature;
+  }
+
+  private Object valueOf(Object argument, int depth) {
+    if (argument == null) return null;
+
+    Class targetClass = argument.getClass();
+    if (targetClass.isArray()) return copyOf(argument, depth);
+
+    Field[] fields = fields(targetClass);
+    if (fields == OWN_EQUALITY) return argument;
+    if (fields == UNREADABLE || depth >= MAX_DEPTH) return hashCodeOf(argument);
+
+    Object[] values = new Object[fields.length];
+    try {
+      for (int i = 0; i < fields.length; i++) {
+        values[i] = valueOf(fields[i].get(argument), depth + 1);
+      }
+    } catch (IllegalAccessException exception) {
+      ReflectionUtils.handleReflectionException(exception);
+    }
+    return new FieldValues(targetClass.getName(), values);
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.key;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Values of the fields of a method argument which class does not define
+ * equality, compared field by field.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+final class FieldValues implements Serializable {
+
+  private static final long serialVersionUID = 7355104928436741298L;
+
+  private final String className;
+
+  private final int hashCode;
+
+  private final Object[] values;
+
+  FieldValues(String className, Object[] values) {
+    this.className = className;
+    this.values = values;
+    hashCode = 31 * className.hashCode() + Arrays.deepHashCode(values);
+  }
+
+  public boolean equals(Object obj) {
+    if (this == obj) return true;
+    if (!(obj instanceof FieldValues)) return false;
+
+    FieldValues other = (FieldValues) obj;
+    if (hashCode != other.hashCode) return false;
+    if (!className.equals(other.className)) return false;
+
+    return Arrays.deepEquals(values, other.values);
+  }
+
+  public int hashCode() {
+    return hashCode;
+  }
+
+  public String toString() {
+    return className + Arrays.deepToString(values);
+  }
+}
@@ -20,6 +20,7 @@ package org.springmodules.cache.key;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.aopalliance.intercept.MethodInvocation;
 
@@ -31,6 +32,13 @@ import org.springmodules.util.Objects;
  * Generates the key for a cache entry using the hashCode of the intercepted
  * method and its arguments.
  * </p>
+ * <p>
+ * By default the hash code of the method is its identity hash code, which
+ * changes every time the JVM is started. Keys stored in caches that outlive
+ * the JVM (e.g. snapshots or disk stores) should be generated with
+ * <code>{@link #setStableKeys(boolean) stableKeys}</code> enabled, together
+ * with arguments which hash codes do not depend on object identity.
+ * </p>
  * 
  * @author Alex Ruiz
  */
@@ -43,6 +51,17 @@ public class HashCodeCacheKeyGenerator implements CacheKeyGenerator {
    */
   private boolean generateArgumentHashCode;
 
+  /**
+   * Hash codes of the signatures of the intercepted methods, stored by method.
+   */
+  private final ConcurrentHashMap signatureHashCodes = new ConcurrentHashMap();
+
+  /**
+   * Flag that indicates if the hash code of the intercepted method should be
+   * the hash code of its signature instead of its identity hash code.
+   */
+  private boolean stableKeys;
+
   /**
    * Construct a <code>HashCodeCacheKeyGenerator</code>.
    */
@@ -71,7 +90,8 @@ public class HashCodeCacheKeyGenerator implements CacheKeyGenerator {
     HashCodeCalculator hashCodeCalculator = new HashCodeCalculator();
 
     Method method = methodInvocation.getMethod();
-    hashCodeCalculator.append(System.identityHashCode(method));
+    hashCodeCalculator.append(stableKeys ? signatureHashCode(method) : System
+        .identityHashCode(method));
 
     Object[] methodArguments = methodInvocation.getArguments();
     if (methodArguments != null) {
@@ -112,4 +132,25 @@ public class HashCodeCacheKeyGenerator implements CacheKeyGenerator {
     generateArgumentHashCode = newGenerateArgumentHashCode;
   }
 
-}
\ No newline at end of file
+  /**
+   * Sets the flag that indicates if this generator should generate keys that
+   * stay the same across JVM runs, using the hash code of the signature of the
+   * intercepted method instead of its identity hash code. The hash code of the
+   * arguments should not depend on object identity either.
+   *
+   * @param newStableKeys
+   *          the new value of the flag
+   */
+  public final void setStableKeys(boolean newStableKeys) {
+    stableKeys = newStableKeys;
+  }
+
+  private int signatureHashCode(Method method) {
+    Integer hashCode = (Integer) signatureHashCodes.get(method);
+    if (hashCode == null) {
+      hashCode = new Integer(method.toString().hashCode());
+      signatureHashCodes.putIfAbsent(method, hashCode);
+    }
+    return hashCode.intValue();
+  }
+}
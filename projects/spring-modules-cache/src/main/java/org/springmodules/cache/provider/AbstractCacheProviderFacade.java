@@ -21,15 +21,31 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
 import org.springmodules.cache.CacheException;
+import org.springmodules.cache.CacheModel;
 import org.springmodules.cache.CachingModel;
 import org.springmodules.cache.FatalCacheException;
 import org.springmodules.cache.FlushingModel;
+import org.springmodules.cache.admission.AdmissionPolicy;
 import org.springmodules.cache.serializable.SerializableFactory;
+import org.springmodules.cache.serializable.ValueHolder;
+import org.springmodules.cache.statistics.CacheStatistics;
+import org.springmodules.cache.statistics.EvictionCounter;
+import org.springmodules.cache.statistics.ModelStatistics;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Template for implementations of <code>{@link CacheProviderFacade}</code>.
@@ -45,10 +61,33 @@ public abstract class AbstractCacheProviderFacade implements
 	 */
 	protected final Log logger = LogFactory.getLog(getClass());
 
+	private AdmissionPolicy admissionPolicy;
+
 	private boolean failQuietlyEnabled;
 
+	private final CopyOnWriteArrayList invalidationListeners = new CopyOnWriteArrayList();
+
 	private SerializableFactory serializableFactory;
 
+	private CacheStatistics statistics;
+
+	private final EvictionCounter evictionCounter = new EvictionCounter() {
+		public long getEvictionCount(CacheModel model) {
+			return (model instanceof CachingModel) ? AbstractCacheProviderFacade.this
+					.getEvictionCount((CachingModel) model) : -1;
+		}
+	};
+
+	/**
+	 * Registers a listener notified before the cache is flushed or entries are
+	 * removed through this facade. A listener is registered only once.
+	 *
+	 * @param listener the listener to register
+	 */
+	public final void addInvalidationListener(CacheInvalidationListener listener) {
+		invalidationListeners.addIfAbsent(listener);
+	}
+
 	/**
 	 * Validates the properties of this class after being set by the
 	 * <code>BeanFactory</code>.
@@ -82,14 +121,24 @@ public abstract class AbstractCacheProviderFacade implements
 	 * @see CacheProviderFacade#flushCache(FlushingModel)
 	 */
 	public final void flushCache(FlushingModel model) throws CacheException {
-		if (logger.isDebugEnabled()) {
+		boolean debug = logger.isDebugEnabled();
+		if (debug) {
 			logger.debug("Attempt to flush the cache using model <" + model + ">");
 		}
 
 		if (model != null) {
+			ModelStatistics modelStatistics = statisticsFor(model);
+			long start = (modelStatistics != null) ? System.nanoTime() : 0;
 			try {
+				fireFlush(model);
 				onFlushCache(model);
-				logger.debug("Cache has been flushed.");
+				if (debug) {
+					logger.debug("Cache has been flushed.");
+				}
+
+				if (modelStatistics != null) {
+					modelStatistics.recordFlush(System.nanoTime() - start);
+				}
 
 			} catch (CacheException exception) {
 				handleCatchedException(exception);
@@ -97,13 +146,65 @@ public abstract class AbstractCacheProviderFacade implements
 		}
 	}
 
+	/**
+	 * @see CacheProviderFacade#getAllFromCache(Collection,CachingModel)
+	 */
+	public final Map getAllFromCache(Collection keys, CachingModel model)
+			throws CacheException {
+
+		boolean debug = logger.isDebugEnabled();
+		if (debug) {
+			logger.debug("Attempt to retrieve " + keys.size()
+					+ " cache entries using cache model <" + model + ">");
+		}
+
+		Map cachedObjects = new HashMap();
+
+		try {
+			if (model != null && !keys.isEmpty()) {
+				if (admissionPolicy != null) {
+					for (Iterator i = keys.iterator(); i.hasNext();) {
+						admissionPolicy.recordAccess((Serializable) i.next(), model);
+					}
+				}
+				ModelStatistics modelStatistics = statisticsFor(model);
+				long start = (modelStatistics != null) ? System.nanoTime() : 0;
+				Map found = onGetAllFromCache(keys, model);
+
+				// deserialize the values if required
+				for (Iterator i = found.entrySet().iterator(); i.hasNext();) {
+					Map.Entry entry = (Map.Entry) i.next();
+					if (entry.getValue() != null) {
+						cachedObjects.put(entry.getKey(),
+								deserializeValueIfNecessary(entry.getValue()));
+					}
+				}
+
+				if (modelStatistics != null) {
+					modelStatistics.recordGetAll(cachedObjects.size(), keys.size()
+							- cachedObjects.size(), System.nanoTime() - start);
+				}
+			}
+
+			if (debug) {
+				logger.debug("Retrieved " + cachedObjects.size() + " cache elements");
+			}
+
+		} catch (CacheException exception) {
+			handleCatchedException(exception);
+		}
+		return cachedObjects;
+	}
+
 	/**
 	 * @see CacheProviderFacade#getFromCache(Serializable,CachingModel)
 	 */
 	public final Object getFromCache(Serializable key, CachingModel model)
 			throws CacheException {
 
-		if (logger.isDebugEnabled()) {
+		// checked once: a cache hit with debug disabled must not build messages
+		boolean debug = logger.isDebugEnabled();
+		if (debug) {
 			logger.debug("Attempt to retrieve a cache entry using key <"
 					+ StringUtils.quoteIfString(key) + "> and cache model <" + model
 					+ ">");
@@ -113,15 +214,25 @@ public abstract class AbstractCacheProviderFacade implements
 
 		try {
 			if (model != null) {
+				if (admissionPolicy != null) {
+					admissionPolicy.recordAccess(key, model);
+				}
+				ModelStatistics modelStatistics = statisticsFor(model);
+				long start = (modelStatistics != null) ? System.nanoTime() : 0;
 				cachedObject = onGetFromCache(key, model);
 
 				// deserialize the value if required
 				if (cachedObject != null) {
 					cachedObject = deserializeValueIfNecessary(cachedObject);
 				}
+
+				if (modelStatistics != null) {
+					modelStatistics.recordGet(cachedObject != null, System.nanoTime()
+							- start);
+				}
 			}
 
-			if (logger.isDebugEnabled()) {
+			if (debug) {
 				logger.debug("Retrieved cache element <"
 						+ StringUtils.quoteIfString(cachedObject) + ">");
 			}
@@ -140,43 +251,161 @@ public abstract class AbstractCacheProviderFacade implements
 	}
 
 	/**
+	 * Stores the given object, unless the admission policy rejects it. The
+	 * entry previously stored under the same key, if any, is then removed.
+	 *
 	 * @see CacheProviderFacade#putInCache(Serializable,CachingModel,Object)
 	 * @see #makeSerializableIfNecessary(Object)
+	 * @see #setAdmissionPolicy(AdmissionPolicy)
 	 */
 	public final void putInCache(Serializable key, CachingModel model, Object obj)
 			throws CacheException {
-		if (logger.isDebugEnabled()) {
-			logger.debug("Attempt to store the object <" + obj
-					+ "> in the cache using key <" + StringUtils.quoteIfString(key)
-					+ "> and model <" + model + ">");
+		boolean debug = logger.isDebugEnabled();
+		if (debug) {
+			// the cached object may be large: only its type is logged
+			logger.debug("Attempt to store an object of type <"
+					+ ObjectUtils.nullSafeClassName(obj) + "> in the cache using key <"
+					+ StringUtils.quoteIfString(key) + "> and model <" + model + ">");
 		}
 
 		try {
+			if (model != null && admissionPolicy != null
+					&& !admissionPolicy.admit(key, model)) {
+				// the previous value must not be served instead of the new one
+				onRemoveFromCache(key, model);
+				if (debug) {
+					logger.debug("Object was not admitted in the cache");
+				}
+				return;
+			}
+
+			ModelStatistics modelStatistics = statisticsFor(model);
+			long start = (modelStatistics != null) ? System.nanoTime() : 0;
 			Object newCacheElement = makeSerializableIfNecessary(obj);
 
 			if (model != null) {
 				onPutInCache(key, model, newCacheElement);
-				logger.debug("Object was successfully stored in the cache");
+				if (debug) {
+					logger.debug("Object was successfully stored in the cache");
+				}
+
+				if (modelStatistics != null) {
+					modelStatistics.recordPut(System.nanoTime() - start);
+				}
+			}
+		} catch (CacheException exception) {
+			handleCatchedException(exception);
+		}
+	}
+
+	/**
+	 * Stores the given objects admitted by the admission policy, and removes
+	 * the entries stored under the keys of the rejected ones.
+	 *
+	 * @see CacheProviderFacade#putAllInCache(Map,CachingModel)
+	 * @see #makeSerializableIfNecessary(Object)
+	 * @see #setAdmissionPolicy(AdmissionPolicy)
+	 */
+	public final void putAllInCache(Map entries, CachingModel model)
+			throws CacheException {
+		boolean debug = logger.isDebugEnabled();
+		if (debug) {
+			logger.debug("Attempt to store " + entries.size()
+					+ " objects in the cache using model <" + model + ">");
+		}
+
+		try {
+			ModelStatistics modelStatistics = statisticsFor(model);
+			long start = (modelStatistics != null) ? System.nanoTime() : 0;
+			Map newCacheElements = new LinkedHashMap(entries.size());
+			List rejectedKeys = new ArrayList();
+			for (Iterator i = entries.entrySet().iterator(); i.hasNext();) {
+				Map.Entry entry = (Map.Entry) i.next();
+				Serializable key = (Serializable) entry.getKey();
+				if (model != null && admissionPolicy != null
+						&& !admissionPolicy.admit(key, model)) {
+					rejectedKeys.add(key);
+					continue;
+				}
+				newCacheElements.put(key,
+						makeSerializableIfNecessary(entry.getValue()));
+			}
+
+			if (!rejectedKeys.isEmpty()) {
+				onRemoveAllFromCache(rejectedKeys, model);
+			}
+
+			if (model != null && !newCacheElements.isEmpty()) {
+				onPutAllInCache(newCacheElements, model);
+				if (debug) {
+					logger.debug("Objects were successfully stored in the cache");
+				}
+
+				if (modelStatistics != null) {
+					modelStatistics.recordPutAll(newCacheElements.size(),
+							System.nanoTime() - start);
+				}
 			}
 		} catch (CacheException exception) {
 			handleCatchedException(exception);
 		}
 	}
 
+	/**
+	 * @see CacheProviderFacade#removeAllFromCache(Collection,CachingModel)
+	 */
+	public final void removeAllFromCache(Collection keys, CachingModel model)
+			throws CacheException {
+		boolean debug = logger.isDebugEnabled();
+		if (debug) {
+			logger.debug("Attempt to remove " + keys.size()
+					+ " entries from the cache using model <" + model + ">");
+		}
+
+		if (model != null && !keys.isEmpty()) {
+			try {
+				fireRemove(keys, model);
+				onRemoveAllFromCache(keys, model);
+				if (debug) {
+					logger.debug("Objects removed from the cache");
+				}
+
+				ModelStatistics modelStatistics = statisticsFor(model);
+				if (modelStatistics != null) {
+					modelStatistics.recordRemove(keys.size());
+				}
+
+			} catch (CacheException exception) {
+				handleCatchedException(exception);
+			}
+		}
+	}
+
 	/**
 	 * @see CacheProviderFacade#removeFromCache(Serializable,CachingModel)
 	 */
 	public final void removeFromCache(Serializable key, CachingModel model)
 			throws CacheException {
-		if (logger.isDebugEnabled()) {
+		boolean debug = logger.isDebugEnabled();
+		if (debug) {
 			logger.debug("Attempt to remove an entry from the cache using key <"
 					+ StringUtils.quoteIfString(key) + "> and model <" + model + ">");
 		}
 
 		if (model != null) {
 			try {
+				if (!invalidationListeners.isEmpty()) {
+					fireRemove(Collections.singleton(key), model);
+				}
 				onRemoveFromCache(key, model);
-				logger.debug("Object removed from the cache");
+				if (debug) {
+					logger.debug("Object removed from the cache");
+				}
+
+				ModelStatistics modelStatistics = statisticsFor(model);
+				if (modelStatistics != null) {
+					modelStatistics.recordRemove(1);
+				}
 
 			} catch (CacheException exception) {
 				handleCatchedException(exception);
@@ -184,6 +413,22 @@ public abstract class AbstractCacheProviderFacade implements
 		}
 	}
 
+	/**
+	 * Sets the policy deciding which new entries are stored in the cache. The
+	 * accesses to the cache are recorded by the policy, which is also notified
+	 * of flushes and removals if it is a
+	 * <code>{@link CacheInvalidationListener}</code>. By default all entries
+	 * are stored.
+	 *
+	 * @param newAdmissionPolicy the new admission policy
+	 */
+	public final void setAdmissionPolicy(AdmissionPolicy newAdmissionPolicy) {
+		admissionPolicy = newAdmissionPolicy;
+		if (newAdmissionPolicy instanceof CacheInvalidationListener) {
+			addInvalidationListener((CacheInvalidationListener) newAdmissionPolicy);
+		}
+	}
+
 	/**
 	 * Sets the flag that indicates if any exception thrown at run-time by the
 	 * cache manager should be propagated (<code>false</code>) or not (<code>true</code>.)
@@ -205,6 +450,16 @@ public abstract class AbstractCacheProviderFacade implements
 		serializableFactory = newSerializableFactory;
 	}
 
+	/**
+	 * Sets the statistics where the operations performed by this facade are
+	 * recorded, per model. No statistics are recorded by default.
+	 *
+	 * @param newStatistics the new statistics
+	 */
+	public final void setStatistics(CacheStatistics newStatistics) {
+		statistics = newStatistics;
+	}
+
 	/**
 	 * Asserts that the given cache manager is not <code>null</code>.
 	 *
@@ -232,6 +487,20 @@ public abstract class AbstractCacheProviderFacade implements
 		}
 	}
 
+	/**
+	 * Returns the number of entries evicted from the cache used by the given
+	 * model, reported by the statistics of the model. The default implementation
+	 * returns -1. Subclasses should override this method if the cache provider
+	 * counts evictions.
+	 *
+	 * @param model the model that specifies the cache.
+	 * @return the number of entries evicted, or -1 if unknown.
+	 * @see #setStatistics(CacheStatistics)
+	 */
+	protected long getEvictionCount(CachingModel model) {
+		return -1;
+	}
+
 	/**
 	 * @return <code>true</code> if the cache used by this facade can only store
 	 *         serializable objects.
@@ -245,7 +514,9 @@ public abstract class AbstractCacheProviderFacade implements
 	 * <li>The given object does not implement <code>java.io.Serializable</code>
 	 * </li>
 	 * </ul>
-	 * Otherwise, will return the same object passed as argument.
+	 * Otherwise, will return the same object passed as argument. The value of a
+	 * <code>{@link ValueHolder}</code> is made serializable instead of the
+	 * holder itself.
 	 *
 	 * @param obj the object to check.
 	 * @return the given object as a serializable object if necessary.
@@ -259,6 +530,16 @@ public abstract class AbstractCacheProviderFacade implements
 		if (!isSerializableCacheElementRequired()) {
 			return obj;
 		}
+		if (obj instanceof ValueHolder) {
+			ValueHolder holder = (ValueHolder) obj;
+			Object value = holder.getValue();
+			Object serializable = (value != null) ? makeSerializable(value) : null;
+			return (serializable == value) ? holder : holder.withValue(serializable);
+		}
+		return makeSerializable(obj);
+	}
+
+	private Object makeSerializable(Object obj) {
 		if (obj instanceof Serializable) {
 			return obj;
 		}
@@ -276,7 +557,9 @@ public abstract class AbstractCacheProviderFacade implements
 	 * <li>The given object does not implement <code>java.io.Serializable</code>
 	 * </li>
 	 * </ul>
-	 * Otherwise, will throw an {@link InvalidObjectInCacheException}.
+	 * Otherwise, will throw an {@link InvalidObjectInCacheException}. The
+	 * original value of a <code>{@link ValueHolder}</code> is restored in a
+	 * copy of the holder.
 	 *
 	 * @param obj the object to check.
 	 * @return the given object as a serializable object if necessary.
@@ -290,6 +573,16 @@ public abstract class AbstractCacheProviderFacade implements
 		if (!isSerializableCacheElementRequired()) {
 			return obj;
 		}
+		if (obj instanceof ValueHolder) {
+			ValueHolder holder = (ValueHolder) obj;
+			Object value = holder.getValue();
+			Object original = (value != null) ? originalValue(value) : null;
+			return (original == value) ? holder : holder.withValue(original);
+		}
+		return originalValue(obj);
+	}
+
+	private Object originalValue(Object obj) {
 		if (obj instanceof Serializable) {
 			if (serializableFactory != null) {
 				return serializableFactory.getOriginalValue(obj);
@@ -333,6 +626,30 @@ public abstract class AbstractCacheProviderFacade implements
 	protected abstract void onFlushCache(FlushingModel model)
 			throws CacheException;
 
+	/**
+	 * Retrieves several entries from the cache. The default implementation
+	 * retrieves the entries one by one. Subclasses should override this method
+	 * if the cache provider can retrieve several entries at once.
+	 *
+	 * @param keys  the keys under which the entries are stored.
+	 * @param model the model that specifies how to retrieve the entries.
+	 * @return the cached entries found, stored by key.
+	 * @throws CacheException if an unexpected error takes place when retrieving the entries
+	 *                        from the cache.
+	 */
+	protected Map onGetAllFromCache(Collection keys, CachingModel model)
+			throws CacheException {
+		Map cachedObjects = new HashMap();
+		for (Iterator i = keys.iterator(); i.hasNext();) {
+			Serializable key = (Serializable) i.next();
+			Object cachedObject = onGetFromCache(key, model);
+			if (cachedObject != null) {
+				cachedObjects.put(key, cachedObject);
+			}
+		}
+		return cachedObjects;
+	}
+
 	/**
 	 * Retrieves an entry from the cache.
 	 *
@@ -345,6 +662,24 @@ public abstract class AbstractCacheProviderFacade implements
 	protected abstract Object onGetFromCache(Serializable key, CachingModel model)
 			throws CacheException;
 
+	/**
+	 * Stores several objects in the cache. The default implementation stores
+	 * the objects one by one. Subclasses should override this method if the
+	 * cache provider can store several objects at once.
+	 *
+	 * @param entries the objects to store in the cache, stored by key.
+	 * @param model   the model that specifies how to store the objects.
+	 * @throws CacheException if an unexpected error takes place when storing the objects in
+	 *                        the cache.
+	 */
+	protected void onPutAllInCache(Map entries, CachingModel model)
+			throws CacheException {
+		for (Iterator i = entries.entrySet().iterator(); i.hasNext();) {
+			Map.Entry entry = (Map.Entry) i.next();
+			onPutInCache((Serializable) entry.getKey(), model, entry.getValue());
+		}
+	}
+
 	/**
 	 * Stores an object in the cache.
 	 *
@@ -357,6 +692,22 @@ public abstract class AbstractCacheProviderFacade implements
 	protected abstract void onPutInCache(Serializable key, CachingModel model,
 										 Object obj) throws CacheException;
 
+	/**
+	 * Removes several entries from the cache. The default implementation
+	 * removes the entries one by one.
+	 *
+	 * @param keys  the keys the entries to remove are stored under.
+	 * @param model the model that specifies how to remove the entries.
+	 * @throws CacheException if an unexpected error takes place when removing the entries
+	 *                        from the cache.
+	 */
+	protected void onRemoveAllFromCache(Collection keys, CachingModel model)
+			throws CacheException {
+		for (Iterator i = keys.iterator(); i.hasNext();) {
+			onRemoveFromCache((Serializable) i.next(), model);
+		}
+	}
+
 	/**
 	 * Removes an entry from the cache.
 	 *
@@ -374,4 +725,24 @@ public abstract class AbstractCacheProviderFacade implements
 	 * @throws FatalCacheException if the cache manager is in an invalid state.
 	 */
 	protected abstract void validateCacheManager() throws FatalCacheException;
+
+	private void fireFlush(FlushingModel model) {
+		for (Iterator i = invalidationListeners.iterator(); i.hasNext();) {
+			((CacheInvalidationListener) i.next()).onFlush(model);
+		}
+	}
+
+	private void fireRemove(Collection keys, CachingModel model) {
+		for (Iterator i = invalidationListeners.iterator(); i.hasNext();) {
+			((CacheInvalidationListener) i.next()).onRemove(keys, model);
+		}
+	}
+
+	private ModelStatistics statisticsFor(CacheModel model) {
+		CacheStatistics currentStatistics = statistics;
+		if (currentStatistics == null || model == null) {
+			return null;
+		}
+		return currentStatistics.forModel(model, evictionCounter);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,426 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider;
+
+import java.util.Arrays;
+
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.tag.TagPattern;
+import org.springmodules.util.Objects;
+
+/**
+ * <p>
+ * Template for implementations of <code>{@link CachingModel}</code>. Holds
+ * the options used by the caching interceptors regardless of the cache
+ * provider.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public abstract class AbstractCachingModel implements CachingModel {
+
+  /**
+   * Default number of milliseconds a caller waits for another caller loading
+   * the same entry.
+   */
+  public static final long DEFAULT_SINGLE_FLIGHT_TIMEOUT = 5000;
+
+  /**
+   * Default number of milliseconds a cached exception is rethrown.
+   */
+  public static final long DEFAULT_EXCEPTION_TIME_TO_LIVE = 1000;
+
+  private Class[] cachedExceptions = new Class[0];
+
+  private long exceptionTimeToLive = DEFAULT_EXCEPTION_TIME_TO_LIVE;
+
+  private long expireAfter;
+
+  private long maxStaleness;
+
+  private long nullTimeToLive;
+
+  private boolean perElement;
+
+  private long refreshAfter;
+
+  private boolean singleFlight;
+
+  private long singleFlightTimeout = DEFAULT_SINGLE_FLIGHT_TIMEOUT;
+
+  private TagPattern[] tagPatterns = new TagPattern[0];
+
+  private String[] tags = new String[0];
+
+  private boolean writeBehind;
+
+  /**
+   * @return the types of the exceptions cached by the caching interceptors,
+   *         never <code>null</code>
+   */
+  public final Class[] getCachedExceptions() {
+    return cachedExceptions;
+  }
+
+  /**
+   * @return the number of milliseconds a cached exception is rethrown, or zero
+   *         if only the cache provider expires cached exceptions
+   */
+  public final long getExceptionTimeToLive() {
+    return exceptionTimeToLive;
+  }
+
+  /**
+   * @return the number of milliseconds after which an entry is considered
+   *         expired by the caching interceptors, or zero if only the cache
+   *         provider expires entries
+   */
+  public final long getExpireAfter() {
+    return expireAfter;
+  }
+
+  /**
+   * @return the number of milliseconds an expired entry can still be returned
+   *         while it is being reloaded
+   */
+  public final long getMaxStaleness() {
+    return maxStaleness;
+  }
+
+  /**
+   * @return the number of milliseconds a <code>null</code> return value stays
+   *         cached, or zero if it is cached like any other value
+   */
+  public final long getNullTimeToLive() {
+    return nullTimeToLive;
+  }
+
+  /**
+   * @return the number of milliseconds after which an entry is reloaded in the
+   *         background, or zero if entries are not refreshed ahead of time
+   */
+  public final long getRefreshAfter() {
+    return refreshAfter;
+  }
+
+  /**
+   * @return the maximum number of milliseconds a caller waits for another
+   *         caller loading the same entry
+   */
+  public final long getSingleFlightTimeout() {
+    return singleFlightTimeout;
+  }
+
+  /**
+   * @return the patterns of the dependency tags of the entries stored with
+   *         this model
+   */
+  public final String[] getTags() {
+    return tags;
+  }
+
+  /**
+   * @return the compiled patterns of the dependency tags of the entries stored
+   *         with this model, never <code>null</code>
+   */
+  public final TagPattern[] getTagPatterns() {
+    return tagPatterns;
+  }
+
+  /**
+   * @param exception
+   *          an exception thrown by an intercepted method
+   * @return <code>true</code> if the given exception is an instance of one of
+   *         the cached exception types
+   */
+  public final boolean isCachedException(Throwable exception) {
+    for (int i = 0; i < cachedExceptions.length; i++) {
+      if (cachedExceptions[i].isInstance(exception)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return <code>true</code> if methods taking a collection of identifiers
+   *         and returning a list should have each element of the list cached
+   *         separately
+   */
+  public final boolean isPerElement() {
+    return perElement;
+  }
+
+  /**
+   * @return <code>true</code> if the entries stored with this model keep their
+   *         creation time, so they can be refreshed ahead of time or served
+   *         stale
+   */
+  public final boolean isRefreshable() {
+    return refreshAfter > 0 || expireAfter > 0;
+  }
+
+  /**
+   * @return <code>true</code> if only one caller at a time should load a
+   *         missing entry while the other callers wait for its result
+   */
+  public final boolean isSingleFlight() {
+    return singleFlight;
+  }
+
+  /**
+   * @return <code>true</code> if the caching interceptors should store new
+   *         entries in the background instead of in the caller thread
+   */
+  public final boolean isWriteBehind() {
+    return writeBehind;
+  }
+
+  /**
+   * Appends the interceptor options that differ from their defaults to the
+   * given <code>toString()</code> buffer, so the description of models using
+   * none of them is unchanged.
+   *
+   * @param buffer
+   *          the buffer of the subclass
+   * @return the given buffer
+   */
+  protected final StringBuffer appendOptions(StringBuffer buffer) {
+    if (cachedExceptions.length > 0) {
+      buffer.append(", cachedExceptions=").append(
+          Objects.nullSafeToString(cachedExceptions));
+      buffer.append(", exceptionTimeToLive=").append(exceptionTimeToLive);
+    }
+    if (expireAfter != 0) buffer.append(", expireAfter=").append(expireAfter);
+    if (maxStaleness != 0)
+      buffer.append(", maxStaleness=").append(maxStaleness);
+    if (nullTimeToLive != 0)
+      buffer.append(", nullTimeToLive=").append(nullTimeToLive);
+    if (perElement) buffer.append(", perElement=true");
+    if (refreshAfter != 0)
+      buffer.append(", refreshAfter=").append(refreshAfter);
+    if (singleFlight) {
+      buffer.append(", singleFlight=true");
+      buffer.append(", singleFlightTimeout=").append(singleFlightTimeout);
+    }
+    if (tagPatterns.length > 0)
+      buffer.append(", tags=").append(Objects.nullSafeToString(tags));
+    if (writeBehind) buffer.append(", writeBehind=true");
+    return buffer;
+  }
+
+  /**
+   * @param other
+   *          the model to compare to
+   * @return <code>true</code> if the given model has the same interceptor
+   *         options as this one
+   */
+  protected final boolean hasSameOptions(AbstractCachingModel other) {
+    return Arrays.equals(cachedExceptions, other.cachedExceptions)
+        && exceptionTimeToLive == other.exceptionTimeToLive
+        && expireAfter == other.expireAfter
+        && maxStaleness == other.maxStaleness
+        && nullTimeToLive == other.nullTimeToLive
+        && perElement == other.perElement
+        && refreshAfter == other.refreshAfter
+        && singleFlight == other.singleFlight
+        && singleFlightTimeout == other.singleFlightTimeout
+        && Arrays.equals(tags, other.tags)
+        && writeBehind == other.writeBehind;
+  }
+
+  /**
+   * @return the hash code of the interceptor options
+   */
+  protected final int optionsHashCode() {
+    int multiplier = 31;
+    int hash = 7;
+    hash = multiplier * hash + Objects.nullSafeHashCode(cachedExceptions);
+    hash = multiplier * hash + Objects.hashCode(exceptionTimeToLive);
+    hash = multiplier * hash + Objects.hashCode(expireAfter);
+    hash = multiplier * hash + Objects.hashCode(maxStaleness);
+    hash = multiplier * hash + Objects.hashCode(nullTimeToLive);
+    hash = multiplier * hash + Objects.hashCode(perElement);
+    hash = multiplier * hash + Objects.hashCode(refreshAfter);
+    hash = multiplier * hash + Objects.hashCode(singleFlight);
+    hash = multiplier * hash + Objects.hashCode(singleFlightTimeout);
+    hash = multiplier * hash + Objects.nullSafeHashCode(tags);
+    hash = multiplier * hash + Objects.hashCode(writeBehind);
+    return hash;
+  }
+
+  /**
+   * Sets the types of the exceptions cached by the caching interceptors. An
+   * intercepted method throwing one of them is not invoked again with the same
+   * arguments until the exception expires: the same exception instance is
+   * rethrown instead. This keeps a failing backend from being called on every
+   * request.
+   *
+   * @param newCachedExceptions
+   *          the new exception types
+   * @throws IllegalArgumentException
+   *           if any of the types is not a <code>Throwable</code>
+   * @see #setExceptionTimeToLive(long)
+   */
+  public final void setCachedExceptions(Class[] newCachedExceptions)
+      throws IllegalArgumentException {
+    Class[] types = (newCachedExceptions != null) ? newCachedExceptions
+        : new Class[0];
+    for (int i = 0; i < types.length; i++) {
+      if (!Throwable.class.isAssignableFrom(types[i])) {
+        throw new IllegalArgumentException("The class " + types[i].getName()
+            + " is not a Throwable");
+      }
+    }
+    cachedExceptions = types;
+  }
+
+  /**
+   * Sets the number of milliseconds a cached exception is rethrown, usually
+   * much shorter than the lifetime of regular entries.
+   *
+   * @param newExceptionTimeToLive
+   *          the new number of milliseconds. Zero means that only the cache
+   *          provider expires cached exceptions
+   * @see #setCachedExceptions(Class[])
+   */
+  public final void setExceptionTimeToLive(long newExceptionTimeToLive) {
+    exceptionTimeToLive = newExceptionTimeToLive;
+  }
+
+  /**
+   * Sets the number of milliseconds after which an entry is considered expired
+   * by the caching interceptors. Expired entries are reloaded before being
+   * returned, unless they are within the maximum staleness. The cache
+   * provider should keep entries at least <code>expireAfter</code> plus
+   * <code>maxStaleness</code> milliseconds.
+   *
+   * @param newExpireAfter
+   *          the new number of milliseconds. Zero means that only the cache
+   *          provider expires entries
+   * @see #setMaxStaleness(long)
+   */
+  public final void setExpireAfter(long newExpireAfter) {
+    expireAfter = newExpireAfter;
+  }
+
+  /**
+   * Sets the number of milliseconds an expired entry can still be returned.
+   * Callers asking for such an entry get the stale value while the entry is
+   * reloaded in the background.
+   *
+   * @param newMaxStaleness
+   *          the new number of milliseconds
+   * @see #setExpireAfter(long)
+   */
+  public final void setMaxStaleness(long newMaxStaleness) {
+    maxStaleness = newMaxStaleness;
+  }
+
+  /**
+   * Sets the number of milliseconds a <code>null</code> return value stays
+   * cached, so absent data is looked up again sooner than present data.
+   *
+   * @param newNullTimeToLive
+   *          the new number of milliseconds. Zero means that
+   *          <code>null</code> is cached like any other value
+   */
+  public final void setNullTimeToLive(long newNullTimeToLive) {
+    nullTimeToLive = newNullTimeToLive;
+  }
+
+  /**
+   * Sets the flag that indicates if methods taking a collection of identifiers
+   * and returning a list should have each element of the list cached
+   * separately. The intercepted method is then invoked only with the
+   * identifiers not found in the cache, and should return one element per
+   * identifier, in the same order.
+   *
+   * @param newPerElement
+   *          the new value for the flag
+   */
+  public final void setPerElement(boolean newPerElement) {
+    perElement = newPerElement;
+  }
+
+  /**
+   * Sets the number of milliseconds after which an entry is reloaded in the
+   * background. Callers keep getting the current value until the reload
+   * finishes.
+   *
+   * @param newRefreshAfter
+   *          the new number of milliseconds. Zero disables refreshing ahead of
+   *          time
+   */
+  public final void setRefreshAfter(long newRefreshAfter) {
+    refreshAfter = newRefreshAfter;
+  }
+
+  /**
+   * Sets the flag that indicates if only one caller at a time should load a
+   * missing entry. Callers asking for an entry being loaded wait for the
+   * result instead of invoking the intercepted method again.
+   *
+   * @param newSingleFlight
+   *          the new value for the flag
+   */
+  public final void setSingleFlight(boolean newSingleFlight) {
+    singleFlight = newSingleFlight;
+  }
+
+  /**
+   * Sets the maximum number of milliseconds a caller waits for another caller
+   * loading the same entry. Once the timeout expires, the caller invokes the
+   * intercepted method itself.
+   *
+   * @param newSingleFlightTimeout
+   *          the new timeout
+   */
+  public final void setSingleFlightTimeout(long newSingleFlightTimeout) {
+    singleFlightTimeout = newSingleFlightTimeout;
+  }
+
+  /**
+   * Sets the patterns of the dependency tags recorded by the caching
+   * interceptors when storing an entry, resolved against the arguments and the
+   * return value of the intercepted method. Flushing models with matching tags
+   * then evict only the entries depending on the data they change.
+   *
+   * @param newTags
+   *          the new patterns, like <code>user:{0}</code>
+   * @throws IllegalArgumentException
+   *           if any of the patterns is not valid
+   * @see TagPattern
+   * @see org.springmodules.cache.tag.TagIndex
+   */
+  public final void setTags(String[] newTags) throws IllegalArgumentException {
+    tagPatterns = TagPattern.compile(newTags);
+    tags = TagPattern.sources(tagPatterns);
+  }
+
+  /**
+   * Sets the flag that indicates if the caching interceptors should store new
+   * entries in the background. Entries are then queued and stored in batches,
+   * and callers only wait for the intercepted method. Callers asking for an
+   * entry still in the queue get its value without invoking the method again.
+   *
+   * @param newWriteBehind
+   *          the new value for the flag
+   */
+  public final void setWriteBehind(boolean newWriteBehind) {
+    writeBehind = newWriteBehind;
+  }
+
+}
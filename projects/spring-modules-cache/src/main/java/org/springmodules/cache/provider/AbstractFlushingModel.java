@@ -18,6 +18,7 @@
 package org.springmodules.cache.provider;
 
 import org.springmodules.cache.FlushingModel;
+import org.springmodules.cache.tag.TagPattern;
 import org.springmodules.util.Objects;
 
 /**
@@ -31,6 +32,8 @@ public abstract class AbstractFlushingModel implements FlushingModel {
 
   private boolean flushBeforeMethodExecution;
 
+  private TagPattern[] tagPatterns = new TagPattern[0];
+
   /**
    * @see java.lang.Object#equals(java.lang.Object)
    */
@@ -65,6 +68,29 @@ public abstract class AbstractFlushingModel implements FlushingModel {
     return flushBeforeMethodExecution;
   }
 
+  /**
+   * @return the patterns of the dependency tags invalidated by this model
+   */
+  public final String[] getTags() {
+    return TagPattern.sources(tagPatterns);
+  }
+
+  /**
+   * @return the compiled patterns of the dependency tags invalidated by this
+   *         model, never <code>null</code>
+   */
+  public final TagPattern[] getTagPatterns() {
+    return tagPatterns;
+  }
+
+  /**
+   * @return <code>true</code> if this model invalidates dependency tags
+   *         instead of flushing whole caches
+   */
+  public final boolean isTagged() {
+    return tagPatterns.length > 0;
+  }
+
   /**
    * Sets the flag that indicates if the cache should be flushed before or after
    * the execution of an intercepted method.
@@ -77,4 +103,22 @@ public abstract class AbstractFlushingModel implements FlushingModel {
     flushBeforeMethodExecution = newFlushBeforeMethodExecution;
   }
 
+  /**
+   * Sets the patterns of the dependency tags to invalidate, resolved against
+   * the arguments of the intercepted method, and its return value when the
+   * cache is flushed after the method is executed. When tags are set, the
+   * flushing interceptors remove only the entries having those tags instead
+   * of flushing the caches of this model.
+   *
+   * @param newTags
+   *          the new patterns, like <code>user:{0.id}</code>
+   * @throws IllegalArgumentException
+   *           if any of the patterns is not valid
+   * @see TagPattern
+   * @see org.springmodules.cache.tag.TagIndex
+   */
+  public final void setTags(String[] newTags) throws IllegalArgumentException {
+    tagPatterns = TagPattern.compile(newTags);
+  }
+
 }
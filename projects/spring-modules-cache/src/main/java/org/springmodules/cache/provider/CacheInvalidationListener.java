@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider;
+
+import java.util.Collection;
+
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.FlushingModel;
+
+/**
+ * <p>
+ * Receives the flushes and removals performed through an
+ * <code>{@link AbstractCacheProviderFacade}</code>, before the cache is
+ * changed. Lets components keeping entries outside the cache, like the queue
+ * of entries waiting to be stored in the background, discard them.
+ * </p>
+ *
+ * @author Alex Ruiz
+ * @see AbstractCacheProviderFacade#addInvalidationListener(CacheInvalidationListener)
+ */
+public interface CacheInvalidationListener {
+
+  /**
+   * Called before the cache is flushed.
+   *
+   * @param model
+   *          the model used to flush the cache
+   */
+  void onFlush(FlushingModel model);
+
+  /**
+   * Called before entries are removed from the cache.
+   *
+   * @param keys
+   *          the keys of the removed entries
+   * @param model
+   *          the model used to remove the entries
+   */
+  void onRemove(Collection keys, CachingModel model);
+}
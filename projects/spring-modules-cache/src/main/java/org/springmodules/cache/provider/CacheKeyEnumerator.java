@@ -0,0 +1,45 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider;
+
+import java.util.Collection;
+
+import org.springmodules.cache.CacheException;
+import org.springmodules.cache.CachingModel;
+
+/**
+ * <p>
+ * Implemented by the cache provider facades able to list the keys of the
+ * entries stored in their caches.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public interface CacheKeyEnumerator {
+
+  /**
+   * Returns a copy of the keys of the entries stored in the cache used by the
+   * given model. Entries may expire or be removed after the copy is made.
+   * 
+   * @param model
+   *          the caching model
+   * @return the keys of the entries stored in the cache
+   * @throws CacheException
+   *           if an unexpected error takes place when listing the keys.
+   */
+  Collection getKeys(CachingModel model) throws CacheException;
+}
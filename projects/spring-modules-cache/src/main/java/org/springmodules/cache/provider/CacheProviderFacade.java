@@ -20,6 +20,8 @@ package org.springmodules.cache.provider;
 
 import java.beans.PropertyEditor;
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
 
 import org.springframework.beans.factory.InitializingBean;
 
@@ -72,6 +74,22 @@ public interface CacheProviderFacade {
    */
   PropertyEditor getFlushingModelEditor();
 
+  /**
+   * Retrieves several entries from the cache.
+   * 
+   * @param keys
+   *          the keys under which the entries are stored.
+   * @param model
+   *          the model that specifies how to retrieve the entries.
+   * @return the cached entries found, stored by key. Keys not found in the
+   *         cache are not included.
+   * @throws CacheException
+   *           if an unexpected error takes place when retrieving the entries
+   *           from the cache.
+   */
+  Map getAllFromCache(Collection keys, CachingModel model)
+      throws CacheException;
+
   /**
    * Retrieves an entry from the cache.
    * 
@@ -94,6 +112,19 @@ public interface CacheProviderFacade {
    */
   boolean isFailQuietlyEnabled();
 
+  /**
+   * Stores several objects in the cache.
+   * 
+   * @param entries
+   *          the objects to store in the cache, stored by key.
+   * @param model
+   *          the model that specifies how to store the objects.
+   * @throws CacheException
+   *           if an unexpected error takes place when storing the objects in
+   *           the cache.
+   */
+  void putAllInCache(Map entries, CachingModel model) throws CacheException;
+
   /**
    * Stores an object in the cache.
    * 
@@ -110,6 +141,20 @@ public interface CacheProviderFacade {
   void putInCache(Serializable key, CachingModel model, Object obj)
       throws CacheException;
 
+  /**
+   * Removes several objects from the cache.
+   * 
+   * @param keys
+   *          the keys under which the objects are stored.
+   * @param model
+   *          the model that specifies how to remove the objects.
+   * @throws CacheException
+   *           if an unexpected error takes place when removing the objects
+   *           from the cache.
+   */
+  void removeAllFromCache(Collection keys, CachingModel model)
+      throws CacheException;
+
   /**
    * Removes an object from the cache.
    * 
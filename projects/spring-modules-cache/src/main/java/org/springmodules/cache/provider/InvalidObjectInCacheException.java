@@ -38,4 +38,15 @@ public class InvalidObjectInCacheException extends CacheException {
 		super(msg);
 	}
 
+	/**
+	 * Construct a <code>InvalidObjectInCacheException</code> with the specified
+	 * detail message and nested exception.
+	 *
+	 * @param msg   the detail message
+	 * @param cause the nested exception
+	 */
+	public InvalidObjectInCacheException(String msg, Throwable cause) {
+		super(msg, cause);
+	}
+
 }
\ No newline at end of file
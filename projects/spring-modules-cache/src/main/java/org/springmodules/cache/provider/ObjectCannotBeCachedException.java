@@ -40,4 +40,17 @@ public class ObjectCannotBeCachedException extends CacheException {
   public ObjectCannotBeCachedException(String msg) {
     super(msg);
   }
+
+  /**
+   * Construct a <code>ObjectCannotBeCachedException</code> with the specified
+   * detail message and nested exception.
+   * 
+   * @param msg
+   *          the detail message
+   * @param cause
+   *          the nested exception
+   */
+  public ObjectCannotBeCachedException(String msg, Throwable cause) {
+    super(msg, cause);
+  }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.ehcache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.constructs.blocking.CacheEntryFactory;
+
+/**
+ * <p>
+ * Registry of the decorators of EHCache caches, so that all the callers using
+ * the same cache and configuration share the same decorator, and its locks.
+ * Lookups do not lock nor allocate.
+ * </p>
+ * <p>
+ * A cache has at most one blocking decorator, and one self-populating
+ * decorator per cache entry factory. Decorators are discarded when the cache
+ * they decorate is replaced in the cache manager.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+final class DecoratedCacheRegistry {
+
+	/**
+	 * Decorators of a single cache.
+	 */
+	private static final class Decorators {
+
+		final AtomicReference blocking = new AtomicReference();
+
+		final Cache cache;
+
+		/**
+		 * Self-populating decorators stored by cache entry factory.
+		 */
+		final ConcurrentHashMap selfPopulating = new ConcurrentHashMap();
+
+		Decorators(Cache newCache) {
+			cache = newCache;
+		}
+
+		Ehcache get(CacheEntryFactory factory) {
+			return (Ehcache) ((factory != null) ? selfPopulating.get(factory)
+					: blocking.get());
+		}
+
+		Ehcache putIfAbsent(CacheEntryFactory factory, Ehcache decorator) {
+			if (factory != null) {
+				Ehcache current = (Ehcache) selfPopulating.putIfAbsent(factory,
+						decorator);
+				return (current != null) ? current : decorator;
+			}
+			return blocking.compareAndSet(null, decorator) ? decorator
+					: (Ehcache) blocking.get();
+		}
+	}
+
+	/**
+	 * Decorators stored by cache name.
+	 */
+	private final ConcurrentHashMap decorators = new ConcurrentHashMap();
+
+	/**
+	 * Returns the decorator of the given cache for the given model.
+	 *
+	 * @param cache the cache to decorate
+	 * @param model the model specifying the decorator
+	 * @return the decorator, or <code>null</code> if none has been registered
+	 */
+	Ehcache get(Cache cache, EhCacheCachingModel model) {
+		Decorators cacheDecorators = (Decorators) decorators.get(cache.getName());
+		if (cacheDecorators == null || cacheDecorators.cache != cache) {
+			return null;
+		}
+		return cacheDecorators.get(model.getCacheEntryFactory());
+	}
+
+	/**
+	 * Registers the decorator of the given cache for the given model, unless
+	 * another caller has already registered one.
+	 *
+	 * @param cache     the decorated cache
+	 * @param model     the model specifying the decorator
+	 * @param decorator the decorator to register
+	 * @return the registered decorator, to use instead of the given one
+	 */
+	Ehcache register(Cache cache, EhCacheCachingModel model, Ehcache decorator) {
+		return decoratorsOf(cache).putIfAbsent(model.getCacheEntryFactory(),
+				decorator);
+	}
+
+	private Decorators decoratorsOf(Cache cache) {
+		String name = cache.getName();
+		while (true) {
+			Decorators current = (Decorators) decorators.get(name);
+			if (current != null && current.cache == cache) {
+				return current;
+			}
+
+			Decorators newDecorators = new Decorators(cache);
+			if (current == null) {
+				if (decorators.putIfAbsent(name, newDecorators) == null) {
+					return newDecorators;
+				}
+			} else if (decorators.replace(name, current, newDecorators)) {
+				return newDecorators;
+			}
+		}
+	}
+}
@@ -20,7 +20,7 @@ package org.springmodules.cache.provider.ehcache;
 import net.sf.ehcache.constructs.blocking.CacheEntryFactory;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
-import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.provider.AbstractCachingModel;
 import org.springmodules.util.Objects;
 
 /**
@@ -30,7 +30,7 @@ import org.springmodules.util.Objects;
  * @author Omar Irbouh
  * @author Alex Ruiz
  */
-public class EhCacheCachingModel implements CachingModel {
+public class EhCacheCachingModel extends AbstractCachingModel {
 
 	private static final long serialVersionUID = 3762529035888112945L;
 
@@ -129,6 +129,9 @@ public class EhCacheCachingModel implements CachingModel {
 		if (!ObjectUtils.nullSafeEquals(cacheName, cachingModel.cacheName)) {
 			return false;
 		}
+		if (!hasSameOptions(cachingModel)) {
+			return false;
+		}
 
 		return true;
 	}
@@ -140,6 +143,7 @@ public class EhCacheCachingModel implements CachingModel {
 		int multiplier = 31;
 		int hash = 7;
 		hash = multiplier * hash + (Objects.nullSafeHashCode(cacheName));
+		hash = multiplier * hash + optionsHashCode();
 		return hash;
 	}
 
@@ -147,14 +151,13 @@ public class EhCacheCachingModel implements CachingModel {
 	 * @see Object#toString()
 	 */
 	public String toString() {
-		return Objects.identityToString(this)
+		StringBuffer buffer = Objects.identityToString(this)
 				.append("[cacheName=")
 				.append(StringUtils.quote(cacheName))
 				.append(", blocking=")
 				.append(blocking)
 				.append(", cacheEntryFactory=")
-				.append((cacheEntryFactory != null)? cacheEntryFactory.getClass().getName() : null)
-				.append("]")
-				.toString();
+				.append((cacheEntryFactory != null)? cacheEntryFactory.getClass().getName() : null);
+		return appendOptions(buffer).append("]").toString();
 	}
 }
\ No newline at end of file
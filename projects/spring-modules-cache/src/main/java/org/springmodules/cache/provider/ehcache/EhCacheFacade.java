@@ -33,6 +33,7 @@ import org.springmodules.cache.FatalCacheException;
 import org.springmodules.cache.FlushingModel;
 import org.springmodules.cache.provider.AbstractCacheProviderFacade;
 import org.springmodules.cache.provider.CacheAccessException;
+import org.springmodules.cache.provider.CacheKeyEnumerator;
 import org.springmodules.cache.provider.CacheModelValidator;
 import org.springmodules.cache.provider.CacheNotFoundException;
 import org.springmodules.cache.provider.ObjectCannotBeCachedException;
@@ -40,9 +41,13 @@ import org.springmodules.cache.provider.ReflectionCacheModelEditor;
 
 import java.beans.PropertyEditor;
 import java.io.Serializable;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Implementation of
@@ -52,12 +57,40 @@ import java.util.Map;
  * @author Omar Irbouh
  * @author Alex Ruiz
  */
-public final class EhCacheFacade extends AbstractCacheProviderFacade {
+public final class EhCacheFacade extends AbstractCacheProviderFacade
+		implements CacheKeyEnumerator {
 
 	/**
-	 * Map referencing caches looked up from EHCache CacheManager.
+	 * Key of an entry missing from a blocking cache.
 	 */
-	private Map caches = Collections.synchronizedMap(new HashMap());
+	private static final class MissedKey {
+
+		final Ehcache cache;
+
+		final Object key;
+
+		MissedKey(Ehcache newCache, Object newKey) {
+			cache = newCache;
+			key = newKey;
+		}
+
+		public boolean equals(Object obj) {
+			if (this == obj) return true;
+			if (!(obj instanceof MissedKey)) return false;
+			MissedKey other = (MissedKey) obj;
+			return cache == other.cache && key.equals(other.key);
+		}
+
+		public int hashCode() {
+			return 31 * System.identityHashCode(cache) + key.hashCode();
+		}
+	}
+
+	/**
+	 * Decorators of the caches looked up from the EHCache cache manager, shared
+	 * by all callers.
+	 */
+	private final DecoratedCacheRegistry decoratedCaches = new DecoratedCacheRegistry();
 
 	/**
 	 * EHCache cache manager.
@@ -66,6 +99,13 @@ public final class EhCacheFacade extends AbstractCacheProviderFacade {
 
 	private CacheModelValidator cacheModelValidator;
 
+	/**
+	 * Keys of blocking caches locked by the current thread after a miss. A
+	 * blocking cache keeps the lock until a value is put, and any thread can
+	 * release it, so a thread must only release the keys it missed itself.
+	 */
+	private final ThreadLocal missedKeys = new ThreadLocal();
+
 	/**
 	 * Constructor.
 	 */
@@ -105,6 +145,21 @@ public final class EhCacheFacade extends AbstractCacheProviderFacade {
 		return editor;
 	}
 
+	/**
+	 * Returns the keys of the cache specified in the given caching model, without
+	 * checking whether the entries have expired.
+	 *
+	 * @see CacheKeyEnumerator#getKeys(CachingModel)
+	 */
+	public Collection getKeys(CachingModel model) throws CacheException {
+		Cache cache = getCache(((EhCacheCachingModel) model).getCacheName());
+		try {
+			return new ArrayList(cache.getKeys());
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
 	/**
 	 * Sets the EHCache cache manager to use.
 	 *
@@ -125,13 +180,17 @@ public final class EhCacheFacade extends AbstractCacheProviderFacade {
 	protected Ehcache getCache(CachingModel model) throws CacheNotFoundException,
 			CacheAccessException {
 		EhCacheCachingModel ehCacheCachingModel = (EhCacheCachingModel) model;
-		String cacheName = ehCacheCachingModel.getCacheName();
+		Cache cache = getCache(ehCacheCachingModel.getCacheName());
+		if (!isDecorated(ehCacheCachingModel)) {
+			return cache;
+		}
 
-		Ehcache cache = (Cache) caches.get(cacheName);
-		if (cache == null) {
-			cache = decorateCache(getCache(cacheName), ehCacheCachingModel);
+		Ehcache decoratedCache = decoratedCaches.get(cache, ehCacheCachingModel);
+		if (decoratedCache == null) {
+			decoratedCache = decoratedCaches.register(cache, ehCacheCachingModel,
+					decorateCache(cache, ehCacheCachingModel));
 		}
-		return cache;
+		return decoratedCache;
 	}
 
 	/**
@@ -161,6 +220,21 @@ public final class EhCacheFacade extends AbstractCacheProviderFacade {
 		return cache;
 	}
 
+	/**
+	 * Returns the cache used by bulk operations. Blocking caches keep a key
+	 * locked after a miss, and their locks are not reentrant: looking up many
+	 * keys at once could block on a lock held by the caller itself. Bulk
+	 * operations then use the undecorated cache.
+	 *
+	 * @param model the model containing the name of the cache to retrieve
+	 * @return the cache retrieved from the cache manager, decorated if necessary
+	 */
+	private Ehcache getBulkCache(CachingModel model) throws CacheException {
+		EhCacheCachingModel ehCacheCachingModel = (EhCacheCachingModel) model;
+		return isBlockingOnMiss(ehCacheCachingModel) ? getCache(ehCacheCachingModel
+				.getCacheName()) : getCache(model);
+	}
+
 	/**
 	 * Decorate the given Cache, if necessary.
 	 * <p>The default implementation simply returns the given cache object as-is.
@@ -183,6 +257,40 @@ public final class EhCacheFacade extends AbstractCacheProviderFacade {
 		return cache;
 	}
 
+	/**
+	 * Returns the number of entries evicted from the EHCache cache specified in
+	 * the given model, as counted by the statistics of the cache.
+	 *
+	 * @see AbstractCacheProviderFacade#getEvictionCount(CachingModel)
+	 */
+	protected long getEvictionCount(CachingModel model) {
+		try {
+			Cache cache = getCache(((EhCacheCachingModel) model).getCacheName());
+			return cache.getStatistics().getEvictionCount();
+		} catch (Exception exception) {
+			logger.debug("Unable to count the evicted entries", exception);
+		}
+		return -1;
+	}
+
+	/**
+	 * @return <code>true</code> if a miss in the cache for the given model keeps
+	 *         the key locked until a value is put, which is the case of
+	 *         blocking caches which are not self-populating
+	 */
+	private boolean isBlockingOnMiss(EhCacheCachingModel model) {
+		return model.isBlocking() && model.getCacheEntryFactory() == null;
+	}
+
+	/**
+	 * @return <code>true</code> if the given model requires the cache to be
+	 *         decorated
+	 * @see #decorateCache(Cache, EhCacheCachingModel)
+	 */
+	private boolean isDecorated(EhCacheCachingModel model) {
+		return model.getCacheEntryFactory() != null || model.isBlocking();
+	}
+
 	/**
 	 * @return <code>true</code>. EHCache can only store Serializable objects
 	 * @see AbstractCacheProviderFacade#isSerializableCacheElementRequired()
@@ -191,6 +299,79 @@ public final class EhCacheFacade extends AbstractCacheProviderFacade {
 		return true;
 	}
 
+	/**
+	 * Releases the lock kept by blocking caches on the given key after a miss
+	 * of the current thread, so the callers waiting for the key are not blocked
+	 * forever when its value cannot be loaded. The locks held by other threads
+	 * are left alone.
+	 *
+	 * @param key the key of the entry which will not be updated
+	 * @see AbstractCacheProviderFacade#onCancelCacheUpdate(Serializable)
+	 */
+	protected void onCancelCacheUpdate(Serializable key) throws CacheException {
+		Set threadMissedKeys = (Set) missedKeys.get();
+		if (threadMissedKeys == null) {
+			return;
+		}
+		try {
+			for (Iterator i = threadMissedKeys.iterator(); i.hasNext();) {
+				MissedKey missedKey = (MissedKey) i.next();
+				if (missedKey.key.equals(key)) {
+					i.remove();
+					// a null value removes the key and releases its lock
+					missedKey.cache.put(new Element(key, null));
+				}
+			}
+
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+
+		} finally {
+			if (threadMissedKeys.isEmpty()) {
+				missedKeys.set(null);
+			}
+		}
+	}
+
+	/**
+	 * Records that the current thread holds the lock of the given key of a
+	 * blocking cache after a miss.
+	 */
+	private void addMissedKey(MissedKey missedKey) {
+		Set threadMissedKeys = (Set) missedKeys.get();
+		if (threadMissedKeys == null) {
+			threadMissedKeys = new HashSet();
+			missedKeys.set(threadMissedKeys);
+		}
+		threadMissedKeys.add(missedKey);
+	}
+
+	/**
+	 * Returns whether the current thread holds the lock of the given key of a
+	 * blocking cache after a miss.
+	 */
+	private boolean isMissedKey(MissedKey missedKey) {
+		Set threadMissedKeys = (Set) missedKeys.get();
+		return threadMissedKeys != null && threadMissedKeys.contains(missedKey);
+	}
+
+	/**
+	 * Forgets the lock held by the current thread on the given key of a blocking
+	 * cache after a miss.
+	 *
+	 * @return <code>true</code> if the current thread held the lock
+	 */
+	private boolean removeMissedKey(MissedKey missedKey) {
+		Set threadMissedKeys = (Set) missedKeys.get();
+		if (threadMissedKeys == null || !threadMissedKeys.remove(missedKey)) {
+			return false;
+		}
+		if (threadMissedKeys.isEmpty()) {
+			missedKeys.set(null);
+		}
+		return true;
+	}
+
 	/**
 	 * Removes all the entries in the caches specified in the given flushing
 	 * model. The flushing model should be an instance of
@@ -226,6 +407,39 @@ public final class EhCacheFacade extends AbstractCacheProviderFacade {
 		}
 	}
 
+	/**
+	 * Retrieves the objects stored under the given keys from the cache specified
+	 * in the given caching model, looking up the cache only once. The caching
+	 * model should be an instance of <code>{@link EhCacheCachingModel}</code>.
+	 *
+	 * @param keys  the keys of the cache entries
+	 * @param model the caching model
+	 * @return the objects retrieved from the cache, stored by key
+	 * @throws CacheNotFoundException if the cache specified in the given model cannot be found.
+	 * @throws CacheAccessException   wrapping any unexpected exception thrown by the cache.
+	 * @see AbstractCacheProviderFacade#onGetAllFromCache(Collection,CachingModel)
+	 */
+	protected Map onGetAllFromCache(Collection keys, CachingModel model)
+			throws CacheException {
+		Ehcache cache = getBulkCache(model);
+		Map cachedObjects = new HashMap();
+
+		try {
+			for (Iterator i = keys.iterator(); i.hasNext();) {
+				Object key = i.next();
+				Element cacheElement = cache.get(key);
+				if (cacheElement != null) {
+					cachedObjects.put(key, cacheElement.getValue());
+				}
+			}
+
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+
+		return cachedObjects;
+	}
+
 	/**
 	 * Retrieves an object stored under the given key from the cache specified in
 	 * the given caching model. The caching model should be an instance of
@@ -242,11 +456,21 @@ public final class EhCacheFacade extends AbstractCacheProviderFacade {
 			throws CacheException {
 		Ehcache cache = getCache(model);
 		Object cachedObject = null;
+		MissedKey missedKey = null;
+		if (isBlockingOnMiss((EhCacheCachingModel) model)) {
+			missedKey = new MissedKey(cache, key);
+			if (isMissedKey(missedKey)) {
+				// the lock of the key is not reentrant
+				return null;
+			}
+		}
 
 		try {
 			Element cacheElement = cache.get(key);
 			if (cacheElement != null) {
 				cachedObject = cacheElement.getValue();
+			} else if (missedKey != null) {
+				addMissedKey(missedKey);
 			}
 
 		} catch (Exception exception) {
@@ -256,6 +480,33 @@ public final class EhCacheFacade extends AbstractCacheProviderFacade {
 		return cachedObject;
 	}
 
+	/**
+	 * Stores the given objects in the cache specified in the given caching model,
+	 * looking up the cache only once. The caching model should be an instance of
+	 * <code>{@link EhCacheCachingModel}</code>.
+	 *
+	 * @param entries the objects to store in the cache, stored by key
+	 * @param model   the caching model
+	 * @throws CacheNotFoundException if the cache specified in the given model cannot be found.
+	 * @throws CacheAccessException   wrapping any unexpected exception thrown by the cache.
+	 * @see AbstractCacheProviderFacade#onPutAllInCache(Map,CachingModel)
+	 */
+	protected void onPutAllInCache(Map entries, CachingModel model)
+			throws CacheException {
+		Ehcache cache = getBulkCache(model);
+
+		try {
+			for (Iterator i = entries.entrySet().iterator(); i.hasNext();) {
+				Map.Entry entry = (Map.Entry) i.next();
+				cache.put(new Element((Serializable) entry.getKey(),
+						(Serializable) entry.getValue()));
+			}
+
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
 	/**
 	 * Stores the given object under the given key in the cache specified in the
 	 * given caching model. The caching model should be an instance of
@@ -278,6 +529,34 @@ public final class EhCacheFacade extends AbstractCacheProviderFacade {
 
 		try {
 			cache.put(newCacheElement);
+			if (isBlockingOnMiss((EhCacheCachingModel) model)) {
+				removeMissedKey(new MissedKey(cache, key));
+			}
+
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
+	/**
+	 * Removes the objects stored under the given keys from the cache specified
+	 * in the given caching model, looking up the cache only once. The caching
+	 * model should be an instance of <code>{@link EhCacheCachingModel}</code>.
+	 *
+	 * @param keys  the keys of the cache entries
+	 * @param model the caching model
+	 * @throws CacheNotFoundException if the cache specified in the given model cannot be found.
+	 * @throws CacheAccessException   wrapping any unexpected exception thrown by the cache.
+	 * @see AbstractCacheProviderFacade#onRemoveAllFromCache(Collection,CachingModel)
+	 */
+	protected void onRemoveAllFromCache(Collection keys, CachingModel model)
+			throws CacheException {
+		Ehcache cache = getBulkCache(model);
+
+		try {
+			for (Iterator i = keys.iterator(); i.hasNext();) {
+				cache.remove(i.next());
+			}
 
 		} catch (Exception exception) {
 			throw new CacheAccessException(exception);
@@ -301,7 +580,13 @@ public final class EhCacheFacade extends AbstractCacheProviderFacade {
 		Ehcache cache = getCache(model);
 
 		try {
-			cache.remove(key);
+			if (isBlockingOnMiss((EhCacheCachingModel) model)
+					&& removeMissedKey(new MissedKey(cache, key))) {
+				// releases the lock kept since the miss
+				cache.put(new Element(key, null));
+			} else {
+				cache.remove(key);
+			}
 
 		} catch (Exception exception) {
 			throw new CacheAccessException(exception);
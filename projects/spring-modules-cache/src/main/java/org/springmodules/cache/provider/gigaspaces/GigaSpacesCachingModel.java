@@ -17,7 +17,7 @@ package org.springmodules.cache.provider.gigaspaces;
 
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
-import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.provider.AbstractCachingModel;
 import org.springmodules.util.Objects;
 
 /**
@@ -28,7 +28,7 @@ import org.springmodules.util.Objects;
  * @author Omar Irbouh
  * @author Lior Ben Yizhak
  */
-public class GigaSpacesCachingModel implements CachingModel {
+public class GigaSpacesCachingModel extends AbstractCachingModel {
 
 	private static final long serialVersionUID = 3762529035888112945L;
 
@@ -76,6 +76,9 @@ public class GigaSpacesCachingModel implements CachingModel {
 		if (!ObjectUtils.nullSafeEquals(waitForResponse, cachingModel.waitForResponse)) {
 			return false;
 		}
+		if (!hasSameOptions(cachingModel)) {
+			return false;
+		}
 
 		return true;
 	}
@@ -110,6 +113,7 @@ public class GigaSpacesCachingModel implements CachingModel {
 		hash = multiplier * hash + (Objects.nullSafeHashCode(cacheName));
 		hash = multiplier * hash + (Objects.nullSafeHashCode(timeToLive));
 		hash = multiplier * hash + (Objects.nullSafeHashCode(waitForResponse));
+		hash = multiplier * hash + optionsHashCode();
 		return hash;
 	}
 
@@ -163,15 +167,14 @@ public class GigaSpacesCachingModel implements CachingModel {
 	 * @see Object#toString()
 	 */
 	public String toString() {
-		return Objects.identityToString(this)
+		StringBuffer buffer = Objects.identityToString(this)
 				.append("[cacheName=")
 				.append(StringUtils.quote(cacheName))
 				.append(", waitForResponse=")
 				.append(waitForResponse)
 				.append(", timeToLive=")
-				.append(timeToLive)
-				.append("]")
-				.toString();
+				.append(timeToLive);
+		return appendOptions(buffer).append("]").toString();
 	}
 
 }
\ No newline at end of file
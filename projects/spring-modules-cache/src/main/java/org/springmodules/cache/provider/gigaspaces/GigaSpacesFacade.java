@@ -32,7 +32,9 @@ import org.springmodules.cache.provider.ReflectionCacheModelEditor;
 
 import java.beans.PropertyEditor;
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 /**
@@ -173,6 +175,44 @@ public final class GigaSpacesFacade extends AbstractCacheProviderFacade {
 		}
 	}
 
+	/**
+	 * Retrieves the objects stored under the given keys from the cache specified
+	 * in the given caching model, looking up the cache only once. The caching
+	 * model should be an instance of <code>{@link GigaSpacesCachingModel}</code>.
+	 *
+	 * @param keys  the keys of the cache entries
+	 * @param model the caching model
+	 * @return the objects retrieved from the cache, stored by key
+	 * @throws CacheNotFoundException if the cache specified in the given model cannot be found.
+	 * @throws CacheAccessException   wrapping any unexpected exception thrown by the cache.
+	 * @see AbstractCacheProviderFacade#onGetAllFromCache(Collection,CachingModel)
+	 */
+	protected Map onGetAllFromCache(Collection keys, CachingModel model)
+			throws CacheException {
+		IMap cache = getCache(model);
+		GigaSpacesCachingModel gigaSpacesCachingModel = (GigaSpacesCachingModel) model;
+		Map cachedObjects = new HashMap();
+
+		try {
+			Long waitForResponse = gigaSpacesCachingModel.getWaitForResponse();
+			for (Iterator i = keys.iterator(); i.hasNext();) {
+				Object key = i.next();
+				Object cachedObject;
+				if (waitForResponse != null) {
+					cachedObject = cache.get(key, waitForResponse.longValue());
+				} else {
+					cachedObject = cache.get(key);
+				}
+				if (cachedObject != null) {
+					cachedObjects.put(key, cachedObject);
+				}
+			}
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+		return cachedObjects;
+	}
+
 	/**
 	 * Retrieves an object stored under the given key from the cache specified in
 	 * the given caching model. The caching model should be an instance of
@@ -235,6 +275,37 @@ public final class GigaSpacesFacade extends AbstractCacheProviderFacade {
 		}
 	}
 
+	/**
+	 * Stores the given objects in the cache specified in the given caching
+	 * model. The objects are written in a single batch unless the model
+	 * specifies a time to live. The caching model should be an instance of
+	 * <code>{@link GigaSpacesCachingModel}</code>.
+	 *
+	 * @param entries the objects to store in the cache, stored by key
+	 * @param model   the caching model
+	 * @throws CacheNotFoundException if the cache specified in the given model cannot be found.
+	 * @throws CacheAccessException   wrapping any unexpected exception thrown by the cache.
+	 * @see AbstractCacheProviderFacade#onPutAllInCache(Map,CachingModel)
+	 */
+	protected void onPutAllInCache(Map entries, CachingModel model)
+			throws CacheException {
+		try {
+			GigaSpacesCachingModel gigaSpacesCachingModel = (GigaSpacesCachingModel) model;
+			IMap cache = getCache(gigaSpacesCachingModel);
+			Long timeToLive = gigaSpacesCachingModel.getTimeToLive();
+			if (timeToLive != null) {
+				for (Iterator i = entries.entrySet().iterator(); i.hasNext();) {
+					Map.Entry entry = (Map.Entry) i.next();
+					cache.put(entry.getKey(), entry.getValue(), timeToLive.longValue());
+				}
+			} else {
+				cache.putAll(entries);
+			}
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
 	/**
 	 * Removes the object stored under the given key from the cache specified in
 	 * the given caching model. The caching model should be an instance of
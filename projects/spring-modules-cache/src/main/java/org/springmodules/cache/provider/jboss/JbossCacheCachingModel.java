@@ -20,7 +20,7 @@ package org.springmodules.cache.provider.jboss;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
-import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.provider.AbstractCachingModel;
 import org.springmodules.util.Objects;
 
 /**
@@ -31,7 +31,7 @@ import org.springmodules.util.Objects;
  * 
  * @author Alex Ruiz
  */
-public class JbossCacheCachingModel implements CachingModel {
+public class JbossCacheCachingModel extends AbstractCachingModel {
 
   private static final long serialVersionUID = -9019322549512783005L;
 
@@ -71,6 +71,9 @@ public class JbossCacheCachingModel implements CachingModel {
     if (!ObjectUtils.nullSafeEquals(node, cachingModel.node)) {
       return false;
     }
+    if (!hasSameOptions(cachingModel)) {
+      return false;
+    }
 
     return true;
   }
@@ -90,6 +93,7 @@ public class JbossCacheCachingModel implements CachingModel {
     int hash = 17;
 
     hash = multiplier * hash + Objects.nullSafeHashCode(node);
+    hash = multiplier * hash + optionsHashCode();
 
     return hash;
   }
@@ -109,7 +113,8 @@ public class JbossCacheCachingModel implements CachingModel {
    */
   public String toString() {
     StringBuffer buffer = Objects.identityToString(this);
-    buffer.append("[nodeFqn=" + StringUtils.quote(node) + "]");
+    buffer.append("[nodeFqn=" + StringUtils.quote(node));
+    appendOptions(buffer).append("]");
 
     return buffer.toString();
   }
@@ -30,7 +30,9 @@ import org.springmodules.cache.provider.ReflectionCacheModelEditor;
 
 import java.beans.PropertyEditor;
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 /**
@@ -134,6 +136,39 @@ public final class JbossCacheFacade extends AbstractCacheProviderFacade {
 		}
 	}
 
+	/**
+	 * Retrieves the objects stored under the given keys from the node specified
+	 * in the given caching model. Each key is read through the cache, so that
+	 * locking, cache loaders and eviction apply as for a single read. The
+	 * caching model should be an instance of
+	 * <code>{@link JbossCacheCachingModel}</code>.
+	 *
+	 * @param keys  the keys of the cache entries
+	 * @param model the caching model
+	 * @return the objects retrieved from the cache, stored by key
+	 * @throws CacheAccessException wrapping any unexpected exception thrown by the cache.
+	 * @see AbstractCacheProviderFacade#onGetAllFromCache(Collection,CachingModel)
+	 */
+	protected Map onGetAllFromCache(Collection keys, CachingModel model) {
+		JbossCacheCachingModel cachingModel = (JbossCacheCachingModel) model;
+
+		Map cachedObjects = new HashMap();
+
+		try {
+			String nodeFqn = cachingModel.getNode();
+			for (Iterator i = keys.iterator(); i.hasNext();) {
+				Object key = i.next();
+				Object cachedObject = cacheManager.get(nodeFqn, key);
+				if (cachedObject != null) {
+					cachedObjects.put(key, cachedObject);
+				}
+			}
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+		return cachedObjects;
+	}
+
 	/**
 	 * Retrieves an object stored under the given key from the node specified in
 	 * the given caching model. The caching model should be an instance of
@@ -158,6 +193,26 @@ public final class JbossCacheFacade extends AbstractCacheProviderFacade {
 		return cachedObject;
 	}
 
+	/**
+	 * Stores the given objects in the node specified in the given caching model
+	 * with a single write. The caching model should be an instance of
+	 * <code>{@link JbossCacheCachingModel}</code>.
+	 *
+	 * @param entries the objects to store in the cache, stored by key
+	 * @param model   the caching model
+	 * @throws CacheAccessException wrapping any unexpected exception thrown by the cache.
+	 * @see AbstractCacheProviderFacade#onPutAllInCache(Map,CachingModel)
+	 */
+	protected void onPutAllInCache(Map entries, CachingModel model) {
+		JbossCacheCachingModel cachingModel = (JbossCacheCachingModel) model;
+
+		try {
+			cacheManager.put(cachingModel.getNode(), entries);
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
 	/**
 	 * Stores the given object under the given key in the node specified in the
 	 * given caching model. The caching model should be an instance of
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.jboss;
+
+import java.util.Iterator;
+
+import org.jboss.cache.AbstractTreeCacheListener;
+import org.jboss.cache.Fqn;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.provider.near.NearCacheFacade;
+
+/**
+ * <p>
+ * Listener of JBoss Cache that removes from a
+ * <code>{@link NearCacheFacade}</code> the entries of the nodes modified or
+ * removed by other members of the cluster. Since JBoss Cache does not report
+ * the modified keys, all the entries of the caching models using a modified
+ * node are removed.
+ * </p>
+ * <p>
+ * Local modifications are ignored: they are expected to be made through the
+ * near cache, which keeps itself up to date. The listener has to be added to
+ * the <code>TreeCache</code> used by the remote
+ * <code>{@link JbossCacheFacade}</code>:
+ * </p>
+ *
+ * <pre>
+ * treeCache.addTreeCacheListener(new JbossCacheNearCacheInvalidator(nearCache));
+ * </pre>
+ *
+ * @author Alex Ruiz
+ */
+public class JbossCacheNearCacheInvalidator extends AbstractTreeCacheListener {
+
+	private final NearCacheFacade nearCache;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param newNearCache the near cache to keep up to date
+	 */
+	public JbossCacheNearCacheInvalidator(NearCacheFacade newNearCache) {
+		super();
+		nearCache = newNearCache;
+	}
+
+	public void nodeModify(Fqn fqn, boolean pre, boolean isLocal) {
+		if (!pre && !isLocal) {
+			invalidate(fqn, false);
+		}
+	}
+
+	public void nodeRemove(Fqn fqn, boolean pre, boolean isLocal) {
+		if (!pre && !isLocal) {
+			invalidate(fqn, true);
+		}
+	}
+
+	/**
+	 * Removes from the near cache the entries of the caching models using the
+	 * given node, and its children if <code>children</code> is
+	 * <code>true</code>.
+	 */
+	private void invalidate(Fqn fqn, boolean children) {
+		for (Iterator i = nearCache.getCachedModels().iterator(); i.hasNext();) {
+			CachingModel model = (CachingModel) i.next();
+			if (!(model instanceof JbossCacheCachingModel)) {
+				continue;
+			}
+			Fqn node = Fqn.fromString(((JbossCacheCachingModel) model).getNode());
+			if (node.equals(fqn) || (children && node.isChildOf(fqn))) {
+				nearCache.invalidate(model);
+			}
+		}
+	}
+}
@@ -21,7 +21,7 @@ package org.springmodules.cache.provider.jcs;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
-import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.provider.AbstractCachingModel;
 import org.springmodules.util.Objects;
 
 /**
@@ -30,7 +30,7 @@ import org.springmodules.util.Objects;
  * 
  * @author Alex Ruiz
  */
-public class JcsCachingModel implements CachingModel {
+public class JcsCachingModel extends AbstractCachingModel {
 
   private static final long serialVersionUID = 3257282547976057398L;
 
@@ -89,6 +89,9 @@ public class JcsCachingModel implements CachingModel {
     if (!ObjectUtils.nullSafeEquals(group, cachingModel.group)) {
       return false;
     }
+    if (!hasSameOptions(cachingModel)) {
+      return false;
+    }
 
     return true;
   }
@@ -117,6 +120,7 @@ public class JcsCachingModel implements CachingModel {
     int hash = 7;
     hash = multiplier * hash + Objects.nullSafeHashCode(cacheName);
     hash = multiplier * hash + Objects.nullSafeHashCode(group);
+    hash = multiplier * hash + optionsHashCode();
     return hash;
   }
 
@@ -147,7 +151,8 @@ public class JcsCachingModel implements CachingModel {
   public String toString() {
     StringBuffer buffer = Objects.identityToString(this);
     buffer.append("[cacheName=" + StringUtils.quote(cacheName) + ", ");
-    buffer.append("group=" + StringUtils.quote(group) + "]");
+    buffer.append("group=" + StringUtils.quote(group));
+    appendOptions(buffer).append("]");
 
     return buffer.toString();
   }
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.memory;
+
+import java.beans.PropertyEditor;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springframework.util.ObjectUtils;
+import org.springmodules.cache.CacheException;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.FatalCacheException;
+import org.springmodules.cache.FlushingModel;
+import org.springmodules.cache.impl.Cache;
+import org.springmodules.cache.impl.CacheManager;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.provider.AbstractCacheProviderFacade;
+import org.springmodules.cache.provider.CacheAccessException;
+import org.springmodules.cache.provider.CacheKeyEnumerator;
+import org.springmodules.cache.provider.CacheModelValidator;
+import org.springmodules.cache.provider.CacheNotFoundException;
+import org.springmodules.cache.provider.ReflectionCacheModelEditor;
+
+/**
+ * Implementation of
+ * <code>{@link org.springmodules.cache.provider.CacheProviderFacade}</code>
+ * that uses the caches of a <code>{@link CacheManager}</code> (usually a
+ * <code>{@link org.springmodules.cache.impl.MemoryCacheManager}</code>) as the
+ * underlying cache implementation. Cached objects are stored by reference and
+ * don't need to be serializable.
+ *
+ * @author Alex Ruiz
+ */
+public final class MemoryCacheFacade extends AbstractCacheProviderFacade
+		implements CacheKeyEnumerator {
+
+	private CacheManager cacheManager;
+
+	private CacheModelValidator cacheModelValidator;
+
+	/**
+	 * Constructor.
+	 */
+	public MemoryCacheFacade() {
+		cacheModelValidator = new MemoryModelValidator();
+	}
+
+	/**
+	 * Returns the validator of cache models. It is always an instance of
+	 * <code>{@link MemoryModelValidator}</code>.
+	 *
+	 * @return the validator of cache models
+	 */
+	public CacheModelValidator modelValidator() {
+		return cacheModelValidator;
+	}
+
+	/**
+	 * @see org.springmodules.cache.provider.CacheProviderFacade#getCachingModelEditor()
+	 */
+	public PropertyEditor getCachingModelEditor() {
+		ReflectionCacheModelEditor editor = new ReflectionCacheModelEditor();
+		editor.setCacheModelClass(MemoryCachingModel.class);
+		return editor;
+	}
+
+	/**
+	 * @see org.springmodules.cache.provider.CacheProviderFacade#getFlushingModelEditor()
+	 */
+	public PropertyEditor getFlushingModelEditor() {
+		Map propertyEditors = new HashMap();
+		propertyEditors.put("cacheNames", new StringArrayPropertyEditor());
+
+		ReflectionCacheModelEditor editor = new ReflectionCacheModelEditor();
+		editor.setCacheModelClass(MemoryFlushingModel.class);
+		editor.setCacheModelPropertyEditors(propertyEditors);
+		return editor;
+	}
+
+	/**
+	 * @see CacheKeyEnumerator#getKeys(CachingModel)
+	 */
+	public Collection getKeys(CachingModel model) throws CacheException {
+		Cache cache = getCache(((MemoryCachingModel) model).getCacheName());
+		try {
+			return cache.keys();
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
+	/**
+	 * Sets the cache manager to use.
+	 *
+	 * @param newCacheManager the new cache manager
+	 */
+	public void setCacheManager(CacheManager newCacheManager) {
+		cacheManager = newCacheManager;
+	}
+
+	/**
+	 * Returns a cache from the cache manager.
+	 *
+	 * @param name the name of the cache
+	 * @return the cache retrieved from the cache manager
+	 * @throws CacheNotFoundException if the cache does not exist
+	 * @throws CacheAccessException   wrapping any unexpected exception thrown by the cache manager
+	 */
+	protected Cache getCache(String name) throws CacheNotFoundException,
+			CacheAccessException {
+		Cache cache = null;
+
+		try {
+			cache = cacheManager.getCache(name);
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+
+		if (cache == null) {
+			throw new CacheNotFoundException(name);
+		}
+
+		return cache;
+	}
+
+	/**
+	 * Returns the number of entries evicted from the cache specified in the
+	 * given model, if it is a <code>{@link MemoryCache}</code>.
+	 *
+	 * @see AbstractCacheProviderFacade#getEvictionCount(CachingModel)
+	 */
+	protected long getEvictionCount(CachingModel model) {
+		try {
+			Cache cache = getCache(((MemoryCachingModel) model).getCacheName());
+			if (cache instanceof MemoryCache) {
+				return ((MemoryCache) cache).getEvictionCount();
+			}
+		} catch (CacheException exception) {
+			logger.debug("Unable to count the evicted entries", exception);
+		}
+		return -1;
+	}
+
+	/**
+	 * @return <code>false</code>. Objects are stored by reference
+	 * @see AbstractCacheProviderFacade#isSerializableCacheElementRequired()
+	 */
+	protected boolean isSerializableCacheElementRequired() {
+		return false;
+	}
+
+	/**
+	 * Removes all the entries in the caches specified in the given flushing
+	 * model. The flushing model should be an instance of
+	 * <code>{@link MemoryFlushingModel}</code>.
+	 *
+	 * @param model the flushing model.
+	 * @throws CacheNotFoundException if the cache specified in the given model cannot be found.
+	 * @throws CacheAccessException   wrapping any unexpected exception thrown by the cache.
+	 * @see AbstractCacheProviderFacade#onFlushCache(FlushingModel)
+	 */
+	protected void onFlushCache(FlushingModel model) throws CacheException {
+		MemoryFlushingModel flushingModel = (MemoryFlushingModel) model;
+		String[] cacheNames = flushingModel.getCacheNames();
+
+		if (!ObjectUtils.isEmpty(cacheNames)) {
+			int nameCount = cacheNames.length;
+
+			for (int i = 0; i < nameCount; i++) {
+				Cache cache = getCache(cacheNames[i]);
+				try {
+					cache.clear();
+				} catch (Exception exception) {
+					throw new CacheAccessException(exception);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Retrieves an object stored under the given key from the cache specified in
+	 * the given caching model. The caching model should be an instance of
+	 * <code>{@link MemoryCachingModel}</code>.
+	 *
+	 * @param key   the key of the cache entry
+	 * @param model the caching model
+	 * @return the object retrieved from the cache. Can be <code>null</code>.
+	 * @throws CacheNotFoundException if the cache specified in the given model cannot be found.
+	 * @throws CacheAccessException   wrapping any unexpected exception thrown by the cache.
+	 * @see AbstractCacheProviderFacade#onGetFromCache(Serializable,CachingModel)
+	 */
+	protected Object onGetFromCache(Serializable key, CachingModel model)
+			throws CacheException {
+		Cache cache = getCache(((MemoryCachingModel) model).getCacheName());
+
+		try {
+			return cache.get(key);
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
+	/**
+	 * Stores the given object under the given key in the cache specified in the
+	 * given caching model. The caching model should be an instance of
+	 * <code>{@link MemoryCachingModel}</code>.
+	 *
+	 * @param key   the key of the cache entry
+	 * @param model the caching model
+	 * @param obj   the object to store in the cache
+	 * @throws CacheNotFoundException if the cache specified in the given model cannot be found.
+	 * @throws CacheAccessException   wrapping any unexpected exception thrown by the cache.
+	 * @see AbstractCacheProviderFacade#onPutInCache(Serializable,CachingModel,Object)
+	 */
+	protected void onPutInCache(Serializable key, CachingModel model, Object obj)
+			throws CacheException {
+		MemoryCachingModel cachingModel = (MemoryCachingModel) model;
+		Cache cache = getCache(cachingModel.getCacheName());
+		long timeToLive = cachingModel.getTimeToLive();
+
+		try {
+			if (timeToLive == 0) {
+				cache.put(key, obj);
+			} else {
+				cache.put(key, obj, timeToLive);
+			}
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
+	/**
+	 * Removes the object stored under the given key from the cache specified in
+	 * the given caching model. The caching model should be an instance of
+	 * <code>{@link MemoryCachingModel}</code>.
+	 *
+	 * @param key   the key of the cache entry
+	 * @param model the caching model
+	 * @throws CacheNotFoundException if the cache specified in the given model cannot be found.
+	 * @throws CacheAccessException   wrapping any unexpected exception thrown by the cache.
+	 * @see AbstractCacheProviderFacade#onRemoveFromCache(Serializable,CachingModel)
+	 */
+	protected void onRemoveFromCache(Serializable key, CachingModel model)
+			throws CacheException {
+		Cache cache = getCache(((MemoryCachingModel) model).getCacheName());
+
+		try {
+			cache.remove(key);
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
+	/**
+	 * @throws FatalCacheException if the cache manager is <code>null</code>.
+	 * @see AbstractCacheProviderFacade#validateCacheManager()
+	 */
+	protected void validateCacheManager() throws FatalCacheException {
+		assertCacheManagerIsNotNull(cacheManager);
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.memory;
+
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+import org.springmodules.cache.provider.AbstractCachingModel;
+import org.springmodules.util.Objects;
+
+/**
+ * Configuration options needed to store, retrieve and remove objects from a
+ * <code>{@link org.springmodules.cache.impl.MemoryCache}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class MemoryCachingModel extends AbstractCachingModel {
+
+	private static final long serialVersionUID = -4203625727581735129L;
+
+	private String cacheName;
+
+	private boolean offHeap;
+
+	private long timeToLive;
+
+	/**
+	 * Constructor.
+	 */
+	public MemoryCachingModel() {
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param cacheName the name of the cache to use
+	 */
+	public MemoryCachingModel(String cacheName) {
+		setCacheName(cacheName);
+	}
+
+	/**
+	 * Sets the name of the cache to use.
+	 *
+	 * @param newCacheName the new name of the cache
+	 */
+	public final void setCacheName(String newCacheName) {
+		cacheName = newCacheName;
+	}
+
+	/**
+	 * @return the name of the cache to use
+	 */
+	public final String getCacheName() {
+		return cacheName;
+	}
+
+	/**
+	 * Sets the flag that indicates if the entries stored with this model should
+	 * be kept out of the Java heap. Only honored by
+	 * <code>{@link OffHeapCacheFacade}</code>.
+	 *
+	 * @param newOffHeap the new value for the flag
+	 */
+	public final void setOffHeap(boolean newOffHeap) {
+		offHeap = newOffHeap;
+	}
+
+	/**
+	 * @return <code>true</code> if the entries stored with this model should be
+	 *         kept out of the Java heap
+	 */
+	public final boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * Sets the number of milliseconds until the entries stored with this model
+	 * expire. Zero (the default) means that the default time to live of the
+	 * cache is used, <code>-1</code> means that the entries never expire.
+	 *
+	 * @param newTimeToLive the new time to live
+	 */
+	public final void setTimeToLive(long newTimeToLive) {
+		timeToLive = newTimeToLive;
+	}
+
+	/**
+	 * @return the number of milliseconds until the entries stored with this
+	 *         model expire
+	 */
+	public final long getTimeToLive() {
+		return timeToLive;
+	}
+
+	/**
+	 * @see Object#equals(Object)
+	 */
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof MemoryCachingModel)) {
+			return false;
+		}
+
+		MemoryCachingModel cachingModel = (MemoryCachingModel) obj;
+
+		if (!ObjectUtils.nullSafeEquals(cacheName, cachingModel.cacheName)) {
+			return false;
+		}
+		if (offHeap != cachingModel.offHeap) {
+			return false;
+		}
+		if (timeToLive != cachingModel.timeToLive) {
+			return false;
+		}
+		if (!hasSameOptions(cachingModel)) {
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * @see Object#hashCode()
+	 */
+	public int hashCode() {
+		int multiplier = 31;
+		int hash = 7;
+		hash = multiplier * hash + (Objects.nullSafeHashCode(cacheName));
+		hash = multiplier * hash + (Objects.hashCode(offHeap));
+		hash = multiplier * hash + (int) (timeToLive ^ (timeToLive >>> 32));
+		hash = multiplier * hash + optionsHashCode();
+		return hash;
+	}
+
+	/**
+	 * @see Object#toString()
+	 */
+	public String toString() {
+		StringBuffer buffer = Objects.identityToString(this)
+				.append("[cacheName=")
+				.append(StringUtils.quote(cacheName));
+		// only printed when set, keeping the names of existing models unchanged
+		if (offHeap) {
+			buffer.append(", offHeap=true");
+		}
+		buffer.append(", timeToLive=").append(timeToLive);
+		return appendOptions(buffer).append("]").toString();
+	}
+}
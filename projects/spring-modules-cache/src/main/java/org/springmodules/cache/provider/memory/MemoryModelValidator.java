@@ -0,0 +1,77 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.memory;
+
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+import org.springmodules.cache.provider.AbstractCacheModelValidator;
+import org.springmodules.cache.provider.InvalidCacheModelException;
+
+/**
+ * Validates the property values of the caching and flushing models used by
+ * <code>{@link MemoryCacheFacade}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public final class MemoryModelValidator extends AbstractCacheModelValidator {
+
+	/**
+	 * @see AbstractCacheModelValidator#getCachingModelTargetClass()
+	 */
+	protected Class getCachingModelTargetClass() {
+		return MemoryCachingModel.class;
+	}
+
+	/**
+	 * @see AbstractCacheModelValidator#getFlushingModelTargetClass()
+	 */
+	protected Class getFlushingModelTargetClass() {
+		return MemoryFlushingModel.class;
+	}
+
+	/**
+	 * @throws InvalidCacheModelException if the given model does not specify a cache or its time to
+	 *                                    live is smaller than <code>-1</code>.
+	 * @see AbstractCacheModelValidator#validateCachingModelProperties(Object)
+	 */
+	protected void validateCachingModelProperties(Object cachingModel)
+			throws InvalidCacheModelException {
+		MemoryCachingModel model = (MemoryCachingModel) cachingModel;
+		if (!StringUtils.hasText(model.getCacheName())) {
+			throw new InvalidCacheModelException("Cache name should not be empty");
+		}
+		if (model.getTimeToLive() < -1) {
+			throw new InvalidCacheModelException(
+					"Time to live should be -1, 0 or a positive number");
+		}
+	}
+
+	/**
+	 * @throws InvalidCacheModelException if the given model does not specify at least one cache.
+	 * @see AbstractCacheModelValidator#validateFlushingModelProperties(Object)
+	 */
+	protected void validateFlushingModelProperties(Object flushingModel)
+			throws InvalidCacheModelException {
+		MemoryFlushingModel model = (MemoryFlushingModel) flushingModel;
+		String[] cacheNames = model.getCacheNames();
+
+		if (ObjectUtils.isEmpty(cacheNames)) {
+			throw new InvalidCacheModelException(
+					"There should be at least one cache name");
+		}
+	}
+}
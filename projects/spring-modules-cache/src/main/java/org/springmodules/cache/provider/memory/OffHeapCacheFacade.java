@@ -0,0 +1,363 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.memory;
+
+import java.beans.PropertyEditor;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springframework.util.ObjectUtils;
+import org.springmodules.cache.CacheException;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.FatalCacheException;
+import org.springmodules.cache.FlushingModel;
+import org.springmodules.cache.impl.Cache;
+import org.springmodules.cache.impl.CacheManager;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryUsage;
+import org.springmodules.cache.impl.OffHeapCache;
+import org.springmodules.cache.provider.AbstractCacheProviderFacade;
+import org.springmodules.cache.provider.CacheAccessException;
+import org.springmodules.cache.provider.CacheKeyEnumerator;
+import org.springmodules.cache.provider.CacheModelValidator;
+import org.springmodules.cache.provider.CacheNotFoundException;
+import org.springmodules.cache.provider.ReflectionCacheModelEditor;
+
+/**
+ * <p>
+ * Implementation of
+ * <code>{@link org.springmodules.cache.provider.CacheProviderFacade}</code>
+ * that stores the entries of each caching model either on the heap, in the
+ * caches of a <code>{@link CacheManager}</code>, or out of the heap, in
+ * <code>{@link OffHeapCache}</code>s, depending on the
+ * <code>offHeap</code> flag of the model. Large values that are rarely
+ * modified, like reports or long lists, can then be kept out of the heap
+ * without moving the other entries.
+ * </p>
+ * <p>
+ * Off-heap caches are created on first use with the maximum number of bytes
+ * and the block size of this facade, unless registered beforehand. Flushing
+ * models clear both the on-heap and the off-heap caches with the given names.
+ * </p>
+ *
+ * @see MemoryCachingModel#setOffHeap(boolean)
+ *
+ * @author Alex Ruiz
+ */
+public final class OffHeapCacheFacade extends AbstractCacheProviderFacade
+		implements CacheKeyEnumerator {
+
+	/**
+	 * Default maximum number of bytes of off-heap memory used by each cache.
+	 */
+	public static final long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+
+	private int blockSize = OffHeapCache.DEFAULT_BLOCK_SIZE;
+
+	private CacheManager cacheManager;
+
+	private final CacheModelValidator cacheModelValidator = new MemoryModelValidator();
+
+	private long maxBytes = DEFAULT_MAX_BYTES;
+
+	/**
+	 * Off-heap caches stored by name.
+	 */
+	private final ConcurrentHashMap offHeapCaches = new ConcurrentHashMap();
+
+	/**
+	 * @see org.springmodules.cache.provider.CacheProviderFacade#getCachingModelEditor()
+	 */
+	public PropertyEditor getCachingModelEditor() {
+		ReflectionCacheModelEditor editor = new ReflectionCacheModelEditor();
+		editor.setCacheModelClass(MemoryCachingModel.class);
+		return editor;
+	}
+
+	/**
+	 * @see org.springmodules.cache.provider.CacheProviderFacade#getFlushingModelEditor()
+	 */
+	public PropertyEditor getFlushingModelEditor() {
+		Map propertyEditors = new HashMap();
+		propertyEditors.put("cacheNames", new StringArrayPropertyEditor());
+
+		ReflectionCacheModelEditor editor = new ReflectionCacheModelEditor();
+		editor.setCacheModelClass(MemoryFlushingModel.class);
+		editor.setCacheModelPropertyEditors(propertyEditors);
+		return editor;
+	}
+
+	/**
+	 * @see CacheKeyEnumerator#getKeys(CachingModel)
+	 */
+	public Collection getKeys(CachingModel model) throws CacheException {
+		Cache cache = getCache((MemoryCachingModel) model);
+		try {
+			return cache.keys();
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
+	/**
+	 * @return the total memory usage of the off-heap caches
+	 */
+	public MemoryUsage getMemoryUsage() {
+		List usages = new ArrayList();
+		for (Iterator i = offHeapCaches.values().iterator(); i.hasNext();) {
+			usages.add(((OffHeapCache) i.next()).getMemoryUsage());
+		}
+		return MemoryUsage.sum((MemoryUsage[]) usages
+				.toArray(new MemoryUsage[usages.size()]));
+	}
+
+	/**
+	 * @param cacheName the name of an off-heap cache
+	 * @return the memory usage of the cache, or <code>null</code> if there is
+	 *         no off-heap cache with the given name
+	 */
+	public MemoryUsage getMemoryUsage(String cacheName) {
+		OffHeapCache cache = (OffHeapCache) offHeapCaches.get(cacheName);
+		return (cache != null) ? cache.getMemoryUsage() : null;
+	}
+
+	/**
+	 * Returns the validator of cache models. It is always an instance of
+	 * <code>{@link MemoryModelValidator}</code>.
+	 *
+	 * @return the validator of cache models
+	 */
+	public CacheModelValidator modelValidator() {
+		return cacheModelValidator;
+	}
+
+	/**
+	 * Sets the number of bytes of the blocks of the off-heap caches created by
+	 * this facade.
+	 *
+	 * @param newBlockSize the new number of bytes
+	 */
+	public void setBlockSize(int newBlockSize) {
+		blockSize = newBlockSize;
+	}
+
+	/**
+	 * Sets the cache manager of the caches used by the models storing their
+	 * entries on the heap.
+	 *
+	 * @param newCacheManager the new cache manager
+	 */
+	public void setCacheManager(CacheManager newCacheManager) {
+		cacheManager = newCacheManager;
+	}
+
+	/**
+	 * Sets the maximum number of bytes of off-heap memory used by each of the
+	 * off-heap caches created by this facade.
+	 *
+	 * @param newMaxBytes the new maximum number of bytes
+	 */
+	public void setMaxBytes(long newMaxBytes) {
+		maxBytes = newMaxBytes;
+	}
+
+	/**
+	 * Registers off-heap caches configured beforehand.
+	 *
+	 * @param caches the caches, stored by name
+	 */
+	public void setOffHeapCaches(Map caches) {
+		offHeapCaches.putAll(caches);
+	}
+
+	/**
+	 * Returns the cache used by the given model.
+	 *
+	 * @throws CacheNotFoundException if the model stores its entries on the heap
+	 *                                and the cache manager does not have the
+	 *                                cache
+	 * @throws CacheAccessException   wrapping any unexpected exception thrown by
+	 *                                the cache manager
+	 */
+	protected Cache getCache(MemoryCachingModel model)
+			throws CacheNotFoundException, CacheAccessException {
+		String name = model.getCacheName();
+		return model.isOffHeap() ? getOffHeapCache(name) : getHeapCache(name);
+	}
+
+	/**
+	 * Returns the number of entries evicted from the cache used by the given
+	 * model.
+	 *
+	 * @see AbstractCacheProviderFacade#getEvictionCount(CachingModel)
+	 */
+	protected long getEvictionCount(CachingModel model) {
+		try {
+			Cache cache = getCache((MemoryCachingModel) model);
+			if (cache instanceof OffHeapCache) {
+				return ((OffHeapCache) cache).getMemoryUsage().getEvictionCount();
+			}
+			if (cache instanceof MemoryCache) {
+				return ((MemoryCache) cache).getEvictionCount();
+			}
+		} catch (CacheException exception) {
+			logger.debug("Unable to count the evicted entries", exception);
+		}
+		return -1;
+	}
+
+	/**
+	 * @return <code>false</code>. Objects stored on the heap are stored by
+	 *         reference, and the ones stored out of the heap are serialized by
+	 *         the off-heap cache
+	 * @see AbstractCacheProviderFacade#isSerializableCacheElementRequired()
+	 */
+	protected boolean isSerializableCacheElementRequired() {
+		return false;
+	}
+
+	/**
+	 * Removes all the entries in the on-heap and off-heap caches specified in
+	 * the given flushing model.
+	 *
+	 * @see AbstractCacheProviderFacade#onFlushCache(FlushingModel)
+	 */
+	protected void onFlushCache(FlushingModel model) throws CacheException {
+		String[] cacheNames = ((MemoryFlushingModel) model).getCacheNames();
+		if (ObjectUtils.isEmpty(cacheNames)) {
+			return;
+		}
+
+		for (int i = 0; i < cacheNames.length; i++) {
+			Cache offHeapCache = (Cache) offHeapCaches.get(cacheNames[i]);
+			Cache heapCache = (cacheManager != null) ? cacheManager
+					.getCache(cacheNames[i]) : null;
+			if (offHeapCache == null && heapCache == null) {
+				throw new CacheNotFoundException(cacheNames[i]);
+			}
+			try {
+				if (offHeapCache != null) {
+					offHeapCache.clear();
+				}
+				if (heapCache != null) {
+					heapCache.clear();
+				}
+			} catch (Exception exception) {
+				throw new CacheAccessException(exception);
+			}
+		}
+	}
+
+	/**
+	 * @see AbstractCacheProviderFacade#onGetFromCache(Serializable,CachingModel)
+	 */
+	protected Object onGetFromCache(Serializable key, CachingModel model)
+			throws CacheException {
+		Cache cache = getCache((MemoryCachingModel) model);
+
+		try {
+			return cache.get(key);
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
+	/**
+	 * @see AbstractCacheProviderFacade#onPutInCache(Serializable,CachingModel,Object)
+	 */
+	protected void onPutInCache(Serializable key, CachingModel model, Object obj)
+			throws CacheException {
+		MemoryCachingModel cachingModel = (MemoryCachingModel) model;
+		Cache cache = getCache(cachingModel);
+		long timeToLive = cachingModel.getTimeToLive();
+
+		try {
+			if (timeToLive == 0) {
+				cache.put(key, obj);
+			} else {
+				cache.put(key, obj, timeToLive);
+			}
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
+	/**
+	 * @see AbstractCacheProviderFacade#onRemoveFromCache(Serializable,CachingModel)
+	 */
+	protected void onRemoveFromCache(Serializable key, CachingModel model)
+			throws CacheException {
+		Cache cache = getCache((MemoryCachingModel) model);
+
+		try {
+			cache.remove(key);
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
+	/**
+	 * @throws FatalCacheException if the maximum number of bytes or the block
+	 *                             size of the off-heap caches is not positive
+	 * @see AbstractCacheProviderFacade#validateCacheManager()
+	 */
+	protected void validateCacheManager() throws FatalCacheException {
+		if (maxBytes <= 0 || blockSize <= 0) {
+			throw new FatalCacheException(
+					"The maximum number of bytes and the block size of the off-heap caches should be greater than zero");
+		}
+	}
+
+	private Cache getHeapCache(String name) throws CacheNotFoundException,
+			CacheAccessException {
+		Cache cache = null;
+
+		try {
+			if (cacheManager != null) {
+				cache = cacheManager.getCache(name);
+			}
+		} catch (Exception exception) {
+			throw new CacheAccessException(exception);
+		}
+
+		if (cache == null) {
+			throw new CacheNotFoundException(name);
+		}
+
+		return cache;
+	}
+
+	private OffHeapCache getOffHeapCache(String name) {
+		OffHeapCache cache = (OffHeapCache) offHeapCaches.get(name);
+		if (cache == null) {
+			// no memory is reserved until the first entry is stored
+			OffHeapCache newCache = new OffHeapCache(maxBytes, blockSize);
+			cache = (OffHeapCache) offHeapCaches.putIfAbsent(name, newCache);
+			if (cache == null) {
+				cache = newCache;
+			}
+		}
+		return cache;
+	}
+}
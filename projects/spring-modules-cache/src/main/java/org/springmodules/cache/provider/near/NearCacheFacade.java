@@ -0,0 +1,387 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.near;
+
+import java.beans.PropertyEditor;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springmodules.cache.CacheException;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.FatalCacheException;
+import org.springmodules.cache.FlushingModel;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.provider.AbstractCacheProviderFacade;
+import org.springmodules.cache.provider.CacheModelValidator;
+import org.springmodules.cache.provider.CacheProviderFacade;
+
+/**
+ * <p>
+ * Implementation of <code>{@link CacheProviderFacade}</code> that keeps a
+ * bounded local copy (the near cache) of the entries read from or written to
+ * another facade (the remote cache), usually backed by a distributed or
+ * replicated cache provider. Repeated reads of the same entries are served
+ * from the near cache without accessing the remote cache.
+ * </p>
+ * <p>
+ * The near cache holds one <code>{@link MemoryCache}</code> per caching
+ * model. Entries are removed from it when they are removed through this
+ * facade, when any cache is flushed through this facade, and when one of the
+ * <code>invalidate</code> methods is called, usually by a listener of the
+ * events of the remote cache provider. Since flushing models are specific to
+ * the cache provider, flushing clears the whole near cache.
+ * </p>
+ * <p>
+ * Caching and flushing models are the ones of the remote cache.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public final class NearCacheFacade extends AbstractCacheProviderFacade {
+
+	/**
+	 * Near cache of a caching model. Readers check the number of invalidations
+	 * before and after storing an entry read from the remote cache, so that an
+	 * entry invalidated meanwhile is not kept.
+	 */
+	private static final class LocalCache {
+
+		final MemoryCache cache;
+
+		final AtomicLong invalidations = new AtomicLong();
+
+		LocalCache(MemoryCache newCache) {
+			cache = newCache;
+		}
+
+		void invalidate(Serializable key) {
+			invalidations.incrementAndGet();
+			cache.remove(key);
+		}
+
+		void invalidateAll() {
+			invalidations.incrementAndGet();
+			cache.clear();
+		}
+
+		void store(Serializable key, Object value, long version) {
+			cache.put(key, value);
+			if (invalidations.get() != version) {
+				cache.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Default maximum number of entries held in the near cache of each caching
+	 * model.
+	 */
+	public static final int DEFAULT_MAX_ELEMENTS = 1000;
+
+	private final ConcurrentHashMap localCaches = new ConcurrentHashMap();
+
+	private int maxElements = DEFAULT_MAX_ELEMENTS;
+
+	private CacheProviderFacade remoteCache;
+
+	private long timeToLive;
+
+	/**
+	 * @return the models having entries in the near cache
+	 */
+	public Collection getCachedModels() {
+		return new ArrayList(localCaches.keySet());
+	}
+
+	/**
+	 * @see org.springmodules.cache.provider.CacheProviderFacade#getCachingModelEditor()
+	 */
+	public PropertyEditor getCachingModelEditor() {
+		return remoteCache.getCachingModelEditor();
+	}
+
+	/**
+	 * @see org.springmodules.cache.provider.CacheProviderFacade#getFlushingModelEditor()
+	 */
+	public PropertyEditor getFlushingModelEditor() {
+		return remoteCache.getFlushingModelEditor();
+	}
+
+	/**
+	 * Removes all the entries from the near cache.
+	 */
+	public void invalidateAll() {
+		for (Iterator i = localCaches.values().iterator(); i.hasNext();) {
+			((LocalCache) i.next()).invalidateAll();
+		}
+	}
+
+	/**
+	 * Removes the entries of the given model from the near cache.
+	 *
+	 * @param model the caching model
+	 */
+	public void invalidate(CachingModel model) {
+		LocalCache localCache = (LocalCache) localCaches.get(model);
+		if (localCache != null) {
+			localCache.invalidateAll();
+		}
+	}
+
+	/**
+	 * Removes an entry from the near cache.
+	 *
+	 * @param model the caching model
+	 * @param key   the key of the entry
+	 */
+	public void invalidate(CachingModel model, Serializable key) {
+		LocalCache localCache = (LocalCache) localCaches.get(model);
+		if (localCache != null) {
+			localCache.invalidate(key);
+		}
+	}
+
+	/**
+	 * @return the validator of cache models of the remote cache
+	 */
+	public CacheModelValidator modelValidator() {
+		return remoteCache.modelValidator();
+	}
+
+	/**
+	 * Sets the facade of the remote cache.
+	 *
+	 * @param newRemoteCache the new facade
+	 */
+	public void setCacheProviderFacade(CacheProviderFacade newRemoteCache) {
+		remoteCache = newRemoteCache;
+	}
+
+	/**
+	 * Sets the maximum number of entries held in the near cache of each caching
+	 * model. The least recently used entries are evicted first.
+	 *
+	 * @param newMaxElements the new maximum number of entries
+	 */
+	public void setMaxElements(int newMaxElements) {
+		maxElements = newMaxElements;
+	}
+
+	/**
+	 * Sets the number of milliseconds an entry stays in the near cache. Bounds
+	 * the staleness of entries modified in the remote cache without the near
+	 * cache being notified. By default entries stay until they are evicted or
+	 * invalidated.
+	 *
+	 * @param newTimeToLive the new number of milliseconds
+	 */
+	public void setTimeToLive(long newTimeToLive) {
+		timeToLive = newTimeToLive;
+	}
+
+	/**
+	 * @return the number of entries evicted from the near cache of the given
+	 *         model
+	 * @see AbstractCacheProviderFacade#getEvictionCount(CachingModel)
+	 */
+	protected long getEvictionCount(CachingModel model) {
+		LocalCache localCache = (LocalCache) localCaches.get(model);
+		return (localCache != null) ? localCache.cache.getEvictionCount() : 0;
+	}
+
+	/**
+	 * @return <code>false</code>. The near cache stores objects by reference
+	 *         and the remote cache makes them serializable if it needs to
+	 * @see AbstractCacheProviderFacade#isSerializableCacheElementRequired()
+	 */
+	protected boolean isSerializableCacheElementRequired() {
+		return false;
+	}
+
+	/**
+	 * @see AbstractCacheProviderFacade#onCancelCacheUpdate(Serializable)
+	 */
+	protected void onCancelCacheUpdate(Serializable key) throws CacheException {
+		remoteCache.cancelCacheUpdate(key);
+	}
+
+	/**
+	 * Flushes the remote cache and clears the near cache.
+	 *
+	 * @see AbstractCacheProviderFacade#onFlushCache(FlushingModel)
+	 */
+	protected void onFlushCache(FlushingModel model) throws CacheException {
+		try {
+			remoteCache.flushCache(model);
+		} finally {
+			invalidateAll();
+		}
+	}
+
+	/**
+	 * Retrieves the entries found in the near cache, and the other ones from the
+	 * remote cache in a single call.
+	 *
+	 * @see AbstractCacheProviderFacade#onGetAllFromCache(Collection,CachingModel)
+	 */
+	protected Map onGetAllFromCache(Collection keys, CachingModel model)
+			throws CacheException {
+		LocalCache localCache = localCache(model);
+		Map cachedObjects = new HashMap();
+		List missingKeys = new ArrayList();
+
+		for (Iterator i = keys.iterator(); i.hasNext();) {
+			Serializable key = (Serializable) i.next();
+			Object cachedObject = localCache.cache.get(key);
+			if (cachedObject != null) {
+				cachedObjects.put(key, cachedObject);
+			} else {
+				missingKeys.add(key);
+			}
+		}
+
+		if (!missingKeys.isEmpty()) {
+			long version = localCache.invalidations.get();
+			Map found = remoteCache.getAllFromCache(missingKeys, model);
+			for (Iterator i = found.entrySet().iterator(); i.hasNext();) {
+				Map.Entry entry = (Map.Entry) i.next();
+				localCache.store((Serializable) entry.getKey(), entry.getValue(),
+						version);
+			}
+			cachedObjects.putAll(found);
+		}
+		return cachedObjects;
+	}
+
+	/**
+	 * Retrieves an entry from the near cache or, if missing, from the remote
+	 * cache.
+	 *
+	 * @see AbstractCacheProviderFacade#onGetFromCache(Serializable,CachingModel)
+	 */
+	protected Object onGetFromCache(Serializable key, CachingModel model)
+			throws CacheException {
+		LocalCache localCache = localCache(model);
+		Object cachedObject = localCache.cache.get(key);
+		if (cachedObject != null) {
+			return cachedObject;
+		}
+
+		long version = localCache.invalidations.get();
+		cachedObject = remoteCache.getFromCache(key, model);
+		if (cachedObject != null) {
+			localCache.store(key, cachedObject, version);
+		}
+		return cachedObject;
+	}
+
+	/**
+	 * @see AbstractCacheProviderFacade#onPutAllInCache(Map,CachingModel)
+	 */
+	protected void onPutAllInCache(Map entries, CachingModel model)
+			throws CacheException {
+		LocalCache localCache = localCache(model);
+		remoteCache.putAllInCache(entries, model);
+
+		long version = localCache.invalidations.incrementAndGet();
+		for (Iterator i = entries.entrySet().iterator(); i.hasNext();) {
+			Map.Entry entry = (Map.Entry) i.next();
+			localCache.store((Serializable) entry.getKey(), entry.getValue(),
+					version);
+		}
+	}
+
+	/**
+	 * Stores an object in the remote cache and in the near cache.
+	 *
+	 * @see AbstractCacheProviderFacade#onPutInCache(Serializable,CachingModel,Object)
+	 */
+	protected void onPutInCache(Serializable key, CachingModel model, Object obj)
+			throws CacheException {
+		LocalCache localCache = localCache(model);
+		remoteCache.putInCache(key, model, obj);
+
+		// entries being read from the remote cache are now stale
+		long version = localCache.invalidations.incrementAndGet();
+		localCache.store(key, obj, version);
+	}
+
+	/**
+	 * @see AbstractCacheProviderFacade#onRemoveAllFromCache(Collection,CachingModel)
+	 */
+	protected void onRemoveAllFromCache(Collection keys, CachingModel model)
+			throws CacheException {
+		try {
+			remoteCache.removeAllFromCache(keys, model);
+		} finally {
+			for (Iterator i = keys.iterator(); i.hasNext();) {
+				invalidate(model, (Serializable) i.next());
+			}
+		}
+	}
+
+	/**
+	 * @see AbstractCacheProviderFacade#onRemoveFromCache(Serializable,CachingModel)
+	 */
+	protected void onRemoveFromCache(Serializable key, CachingModel model)
+			throws CacheException {
+		try {
+			remoteCache.removeFromCache(key, model);
+		} finally {
+			invalidate(model, key);
+		}
+	}
+
+	/**
+	 * @throws FatalCacheException if the facade of the remote cache is
+	 *                             <code>null</code> or this facade.
+	 * @see AbstractCacheProviderFacade#validateCacheManager()
+	 */
+	protected void validateCacheManager() throws FatalCacheException {
+		if (remoteCache == null) {
+			throw new FatalCacheException(
+					"The cache provider facade of the remote cache should not be null");
+		}
+		if (remoteCache == this) {
+			throw new FatalCacheException(
+					"The near cache cannot be its own remote cache");
+		}
+	}
+
+	private LocalCache localCache(CachingModel model) {
+		LocalCache localCache = (LocalCache) localCaches.get(model);
+		if (localCache == null) {
+			MemoryCache cache = new MemoryCache(maxElements);
+			if (timeToLive > 0) {
+				cache.setDefaultTimeToLive(timeToLive);
+			}
+			LocalCache newLocalCache = new LocalCache(cache);
+			localCache = (LocalCache) localCaches.putIfAbsent(model, newLocalCache);
+			if (localCache == null) {
+				localCache = newLocalCache;
+			}
+		}
+		return localCache;
+	}
+}
@@ -23,7 +23,7 @@ import java.util.Arrays;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
-import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.provider.AbstractCachingModel;
 import org.springmodules.util.Objects;
 
 /**
@@ -34,7 +34,7 @@ import org.springmodules.util.Objects;
  * 
  * @author Alex Ruiz
  */
-public class OsCacheCachingModel implements CachingModel {
+public class OsCacheCachingModel extends AbstractCachingModel {
 
   private static final long serialVersionUID = 3904681574367770928L;
 
@@ -139,6 +139,9 @@ public class OsCacheCachingModel implements CachingModel {
     if (!ObjectUtils.nullSafeEquals(refreshPeriod, cachingModel.refreshPeriod)) {
       return false;
     }
+    if (!hasSameOptions(cachingModel)) {
+      return false;
+    }
 
     return true;
   }
@@ -175,6 +178,7 @@ public class OsCacheCachingModel implements CachingModel {
     hash = multiplier * hash + Objects.nullSafeHashCode(cronExpression);
     hash = multiplier * hash + Objects.nullSafeHashCode(groups);
     hash = multiplier * hash + Objects.nullSafeHashCode(refreshPeriod);
+    hash = multiplier * hash + optionsHashCode();
     return hash;
   }
 
@@ -241,7 +245,8 @@ public class OsCacheCachingModel implements CachingModel {
     StringBuffer buffer = Objects.identityToString(this);
     buffer.append("[refreshPeriod=" + refreshPeriod + ", ");
     buffer.append("groups=" + Objects.nullSafeToString(groups) + ", ");
-    buffer.append("cronExpression=" + StringUtils.quote(cronExpression) + "]");
+    buffer.append("cronExpression=" + StringUtils.quote(cronExpression));
+    appendOptions(buffer).append("]");
 
     return buffer.toString();
   }
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.partitioned;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * <p>
+ * Node of a partitioned cache, storing the entries whose keys it owns.
+ * </p>
+ * <p>
+ * <code>{@link PartitionedCacheFacade}</code> accesses the nodes only through
+ * this interface, so any transport can be plugged in: a
+ * <code>{@link LocalCacheNode}</code> in the same JVM, or a proxy to a node
+ * exported by another JVM, like the ones created by Spring's
+ * <code>RmiProxyFactoryBean</code> or
+ * <code>HttpInvokerProxyFactoryBean</code> with this interface as service
+ * interface. Arguments and values are serializable.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public interface CacheNode {
+
+	/**
+	 * Removes all the entries of the given cache.
+	 *
+	 * @param cacheName the name of the cache
+	 */
+	void clear(String cacheName);
+
+	/**
+	 * @param cacheName the name of the cache
+	 * @param key       the key of the entry
+	 * @return the value stored under the given key, or <code>null</code> if
+	 *         there is none
+	 */
+	Object get(String cacheName, Serializable key);
+
+	/**
+	 * @param cacheName the name of the cache
+	 * @param keys      the keys of the entries
+	 * @return the values found, stored by key
+	 */
+	Map getAll(String cacheName, Collection keys);
+
+	/**
+	 * Returns the name of this node. Nodes are placed in the partitions
+	 * according to their names, which should be the same for all the clients.
+	 *
+	 * @return the name of this node
+	 */
+	String getName();
+
+	/**
+	 * Stores a value.
+	 *
+	 * @param cacheName  the name of the cache
+	 * @param key        the key of the entry
+	 * @param value      the value to store
+	 * @param timeToLive the number of milliseconds the entry lives, or zero to
+	 *                   use the default of the cache
+	 */
+	void put(String cacheName, Serializable key, Object value, long timeToLive);
+
+	/**
+	 * Stores several values at once.
+	 *
+	 * @param cacheName  the name of the cache
+	 * @param entries    the values to store, stored by key
+	 * @param timeToLive the number of milliseconds the entries live, or zero to
+	 *                   use the default of the cache
+	 */
+	void putAll(String cacheName, Map entries, long timeToLive);
+
+	/**
+	 * @param cacheName the name of the cache
+	 * @param key       the key of the entry to remove
+	 */
+	void remove(String cacheName, Serializable key);
+
+	/**
+	 * @param cacheName the name of the cache
+	 * @param keys      the keys of the entries to remove
+	 */
+	void removeAll(String cacheName, Collection keys);
+}
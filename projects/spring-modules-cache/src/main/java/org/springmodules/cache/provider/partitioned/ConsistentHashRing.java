@@ -0,0 +1,165 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.partitioned;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Immutable assignment of keys to nodes by consistent hashing. Each node is
+ * placed at several points of a ring of hash codes, derived from its name.
+ * A key belongs to the node at the first point following the hash code of
+ * the key. Adding or removing a node only moves the keys of the arcs next to
+ * its points.
+ * </p>
+ * <p>
+ * Keys are placed according to their <code>hashCode()</code>, which should
+ * be the same in all the JVMs sharing the nodes.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+final class ConsistentHashRing {
+
+	private final CacheNode[] nodes;
+
+	private final CacheNode[] owners;
+
+	private final int[] points;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param nodes        the nodes, having distinct names
+	 * @param virtualNodes the number of points of each node
+	 */
+	ConsistentHashRing(CacheNode[] newNodes, int virtualNodes) {
+		nodes = (CacheNode[]) newNodes.clone();
+		List placed = new ArrayList(nodes.length * virtualNodes);
+		for (int i = 0; i < nodes.length; i++) {
+			int[] nodePoints = points(nodes[i].getName(), virtualNodes);
+			for (int j = 0; j < nodePoints.length; j++) {
+				placed.add(new Object[] { new Integer(nodePoints[j]), nodes[i] });
+			}
+		}
+		Collections.sort(placed, new Comparator() {
+			public int compare(Object o1, Object o2) {
+				return ((Integer) ((Object[]) o1)[0])
+						.compareTo((Integer) ((Object[]) o2)[0]);
+			}
+		});
+
+		owners = new CacheNode[placed.size()];
+		points = new int[placed.size()];
+		for (int i = 0; i < owners.length; i++) {
+			Object[] point = (Object[]) placed.get(i);
+			points[i] = ((Integer) point[0]).intValue();
+			owners[i] = (CacheNode) point[1];
+		}
+	}
+
+	/**
+	 * @return the nodes of this ring
+	 */
+	CacheNode[] nodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return the node owning the given key
+	 */
+	CacheNode nodeFor(Object key) {
+		int i = Arrays.binarySearch(points, hash(key.hashCode()));
+		if (i < 0) {
+			i = -i - 1;
+		}
+		return owners[i < owners.length ? i : 0];
+	}
+
+	/**
+	 * Groups the given keys by owning node.
+	 *
+	 * @return lists of keys stored by node
+	 */
+	Map partition(Collection keys) {
+		Map partitions = new LinkedHashMap();
+		for (Iterator i = keys.iterator(); i.hasNext();) {
+			Object key = i.next();
+			CacheNode node = nodeFor(key);
+			List nodeKeys = (List) partitions.get(node);
+			if (nodeKeys == null) {
+				nodeKeys = new ArrayList();
+				partitions.put(node, nodeKeys);
+			}
+			nodeKeys.add(key);
+		}
+		return partitions;
+	}
+
+	/**
+	 * Spreads the bits of a hash code over the ring, so keys with close hash
+	 * codes are assigned to different nodes.
+	 */
+	private static int hash(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * Derives the points of a node from the MD5 digests of its name, four
+	 * points per digest.
+	 */
+	private static int[] points(String name, int count) {
+		MessageDigest md5;
+		try {
+			md5 = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException exception) {
+			throw new IllegalStateException("MD5 is not available");
+		}
+
+		int[] nodePoints = new int[count];
+		for (int i = 0; i < count; i += 4) {
+			byte[] digest;
+			try {
+				digest = md5.digest((name + "#" + i / 4).getBytes("UTF-8"));
+			} catch (UnsupportedEncodingException exception) {
+				throw new IllegalStateException("UTF-8 is not supported");
+			}
+			for (int j = 0; j < 4 && i + j < count; j++) {
+				nodePoints[i + j] = (digest[4 * j] & 0xff) << 24
+						| (digest[4 * j + 1] & 0xff) << 16
+						| (digest[4 * j + 2] & 0xff) << 8 | (digest[4 * j + 3] & 0xff);
+			}
+		}
+		return nodePoints;
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.partitioned;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springmodules.cache.impl.MemoryCache;
+
+/**
+ * <p>
+ * Implementation of <code>{@link CacheNode}</code> storing the entries in
+ * <code>{@link MemoryCache}</code>s of this JVM, created on first use.
+ * </p>
+ * <p>
+ * Several instances stand for the nodes of a cluster in a single JVM. An
+ * instance can also be exported to other JVMs by the transport of choice.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public class LocalCacheNode implements CacheNode {
+
+	/**
+	 * Default maximum number of entries held in each cache of the node.
+	 */
+	public static final int DEFAULT_MAX_ELEMENTS = 10000;
+
+	/**
+	 * Caches stored by name.
+	 */
+	private final ConcurrentHashMap caches = new ConcurrentHashMap();
+
+	private int maxElements = DEFAULT_MAX_ELEMENTS;
+
+	private String name;
+
+	/**
+	 * Constructor.
+	 */
+	public LocalCacheNode() {
+		super();
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param newName the name of the node
+	 */
+	public LocalCacheNode(String newName) {
+		this();
+		setName(newName);
+	}
+
+	/**
+	 * @see CacheNode#clear(String)
+	 */
+	public void clear(String cacheName) {
+		MemoryCache cache = (MemoryCache) caches.get(cacheName);
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @see CacheNode#get(String, Serializable)
+	 */
+	public Object get(String cacheName, Serializable key) {
+		MemoryCache cache = (MemoryCache) caches.get(cacheName);
+		return (cache != null) ? cache.get(key) : null;
+	}
+
+	/**
+	 * @see CacheNode#getAll(String, Collection)
+	 */
+	public Map getAll(String cacheName, Collection keys) {
+		Map found = new HashMap();
+		MemoryCache cache = (MemoryCache) caches.get(cacheName);
+		if (cache != null) {
+			for (Iterator i = keys.iterator(); i.hasNext();) {
+				Serializable key = (Serializable) i.next();
+				Object value = cache.get(key);
+				if (value != null) {
+					found.put(key, value);
+				}
+			}
+		}
+		return found;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @see CacheNode#put(String, Serializable, Object, long)
+	 */
+	public void put(String cacheName, Serializable key, Object value,
+			long timeToLive) {
+		MemoryCache cache = cache(cacheName);
+		if (timeToLive == 0) {
+			cache.put(key, value);
+		} else {
+			cache.put(key, value, timeToLive);
+		}
+	}
+
+	/**
+	 * @see CacheNode#putAll(String, Map, long)
+	 */
+	public void putAll(String cacheName, Map entries, long timeToLive) {
+		for (Iterator i = entries.entrySet().iterator(); i.hasNext();) {
+			Map.Entry entry = (Map.Entry) i.next();
+			put(cacheName, (Serializable) entry.getKey(), entry.getValue(),
+					timeToLive);
+		}
+	}
+
+	/**
+	 * @see CacheNode#remove(String, Serializable)
+	 */
+	public void remove(String cacheName, Serializable key) {
+		MemoryCache cache = (MemoryCache) caches.get(cacheName);
+		if (cache != null) {
+			cache.remove(key);
+		}
+	}
+
+	/**
+	 * @see CacheNode#removeAll(String, Collection)
+	 */
+	public void removeAll(String cacheName, Collection keys) {
+		for (Iterator i = keys.iterator(); i.hasNext();) {
+			remove(cacheName, (Serializable) i.next());
+		}
+	}
+
+	/**
+	 * Sets the maximum number of entries held in each cache of the node,
+	 * created from now on. The least recently used entries are evicted first.
+	 *
+	 * @param newMaxElements the new maximum number of entries
+	 */
+	public void setMaxElements(int newMaxElements) {
+		maxElements = newMaxElements;
+	}
+
+	public void setName(String newName) {
+		name = newName;
+	}
+
+	/**
+	 * @param cacheName the name of a cache
+	 * @return the number of entries of the cache held by this node
+	 */
+	public int size(String cacheName) {
+		MemoryCache cache = (MemoryCache) caches.get(cacheName);
+		return (cache != null) ? cache.size() : 0;
+	}
+
+	public String toString() {
+		return "LocalCacheNode[name='" + name + "']";
+	}
+
+	private MemoryCache cache(String cacheName) {
+		MemoryCache cache = (MemoryCache) caches.get(cacheName);
+		if (cache == null) {
+			MemoryCache newCache = new MemoryCache(maxElements);
+			cache = (MemoryCache) caches.putIfAbsent(cacheName, newCache);
+			if (cache == null) {
+				cache = newCache;
+			}
+		}
+		return cache;
+	}
+}
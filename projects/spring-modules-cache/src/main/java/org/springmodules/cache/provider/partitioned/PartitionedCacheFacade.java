@@ -0,0 +1,342 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.partitioned;
+
+import java.beans.PropertyEditor;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springframework.util.ObjectUtils;
+import org.springmodules.cache.CacheException;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.FatalCacheException;
+import org.springmodules.cache.FlushingModel;
+import org.springmodules.cache.provider.AbstractCacheProviderFacade;
+import org.springmodules.cache.provider.CacheAccessException;
+import org.springmodules.cache.provider.CacheModelValidator;
+import org.springmodules.cache.provider.ReflectionCacheModelEditor;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+import org.springmodules.cache.provider.memory.MemoryFlushingModel;
+import org.springmodules.cache.provider.memory.MemoryModelValidator;
+
+/**
+ * <p>
+ * Implementation of
+ * <code>{@link org.springmodules.cache.provider.CacheProviderFacade}</code>
+ * that spreads the entries of its caches over several
+ * <code>{@link CacheNode}</code>s by consistent hashing. Each entry is stored
+ * by a single node, so the capacity of the cache grows with the number of
+ * nodes, and every read or write goes directly to the node owning the key.
+ * Bulk operations send one request per node involved.
+ * </p>
+ * <p>
+ * Keys are assigned to nodes according to their <code>hashCode()</code>. All
+ * the JVMs sharing the nodes should list them with the same names and
+ * generate keys with stable hash codes, like the ones of
+ * <code>{@link org.springmodules.cache.key.HashCodeCacheKeyGenerator}</code>
+ * with stable keys.
+ * </p>
+ * <p>
+ * Caching models are <code>{@link MemoryCachingModel}</code>s and flushing
+ * models are <code>{@link MemoryFlushingModel}</code>s. Flushing clears the
+ * caches on every node.
+ * </p>
+ *
+ * @see LocalCacheNode
+ *
+ * @author Alex Ruiz
+ */
+public final class PartitionedCacheFacade extends AbstractCacheProviderFacade {
+
+	/**
+	 * Default number of points of each node on the hash ring.
+	 */
+	public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+	private final CacheModelValidator cacheModelValidator = new MemoryModelValidator();
+
+	private CacheNode[] nodes;
+
+	private volatile ConsistentHashRing ring;
+
+	private int virtualNodes = DEFAULT_VIRTUAL_NODES;
+
+	/**
+	 * @see org.springmodules.cache.provider.CacheProviderFacade#getCachingModelEditor()
+	 */
+	public PropertyEditor getCachingModelEditor() {
+		ReflectionCacheModelEditor editor = new ReflectionCacheModelEditor();
+		editor.setCacheModelClass(MemoryCachingModel.class);
+		return editor;
+	}
+
+	/**
+	 * @see org.springmodules.cache.provider.CacheProviderFacade#getFlushingModelEditor()
+	 */
+	public PropertyEditor getFlushingModelEditor() {
+		Map propertyEditors = new HashMap();
+		propertyEditors.put("cacheNames", new StringArrayPropertyEditor());
+
+		ReflectionCacheModelEditor editor = new ReflectionCacheModelEditor();
+		editor.setCacheModelClass(MemoryFlushingModel.class);
+		editor.setCacheModelPropertyEditors(propertyEditors);
+		return editor;
+	}
+
+	/**
+	 * @param key the key of an entry
+	 * @return the node owning the given key
+	 */
+	public CacheNode getNode(Serializable key) {
+		return ring.nodeFor(key);
+	}
+
+	/**
+	 * @return the validator of cache models. It is always an instance of
+	 *         <code>{@link MemoryModelValidator}</code>
+	 */
+	public CacheModelValidator modelValidator() {
+		return cacheModelValidator;
+	}
+
+	/**
+	 * Sets the nodes sharing the entries. Can be called again when nodes join
+	 * or leave: only the entries of the arcs of the ring next to the added or
+	 * removed nodes change owner, and they are missed until stored again. The
+	 * new ring replaces the previous one at once, so concurrent operations use
+	 * either the old nodes or the new ones.
+	 *
+	 * @param newNodes the new nodes, with distinct names
+	 */
+	public void setNodes(CacheNode[] newNodes) {
+		nodes = newNodes;
+		ring = newRing();
+	}
+
+	/**
+	 * Sets the number of points of each node on the hash ring. More points
+	 * spread the entries more evenly over the nodes.
+	 *
+	 * @param newVirtualNodes the new number of points
+	 */
+	public void setVirtualNodes(int newVirtualNodes) {
+		virtualNodes = newVirtualNodes;
+		ring = newRing();
+	}
+
+	/**
+	 * @return <code>true</code>. Entries may be sent to other JVMs
+	 * @see AbstractCacheProviderFacade#isSerializableCacheElementRequired()
+	 */
+	protected boolean isSerializableCacheElementRequired() {
+		return true;
+	}
+
+	/**
+	 * Clears the caches specified in the given flushing model on every node.
+	 * The other nodes are cleared even if one of them fails.
+	 *
+	 * @throws CacheAccessException wrapping the first exception thrown by a
+	 *                              node
+	 * @see AbstractCacheProviderFacade#onFlushCache(FlushingModel)
+	 */
+	protected void onFlushCache(FlushingModel model) throws CacheException {
+		String[] cacheNames = ((MemoryFlushingModel) model).getCacheNames();
+		if (ObjectUtils.isEmpty(cacheNames)) {
+			return;
+		}
+
+		CacheNode[] currentNodes = ring.nodes();
+		RuntimeException failure = null;
+		for (int i = 0; i < cacheNames.length; i++) {
+			for (int j = 0; j < currentNodes.length; j++) {
+				try {
+					currentNodes[j].clear(cacheNames[i]);
+				} catch (RuntimeException exception) {
+					if (failure == null) {
+						failure = exception;
+					}
+				}
+			}
+		}
+		if (failure != null) {
+			throw new CacheAccessException(failure);
+		}
+	}
+
+	/**
+	 * Retrieves the entries with one request per node owning some of the keys.
+	 *
+	 * @see AbstractCacheProviderFacade#onGetAllFromCache(Collection,CachingModel)
+	 */
+	protected Map onGetAllFromCache(Collection keys, CachingModel model)
+			throws CacheException {
+		String cacheName = ((MemoryCachingModel) model).getCacheName();
+		Map found = new HashMap();
+		Map partitions = ring.partition(keys);
+		try {
+			for (Iterator i = partitions.entrySet().iterator(); i.hasNext();) {
+				Map.Entry partition = (Map.Entry) i.next();
+				found.putAll(((CacheNode) partition.getKey()).getAll(cacheName,
+						(List) partition.getValue()));
+			}
+		} catch (RuntimeException exception) {
+			throw new CacheAccessException(exception);
+		}
+		return found;
+	}
+
+	/**
+	 * @see AbstractCacheProviderFacade#onGetFromCache(Serializable,CachingModel)
+	 */
+	protected Object onGetFromCache(Serializable key, CachingModel model)
+			throws CacheException {
+		String cacheName = ((MemoryCachingModel) model).getCacheName();
+		try {
+			return ring.nodeFor(key).get(cacheName, key);
+		} catch (RuntimeException exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
+	/**
+	 * Stores the entries with one request per node owning some of the keys.
+	 *
+	 * @see AbstractCacheProviderFacade#onPutAllInCache(Map,CachingModel)
+	 */
+	protected void onPutAllInCache(Map entries, CachingModel model)
+			throws CacheException {
+		MemoryCachingModel cachingModel = (MemoryCachingModel) model;
+		ConsistentHashRing currentRing = ring;
+
+		Map partitions = new LinkedHashMap();
+		for (Iterator i = entries.entrySet().iterator(); i.hasNext();) {
+			Map.Entry entry = (Map.Entry) i.next();
+			CacheNode node = currentRing.nodeFor(entry.getKey());
+			Map nodeEntries = (Map) partitions.get(node);
+			if (nodeEntries == null) {
+				nodeEntries = new HashMap();
+				partitions.put(node, nodeEntries);
+			}
+			nodeEntries.put(entry.getKey(), entry.getValue());
+		}
+
+		try {
+			for (Iterator i = partitions.entrySet().iterator(); i.hasNext();) {
+				Map.Entry partition = (Map.Entry) i.next();
+				((CacheNode) partition.getKey()).putAll(cachingModel.getCacheName(),
+						(Map) partition.getValue(), cachingModel.getTimeToLive());
+			}
+		} catch (RuntimeException exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
+	/**
+	 * @see AbstractCacheProviderFacade#onPutInCache(Serializable,CachingModel,Object)
+	 */
+	protected void onPutInCache(Serializable key, CachingModel model, Object obj)
+			throws CacheException {
+		MemoryCachingModel cachingModel = (MemoryCachingModel) model;
+		try {
+			ring.nodeFor(key).put(cachingModel.getCacheName(), key, obj,
+					cachingModel.getTimeToLive());
+		} catch (RuntimeException exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
+	/**
+	 * Removes the entries with one request per node owning some of the keys.
+	 *
+	 * @see AbstractCacheProviderFacade#onRemoveAllFromCache(Collection,CachingModel)
+	 */
+	protected void onRemoveAllFromCache(Collection keys, CachingModel model)
+			throws CacheException {
+		String cacheName = ((MemoryCachingModel) model).getCacheName();
+		Map partitions = ring.partition(keys);
+		try {
+			for (Iterator i = partitions.entrySet().iterator(); i.hasNext();) {
+				Map.Entry partition = (Map.Entry) i.next();
+				((CacheNode) partition.getKey()).removeAll(cacheName,
+						(List) partition.getValue());
+			}
+		} catch (RuntimeException exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
+	/**
+	 * @see AbstractCacheProviderFacade#onRemoveFromCache(Serializable,CachingModel)
+	 */
+	protected void onRemoveFromCache(Serializable key, CachingModel model)
+			throws CacheException {
+		String cacheName = ((MemoryCachingModel) model).getCacheName();
+		try {
+			ring.nodeFor(key).remove(cacheName, key);
+		} catch (RuntimeException exception) {
+			throw new CacheAccessException(exception);
+		}
+	}
+
+	/**
+	 * @throws FatalCacheException if there are no nodes, or nodes without name
+	 *                             or with the same name
+	 * @see AbstractCacheProviderFacade#validateCacheManager()
+	 */
+	protected void validateCacheManager() throws FatalCacheException {
+		if (ObjectUtils.isEmpty(nodes)) {
+			throw new FatalCacheException("There should be at least one cache node");
+		}
+		Set names = new HashSet();
+		for (int i = 0; i < nodes.length; i++) {
+			String name = nodes[i].getName();
+			if (name == null) {
+				throw new FatalCacheException("The name of the cache node "
+						+ nodes[i] + " should not be null");
+			}
+			if (!names.add(name)) {
+				throw new FatalCacheException("There are several cache nodes named '"
+						+ name + "'");
+			}
+		}
+		if (virtualNodes <= 0) {
+			throw new FatalCacheException(
+					"The number of virtual nodes should be greater than zero");
+		}
+	}
+
+	/**
+	 * @return the ring of the current nodes, or <code>null</code> if the nodes
+	 *         or the number of virtual nodes are missing. They are then
+	 *         reported by <code>{@link #validateCacheManager()}</code>
+	 */
+	private ConsistentHashRing newRing() {
+		if (ObjectUtils.isEmpty(nodes) || virtualNodes <= 0) {
+			return null;
+		}
+		return new ConsistentHashRing(nodes, virtualNodes);
+	}
+}
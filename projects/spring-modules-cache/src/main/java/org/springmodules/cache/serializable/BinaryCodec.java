@@ -0,0 +1,554 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.serializable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.ClassUtils;
+
+/**
+ * <p>
+ * Compact binary encoding of object graphs used by
+ * <code>{@link BinarySerializableFactory}</code>.
+ * </p>
+ * <p>
+ * Wrappers of primitives, strings, dates, enums, arrays and the common
+ * <code>java.util</code> collections and maps are written natively. Other
+ * serializable objects are written with Java serialization, so their own
+ * serialization logic is honored. Objects that are not serializable are
+ * written field by field and need a constructor without arguments. Classes are
+ * written as small identifiers if registered, or by name the first time they
+ * appear in a graph. Shared and cyclic references are preserved.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+final class BinaryCodec {
+
+	private static class ObjectType {
+
+		final Constructor constructor;
+
+		final Field[] fields;
+
+		ObjectType(Constructor constructor, Field[] fields) {
+			this.constructor = constructor;
+			this.fields = fields;
+		}
+	}
+
+	private static final int NULL = 0;
+
+	private static final int REFERENCE = 1;
+
+	private static final int TRUE = 2;
+
+	private static final int FALSE = 3;
+
+	private static final int BYTE = 4;
+
+	private static final int SHORT = 5;
+
+	private static final int CHARACTER = 6;
+
+	private static final int INTEGER = 7;
+
+	private static final int LONG = 8;
+
+	private static final int FLOAT = 9;
+
+	private static final int DOUBLE = 10;
+
+	private static final int STRING = 11;
+
+	private static final int DATE = 12;
+
+	private static final int ENUM = 13;
+
+	private static final int CLASS = 14;
+
+	private static final int ARRAY = 15;
+
+	private static final int COLLECTION = 16;
+
+	private static final int MAP = 17;
+
+	private static final int OBJECT = 18;
+
+	private static final int SERIALIZED = 19;
+
+	private static final int REGISTERED_CLASS = 0;
+
+	private static final int CLASS_REFERENCE = 1;
+
+	private static final int CLASS_NAME = 2;
+
+	/**
+	 * Classes known by every codec, registered before the classes given by the
+	 * user.
+	 */
+	private static final Class[] BUILT_IN_CLASSES = {Object.class,
+			boolean.class, byte.class, char.class, short.class, int.class,
+			long.class, float.class, double.class, String.class, Boolean.class,
+			Byte.class, Character.class, Short.class, Integer.class, Long.class,
+			Float.class, Double.class, Date.class, ArrayList.class,
+			LinkedList.class, HashSet.class, LinkedHashSet.class, TreeSet.class,
+			HashMap.class, LinkedHashMap.class, TreeMap.class};
+
+	private static final Set NATIVE_COLLECTIONS = new HashSet(Arrays
+			.asList(new Class[]{ArrayList.class, LinkedList.class, HashSet.class,
+					LinkedHashSet.class, TreeSet.class}));
+
+	private static final Set NATIVE_MAPS = new HashSet(Arrays.asList(new Class[]{
+			HashMap.class, LinkedHashMap.class, TreeMap.class}));
+
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	private final Map classIds = new HashMap();
+
+	private final Class[] classes;
+
+	private final Map objectTypes = new ConcurrentHashMap();
+
+	BinaryCodec(Class[] registeredClasses) {
+		classes = new Class[BUILT_IN_CLASSES.length + registeredClasses.length];
+		System.arraycopy(BUILT_IN_CLASSES, 0, classes, 0, BUILT_IN_CLASSES.length);
+		System.arraycopy(registeredClasses, 0, classes, BUILT_IN_CLASSES.length,
+				registeredClasses.length);
+
+		for (int i = 0; i < classes.length; i++) {
+			if (!classIds.containsKey(classes[i])) {
+				classIds.put(classes[i], new Integer(i));
+			}
+		}
+	}
+
+	Object read(BinaryInput in) throws Exception {
+		int tag = in.readByte();
+		switch (tag) {
+			case NULL:
+				return null;
+			case REFERENCE:
+				return in.handles.get(in.readVarInt());
+			case TRUE:
+				return Boolean.TRUE;
+			case FALSE:
+				return Boolean.FALSE;
+			case BYTE:
+				return new Byte((byte) in.readByte());
+			case SHORT:
+				return new Short((short) in.readSignedVarInt());
+			case CHARACTER:
+				return new Character((char) in.readVarInt());
+			case INTEGER:
+				return new Integer(in.readSignedVarInt());
+			case LONG:
+				return new Long(in.readSignedVarLong());
+			case FLOAT:
+				return new Float(Float.intBitsToFloat(in.readFixedInt()));
+			case DOUBLE:
+				return new Double(Double.longBitsToDouble(in.readFixedLong()));
+			case STRING:
+				return in.readString();
+			case CLASS:
+				return readClass(in);
+			case ENUM:
+				return Enum.valueOf(readClass(in), in.readString());
+			case DATE:
+				Date date = new Date(in.readSignedVarLong());
+				in.handles.add(date);
+				return date;
+			case ARRAY:
+				return readArray(in);
+			case COLLECTION:
+				return readCollection(in);
+			case MAP:
+				return readMap(in);
+			case OBJECT:
+				return readObject(in);
+			case SERIALIZED:
+				return readSerialized(in);
+			default:
+				throw new IllegalStateException("Unknown tag " + tag);
+		}
+	}
+
+	void write(Object value, BinaryOutput out) throws Exception {
+		if (value == null) {
+			out.writeByte(NULL);
+			return;
+		}
+
+		Class type = value.getClass();
+		if (type == String.class) {
+			out.writeByte(STRING);
+			out.writeString((String) value);
+		} else if (type == Integer.class) {
+			out.writeByte(INTEGER);
+			out.writeSignedVarInt(((Integer) value).intValue());
+		} else if (type == Long.class) {
+			out.writeByte(LONG);
+			out.writeSignedVarLong(((Long) value).longValue());
+		} else if (type == Boolean.class) {
+			out.writeByte(((Boolean) value).booleanValue() ? TRUE : FALSE);
+		} else if (type == Double.class) {
+			out.writeByte(DOUBLE);
+			out.writeFixedLong(Double.doubleToLongBits(((Double) value)
+					.doubleValue()));
+		} else if (type == Float.class) {
+			out.writeByte(FLOAT);
+			out.writeFixedInt(Float.floatToIntBits(((Float) value).floatValue()));
+		} else if (type == Short.class) {
+			out.writeByte(SHORT);
+			out.writeSignedVarInt(((Short) value).shortValue());
+		} else if (type == Byte.class) {
+			out.writeByte(BYTE);
+			out.writeByte(((Byte) value).byteValue());
+		} else if (type == Character.class) {
+			out.writeByte(CHARACTER);
+			out.writeVarInt(((Character) value).charValue());
+		} else if (type == Class.class) {
+			out.writeByte(CLASS);
+			writeClass((Class) value, out);
+		} else if (value instanceof Enum) {
+			out.writeByte(ENUM);
+			writeClass(((Enum) value).getDeclaringClass(), out);
+			out.writeString(((Enum) value).name());
+		} else {
+			writeReference(value, type, out);
+		}
+	}
+
+	private Field[] instanceFields(Class type) {
+		List hierarchy = new ArrayList();
+		for (Class c = type; c != null && c != Object.class; c = c
+				.getSuperclass()) {
+			hierarchy.add(0, c);
+		}
+
+		List fields = new ArrayList();
+		for (Iterator i = hierarchy.iterator(); i.hasNext();) {
+			Field[] declared = ((Class) i.next()).getDeclaredFields();
+			Arrays.sort(declared, new Comparator() {
+				public int compare(Object o1, Object o2) {
+					return ((Field) o1).getName().compareTo(((Field) o2).getName());
+				}
+			});
+			for (int j = 0; j < declared.length; j++) {
+				int modifiers = declared[j].getModifiers();
+				if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+					fields.add(declared[j]);
+				}
+			}
+		}
+
+		Field[] result = (Field[]) fields.toArray(new Field[fields.size()]);
+		AccessibleObject.setAccessible(result, true);
+		return result;
+	}
+
+	private boolean isNative(Object value, Set types) {
+		if (!types.contains(value.getClass())) {
+			return false;
+		}
+		if (value instanceof SortedSet) {
+			return ((SortedSet) value).comparator() == null;
+		}
+		if (value instanceof SortedMap) {
+			return ((SortedMap) value).comparator() == null;
+		}
+		return true;
+	}
+
+	private ObjectType objectType(Class type) throws NoSuchMethodException {
+		ObjectType objectType = (ObjectType) objectTypes.get(type);
+		if (objectType == null) {
+			Constructor constructor = type.getDeclaredConstructor(new Class[0]);
+			constructor.setAccessible(true);
+			objectType = new ObjectType(constructor, instanceFields(type));
+			objectTypes.put(type, objectType);
+		}
+		return objectType;
+	}
+
+	private Object readArray(BinaryInput in) throws Exception {
+		Class componentType = readClass(in);
+		int length = in.readVarInt();
+		Object array = Array.newInstance(componentType, length);
+		in.handles.add(array);
+
+		if (componentType == byte.class) {
+			System.arraycopy(in.readBytes(length), 0, array, 0, length);
+		} else if (componentType.isPrimitive()) {
+			for (int i = 0; i < length; i++) {
+				Array.set(array, i, readPrimitive(componentType, in));
+			}
+		} else {
+			Object[] elements = (Object[]) array;
+			for (int i = 0; i < length; i++) {
+				elements[i] = read(in);
+			}
+		}
+		return array;
+	}
+
+	private Class readClass(BinaryInput in) throws ClassNotFoundException {
+		int kind = in.readByte();
+		if (kind == REGISTERED_CLASS) {
+			return classes[in.readVarInt()];
+		}
+		if (kind == CLASS_REFERENCE) {
+			return (Class) in.classes.get(in.readVarInt());
+		}
+		Class type = ClassUtils.forName(in.readString(), ClassUtils
+				.getDefaultClassLoader());
+		in.classes.add(type);
+		return type;
+	}
+
+	private Object readCollection(BinaryInput in) throws Exception {
+		Collection collection = (Collection) readClass(in).newInstance();
+		in.handles.add(collection);
+		int size = in.readVarInt();
+		for (int i = 0; i < size; i++) {
+			collection.add(read(in));
+		}
+		return collection;
+	}
+
+	private Object readMap(BinaryInput in) throws Exception {
+		Map map = (Map) readClass(in).newInstance();
+		in.handles.add(map);
+		int size = in.readVarInt();
+		for (int i = 0; i < size; i++) {
+			Object key = read(in);
+			map.put(key, read(in));
+		}
+		return map;
+	}
+
+	private Object readObject(BinaryInput in) throws Exception {
+		ObjectType objectType = objectType(readClass(in));
+		Object obj = objectType.constructor.newInstance(NO_ARGUMENTS);
+		in.handles.add(obj);
+
+		Field[] fields = objectType.fields;
+		for (int i = 0; i < fields.length; i++) {
+			Class fieldType = fields[i].getType();
+			fields[i].set(obj, fieldType.isPrimitive() ? readPrimitive(fieldType, in)
+					: read(in));
+		}
+		return obj;
+	}
+
+	private Object readPrimitive(Class type, BinaryInput in) {
+		if (type == int.class) {
+			return new Integer(in.readSignedVarInt());
+		}
+		if (type == long.class) {
+			return new Long(in.readSignedVarLong());
+		}
+		if (type == boolean.class) {
+			return Boolean.valueOf(in.readByte() != 0);
+		}
+		if (type == double.class) {
+			return new Double(Double.longBitsToDouble(in.readFixedLong()));
+		}
+		if (type == float.class) {
+			return new Float(Float.intBitsToFloat(in.readFixedInt()));
+		}
+		if (type == short.class) {
+			return new Short((short) in.readSignedVarInt());
+		}
+		if (type == char.class) {
+			return new Character((char) in.readVarInt());
+		}
+		return new Byte((byte) in.readByte());
+	}
+
+	private Object readSerialized(BinaryInput in) throws Exception {
+		int handle = in.handles.size();
+		in.handles.add(null);
+
+		byte[] bytes = in.readBytes(in.readVarInt());
+		ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(
+				bytes));
+		Object obj = stream.readObject();
+		stream.close();
+
+		in.handles.set(handle, obj);
+		return obj;
+	}
+
+	private void writeArray(Object array, Class componentType, BinaryOutput out)
+			throws Exception {
+		out.writeByte(ARRAY);
+		writeClass(componentType, out);
+		int length = Array.getLength(array);
+		out.writeVarInt(length);
+
+		if (componentType == byte.class) {
+			out.writeBytes((byte[]) array);
+		} else if (componentType.isPrimitive()) {
+			for (int i = 0; i < length; i++) {
+				writePrimitive(componentType, Array.get(array, i), out);
+			}
+		} else {
+			Object[] elements = (Object[]) array;
+			for (int i = 0; i < length; i++) {
+				write(elements[i], out);
+			}
+		}
+	}
+
+	private void writeClass(Class type, BinaryOutput out) {
+		Integer id = (Integer) classIds.get(type);
+		if (id != null) {
+			out.writeByte(REGISTERED_CLASS);
+			out.writeVarInt(id.intValue());
+			return;
+		}
+
+		id = (Integer) out.classIds.get(type);
+		if (id != null) {
+			out.writeByte(CLASS_REFERENCE);
+			out.writeVarInt(id.intValue());
+			return;
+		}
+
+		out.classIds.put(type, new Integer(out.classIds.size()));
+		out.writeByte(CLASS_NAME);
+		out.writeString(type.getName());
+	}
+
+	private void writeObject(Object obj, Class type, BinaryOutput out)
+			throws Exception {
+		out.writeByte(OBJECT);
+		writeClass(type, out);
+
+		Field[] fields = objectType(type).fields;
+		for (int i = 0; i < fields.length; i++) {
+			Class fieldType = fields[i].getType();
+			if (fieldType.isPrimitive()) {
+				writePrimitive(fieldType, fields[i].get(obj), out);
+			} else {
+				write(fields[i].get(obj), out);
+			}
+		}
+	}
+
+	private void writePrimitive(Class type, Object value, BinaryOutput out) {
+		if (type == int.class) {
+			out.writeSignedVarInt(((Integer) value).intValue());
+		} else if (type == long.class) {
+			out.writeSignedVarLong(((Long) value).longValue());
+		} else if (type == boolean.class) {
+			out.writeByte(((Boolean) value).booleanValue() ? 1 : 0);
+		} else if (type == double.class) {
+			out.writeFixedLong(Double.doubleToLongBits(((Double) value)
+					.doubleValue()));
+		} else if (type == float.class) {
+			out.writeFixedInt(Float.floatToIntBits(((Float) value).floatValue()));
+		} else if (type == short.class) {
+			out.writeSignedVarInt(((Short) value).shortValue());
+		} else if (type == char.class) {
+			out.writeVarInt(((Character) value).charValue());
+		} else {
+			out.writeByte(((Byte) value).byteValue());
+		}
+	}
+
+	private void writeReference(Object value, Class type, BinaryOutput out)
+			throws Exception {
+		Integer handle = (Integer) out.handles.get(value);
+		if (handle != null) {
+			out.writeByte(REFERENCE);
+			out.writeVarInt(handle.intValue());
+			return;
+		}
+		out.handles.put(value, new Integer(out.handles.size()));
+
+		if (type == Date.class) {
+			out.writeByte(DATE);
+			out.writeSignedVarLong(((Date) value).getTime());
+		} else if (type.isArray()) {
+			writeArray(value, type.getComponentType(), out);
+		} else if (isNative(value, NATIVE_COLLECTIONS)) {
+			Collection collection = (Collection) value;
+			out.writeByte(COLLECTION);
+			writeClass(type, out);
+			out.writeVarInt(collection.size());
+			for (Iterator i = collection.iterator(); i.hasNext();) {
+				write(i.next(), out);
+			}
+		} else if (isNative(value, NATIVE_MAPS)) {
+			Map map = (Map) value;
+			out.writeByte(MAP);
+			writeClass(type, out);
+			out.writeVarInt(map.size());
+			for (Iterator i = map.entrySet().iterator(); i.hasNext();) {
+				Map.Entry entry = (Map.Entry) i.next();
+				write(entry.getKey(), out);
+				write(entry.getValue(), out);
+			}
+		} else if (value instanceof Serializable) {
+			writeSerialized(value, out);
+		} else {
+			writeObject(value, type, out);
+		}
+	}
+
+	private void writeSerialized(Object value, BinaryOutput out)
+			throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream stream = new ObjectOutputStream(bytes);
+		stream.writeObject(value);
+		stream.close();
+
+		out.writeByte(SERIALIZED);
+		out.writeVarInt(bytes.size());
+		out.writeBytes(bytes.toByteArray());
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.serializable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the bytes written by <code>{@link BinaryCodec}</code>. Instances are
+ * reused by the thread that owns them.
+ *
+ * @author Alex Ruiz
+ */
+final class BinaryInput {
+
+	private byte[] buffer;
+
+	private int position;
+
+	/**
+	 * Objects already read, by handle.
+	 */
+	final List handles = new ArrayList();
+
+	/**
+	 * Unregistered classes already read, by identifier.
+	 */
+	final List classes = new ArrayList();
+
+	void reset(byte[] bytes) {
+		buffer = bytes;
+		position = 0;
+		handles.clear();
+		classes.clear();
+	}
+
+	int readByte() {
+		return buffer[position++];
+	}
+
+	byte[] readBytes(int length) {
+		byte[] bytes = new byte[length];
+		System.arraycopy(buffer, position, bytes, 0, length);
+		position += length;
+		return bytes;
+	}
+
+	int readFixedInt() {
+		return ((buffer[position++] & 0xFF) << 24)
+				| ((buffer[position++] & 0xFF) << 16)
+				| ((buffer[position++] & 0xFF) << 8) | (buffer[position++] & 0xFF);
+	}
+
+	long readFixedLong() {
+		return ((long) readFixedInt() << 32) | (readFixedInt() & 0xFFFFFFFFL);
+	}
+
+	int readSignedVarInt() {
+		int value = readVarInt();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	long readSignedVarLong() {
+		long value = readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	String readString() {
+		int length = readVarInt();
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) readVarInt();
+		}
+		return new String(chars);
+	}
+
+	int readVarInt() {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer[position++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	long readVarLong() {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer[position++];
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+}
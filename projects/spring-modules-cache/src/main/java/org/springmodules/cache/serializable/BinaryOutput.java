@@ -0,0 +1,138 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.serializable;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Growable byte buffer written by <code>{@link BinaryCodec}</code>. Instances
+ * are reused by the thread that owns them, so they keep the handles of the
+ * objects and classes already written only until the next reset.
+ *
+ * @author Alex Ruiz
+ */
+final class BinaryOutput {
+
+	private byte[] buffer;
+
+	private int count;
+
+	/**
+	 * Handles of the objects already written, stored by identity.
+	 */
+	final Map handles = new IdentityHashMap();
+
+	/**
+	 * Identifiers of the unregistered classes already written, stored by class.
+	 */
+	final Map classIds = new HashMap();
+
+	BinaryOutput(int initialSize) {
+		buffer = new byte[initialSize];
+	}
+
+	int capacity() {
+		return buffer.length;
+	}
+
+	void reset() {
+		count = 0;
+		handles.clear();
+		classIds.clear();
+	}
+
+	byte[] toByteArray() {
+		byte[] bytes = new byte[count];
+		System.arraycopy(buffer, 0, bytes, 0, count);
+		return bytes;
+	}
+
+	void writeByte(int value) {
+		ensureCapacity(1);
+		buffer[count++] = (byte) value;
+	}
+
+	void writeBytes(byte[] bytes) {
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, count, bytes.length);
+		count += bytes.length;
+	}
+
+	void writeFixedInt(int value) {
+		ensureCapacity(4);
+		buffer[count++] = (byte) (value >>> 24);
+		buffer[count++] = (byte) (value >>> 16);
+		buffer[count++] = (byte) (value >>> 8);
+		buffer[count++] = (byte) value;
+	}
+
+	void writeFixedLong(long value) {
+		writeFixedInt((int) (value >>> 32));
+		writeFixedInt((int) value);
+	}
+
+	void writeSignedVarInt(int value) {
+		writeVarInt((value << 1) ^ (value >> 31));
+	}
+
+	void writeSignedVarLong(long value) {
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+
+	void writeString(String value) {
+		int length = value.length();
+		writeVarInt(length);
+		ensureCapacity(length);
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				ensureCapacity(1);
+				buffer[count++] = (byte) c;
+			} else {
+				writeVarInt(c);
+			}
+		}
+	}
+
+	void writeVarInt(int value) {
+		ensureCapacity(5);
+		while ((value & ~0x7F) != 0) {
+			buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[count++] = (byte) value;
+	}
+
+	void writeVarLong(long value) {
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0) {
+			buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[count++] = (byte) value;
+	}
+
+	private void ensureCapacity(int length) {
+		if (count + length > buffer.length) {
+			byte[] newBuffer = new byte[Math.max(buffer.length << 1, count + length)];
+			System.arraycopy(buffer, 0, newBuffer, 0, count);
+			buffer = newBuffer;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.serializable;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.springmodules.cache.provider.InvalidObjectInCacheException;
+import org.springmodules.cache.provider.ObjectCannotBeCachedException;
+import org.springmodules.util.Objects;
+
+/**
+ * <p>
+ * Implementation of <code>{@link SerializableFactory}</code> that makes
+ * objects serializable by writing them in a compact binary form, without XML
+ * nor Java serialization streams.
+ * </p>
+ * <p>
+ * Each thread reuses its own buffers. Classes can be registered so they are
+ * written as small identifiers instead of names. The same classes, in the same
+ * order, should be registered in every JVM sharing the cache.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public class BinarySerializableFactory implements SerializableFactory {
+
+	/**
+	 * Wraps a binary-serialized object.
+	 */
+	public static class BinaryWrapper implements Serializable {
+
+		private static final long serialVersionUID = 6412891745631309652L;
+
+		private byte[] value;
+
+		/**
+		 * Constructor.
+		 */
+		public BinaryWrapper() {
+		}
+
+		/**
+		 * Constructor.
+		 *
+		 * @param value the new value to wrap
+		 */
+		public BinaryWrapper(byte[] value) {
+			setValue(value);
+		}
+
+		/**
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof BinaryWrapper)) {
+				return false;
+			}
+
+			BinaryWrapper wrapper = (BinaryWrapper) obj;
+			return Arrays.equals(value, wrapper.value);
+		}
+
+		/**
+		 * @return the wrapped value
+		 */
+		public byte[] getValue() {
+			return value;
+		}
+
+		/**
+		 * @see java.lang.Object#hashCode()
+		 */
+		public int hashCode() {
+			return Arrays.hashCode(value);
+		}
+
+		/**
+		 * Sets the new value to wrap
+		 *
+		 * @param value the new value
+		 */
+		public void setValue(byte[] value) {
+			this.value = value;
+		}
+
+		/**
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString() {
+			return Objects.identityToString(this)
+					.append("[length=")
+					.append(value == null ? 0 : value.length)
+					.append(']')
+					.toString();
+		}
+	}
+
+	private static final int INITIAL_BUFFER_SIZE = 256;
+
+	/**
+	 * Buffers larger than this size are not kept after use.
+	 */
+	private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
+	private volatile BinaryCodec codec = new BinaryCodec(new Class[0]);
+
+	private final ThreadLocal inputs = new ThreadLocal();
+
+	private final ThreadLocal outputs = new ThreadLocal();
+
+	/**
+	 * @see SerializableFactory#getOriginalValue(Object)
+	 */
+	public Object getOriginalValue(Object obj) {
+		if (!(obj instanceof BinaryWrapper)) {
+			return obj;
+		}
+
+		BinaryInput input = (BinaryInput) inputs.get();
+		if (input == null) {
+			input = new BinaryInput();
+			inputs.set(input);
+		}
+
+		input.reset(((BinaryWrapper) obj).getValue());
+		try {
+			return codec.read(input);
+		} catch (Exception exception) {
+			throw new InvalidObjectInCacheException(
+					"Unable to read the object retrieved from the cache", exception);
+		} finally {
+			input.reset(null);
+		}
+	}
+
+	/**
+	 * @see SerializableFactory#makeSerializableIfNecessary(Object)
+	 */
+	public Serializable makeSerializableIfNecessary(Object obj) {
+		if (obj == null || obj instanceof Serializable) {
+			return (Serializable) obj;
+		}
+
+		BinaryOutput output = (BinaryOutput) outputs.get();
+		if (output == null) {
+			output = new BinaryOutput(INITIAL_BUFFER_SIZE);
+			outputs.set(output);
+		}
+
+		try {
+			codec.write(obj, output);
+			return new BinaryWrapper(output.toByteArray());
+		} catch (Exception exception) {
+			throw new ObjectCannotBeCachedException("Unable to write the object <"
+					+ obj + "> in binary form", exception);
+		} finally {
+			output.reset();
+			if (output.capacity() > MAX_POOLED_BUFFER_SIZE) {
+				outputs.remove();
+			}
+		}
+	}
+
+	/**
+	 * Sets the classes to write as small identifiers instead of names.
+	 *
+	 * @param registeredClasses the classes to register
+	 */
+	public void setRegisteredClasses(Class[] registeredClasses) {
+		codec = new BinaryCodec(registeredClasses);
+	}
+
+}
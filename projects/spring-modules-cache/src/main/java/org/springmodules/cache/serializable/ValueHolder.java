@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.serializable;
+
+import java.io.Serializable;
+
+/**
+ * <p>
+ * Cache entry holding a value together with data of its own, like the time it
+ * was loaded. Cache provider facades make the held value serializable instead
+ * of the holder, so the holder can still be read back from the cache.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public interface ValueHolder extends Serializable {
+
+  /**
+   * @return the held value
+   */
+  Object getValue();
+
+  /**
+   * Returns a copy of this holder holding the given value instead.
+   *
+   * @param newValue
+   *          the new value, usually the held value made serializable or its
+   *          original value
+   * @return the new holder
+   */
+  ValueHolder withValue(Object newValue);
+}
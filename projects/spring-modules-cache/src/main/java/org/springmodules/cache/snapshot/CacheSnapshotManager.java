@@ -0,0 +1,544 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.snapshot;
+
+import java.beans.PropertyEditor;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.FatalCacheException;
+import org.springmodules.cache.provider.CacheKeyEnumerator;
+import org.springmodules.cache.provider.CacheModelValidator;
+import org.springmodules.cache.provider.CacheProviderFacade;
+
+/**
+ * <p>
+ * Saves the entries of the caches used by a set of caching models to a local
+ * file and loads them back when the application starts, so the caches are
+ * not empty after a restart.
+ * </p>
+ * <p>
+ * A snapshot is taken when this bean is destroyed and, optionally, at a fixed
+ * interval. Snapshots are written to a temporary file first, which then
+ * replaces the previous snapshot. The cache provider facade has to implement
+ * <code>{@link CacheKeyEnumerator}</code>, and keys and values have to be
+ * serializable; other entries are left out of the snapshot.
+ * </p>
+ * <p>
+ * Entries are restored in the background, in batches, without replacing the
+ * entries stored in the meantime. Keys are only found again if they are
+ * generated the same way across JVM runs, e.g. by a
+ * <code>{@link org.springmodules.cache.key.ArgumentsCacheKeyGenerator}</code>
+ * or a <code>{@link org.springmodules.cache.key.HashCodeCacheKeyGenerator}</code>
+ * with stable keys.
+ * </p>
+ * <p>
+ * The snapshot is a GZIP-compressed stream of entries grouped by the id of
+ * their caching model. Entries of models no longer configured, or which
+ * cannot be read back, are skipped.
+ * </p>
+ * <p>
+ * The remaining time-to-live of the entries is not saved: restored entries
+ * are stored with the time-to-live of their model, as new entries. Snapshots
+ * older than <code>maxAge</code>, one hour by default, are not restored, so
+ * entries do not outlive their data for too long.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public class CacheSnapshotManager implements InitializingBean, DisposableBean {
+
+  public static final int DEFAULT_BATCH_SIZE = 100;
+
+  /**
+   * Default maximum age of a restored snapshot: one hour.
+   */
+  public static final long DEFAULT_MAX_AGE = 60 * 60 * 1000;
+
+  private static final byte END = 0;
+
+  private static final byte ENTRY = 1;
+
+  private static final int MAGIC = 0x534d4353;
+
+  private static final byte MODEL = 2;
+
+  private static final int VERSION = 1;
+
+  private static final Log logger = LogFactory
+      .getLog(CacheSnapshotManager.class);
+
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  private CacheProviderFacade cacheProviderFacade;
+
+  private Map cachingModels;
+
+  private final ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+
+  private File file;
+
+  private long maxAge = DEFAULT_MAX_AGE;
+
+  private final CountDownLatch restored = new CountDownLatch(1);
+
+  private TaskExecutor restoreExecutor = defaultRestoreExecutor();
+
+  private long snapshotInterval;
+
+  /**
+   * Prevents snapshots from being written concurrently.
+   */
+  private final Object snapshotLock = new Object();
+
+  private Timer timer;
+
+  /**
+   * Validates the properties of this bean, starts restoring the last snapshot
+   * and schedules the periodic snapshots.
+   * 
+   * @throws FatalCacheException
+   *           if the cache provider facade, the file or the caching models are
+   *           missing, or if a caching model is not valid
+   */
+  public void afterPropertiesSet() throws FatalCacheException {
+    validateCacheProviderFacade();
+    if (file == null) {
+      throw new FatalCacheException("The snapshot file should not be null");
+    }
+    if (cachingModels instanceof Properties) {
+      setCachingModels(propertiesToModels());
+    }
+    validateModels();
+
+    restoreExecutor.execute(new Runnable() {
+      public void run() {
+        try {
+          restore();
+        } catch (Exception exception) {
+          logger.warn("Unable to restore the cache snapshot "
+              + StringUtils.quote(file.getPath()), exception);
+        }
+      }
+    });
+
+    if (snapshotInterval > 0) {
+      timer = new Timer("cache-snapshot", true);
+      timer.schedule(new TimerTask() {
+        public void run() {
+          snapshotQuietly();
+        }
+      }, snapshotInterval, snapshotInterval);
+    }
+  }
+
+  /**
+   * Waits until the last snapshot has been restored, or could not be.
+   * 
+   * @param timeout
+   *          the maximum number of milliseconds to wait
+   * @return <code>true</code> if the restore is over
+   * @throws InterruptedException
+   *           if the current thread is interrupted while waiting
+   */
+  public boolean awaitRestore(long timeout) throws InterruptedException {
+    return restored.await(timeout, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the periodic snapshots and takes a last snapshot.
+   */
+  public void destroy() {
+    if (timer != null) {
+      timer.cancel();
+    }
+    snapshotQuietly();
+  }
+
+  /**
+   * @return <code>true</code> if the last snapshot has been restored, or could
+   *         not be
+   */
+  public boolean isRestored() {
+    return restored.getCount() == 0;
+  }
+
+  /**
+   * Loads the entries of the snapshot file into the caches, unless the file
+   * does not exist or is older than the maximum age. Entries already stored
+   * in the caches are kept. Called in the background when this bean is
+   * initialized.
+   * 
+   * @return the number of entries stored in the caches
+   * @throws IOException
+   *           if the file cannot be read or is not a snapshot
+   */
+  public int restore() throws IOException {
+    try {
+      if (!file.exists()) {
+        return 0;
+      }
+      DataInputStream input = new DataInputStream(new BufferedInputStream(
+          new GZIPInputStream(new FileInputStream(file))));
+      try {
+        return restore(input);
+      } finally {
+        input.close();
+      }
+    } finally {
+      restored.countDown();
+    }
+  }
+
+  public void setBatchSize(int newBatchSize) {
+    batchSize = Math.max(1, newBatchSize);
+  }
+
+  public void setCacheProviderFacade(CacheProviderFacade newCacheProviderFacade) {
+    cacheProviderFacade = newCacheProviderFacade;
+  }
+
+  /**
+   * Sets the caching models which caches are saved, stored by id. The ids
+   * identify the entries of each model in the snapshot, so they should not
+   * change across restarts. Models may be given as text, as for the caching
+   * interceptors.
+   * 
+   * @param newCachingModels
+   *          the new caching models
+   */
+  public void setCachingModels(Map newCachingModels) {
+    cachingModels = newCachingModels;
+  }
+
+  public void setFile(File newFile) {
+    file = newFile;
+  }
+
+  /**
+   * Sets the maximum age of a snapshot, in milliseconds. Older snapshots are
+   * not restored. The default is one hour. Snapshots of any age are restored
+   * if the maximum age is not positive.
+   * 
+   * @param newMaxAge
+   *          the new maximum age
+   */
+  public void setMaxAge(long newMaxAge) {
+    maxAge = newMaxAge;
+  }
+
+  /**
+   * Sets the executor restoring the last snapshot. By default a new daemon
+   * thread is started.
+   * 
+   * @param newRestoreExecutor
+   *          the new executor
+   */
+  public void setRestoreExecutor(TaskExecutor newRestoreExecutor) {
+    restoreExecutor = newRestoreExecutor;
+  }
+
+  /**
+   * Sets the number of milliseconds between two snapshots. By default a
+   * snapshot is only taken when this bean is destroyed.
+   * 
+   * @param newSnapshotInterval
+   *          the new number of milliseconds
+   */
+  public void setSnapshotInterval(long newSnapshotInterval) {
+    snapshotInterval = newSnapshotInterval;
+  }
+
+  /**
+   * Saves the entries of the caches to the snapshot file. Does nothing while
+   * the last snapshot is being restored, since the caches are not complete
+   * yet.
+   * 
+   * @return the number of entries saved, or -1 if no snapshot was taken
+   * @throws IOException
+   *           if the file cannot be written
+   */
+  public int snapshot() throws IOException {
+    if (!isRestored()) {
+      logger.info("Not taking a cache snapshot while restoring the last one");
+      return -1;
+    }
+
+    synchronized (snapshotLock) {
+      File directory = file.getAbsoluteFile().getParentFile();
+      if (directory != null) {
+        directory.mkdirs();
+      }
+      File temporaryFile = new File(file.getPath() + ".tmp");
+
+      int count;
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+          new GZIPOutputStream(new FileOutputStream(temporaryFile))));
+      try {
+        count = snapshot(output);
+      } finally {
+        output.close();
+      }
+
+      if (!temporaryFile.renameTo(file)
+          && !(file.delete() && temporaryFile.renameTo(file))) {
+        throw new IOException("Unable to replace the snapshot file "
+            + StringUtils.quote(file.getPath()));
+      }
+      return count;
+    }
+  }
+
+  private TaskExecutor defaultRestoreExecutor() {
+    SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(
+        "cache-snapshot-restore-");
+    executor.setDaemon(true);
+    return executor;
+  }
+
+  /**
+   * @return the key and the value of an entry, or <code>null</code> if the
+   *         entry cannot be read
+   */
+  private Object[] deserialize(byte[] bytes) {
+    try {
+      ObjectInputStream input = new ConfigurableObjectInputStream(
+          new ByteArrayInputStream(bytes), classLoader);
+      try {
+        return new Object[] { input.readObject(), input.readObject() };
+      } finally {
+        input.close();
+      }
+    } catch (ClassNotFoundException exception) {
+      logger.debug("Skipping a cache entry which class cannot be found",
+          exception);
+    } catch (IOException exception) {
+      logger.debug("Skipping a cache entry which cannot be deserialized",
+          exception);
+    }
+    return null;
+  }
+
+  private Map propertiesToModels() {
+    PropertyEditor editor = cacheProviderFacade.getCachingModelEditor();
+    Properties properties = (Properties) cachingModels;
+
+    Map models = new HashMap();
+    for (Iterator i = properties.keySet().iterator(); i.hasNext();) {
+      String id = (String) i.next();
+      editor.setAsText(properties.getProperty(id));
+      models.put(id, editor.getValue());
+    }
+    return models;
+  }
+
+  private int restore(DataInputStream input) throws IOException {
+    if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+      throw new IOException(StringUtils.quote(file.getPath())
+          + " is not a cache snapshot");
+    }
+    long age = System.currentTimeMillis() - input.readLong();
+    if (maxAge > 0 && age > maxAge) {
+      logger.info("Not restoring the cache snapshot "
+          + StringUtils.quote(file.getPath()) + ", taken " + age + "ms ago");
+      return 0;
+    }
+
+    int count = 0;
+    CachingModel model = null;
+    Map batch = new HashMap();
+    for (byte type = input.readByte(); type != END; type = input.readByte()) {
+      if (type == MODEL) {
+        count += store(batch, model);
+        model = (CachingModel) cachingModels.get(input.readUTF());
+        continue;
+      }
+      if (type != ENTRY) {
+        throw new IOException("Unexpected record in the cache snapshot "
+            + StringUtils.quote(file.getPath()));
+      }
+
+      byte[] bytes = new byte[input.readInt()];
+      input.readFully(bytes);
+      if (model == null) {
+        continue;
+      }
+      Object[] entry = deserialize(bytes);
+      if (entry != null) {
+        batch.put(entry[0], entry[1]);
+        if (batch.size() >= batchSize) {
+          count += store(batch, model);
+        }
+      }
+    }
+    count += store(batch, model);
+
+    if (logger.isInfoEnabled()) {
+      logger.info("Restored " + count + " cache entries from "
+          + StringUtils.quote(file.getPath()));
+    }
+    return count;
+  }
+
+  private int snapshot(DataOutputStream output) throws IOException {
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    output.writeLong(System.currentTimeMillis());
+
+    CacheKeyEnumerator enumerator = (CacheKeyEnumerator) cacheProviderFacade;
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    int count = 0;
+
+    for (Iterator i = cachingModels.entrySet().iterator(); i.hasNext();) {
+      Map.Entry modelEntry = (Map.Entry) i.next();
+      CachingModel model = (CachingModel) modelEntry.getValue();
+      output.writeByte(MODEL);
+      output.writeUTF((String) modelEntry.getKey());
+
+      List keys = new ArrayList(enumerator.getKeys(model));
+      for (int from = 0; from < keys.size(); from += batchSize) {
+        Collection batchKeys = keys.subList(from, Math.min(keys.size(), from
+            + batchSize));
+        Map entries = cacheProviderFacade.getAllFromCache(batchKeys, model);
+
+        for (Iterator j = entries.entrySet().iterator(); j.hasNext();) {
+          Map.Entry entry = (Map.Entry) j.next();
+          if (entry.getValue() == null) {
+            continue;
+          }
+          buffer.reset();
+          try {
+            ObjectOutputStream objectOutput = new ObjectOutputStream(buffer);
+            objectOutput.writeObject(entry.getKey());
+            objectOutput.writeObject(entry.getValue());
+            objectOutput.close();
+          } catch (ObjectStreamException exception) {
+            logger.debug("Skipping the cache entry " + entry.getKey()
+                + " which cannot be serialized", exception);
+            continue;
+          }
+          output.writeByte(ENTRY);
+          output.writeInt(buffer.size());
+          buffer.writeTo(output);
+          count++;
+        }
+      }
+    }
+    output.writeByte(END);
+
+    if (logger.isInfoEnabled()) {
+      logger.info("Saved " + count + " cache entries to "
+          + StringUtils.quote(file.getPath()));
+    }
+    return count;
+  }
+
+  private void snapshotQuietly() {
+    try {
+      snapshot();
+    } catch (Exception exception) {
+      logger.warn("Unable to take a cache snapshot", exception);
+    }
+  }
+
+  /**
+   * Stores the entries of the given batch that are missing from the cache,
+   * then empties the batch.
+   * 
+   * @return the number of entries stored
+   */
+  private int store(Map batch, CachingModel model) {
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    try {
+      Map cached = cacheProviderFacade.getAllFromCache(batch.keySet(), model);
+      batch.keySet().removeAll(cached.keySet());
+      if (!batch.isEmpty()) {
+        cacheProviderFacade.putAllInCache(batch, model);
+      }
+      return batch.size();
+    } finally {
+      batch.clear();
+    }
+  }
+
+  private void validateCacheProviderFacade() throws FatalCacheException {
+    if (cacheProviderFacade == null) {
+      throw new FatalCacheException(
+          "The cache provider facade should not be null");
+    }
+    if (!(cacheProviderFacade instanceof CacheKeyEnumerator)) {
+      throw new FatalCacheException("The cache provider facade "
+          + cacheProviderFacade + " cannot list the keys of its caches");
+    }
+  }
+
+  private void validateModels() throws FatalCacheException {
+    if (CollectionUtils.isEmpty(cachingModels)) {
+      throw new FatalCacheException(
+          "The map of caching models should not be empty");
+    }
+
+    CacheModelValidator validator = cacheProviderFacade.modelValidator();
+    String id = null;
+    try {
+      for (Iterator i = cachingModels.keySet().iterator(); i.hasNext();) {
+        id = (String) i.next();
+        validator.validateCachingModel(cachingModels.get(id));
+      }
+    } catch (Exception exception) {
+      throw new FatalCacheException("Unable to validate caching model with id "
+          + StringUtils.quote(id), exception);
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.statistics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+import org.springmodules.cache.CacheModel;
+
+/**
+ * <p>
+ * Statistics of the cache operations performed with each model, recorded by
+ * the cache provider facades and the caching interceptors sharing an instance
+ * of this class.
+ * </p>
+ * <p>
+ * This class is a standard MBean and can be exported as is by Spring's
+ * <code>MBeanExporter</code> or registered in any <code>MBeanServer</code>.
+ * </p>
+ *
+ * @see org.springmodules.cache.provider.AbstractCacheProviderFacade#setStatistics(CacheStatistics)
+ * @see org.springmodules.cache.interceptor.caching.AbstractCachingInterceptor#setStatistics(CacheStatistics)
+ *
+ * @author Alex Ruiz
+ */
+public class CacheStatistics implements CacheStatisticsMBean {
+
+  /**
+   * Statistics stored by model.
+   */
+  private final ConcurrentHashMap statistics = new ConcurrentHashMap();
+
+  /**
+   * Returns the statistics of the given model, creating them if necessary.
+   *
+   * @param model
+   *          the model
+   * @return the statistics of the model
+   */
+  public ModelStatistics forModel(CacheModel model) {
+    ModelStatistics modelStatistics = (ModelStatistics) statistics.get(model);
+    if (modelStatistics == null) {
+      ModelStatistics newStatistics = new ModelStatistics(model,
+          modelName(model));
+      modelStatistics = (ModelStatistics) statistics.putIfAbsent(model,
+          newStatistics);
+      if (modelStatistics == null) {
+        modelStatistics = newStatistics;
+      }
+    }
+    return modelStatistics;
+  }
+
+  /**
+   * Returns the statistics of the given model, creating them if necessary.
+   *
+   * @param model
+   *          the model
+   * @param evictionCounter
+   *          provides the number of entries evicted from the caches used by the
+   *          model, if not already known
+   * @return the statistics of the model
+   */
+  public ModelStatistics forModel(CacheModel model,
+      EvictionCounter evictionCounter) {
+    ModelStatistics modelStatistics = forModel(model);
+    modelStatistics.bindEvictionCounter(evictionCounter);
+    return modelStatistics;
+  }
+
+  /**
+   * @return the statistics of all the models
+   */
+  public Collection getAllStatistics() {
+    return Collections.unmodifiableCollection(statistics.values());
+  }
+
+  public double getAverageGetTime(String modelName) {
+    return getStatistics(modelName).getAverageGetTime();
+  }
+
+  public double getAverageLoadTime(String modelName) {
+    return getStatistics(modelName).getAverageLoadTime();
+  }
+
+  public double getAveragePutTime(String modelName) {
+    return getStatistics(modelName).getAveragePutTime();
+  }
+
+  public double getEstimatedTimeSaved(String modelName) {
+    return getStatistics(modelName).getEstimatedTimeSaved();
+  }
+
+  public long getEvictionCount(String modelName) {
+    return getStatistics(modelName).getEvictionCount();
+  }
+
+  public long getFlushCount(String modelName) {
+    return getStatistics(modelName).getFlushCount();
+  }
+
+  public double getGetTimePercentile(String modelName, double percentile) {
+    return getStatistics(modelName).getGetTimePercentile(percentile);
+  }
+
+  public long getHitCount(String modelName) {
+    return getStatistics(modelName).getHitCount();
+  }
+
+  public double getHitRatio(String modelName) {
+    return getStatistics(modelName).getHitRatio();
+  }
+
+  public long getLoadCount(String modelName) {
+    return getStatistics(modelName).getLoadCount();
+  }
+
+  public long getLoadFailureCount(String modelName) {
+    return getStatistics(modelName).getLoadFailureCount();
+  }
+
+  public double getLoadTimePercentile(String modelName, double percentile) {
+    return getStatistics(modelName).getLoadTimePercentile(percentile);
+  }
+
+  public long getMissCount(String modelName) {
+    return getStatistics(modelName).getMissCount();
+  }
+
+  public String[] getModelNames() {
+    List names = new ArrayList();
+    for (Iterator i = statistics.values().iterator(); i.hasNext();) {
+      names.add(((ModelStatistics) i.next()).getName());
+    }
+    Collections.sort(names);
+    return (String[]) names.toArray(new String[names.size()]);
+  }
+
+  public long getPutCount(String modelName) {
+    return getStatistics(modelName).getPutCount();
+  }
+
+  public long getRemoveCount(String modelName) {
+    return getStatistics(modelName).getRemoveCount();
+  }
+
+  /**
+   * @param modelName
+   *          the name of a model
+   * @return the statistics of the model
+   * @throws IllegalArgumentException
+   *           if there are no statistics for the given model
+   */
+  public ModelStatistics getStatistics(String modelName)
+      throws IllegalArgumentException {
+    for (Iterator i = statistics.values().iterator(); i.hasNext();) {
+      ModelStatistics modelStatistics = (ModelStatistics) i.next();
+      if (modelStatistics.getName().equals(modelName)) {
+        return modelStatistics;
+      }
+    }
+    throw new IllegalArgumentException("No statistics for the model "
+        + StringUtils.quote(modelName));
+  }
+
+  public String[] getSummary() {
+    List lines = new ArrayList();
+    for (Iterator i = statistics.values().iterator(); i.hasNext();) {
+      lines.add(i.next().toString());
+    }
+    Collections.sort(lines);
+    return (String[]) lines.toArray(new String[lines.size()]);
+  }
+
+  public void reset() {
+    for (Iterator i = statistics.values().iterator(); i.hasNext();) {
+      ((ModelStatistics) i.next()).reset();
+    }
+  }
+
+  /**
+   * Returns the name of the given model: its short class name followed by its
+   * properties, as printed by <code>toString()</code>, without the identity
+   * hash code.
+   */
+  private String modelName(CacheModel model) {
+    String shortName = ClassUtils.getShortName(model.getClass());
+    String description = model.toString();
+    int properties = description.indexOf('[');
+    return properties < 0 ? shortName : shortName
+        + description.substring(properties);
+  }
+}
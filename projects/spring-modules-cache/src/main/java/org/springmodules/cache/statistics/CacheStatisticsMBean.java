@@ -0,0 +1,71 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.statistics;
+
+/**
+ * Management interface of <code>{@link CacheStatistics}</code>. Models are
+ * identified by the names returned by <code>{@link #getModelNames()}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public interface CacheStatisticsMBean {
+
+  double getAverageGetTime(String modelName);
+
+  double getAverageLoadTime(String modelName);
+
+  double getAveragePutTime(String modelName);
+
+  double getEstimatedTimeSaved(String modelName);
+
+  long getEvictionCount(String modelName);
+
+  long getFlushCount(String modelName);
+
+  double getGetTimePercentile(String modelName, double percentile);
+
+  long getHitCount(String modelName);
+
+  double getHitRatio(String modelName);
+
+  long getLoadCount(String modelName);
+
+  long getLoadFailureCount(String modelName);
+
+  double getLoadTimePercentile(String modelName, double percentile);
+
+  long getMissCount(String modelName);
+
+  /**
+   * @return the names of the models having statistics
+   */
+  String[] getModelNames();
+
+  long getPutCount(String modelName);
+
+  long getRemoveCount(String modelName);
+
+  /**
+   * @return one line per model, with its main counters
+   */
+  String[] getSummary();
+
+  /**
+   * Sets the statistics of all the models back to zero.
+   */
+  void reset();
+}
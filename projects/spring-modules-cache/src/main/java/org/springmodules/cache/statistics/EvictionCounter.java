@@ -0,0 +1,35 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.statistics;
+
+import org.springmodules.cache.CacheModel;
+
+/**
+ * Provides the number of entries evicted from the caches used by a model.
+ *
+ * @author Alex Ruiz
+ */
+public interface EvictionCounter {
+
+  /**
+   * @param model
+   *          the model using the caches
+   * @return the number of entries evicted from the caches, or -1 if the cache
+   *         provider does not count evictions
+   */
+  long getEvictionCount(CacheModel model);
+}
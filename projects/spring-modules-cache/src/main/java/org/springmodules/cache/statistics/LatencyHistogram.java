@@ -0,0 +1,130 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.statistics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations, in nanoseconds, recorded without locking. Durations
+ * are counted in buckets whose bounds are powers of two, so percentiles are
+ * approximated within a factor of two.
+ *
+ * @author Alex Ruiz
+ */
+final class LatencyHistogram {
+
+  private static final int BUCKETS = 64;
+
+  private static final int STRIPES = Math.min(StripedCounter.STRIPES, 8);
+
+  private final AtomicLongArray buckets = new AtomicLongArray(STRIPES * BUCKETS);
+
+  private final StripedCounter count = new StripedCounter();
+
+  private final AtomicLong max = new AtomicLong();
+
+  private final StripedCounter total = new StripedCounter();
+
+  long getCount() {
+    return count.sum();
+  }
+
+  long getMax() {
+    return max.get();
+  }
+
+  /**
+   * @return the mean of the recorded durations, or zero if no duration was
+   *         recorded
+   */
+  double getMean() {
+    long n = count.sum();
+    return n == 0 ? 0 : (double) total.sum() / n;
+  }
+
+  long getTotal() {
+    return total.sum();
+  }
+
+  /**
+   * Returns an upper bound of the given percentile of the recorded durations.
+   *
+   * @param percentile
+   *          the percentile, between 0 and 100
+   * @return the upper bound, or zero if no duration was recorded
+   */
+  long percentile(double percentile) {
+    long[] counts = new long[BUCKETS];
+    long n = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      for (int s = 0; s < STRIPES; s++) {
+        counts[b] += buckets.get(s * BUCKETS + b);
+      }
+      n += counts[b];
+    }
+    if (n == 0) {
+      return 0;
+    }
+
+    long rank = (long) Math.ceil(n * Math.max(0, Math.min(100, percentile)) / 100);
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += counts[b];
+      if (seen >= rank && counts[b] > 0) {
+        return Math.min(upperBound(b), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    buckets.incrementAndGet(StripedCounter.stripe() % STRIPES * BUCKETS
+        + bucket(nanos));
+    count.increment();
+    total.add(nanos);
+
+    long current = max.get();
+    while (nanos > current && !max.compareAndSet(current, nanos)) {
+      current = max.get();
+    }
+  }
+
+  void reset() {
+    for (int i = 0; i < buckets.length(); i++) {
+      buckets.set(i, 0);
+    }
+    count.reset();
+    total.reset();
+    max.set(0);
+  }
+
+  /**
+   * @return the index of the bucket holding the durations between
+   *         2<sup>index - 1</sup> and 2<sup>index</sup> - 1 nanoseconds
+   */
+  private static int bucket(long nanos) {
+    return Math.min(BUCKETS - 1, BUCKETS - Long.numberOfLeadingZeros(nanos));
+  }
+
+  private static long upperBound(int bucket) {
+    return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+  }
+}
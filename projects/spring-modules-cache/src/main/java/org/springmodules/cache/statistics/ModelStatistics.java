@@ -0,0 +1,303 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.statistics;
+
+import org.springmodules.cache.CacheModel;
+
+/**
+ * <p>
+ * Counters and latency histograms of the cache operations performed with a
+ * single model. Recording an operation never blocks.
+ * </p>
+ * <p>
+ * Durations are recorded in nanoseconds and reported in milliseconds.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public final class ModelStatistics {
+
+  private static final double NANOS_PER_MILLI = 1000000d;
+
+  private volatile EvictionCounter evictionCounter;
+
+  private final LatencyHistogram flushes = new LatencyHistogram();
+
+  private final LatencyHistogram gets = new LatencyHistogram();
+
+  private final StripedCounter hits = new StripedCounter();
+
+  private final StripedCounter loadFailures = new StripedCounter();
+
+  private final LatencyHistogram loads = new LatencyHistogram();
+
+  private final StripedCounter misses = new StripedCounter();
+
+  private final CacheModel model;
+
+  private final String name;
+
+  private final StripedCounter puts = new StripedCounter();
+
+  private final LatencyHistogram putTimes = new LatencyHistogram();
+
+  private final StripedCounter removes = new StripedCounter();
+
+  ModelStatistics(CacheModel newModel, String newName) {
+    model = newModel;
+    name = newName;
+  }
+
+  /**
+   * @return the mean time spent flushing the cache, in milliseconds
+   */
+  public double getAverageFlushTime() {
+    return flushes.getMean() / NANOS_PER_MILLI;
+  }
+
+  /**
+   * @return the mean time spent retrieving an entry from the cache, in
+   *         milliseconds
+   */
+  public double getAverageGetTime() {
+    return gets.getMean() / NANOS_PER_MILLI;
+  }
+
+  /**
+   * @return the mean time spent invoking the intercepted method after a cache
+   *         miss, in milliseconds
+   */
+  public double getAverageLoadTime() {
+    return loads.getMean() / NANOS_PER_MILLI;
+  }
+
+  /**
+   * @return the mean time spent storing an entry in the cache, in milliseconds
+   */
+  public double getAveragePutTime() {
+    return putTimes.getMean() / NANOS_PER_MILLI;
+  }
+
+  /**
+   * Returns an estimate of the time saved by caching: the time the hits would
+   * have spent loading entries minus the time spent accessing the cache. A
+   * negative value indicates a model that costs more than it saves.
+   *
+   * @return the estimated time saved, in milliseconds
+   */
+  public double getEstimatedTimeSaved() {
+    double loadTime = hits.sum() * loads.getMean();
+    return (loadTime - gets.getTotal() - putTimes.getTotal()) / NANOS_PER_MILLI;
+  }
+
+  /**
+   * @return the number of entries evicted from the caches used by the model,
+   *         or -1 if the cache provider does not count evictions
+   */
+  public long getEvictionCount() {
+    EvictionCounter counter = evictionCounter;
+    return counter == null ? -1 : counter.getEvictionCount(model);
+  }
+
+  public long getFlushCount() {
+    return flushes.getCount();
+  }
+
+  /**
+   * Returns an upper bound of the given percentile of the time spent retrieving
+   * an entry from the cache, accurate within a factor of two.
+   *
+   * @param percentile
+   *          the percentile, between 0 and 100
+   * @return the upper bound, in milliseconds
+   */
+  public double getGetTimePercentile(double percentile) {
+    return gets.percentile(percentile) / NANOS_PER_MILLI;
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * @return the number of hits divided by the number of retrievals, or zero if
+   *         no entry was retrieved
+   */
+  public double getHitRatio() {
+    long h = hits.sum();
+    long total = h + misses.sum();
+    return total == 0 ? 0 : (double) h / total;
+  }
+
+  public long getLoadCount() {
+    return loads.getCount();
+  }
+
+  public long getLoadFailureCount() {
+    return loadFailures.sum();
+  }
+
+  /**
+   * Returns an upper bound of the given percentile of the time spent invoking
+   * the intercepted method after a cache miss, accurate within a factor of two.
+   *
+   * @param percentile
+   *          the percentile, between 0 and 100
+   * @return the upper bound, in milliseconds
+   */
+  public double getLoadTimePercentile(double percentile) {
+    return loads.percentile(percentile) / NANOS_PER_MILLI;
+  }
+
+  /**
+   * @return the longest time spent invoking the intercepted method after a
+   *         cache miss, in milliseconds
+   */
+  public double getMaxLoadTime() {
+    return loads.getMax() / NANOS_PER_MILLI;
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public CacheModel getModel() {
+    return model;
+  }
+
+  /**
+   * @return the name of the model, made of the class name of the model and its
+   *         properties
+   */
+  public String getName() {
+    return name;
+  }
+
+  public long getPutCount() {
+    return puts.sum();
+  }
+
+  public long getRemoveCount() {
+    return removes.sum();
+  }
+
+  public void recordFlush(long nanos) {
+    flushes.record(nanos);
+  }
+
+  /**
+   * Records a retrieval from the cache.
+   *
+   * @param hit
+   *          <code>true</code> if the entry was found
+   * @param nanos
+   *          the time spent retrieving the entry
+   */
+  public void recordGet(boolean hit, long nanos) {
+    if (hit) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    gets.record(nanos);
+  }
+
+  /**
+   * Records the retrieval of several entries at once.
+   *
+   * @param hitCount
+   *          the number of entries found
+   * @param missCount
+   *          the number of entries not found
+   * @param nanos
+   *          the time spent retrieving the entries
+   */
+  public void recordGetAll(int hitCount, int missCount, long nanos) {
+    hits.add(hitCount);
+    misses.add(missCount);
+    gets.record(nanos);
+  }
+
+  /**
+   * Records an invocation of the intercepted method after a cache miss.
+   *
+   * @param successful
+   *          <code>false</code> if the method threw an exception
+   * @param nanos
+   *          the time spent invoking the method
+   */
+  public void recordLoad(boolean successful, long nanos) {
+    if (successful) {
+      loads.record(nanos);
+    } else {
+      loadFailures.increment();
+    }
+  }
+
+  public void recordPut(long nanos) {
+    puts.increment();
+    putTimes.record(nanos);
+  }
+
+  /**
+   * Records the storage of several entries at once.
+   *
+   * @param count
+   *          the number of entries stored
+   * @param nanos
+   *          the time spent storing the entries
+   */
+  public void recordPutAll(int count, long nanos) {
+    puts.add(count);
+    putTimes.record(nanos);
+  }
+
+  public void recordRemove(int count) {
+    removes.add(count);
+  }
+
+  /**
+   * Sets all the counters and histograms back to zero. Operations recorded
+   * while resetting may be partially lost.
+   */
+  public void reset() {
+    flushes.reset();
+    gets.reset();
+    hits.reset();
+    loadFailures.reset();
+    loads.reset();
+    misses.reset();
+    puts.reset();
+    putTimes.reset();
+    removes.reset();
+  }
+
+  public String toString() {
+    return name + "[hits=" + getHitCount() + ", misses=" + getMissCount()
+        + ", loads=" + getLoadCount() + ", averageLoadTime="
+        + getAverageLoadTime() + "ms, evictions=" + getEvictionCount() + "]";
+  }
+
+  /**
+   * Sets the given eviction counter, unless a counter has already been set.
+   */
+  void bindEvictionCounter(EvictionCounter newEvictionCounter) {
+    if (evictionCounter == null) {
+      evictionCounter = newEvictionCounter;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.statistics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter updated by many threads without locking. Each thread adds to one of
+ * several cells, chosen by its id, so concurrent updates rarely touch the same
+ * cache line. Reading the counter sums the cells.
+ *
+ * @author Alex Ruiz
+ */
+final class StripedCounter {
+
+  /**
+   * Number of <code>long</code>s between two cells, so that each cell sits on
+   * its own cache line.
+   */
+  private static final int PADDING = 8;
+
+  static final int STRIPES = stripes();
+
+  private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+  void add(long delta) {
+    cells.addAndGet(stripe() * PADDING, delta);
+  }
+
+  void increment() {
+    add(1);
+  }
+
+  void reset() {
+    for (int i = 0; i < STRIPES; i++) {
+      cells.set(i * PADDING, 0);
+    }
+  }
+
+  long sum() {
+    long sum = 0;
+    for (int i = 0; i < STRIPES; i++) {
+      sum += cells.get(i * PADDING);
+    }
+    return sum;
+  }
+
+  /**
+   * @return the index of the stripe used by the current thread
+   */
+  static int stripe() {
+    long id = Thread.currentThread().getId();
+    return (int) (id ^ (id >>> 16)) & (STRIPES - 1);
+  }
+
+  /**
+   * @return the smallest power of two greater than or equal to twice the number
+   *         of processors
+   */
+  private static int stripes() {
+    int processors = Runtime.getRuntime().availableProcessors() * 2;
+    int stripes = 1;
+    while (stripes < processors) {
+      stripes <<= 1;
+    }
+    return stripes;
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.tag;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.util.ObjectUtils;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.provider.CacheProviderFacade;
+
+/**
+ * <p>
+ * Index of the cache entries stored under each dependency tag, independent
+ * from the cache provider. Entries are tagged by the caching interceptors
+ * when they are stored, and removed from the cache by the flushing
+ * interceptors when one of their tags is invalidated, so a write only evicts
+ * the entries depending on the data it changes.
+ * </p>
+ * <p>
+ * The same index should be shared by the caching and the flushing
+ * interceptors. Tags are removed from the index when they are invalidated.
+ * Entries evicted or expired by the cache provider stay in the index until
+ * then, so the number of entries of a tag is bounded: a tag having
+ * <code>maxEntriesPerTag</code> entries is invalidated before a new entry is
+ * recorded under it. Its entries are removed from the cache early, but no
+ * cached entry is ever missing from the index.
+ * </p>
+ *
+ * @see TagPattern
+ * @see org.springmodules.cache.provider.AbstractCachingModel#setTags(String[])
+ * @see org.springmodules.cache.provider.AbstractFlushingModel#setTags(String[])
+ *
+ * @author Alex Ruiz
+ */
+public class TagIndex {
+
+  /**
+   * Key and model of a tagged entry.
+   */
+  private static final class TaggedEntry {
+
+    final Serializable key;
+
+    final CachingModel model;
+
+    private final int hashCode;
+
+    TaggedEntry(Serializable newKey, CachingModel newModel) {
+      key = newKey;
+      model = newModel;
+      hashCode = 31 * key.hashCode() + ObjectUtils.nullSafeHashCode(model);
+    }
+
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof TaggedEntry)) return false;
+      TaggedEntry other = (TaggedEntry) obj;
+      return key.equals(other.key)
+          && ObjectUtils.nullSafeEquals(model, other.model);
+    }
+
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * Default maximum number of entries of a tag.
+   */
+  public static final int DEFAULT_MAX_ENTRIES_PER_TAG = 10000;
+
+  /**
+   * Entries stored by tag. The entries of a tag are the keys of a concurrent
+   * map.
+   */
+  private final ConcurrentHashMap entriesByTag = new ConcurrentHashMap();
+
+  private volatile int maxEntriesPerTag = DEFAULT_MAX_ENTRIES_PER_TAG;
+
+  /**
+   * Removes all the tags from the index.
+   */
+  public void clear() {
+    entriesByTag.clear();
+  }
+
+  /**
+   * @return the number of entries having the given tag
+   */
+  public int getEntryCount(String tag) {
+    Map entries = (Map) entriesByTag.get(tag);
+    return (entries != null) ? entries.size() : 0;
+  }
+
+  /**
+   * @return the maximum number of entries of a tag
+   */
+  public int getMaxEntriesPerTag() {
+    return maxEntriesPerTag;
+  }
+
+  /**
+   * @return the number of tags in the index
+   */
+  public int getTagCount() {
+    return entriesByTag.size();
+  }
+
+  /**
+   * Removes from the cache all the entries having any of the given tags, one
+   * bulk removal per caching model.
+   *
+   * @param tags
+   *          the tags to invalidate
+   * @param cache
+   *          the cache storing the entries
+   * @return the number of entries removed
+   */
+  public int invalidate(Collection tags, CacheProviderFacade cache) {
+    Map keysByModel = new HashMap();
+    for (Iterator i = tags.iterator(); i.hasNext();) {
+      Map entries = (Map) entriesByTag.remove(i.next());
+      if (entries == null) continue;
+
+      for (Iterator j = entries.keySet().iterator(); j.hasNext();) {
+        TaggedEntry entry = (TaggedEntry) j.next();
+        Set keys = (Set) keysByModel.get(entry.model);
+        if (keys == null) {
+          keys = new HashSet();
+          keysByModel.put(entry.model, keys);
+        }
+        keys.add(entry.key);
+      }
+    }
+
+    int count = 0;
+    for (Iterator i = keysByModel.entrySet().iterator(); i.hasNext();) {
+      Map.Entry modelKeys = (Map.Entry) i.next();
+      Set keys = (Set) modelKeys.getValue();
+      cache.removeAllFromCache(keys, (CachingModel) modelKeys.getKey());
+      count += keys.size();
+    }
+    return count;
+  }
+
+  /**
+   * Sets the maximum number of entries of a tag. The default is 10000.
+   *
+   * @param max
+   *          the new number of entries
+   */
+  public void setMaxEntriesPerTag(int max) {
+    maxEntriesPerTag = Math.max(1, max);
+  }
+
+  /**
+   * Records the tags of a cache entry. Should be called before the entry is
+   * stored, so an entry in the cache is always in the index. A tag already
+   * having the maximum number of entries is invalidated first.
+   *
+   * @param key
+   *          the key of the entry
+   * @param model
+   *          the model used to store the entry
+   * @param tags
+   *          the tags of the entry
+   * @param cache
+   *          the cache storing the entries
+   */
+  public void tag(Serializable key, CachingModel model, Collection tags,
+      CacheProviderFacade cache) {
+    if (tags.isEmpty()) return;
+    TaggedEntry entry = new TaggedEntry(key, model);
+    for (Iterator i = tags.iterator(); i.hasNext();) {
+      Object tag = i.next();
+      Map entries = entriesOf(tag);
+      if (entries.size() >= maxEntriesPerTag && !entries.containsKey(entry)) {
+        invalidate(Collections.singleton(tag), cache);
+        entries = entriesOf(tag);
+      }
+      entries.put(entry, Boolean.TRUE);
+
+      // the tag may have been invalidated before the entry was recorded, and
+      // its entries removed from the index without this one
+      while (entriesByTag.get(tag) != entries) {
+        entries = entriesOf(tag);
+        entries.put(entry, Boolean.TRUE);
+      }
+    }
+  }
+
+  private Map entriesOf(Object tag) {
+    Map entries = (Map) entriesByTag.get(tag);
+    if (entries == null) {
+      Map newEntries = new ConcurrentHashMap();
+      entries = (Map) entriesByTag.putIfAbsent(tag, newEntries);
+      if (entries == null) {
+        entries = newEntries;
+      }
+    }
+    return entries;
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.tag;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * <p>
+ * Pattern of the dependency tags of a cache entry or of a flush, resolved
+ * against the arguments and the return value of an intercepted method.
+ * </p>
+ * <p>
+ * A pattern is made of text and at most one placeholder between braces:
+ * <code>{<i>n</i>}</code> stands for the argument at index <i>n</i> and
+ * <code>{result}</code> for the return value. A placeholder may be followed by
+ * a property path, like <code>{0.id}</code>. A placeholder resolving to
+ * <code>null</code> produces no tag, and one resolving to a collection or an
+ * array produces a tag per element. For example, <code>user:{0.id}</code>
+ * resolves to <code>user:42</code> when the first argument is a user with the
+ * identifier 42.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public final class TagPattern implements Serializable {
+
+  private static final long serialVersionUID = -2876543812204569733L;
+
+  private static final int NO_PLACEHOLDER = -2;
+
+  private static final int RESULT = -1;
+
+  /**
+   * Index of the argument in the placeholder, <code>RESULT</code> for the
+   * return value or <code>NO_PLACEHOLDER</code> for a constant tag.
+   */
+  private final int index;
+
+  private final String path;
+
+  private final String prefix;
+
+  private final String source;
+
+  private final String suffix;
+
+  private TagPattern(String newSource, String newPrefix, int newIndex,
+      String newPath, String newSuffix) {
+    source = newSource;
+    prefix = newPrefix;
+    index = newIndex;
+    path = newPath;
+    suffix = newSuffix;
+  }
+
+  /**
+   * Compiles the given pattern.
+   *
+   * @param pattern
+   *          the pattern
+   * @return the compiled pattern
+   * @throws IllegalArgumentException
+   *           if the pattern is empty, has an unbalanced brace, more than one
+   *           placeholder, or a placeholder that is neither an argument index
+   *           nor <code>result</code>
+   */
+  public static TagPattern compile(String pattern)
+      throws IllegalArgumentException {
+    if (!StringUtils.hasText(pattern)) {
+      throw new IllegalArgumentException("The tag pattern should not be empty");
+    }
+    String trimmed = pattern.trim();
+    int open = trimmed.indexOf('{');
+    int close = trimmed.indexOf('}');
+    if (open < 0 && close < 0) {
+      return new TagPattern(trimmed, trimmed, NO_PLACEHOLDER, null, "");
+    }
+    if (open < 0 || close < open || trimmed.indexOf('{', open + 1) >= 0
+        || trimmed.indexOf('}', close + 1) >= 0) {
+      throw new IllegalArgumentException("The tag pattern "
+          + StringUtils.quote(trimmed)
+          + " should contain at most one placeholder between braces");
+    }
+
+    String placeholder = trimmed.substring(open + 1, close);
+    int dot = placeholder.indexOf('.');
+    String root = (dot < 0) ? placeholder : placeholder.substring(0, dot);
+    String path = (dot < 0) ? null : placeholder.substring(dot + 1);
+
+    return new TagPattern(trimmed, trimmed.substring(0, open), index(root,
+        trimmed), StringUtils.hasText(path) ? path : null, trimmed
+        .substring(close + 1));
+  }
+
+  /**
+   * Compiles the given patterns.
+   *
+   * @param patterns
+   *          the patterns, may be <code>null</code>
+   * @return the compiled patterns, never <code>null</code>
+   * @throws IllegalArgumentException
+   *           if any of the patterns is not valid
+   * @see #compile(String)
+   */
+  public static TagPattern[] compile(String[] patterns)
+      throws IllegalArgumentException {
+    if (patterns == null) return new TagPattern[0];
+    TagPattern[] compiled = new TagPattern[patterns.length];
+    for (int i = 0; i < patterns.length; i++) {
+      compiled[i] = compile(patterns[i]);
+    }
+    return compiled;
+  }
+
+  /**
+   * Returns the sources of the given patterns.
+   */
+  public static String[] sources(TagPattern[] patterns) {
+    String[] sources = new String[patterns.length];
+    for (int i = 0; i < patterns.length; i++) {
+      sources[i] = patterns[i].source;
+    }
+    return sources;
+  }
+
+  /**
+   * Resolves the given patterns.
+   *
+   * @param patterns
+   *          the patterns to resolve
+   * @param arguments
+   *          the arguments of the intercepted method
+   * @param result
+   *          the return value of the intercepted method, <code>null</code> if
+   *          the method has not been executed yet
+   * @return the distinct tags
+   */
+  public static Collection tags(TagPattern[] patterns, Object[] arguments,
+      Object result) {
+    Collection tags = new LinkedHashSet();
+    for (int i = 0; i < patterns.length; i++) {
+      patterns[i].resolve(arguments, result, tags);
+    }
+    return tags;
+  }
+
+  /**
+   * @return <code>true</code> if this pattern depends on the return value of
+   *         the intercepted method
+   */
+  public boolean isResultDependent() {
+    return index == RESULT;
+  }
+
+  /**
+   * Adds the tags this pattern resolves to.
+   *
+   * @param arguments
+   *          the arguments of the intercepted method
+   * @param result
+   *          the return value of the intercepted method
+   * @param tags
+   *          where to add the tags
+   */
+  public void resolve(Object[] arguments, Object result, Collection tags) {
+    if (index == NO_PLACEHOLDER) {
+      tags.add(prefix);
+      return;
+    }
+
+    Object value;
+    if (index == RESULT) {
+      value = result;
+    } else {
+      if (arguments == null || index >= arguments.length) return;
+      value = arguments[index];
+    }
+
+    for (Iterator i = values(value).iterator(); i.hasNext();) {
+      Object element = i.next();
+      if (element != null && path != null) {
+        element = new BeanWrapperImpl(element).getPropertyValue(path);
+      }
+      if (element != null) {
+        tags.add(prefix + element + suffix);
+      }
+    }
+  }
+
+  public String toString() {
+    return source;
+  }
+
+  private static int index(String root, String pattern) {
+    if ("result".equals(root)) return RESULT;
+    try {
+      int index = Integer.parseInt(root);
+      if (index >= 0) return index;
+    } catch (NumberFormatException exception) {
+      // reported below
+    }
+    throw new IllegalArgumentException("The placeholder of the tag pattern "
+        + StringUtils.quote(pattern)
+        + " should be an argument index or 'result'");
+  }
+
+  private static Collection values(Object value) {
+    if (value instanceof Collection) return (Collection) value;
+    if (value != null && value.getClass().isArray()) {
+      Object[] elements = ObjectUtils.toObjectArray(value);
+      List values = new ArrayList(elements.length);
+      for (int i = 0; i < elements.length; i++) {
+        values.add(elements[i]);
+      }
+      return values;
+    }
+    List values = new ArrayList(1);
+    values.add(value);
+    return values;
+  }
+}
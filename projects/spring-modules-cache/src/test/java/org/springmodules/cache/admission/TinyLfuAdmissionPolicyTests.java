@@ -0,0 +1,193 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.admission;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryCacheManager;
+import org.springmodules.cache.provider.memory.MemoryCacheFacade;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+import org.springmodules.cache.provider.memory.MemoryFlushingModel;
+
+/**
+ * Unit Tests for <code>{@link TinyLfuAdmissionPolicy}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class TinyLfuAdmissionPolicyTests extends TestCase {
+
+  private static final int MAXIMUM_SIZE = 100;
+
+  private MemoryCachingModel model;
+
+  private TinyLfuAdmissionPolicy policy;
+
+  public TinyLfuAdmissionPolicyTests(String name) {
+    super(name);
+  }
+
+  public void testAdmitsEntriesUntilFull() {
+    for (int i = 0; i < MAXIMUM_SIZE; i++) {
+      assertTrue(policy.admit(new Integer(i), model));
+    }
+    assertEquals(MAXIMUM_SIZE, policy.getAdmissionCount());
+    assertEquals(0, policy.getRejectionCount());
+  }
+
+  public void testAdmitsEntryAlreadyAdmitted() {
+    fill(2);
+    assertTrue(policy.admit(new Integer(50), model));
+    assertEquals(0, policy.getRejectionCount());
+  }
+
+  public void testAdmitsEntryMoreFrequentThanVictim() {
+    fill(2);
+    Integer key = new Integer(-1);
+    access(key, 3);
+    assertTrue(policy.admit(key, model));
+  }
+
+  public void testCostAwareAdmitsCostlyEntry() {
+    policy.setCostAware(true);
+    fill(2);
+    Integer key = new Integer(-1);
+    access(key, 2);
+    assertFalse(policy.admit(key, model));
+
+    policy.recordLoad(key, model, 50000000L);
+    assertTrue(policy.admit(key, model));
+  }
+
+  public void testFlushForgetsAdmittedEntries() {
+    MemoryCacheFacade cacheFacade = newCacheFacade(new MemoryCache(), policy);
+    fill(2);
+    cacheFacade.flushCache(new MemoryFlushingModel("documents"));
+
+    Integer key = new Integer(-1);
+    access(key, 1);
+    assertTrue(policy.admit(key, model));
+  }
+
+  public void testHitRatioWithScans() {
+    double withoutPolicy = hitRatio(null);
+    double withPolicy = hitRatio(policy);
+    assertTrue("hit ratio with policy: " + withPolicy + ", without: "
+        + withoutPolicy, withPolicy > withoutPolicy + 0.1);
+  }
+
+  public void testRemovalForgetsAdmittedEntry() {
+    MemoryCacheFacade cacheFacade = newCacheFacade(new MemoryCache(), policy);
+    fill(2);
+    cacheFacade.removeFromCache(new Integer(50), model);
+
+    Integer key = new Integer(-1);
+    access(key, 1);
+    assertTrue(policy.admit(key, model));
+    assertFalse(policy.admit(new Integer(-2), model));
+    assertTrue(policy.admit(new Integer(51), model));
+  }
+
+  public void testRejectedEntryRemovesPreviousValue() {
+    MemoryCache cache = new MemoryCache();
+    MemoryCacheFacade cacheFacade = newCacheFacade(cache, policy);
+    fill(2);
+
+    Integer key = new Integer(-1);
+    cache.put(key, "stale");
+    cacheFacade.putInCache(key, model, "fresh");
+    assertNull(cacheFacade.getFromCache(key, model));
+  }
+
+  public void testRejectsOneHitWonderWhenFull() {
+    fill(2);
+    Integer key = new Integer(-1);
+    access(key, 1);
+    assertFalse(policy.admit(key, model));
+    assertEquals(1, policy.getRejectionCount());
+  }
+
+  public void testSetMaximumSizeWithZero() {
+    try {
+      policy.setMaximumSize(0);
+      fail();
+    } catch (IllegalArgumentException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  protected void setUp() {
+    model = new MemoryCachingModel("documents");
+    policy = new TinyLfuAdmissionPolicy();
+    policy.setMaximumSize(MAXIMUM_SIZE);
+  }
+
+  private void access(Integer key, int count) {
+    for (int i = 0; i < count; i++) {
+      policy.recordAccess(key, model);
+    }
+  }
+
+  /**
+   * Admits <code>MAXIMUM_SIZE</code> entries, each accessed the given number
+   * of times.
+   */
+  private void fill(int accesses) {
+    for (int i = 0; i < MAXIMUM_SIZE; i++) {
+      Integer key = new Integer(i);
+      access(key, accesses);
+      assertTrue(policy.admit(key, model));
+    }
+  }
+
+  /**
+   * Simulates a workload mixing accesses to a set of hot keys with a scan of
+   * keys read only once, against an LRU cache holding
+   * <code>MAXIMUM_SIZE</code> entries.
+   */
+  private double hitRatio(AdmissionPolicy admissionPolicy) {
+    MemoryCacheFacade cacheFacade = newCacheFacade(new MemoryCache(
+        MAXIMUM_SIZE), admissionPolicy);
+    Random random = new Random(42);
+    int scanned = 1000;
+    int hits = 0;
+    int requests = 20000;
+
+    for (int i = 0; i < requests; i++) {
+      Integer key = (i % 2 == 0) ? new Integer(random.nextInt(MAXIMUM_SIZE))
+          : new Integer(scanned++);
+      if (cacheFacade.getFromCache(key, model) != null) {
+        hits++;
+      } else {
+        cacheFacade.putInCache(key, model, key);
+      }
+    }
+    return (double) hits / requests;
+  }
+
+  private MemoryCacheFacade newCacheFacade(MemoryCache cache,
+      AdmissionPolicy admissionPolicy) {
+    MemoryCacheManager cacheManager = new MemoryCacheManager();
+    cacheManager.addCache("documents", cache);
+
+    MemoryCacheFacade cacheFacade = new MemoryCacheFacade();
+    cacheFacade.setCacheManager(cacheManager);
+    cacheFacade.setAdmissionPolicy(admissionPolicy);
+    return cacheFacade;
+  }
+}
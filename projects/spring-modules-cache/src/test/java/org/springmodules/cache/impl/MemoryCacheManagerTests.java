@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * Unit Tests for <code>{@link MemoryCacheManager}</code>.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public class MemoryCacheManagerTests extends TestCase {
+
+  private static final String CACHE_NAME = "testCache";
+
+  private MemoryCacheManager cacheManager;
+
+  public MemoryCacheManagerTests(String name) {
+    super(name);
+  }
+
+  public void testAddCache() {
+    Cache cache = new MemoryCache();
+    cacheManager.addCache(CACHE_NAME, cache);
+    assertSame(cache, cacheManager.getCache(CACHE_NAME));
+  }
+
+  public void testAddCacheWithExistingName() {
+    cacheManager.addCache(CACHE_NAME, new MemoryCache());
+    try {
+      cacheManager.addCache(CACHE_NAME, new MemoryCache());
+      fail();
+    } catch (CacheAlreadyExistsException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  public void testGetCacheWithNotExistingCache() {
+    assertNull(cacheManager.getCache("anotherCache"));
+  }
+
+  public void testSetCaches() {
+    Cache cache = new MemoryCache();
+    Map caches = new HashMap();
+    caches.put(CACHE_NAME, cache);
+
+    cacheManager.setCaches(caches);
+    assertSame(cache, cacheManager.getCache(CACHE_NAME));
+  }
+
+  public void testShutDown() {
+    Cache cache = new MemoryCache();
+    cache.put("key", "value");
+    cacheManager.addCache(CACHE_NAME, cache);
+
+    cacheManager.shutDown();
+
+    assertTrue(cache.isEmpty());
+    assertNull(cacheManager.getCache(CACHE_NAME));
+  }
+
+  protected void setUp() {
+    cacheManager = new MemoryCacheManager();
+  }
+}
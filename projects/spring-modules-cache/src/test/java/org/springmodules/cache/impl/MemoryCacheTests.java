@@ -0,0 +1,197 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * Unit Tests for <code>{@link MemoryCache}</code>.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public class MemoryCacheTests extends TestCase {
+
+  private static final String KEY = "Yoda";
+
+  private MemoryCache cache;
+
+  public MemoryCacheTests(String name) {
+    super(name);
+  }
+
+  public void testClear() {
+    cache.put(KEY, "Jedi");
+    cache.put("Vader", "Sith");
+    cache.clear();
+    assertTrue(cache.isEmpty());
+    assertEquals(0, cache.size());
+  }
+
+  public void testConcurrentPutAndGet() throws Exception {
+    final int threadCount = 8;
+    final int keyCount = 500;
+    final List failures = new ArrayList();
+
+    Thread[] threads = new Thread[threadCount];
+    for (int t = 0; t < threadCount; t++) {
+      final int offset = t * keyCount;
+      threads[t] = new Thread() {
+        public void run() {
+          for (int i = offset; i < offset + keyCount; i++) {
+            Integer key = new Integer(i);
+            cache.put(key, key);
+            if (!key.equals(cache.get(key))) {
+              synchronized (failures) {
+                failures.add(key);
+              }
+            }
+          }
+        }
+      };
+    }
+    for (int t = 0; t < threadCount; t++) {
+      threads[t].start();
+    }
+    for (int t = 0; t < threadCount; t++) {
+      threads[t].join();
+    }
+
+    assertTrue("Missing entries: " + failures, failures.isEmpty());
+    assertEquals(threadCount * keyCount, cache.size());
+  }
+
+  public void testConstructorWithNullEvictionPolicy() {
+    try {
+      new MemoryCache(10, null);
+      fail();
+    } catch (IllegalArgumentException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  public void testContainsKey() {
+    assertFalse(cache.containsKey(KEY));
+    cache.put(KEY, null);
+    assertTrue(cache.containsKey(KEY));
+  }
+
+  public void testGetWithExpiredEntry() throws Exception {
+    cache.put(KEY, "Jedi", 1);
+    Thread.sleep(20);
+    assertNull(cache.get(KEY));
+    assertFalse(cache.containsKey(KEY));
+  }
+
+  public void testGetWithNullKey() {
+    try {
+      cache.get(null);
+      fail();
+    } catch (IllegalArgumentException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  public void testKeysSkipsExpiredEntries() throws Exception {
+    cache.put(KEY, "Jedi");
+    cache.put("Vader", "Sith", 1);
+    Thread.sleep(20);
+
+    Set keys = cache.keys();
+    assertEquals(Collections.singleton(KEY), keys);
+    cache.remove(KEY);
+    assertEquals(1, keys.size());
+  }
+
+  public void testLfuEvictionKeepsFrequentlyUsedEntries() {
+    cache = new MemoryCache(2, EvictionPolicy.LFU, 1);
+    cache.put("a", "A");
+    cache.put("b", "B");
+    cache.get("a");
+    cache.get("a");
+    cache.get("b");
+
+    cache.put("c", "C");
+
+    assertEquals(2, cache.size());
+    assertEquals("A", cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals("C", cache.get("c"));
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  public void testLruEvictionRemovesLeastRecentlyUsedEntry() {
+    cache = new MemoryCache(2, EvictionPolicy.LRU, 1);
+    cache.put("a", "A");
+    cache.put("b", "B");
+    cache.get("a");
+
+    cache.put("c", "C");
+
+    assertEquals(2, cache.size());
+    assertEquals("A", cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals("C", cache.get("c"));
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  public void testMaxElementsIsNeverExceeded() {
+    cache = new MemoryCache(100);
+    for (int i = 0; i < 1000; i++) {
+      cache.put(new Integer(i), "value");
+    }
+    assertTrue(cache.size() <= 100);
+    assertEquals(1000 - cache.size(), cache.getEvictionCount());
+  }
+
+  public void testPutReplacesExistingValue() {
+    assertNull(cache.put(KEY, "Jedi"));
+    assertEquals("Jedi", cache.put(KEY, "Master"));
+    assertEquals("Master", cache.get(KEY));
+    assertEquals(1, cache.size());
+  }
+
+  public void testPutStoresReferenceToValue() {
+    Object value = new Object();
+    cache.put(KEY, value);
+    assertSame(value, cache.get(KEY));
+  }
+
+  public void testPutUsesDefaultTimeToLive() throws Exception {
+    cache.setDefaultTimeToLive(1);
+    cache.put(KEY, "Jedi");
+    Thread.sleep(20);
+    assertNull(cache.get(KEY));
+  }
+
+  public void testRemove() {
+    cache.put(KEY, "Jedi");
+    assertEquals("Jedi", cache.remove(KEY));
+    assertNull(cache.get(KEY));
+    assertNull(cache.remove(KEY));
+  }
+
+  protected void setUp() {
+    cache = new MemoryCache();
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * Unit Tests for <code>{@link OffHeapCache}</code>.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public class OffHeapCacheTests extends TestCase {
+
+  private static final String KEY = "Yoda";
+
+  private OffHeapCache cache;
+
+  public OffHeapCacheTests(String name) {
+    super(name);
+  }
+
+  public void testClearReleasesBlocks() {
+    cache.put(KEY, "Jedi");
+    cache.put("Vader", "Sith");
+    cache.clear();
+    assertTrue(cache.isEmpty());
+    assertEquals(0, cache.size());
+
+    MemoryUsage usage = cache.getMemoryUsage();
+    assertEquals(0, usage.getBytesUsed());
+    assertEquals(0, usage.getBytesAllocated());
+    assertTrue(usage.getBytesReserved() > 0);
+  }
+
+  public void testConcurrentPutAndGet() throws Exception {
+    final int threadCount = 8;
+    final int keyCount = 200;
+    final List failures = new ArrayList();
+    cache = new OffHeapCache(1 << 22, 64, 1 << 16, threadCount);
+
+    Thread[] threads = new Thread[threadCount];
+    for (int t = 0; t < threadCount; t++) {
+      final int offset = t * keyCount;
+      threads[t] = new Thread() {
+        public void run() {
+          for (int i = offset; i < offset + keyCount; i++) {
+            Integer key = new Integer(i);
+            cache.put(key, "value" + i);
+            if (!("value" + i).equals(cache.get(key))) {
+              synchronized (failures) {
+                failures.add(key);
+              }
+            }
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (int t = 0; t < threadCount; t++) {
+      threads[t].join();
+    }
+    assertTrue(failures.toString(), failures.isEmpty());
+    assertEquals(threadCount * keyCount, cache.size());
+  }
+
+  public void testConstructorWithInvalidArguments() {
+    long[][] invalid = { { 0, 64, 1024, 1 }, { 1024, 0, 1024, 1 },
+        { 1024, 64, 0, 1 }, { 1024, 64, 1024, 0 }, { 1024, 2048, 1024, 1 } };
+    for (int i = 0; i < invalid.length; i++) {
+      try {
+        new OffHeapCache(invalid[i][0], (int) invalid[i][1],
+            (int) invalid[i][2], (int) invalid[i][3]);
+        fail();
+      } catch (IllegalArgumentException exception) {
+        // we are expecting this exception.
+      }
+    }
+  }
+
+  public void testEvictsLeastRecentlyUsedEntries() {
+    // a single segment of 4 blocks of 512 bytes
+    cache = new OffHeapCache(2048, 512, 2048, 1);
+    cache.put("a", new byte[400]);
+    cache.put("b", new byte[400]);
+    cache.put("c", new byte[400]);
+    cache.put("d", new byte[400]);
+    cache.get("a");
+
+    cache.put("e", new byte[400]);
+    assertTrue(cache.containsKey("a"));
+    assertFalse(cache.containsKey("b"));
+    assertTrue(cache.containsKey("e"));
+
+    MemoryUsage usage = cache.getMemoryUsage();
+    assertEquals(1, usage.getEvictionCount());
+    assertTrue(usage.getBytesEvicted() > 400);
+    assertEquals(2048, usage.getBytesReserved());
+    assertEquals(2048, usage.getBytesAllocated());
+    assertEquals(4, usage.getEntryCount());
+  }
+
+  public void testGetReturnsCopy() {
+    List value = new ArrayList(Arrays.asList(new String[] { "Luke", "Leia" }));
+    cache.put(KEY, value);
+
+    List cached = (List) cache.get(KEY);
+    assertEquals(value, cached);
+    assertNotSame(value, cached);
+    cached.clear();
+    assertEquals(value, cache.get(KEY));
+  }
+
+  public void testGetWithExpiredEntry() throws Exception {
+    cache.put(KEY, "Jedi", 1);
+    Thread.sleep(20);
+    assertNull(cache.get(KEY));
+    assertFalse(cache.containsKey(KEY));
+    assertEquals(0, cache.getMemoryUsage().getBytesUsed());
+  }
+
+  public void testPutReplacesValue() {
+    cache.put(KEY, "Jedi");
+    cache.put(KEY, "Master");
+    assertEquals("Master", cache.get(KEY));
+    assertEquals(1, cache.size());
+  }
+
+  public void testPutStoresValueSpanningSeveralBlocks() {
+    byte[] value = new byte[10000];
+    for (int i = 0; i < value.length; i++) {
+      value[i] = (byte) i;
+    }
+    cache.put(KEY, value);
+    assertTrue(Arrays.equals(value, (byte[]) cache.get(KEY)));
+
+    MemoryUsage usage = cache.getMemoryUsage();
+    assertTrue(usage.getBytesUsed() > value.length);
+    assertEquals(0, usage.getBytesAllocated() % cache.getBlockSize());
+    assertTrue(usage.getBytesAllocated() >= usage.getBytesUsed());
+  }
+
+  public void testPutWithNotSerializableValue() {
+    try {
+      cache.put(KEY, new Object());
+      fail();
+    } catch (ObjectCannotBeCopiedException exception) {
+      // we are expecting this exception.
+    }
+    assertFalse(cache.containsKey(KEY));
+  }
+
+  public void testPutWithValueLargerThanCache() {
+    cache = new OffHeapCache(1024, 256, 1024, 1);
+    assertEquals(1024, cache.getMaxValueSize());
+    cache.put(KEY, "Jedi");
+    cache.put("Vader", "Sith");
+    cache.put("Vader", new byte[2048]);
+    assertFalse(cache.containsKey("Vader"));
+    assertTrue(cache.containsKey(KEY));
+    assertEquals(0, cache.getMemoryUsage().getEvictionCount());
+  }
+
+  public void testPutDoesNotReturnPreviousValue() {
+    cache.put(KEY, "Jedi");
+    assertNull(cache.put(KEY, "Master"));
+  }
+
+  public void testRemove() {
+    cache.put(KEY, "Jedi");
+    assertEquals("Jedi", cache.remove(KEY));
+    assertNull(cache.remove(KEY));
+    assertEquals(0, cache.getMemoryUsage().getBytesUsed());
+  }
+
+  public void testSerializationKeepsConfigurationButNotEntries()
+      throws Exception {
+    cache.put(KEY, "Jedi");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream output = new ObjectOutputStream(bytes);
+    output.writeObject(cache);
+    output.close();
+
+    OffHeapCache copy = (OffHeapCache) new ObjectInputStream(
+        new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    assertTrue(copy.isEmpty());
+    assertEquals(cache.getMaxBytes(), copy.getMaxBytes());
+    copy.put(KEY, "Master");
+    assertEquals("Master", copy.get(KEY));
+  }
+
+  protected void setUp() {
+    cache = new OffHeapCache(1 << 20, 128);
+  }
+}
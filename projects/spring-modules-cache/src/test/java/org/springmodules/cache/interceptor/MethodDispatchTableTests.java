@@ -0,0 +1,127 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit Tests for <code>{@link MethodDispatchTable}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class MethodDispatchTableTests extends TestCase {
+
+  private class CountingResolver implements MethodDispatchTable.Resolver {
+
+    final AtomicInteger resolutions = new AtomicInteger();
+
+    public Object resolve(Method m, Class targetClass) {
+      resolutions.incrementAndGet();
+      return (m == toLowerCase) ? null : m.getName() + "@" + targetClass;
+    }
+  }
+
+  private Method length;
+
+  private CountingResolver resolver;
+
+  private MethodDispatchTable table;
+
+  private Method toLowerCase;
+
+  public MethodDispatchTableTests(String name) {
+    super(name);
+  }
+
+  public void testGetResolvesOncePerMethodAndTargetClass() {
+    Object value = table.get(length, String.class);
+    assertEquals("length@" + String.class, value);
+    assertSame(value, table.get(length, String.class));
+    assertEquals(1, resolver.resolutions.get());
+
+    assertEquals("length@" + StringBuffer.class, table.get(length,
+        StringBuffer.class));
+    assertEquals("length@null", table.get(length, null));
+    assertSame(value, table.get(length, String.class));
+    assertEquals(3, resolver.resolutions.get());
+    assertEquals(1, table.size());
+  }
+
+  public void testGetResolvesNullValueOnce() {
+    assertNull(table.get(toLowerCase, String.class));
+    assertNull(table.get(toLowerCase, String.class));
+    assertEquals(1, resolver.resolutions.get());
+  }
+
+  public void testClear() {
+    table.get(length, String.class);
+    table.clear();
+    assertEquals(0, table.size());
+
+    table.get(length, String.class);
+    assertEquals(2, resolver.resolutions.get());
+  }
+
+  public void testGetFromConcurrentThreadsReturnsSameValue() throws Exception {
+    final int threadCount = 8;
+    final Class[] targetClasses = { String.class, StringBuffer.class,
+        Object.class, null };
+    final CountDownLatch start = new CountDownLatch(1);
+    final Object[][] found = new Object[threadCount][targetClasses.length];
+    Thread[] threads = new Thread[threadCount];
+
+    for (int i = 0; i < threadCount; i++) {
+      final int index = i;
+      threads[i] = new Thread() {
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException exception) {
+            return;
+          }
+          for (int j = 0; j < targetClasses.length; j++) {
+            found[index][j] = table.get(length, targetClasses[j]);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    start.countDown();
+    for (int i = 0; i < threadCount; i++) {
+      threads[i].join();
+    }
+
+    for (int j = 0; j < targetClasses.length; j++) {
+      Object value = table.get(length, targetClasses[j]);
+      assertEquals("length@" + targetClasses[j], value);
+      for (int i = 0; i < threadCount; i++) {
+        assertSame(value, found[i][j]);
+      }
+    }
+  }
+
+  protected void setUp() throws Exception {
+    length = String.class.getMethod("length", new Class[0]);
+    toLowerCase = String.class.getMethod("toLowerCase", new Class[0]);
+    resolver = new CountingResolver();
+    table = new MethodDispatchTable(resolver);
+  }
+}
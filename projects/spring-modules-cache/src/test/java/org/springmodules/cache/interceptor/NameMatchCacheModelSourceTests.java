@@ -73,6 +73,16 @@ public final class NameMatchCacheModelSourceTests extends TestCase {
     assertSame(putNewCacheModelInMap(mappedName), source.getCacheModel(method));
   }
 
+  public void testGetCacheModelAfterSettingNewCacheModels() {
+    CacheModel model = putNewCacheModelInMap("toLower*");
+    assertSame(model, source.getCacheModel(method));
+
+    cacheModels = new HashMap();
+    source.setCacheModels(cacheModels);
+    assertSame(putNewCacheModelInMap(method.getName()), source
+        .getCacheModel(method));
+  }
+
   public void testGetCacheModelWithNotMatchingMappedName() {
     putNewCacheModelInMap("toString");
     assertNull(source.getCacheModel(method));
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryCacheManager;
+import org.springmodules.cache.key.HashCodeCacheKeyGenerator;
+import org.springmodules.cache.provider.memory.MemoryCacheFacade;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+
+/**
+ * Unit Tests for the caching of methods returning a <code>Future</code> by
+ * <code>{@link AbstractCachingInterceptor}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class AsyncCachingTests extends TestCase {
+
+  public static interface AsyncLoader {
+    Future load(String id);
+  }
+
+  private static class TaskLoader implements AsyncLoader {
+
+    final AtomicInteger calls = new AtomicInteger();
+
+    boolean fail;
+
+    final List tasks = new ArrayList();
+
+    public Future load(final String id) {
+      calls.incrementAndGet();
+      FutureTask task = new FutureTask(new Callable() {
+        public Object call() {
+          if (fail) throw new IllegalStateException(id);
+          return id.toUpperCase();
+        }
+      });
+      tasks.add(task);
+      return task;
+    }
+
+    void runTasks() {
+      for (Iterator i = tasks.iterator(); i.hasNext();) {
+        ((FutureTask) i.next()).run();
+      }
+    }
+  }
+
+  private static class SingleModelCachingInterceptor extends
+      AbstractCachingInterceptor {
+
+    CachingModel model;
+
+    protected CachingModel model(MethodInvocation mi) {
+      return model;
+    }
+  }
+
+  private MemoryCache cache;
+
+  private SingleModelCachingInterceptor interceptor;
+
+  private AsyncLoader proxy;
+
+  private TaskLoader target;
+
+  public AsyncCachingTests(String name) {
+    super(name);
+  }
+
+  public void testCallersShareFutureWhileComputed() throws Exception {
+    Future first = proxy.load("luke");
+    Future second = proxy.load("luke");
+
+    assertFalse(second.isDone());
+    assertEquals(1, target.calls.get());
+
+    target.runTasks();
+    assertEquals("LUKE", second.get());
+    assertEquals("LUKE", first.get());
+  }
+
+  public void testCancellingAllCallersCancelsComputation() {
+    Future first = proxy.load("luke");
+    Future second = proxy.load("luke");
+
+    assertTrue(first.cancel(true));
+    assertFalse(((Future) target.tasks.get(0)).isCancelled());
+    assertTrue(second.cancel(true));
+    assertTrue(((Future) target.tasks.get(0)).isCancelled());
+
+    proxy.load("luke");
+    assertEquals(2, target.calls.get());
+  }
+
+  public void testCancellingOneCallerKeepsComputationForOthers()
+      throws Exception {
+    Future first = proxy.load("luke");
+    Future second = proxy.load("luke");
+
+    assertTrue(first.cancel(true));
+    assertTrue(first.isCancelled());
+    assertTrue(first.isDone());
+    assertFalse(second.isCancelled());
+
+    target.runTasks();
+    assertEquals("LUKE", second.get());
+    try {
+      first.get();
+      fail();
+    } catch (CancellationException exception) {
+      // we are expecting this exception.
+    }
+    assertFalse(first.cancel(true));
+  }
+
+  public void testFailedFutureIsNotCached() throws Exception {
+    target.fail = true;
+    Future future = proxy.load("leia");
+    target.runTasks();
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException exception) {
+      // we are expecting this exception.
+      assertTrue(exception.getCause() instanceof IllegalStateException);
+    }
+    assertTrue(cache.isEmpty());
+
+    target.fail = false;
+    Future retry = proxy.load("leia");
+    assertNotSame(future, retry);
+    assertEquals(2, target.calls.get());
+  }
+
+  public void testHitReturnsCompletedFuture() throws Exception {
+    Future loaded = proxy.load("han");
+    target.runTasks();
+    assertEquals("HAN", loaded.get());
+
+    Future cached = proxy.load("han");
+    assertNotSame(loaded, cached);
+    assertTrue(cached.isDone());
+    assertEquals("HAN", cached.get());
+    assertEquals(1, target.calls.get());
+  }
+
+  public void testMethodReturningNullIsNotCached() {
+    AsyncLoader nullLoader = (AsyncLoader) proxy(new AsyncLoader() {
+      public Future load(String id) {
+        target.calls.incrementAndGet();
+        return null;
+      }
+    });
+
+    assertNull(nullLoader.load("yoda"));
+    assertNull(nullLoader.load("yoda"));
+    assertEquals(2, target.calls.get());
+    assertTrue(cache.isEmpty());
+  }
+
+  public void testValueStoredWhenNextCallerFindsFutureCompleted()
+      throws Exception {
+    Future first = proxy.load("chewie");
+    target.runTasks();
+    assertTrue(cache.isEmpty());
+
+    // completes the pending future without waiting
+    Future second = proxy.load("chewie");
+    assertTrue(second.isDone());
+    assertEquals(1, cache.size());
+
+    assertEquals("CHEWIE", proxy.load("chewie").get());
+    assertEquals("CHEWIE", first.get());
+    assertEquals(1, target.calls.get());
+  }
+
+  protected void setUp() {
+    String cacheName = "loaderCache";
+    cache = new MemoryCache();
+    MemoryCacheManager cacheManager = new MemoryCacheManager();
+    cacheManager.addCache(cacheName, cache);
+
+    MemoryCacheFacade cacheProviderFacade = new MemoryCacheFacade();
+    cacheProviderFacade.setCacheManager(cacheManager);
+
+    interceptor = new SingleModelCachingInterceptor();
+    interceptor.setCacheProviderFacade(cacheProviderFacade);
+    interceptor.model = new MemoryCachingModel(cacheName);
+    interceptor.setCacheKeyGenerator(new HashCodeCacheKeyGenerator());
+
+    target = new TaskLoader();
+    proxy = (AsyncLoader) proxy(target);
+  }
+
+  private Object proxy(Object newTarget) {
+    ProxyFactory proxyFactory = new ProxyFactory(newTarget);
+    proxyFactory.addAdvice(interceptor);
+    return proxyFactory.getProxy();
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import junit.framework.TestCase;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryCacheManager;
+import org.springmodules.cache.key.HashCodeCacheKeyGenerator;
+import org.springmodules.cache.provider.memory.MemoryCacheFacade;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+import org.springmodules.cache.statistics.CacheStatistics;
+import org.springmodules.cache.statistics.ModelStatistics;
+
+/**
+ * Unit Tests for the statistics recorded by
+ * <code>{@link AbstractCachingInterceptor}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class CachingStatisticsTests extends TestCase {
+
+  public static interface Loader {
+    Object load(String id);
+  }
+
+  private static class FailingLoader implements Loader {
+
+    public Object load(String id) {
+      if ("vader".equals(id)) {
+        throw new IllegalStateException();
+      }
+      return id.toUpperCase();
+    }
+  }
+
+  private static class SingleModelCachingInterceptor extends
+      AbstractCachingInterceptor {
+
+    CachingModel model;
+
+    protected CachingModel model(MethodInvocation mi) {
+      return model;
+    }
+  }
+
+  private MemoryCachingModel model;
+
+  private Loader proxy;
+
+  private CacheStatistics statistics;
+
+  public CachingStatisticsTests(String name) {
+    super(name);
+  }
+
+  public void testFailedLoadIsRecorded() {
+    try {
+      proxy.load("vader");
+      fail();
+    } catch (IllegalStateException exception) {
+      // we are expecting this exception.
+    }
+
+    ModelStatistics modelStatistics = statistics.forModel(model);
+    assertEquals(0, modelStatistics.getLoadCount());
+    assertEquals(1, modelStatistics.getLoadFailureCount());
+  }
+
+  public void testLoadsAndHitsAreRecorded() {
+    assertEquals("LUKE", proxy.load("luke"));
+    assertEquals("LUKE", proxy.load("luke"));
+    assertEquals("LEIA", proxy.load("leia"));
+
+    ModelStatistics modelStatistics = statistics.forModel(model);
+    assertEquals(2, modelStatistics.getLoadCount());
+    assertEquals(1, modelStatistics.getHitCount());
+    assertEquals(2, modelStatistics.getMissCount());
+    assertEquals(2, modelStatistics.getPutCount());
+    assertEquals(0, modelStatistics.getEvictionCount());
+  }
+
+  protected void setUp() {
+    String cacheName = "loaderCache";
+    MemoryCacheManager cacheManager = new MemoryCacheManager();
+    cacheManager.addCache(cacheName, new MemoryCache());
+
+    statistics = new CacheStatistics();
+
+    MemoryCacheFacade cacheProviderFacade = new MemoryCacheFacade();
+    cacheProviderFacade.setCacheManager(cacheManager);
+    cacheProviderFacade.setStatistics(statistics);
+
+    model = new MemoryCachingModel(cacheName);
+
+    SingleModelCachingInterceptor interceptor = new SingleModelCachingInterceptor();
+    interceptor.setCacheProviderFacade(cacheProviderFacade);
+    interceptor.model = model;
+    interceptor.setCacheKeyGenerator(new HashCodeCacheKeyGenerator());
+    interceptor.setStatistics(statistics);
+
+    ProxyFactory proxyFactory = new ProxyFactory(new FailingLoader());
+    proxyFactory.addAdvice(interceptor);
+    proxy = (Loader) proxyFactory.getProxy();
+  }
+}
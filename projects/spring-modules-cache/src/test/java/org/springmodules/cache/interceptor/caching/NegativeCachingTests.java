@@ -0,0 +1,220 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import java.beans.PropertyEditor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryCacheManager;
+import org.springmodules.cache.key.HashCodeCacheKeyGenerator;
+import org.springmodules.cache.provider.memory.MemoryCacheFacade;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+
+/**
+ * Unit Tests for the caching of <code>null</code> return values and
+ * exceptions by <code>{@link AbstractCachingInterceptor}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class NegativeCachingTests extends TestCase {
+
+  public static interface Loader {
+    Object load(String id);
+
+    Future loadLater(String id);
+  }
+
+  private static class UnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    UnavailableException(String message) {
+      super(message);
+    }
+  }
+
+  private static class CountingLoader implements Loader {
+
+    int calls;
+
+    RuntimeException failure;
+
+    public Object load(String id) {
+      calls++;
+      if (failure != null) throw failure;
+      return id.startsWith("missing") ? null : id + calls;
+    }
+
+    public Future loadLater(String id) {
+      calls++;
+      return (failure != null) ? CompletedFuture.failed(failure)
+          : new CompletedFuture(id + calls);
+    }
+  }
+
+  private static class SingleModelCachingInterceptor extends
+      AbstractCachingInterceptor {
+
+    CachingModel model;
+
+    protected CachingModel model(MethodInvocation mi) {
+      return model;
+    }
+  }
+
+  private MemoryCachingModel model;
+
+  private Loader proxy;
+
+  private CountingLoader target;
+
+  public NegativeCachingTests(String name) {
+    super(name);
+  }
+
+  public void testCachedExceptionExpires() throws Exception {
+    model.setCachedExceptions(new Class[] { UnavailableException.class });
+    model.setExceptionTimeToLive(500);
+    target.failure = new UnavailableException("down");
+
+    assertLoadFails("luke");
+    target.failure = null;
+    assertLoadFails("luke");
+    assertEquals(1, target.calls);
+
+    Thread.sleep(800);
+    assertEquals("luke2", proxy.load("luke"));
+  }
+
+  public void testCachedExceptionIsRethrown() {
+    model.setCachedExceptions(new Class[] { UnavailableException.class });
+    target.failure = new UnavailableException("down");
+
+    assertLoadFails("leia");
+    assertLoadFails("leia");
+    assertEquals(1, target.calls);
+  }
+
+  public void testCachedExceptionOfFuture() throws Exception {
+    model.setCachedExceptions(new Class[] { UnavailableException.class });
+    target.failure = new UnavailableException("down");
+
+    assertFutureFails(proxy.loadLater("han"));
+    assertFutureFails(proxy.loadLater("han"));
+    assertEquals(1, target.calls);
+  }
+
+  public void testModelFromText() {
+    PropertyEditor editor = new MemoryCacheFacade().getCachingModelEditor();
+    editor.setAsText("cacheName=loaderCache;nullTimeToLive=500;"
+        + "cachedExceptions=java.io.IOException,java.lang.IllegalStateException;"
+        + "exceptionTimeToLive=200");
+    MemoryCachingModel parsed = (MemoryCachingModel) editor.getValue();
+
+    assertEquals(500, parsed.getNullTimeToLive());
+    assertEquals(200, parsed.getExceptionTimeToLive());
+    assertTrue(parsed.isCachedException(new IllegalStateException()));
+    assertFalse(parsed.isCachedException(new IllegalArgumentException()));
+  }
+
+  public void testNullTimeToLive() throws Exception {
+    model.setNullTimeToLive(500);
+
+    assertNull(proxy.load("missing"));
+    assertNull(proxy.load("missing"));
+    assertEquals(1, target.calls);
+
+    Thread.sleep(800);
+    assertNull(proxy.load("missing"));
+    assertEquals(2, target.calls);
+  }
+
+  public void testNullIsCachedLikeOtherValuesByDefault() throws Exception {
+    assertNull(proxy.load("missing"));
+    Thread.sleep(40);
+    assertNull(proxy.load("missing"));
+    assertEquals(1, target.calls);
+  }
+
+  public void testSetCachedExceptionsWithNonThrowable() {
+    try {
+      model.setCachedExceptions(new Class[] { String.class });
+      fail();
+    } catch (IllegalArgumentException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  public void testUncachedExceptionIsNotCached() {
+    model.setCachedExceptions(new Class[] { UnavailableException.class });
+    target.failure = new IllegalStateException("bug");
+
+    try {
+      proxy.load("lando");
+      fail();
+    } catch (IllegalStateException exception) {
+      // we are expecting this exception.
+    }
+    target.failure = null;
+    assertEquals("lando2", proxy.load("lando"));
+  }
+
+  protected void setUp() {
+    String cacheName = "loaderCache";
+    MemoryCacheManager cacheManager = new MemoryCacheManager();
+    cacheManager.addCache(cacheName, new MemoryCache());
+
+    MemoryCacheFacade cacheProviderFacade = new MemoryCacheFacade();
+    cacheProviderFacade.setCacheManager(cacheManager);
+
+    model = new MemoryCachingModel(cacheName);
+
+    SingleModelCachingInterceptor interceptor = new SingleModelCachingInterceptor();
+    interceptor.setCacheProviderFacade(cacheProviderFacade);
+    interceptor.model = model;
+    interceptor.setCacheKeyGenerator(new HashCodeCacheKeyGenerator());
+
+    target = new CountingLoader();
+    ProxyFactory proxyFactory = new ProxyFactory(target);
+    proxyFactory.addAdvice(interceptor);
+    proxy = (Loader) proxyFactory.getProxy();
+  }
+
+  private void assertFutureFails(Future future) throws InterruptedException {
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException exception) {
+      assertTrue(exception.getCause() instanceof UnavailableException);
+    }
+  }
+
+  private void assertLoadFails(String id) {
+    try {
+      proxy.load(id);
+      fail();
+    } catch (UnavailableException exception) {
+      // we are expecting this exception.
+    }
+  }
+}
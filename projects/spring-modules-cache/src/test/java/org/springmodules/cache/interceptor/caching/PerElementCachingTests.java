@@ -0,0 +1,151 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryCacheManager;
+import org.springmodules.cache.key.ArgumentsCacheKeyGenerator;
+import org.springmodules.cache.provider.memory.MemoryCacheFacade;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+
+/**
+ * Unit Tests for the per-element caching mode of
+ * <code>{@link AbstractCachingInterceptor}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class PerElementCachingTests extends TestCase {
+
+  public static interface Repository {
+    List findAll(List ids);
+
+    List findSome(List ids);
+  }
+
+  private static class RepositoryStub implements Repository {
+
+    final List requests = new ArrayList();
+
+    public List findAll(List ids) {
+      requests.add(new ArrayList(ids));
+      List entities = new ArrayList();
+      for (Iterator i = ids.iterator(); i.hasNext();) {
+        String id = (String) i.next();
+        entities.add("unknown".equals(id) ? null : id.toUpperCase());
+      }
+      return entities;
+    }
+
+    public List findSome(List ids) {
+      requests.add(new ArrayList(ids));
+      return new ArrayList(ids.subList(0, 1));
+    }
+  }
+
+  private static class SingleModelCachingInterceptor extends
+      AbstractCachingInterceptor {
+
+    CachingModel model;
+
+    protected CachingModel model(MethodInvocation mi) {
+      return model;
+    }
+  }
+
+  private MemoryCache cache;
+
+  private Repository proxy;
+
+  private RepositoryStub target;
+
+  public PerElementCachingTests(String name) {
+    super(name);
+  }
+
+  public void testElementsAreCachedSeparately() {
+    assertEquals(list("LUKE", "LEIA"), proxy.findAll(list("luke", "leia")));
+    assertEquals(2, cache.size());
+
+    assertEquals(list("LEIA", "HAN", "LUKE"), proxy.findAll(list("leia", "han",
+        "luke")));
+
+    assertEquals(2, target.requests.size());
+    assertEquals(list("han"), target.requests.get(1));
+  }
+
+  public void testMethodIsNotInvokedWhenAllElementsAreCached() {
+    proxy.findAll(list("luke", "leia"));
+
+    assertEquals(list("LEIA"), proxy.findAll(list("leia")));
+    assertEquals(1, target.requests.size());
+  }
+
+  public void testNullElementsAreCached() {
+    assertEquals(list("LUKE", null), proxy.findAll(list("luke", "unknown")));
+    assertEquals(list(null, "LUKE"), proxy.findAll(list("unknown", "luke")));
+    assertEquals(1, target.requests.size());
+  }
+
+  public void testElementsAreNotCachedWhenMethodReturnsWrongNumberOfElements() {
+    assertEquals(list("luke"), proxy.findSome(list("luke", "leia")));
+    assertEquals(0, cache.size());
+  }
+
+  protected void setUp() {
+    String cacheName = "repositoryCache";
+    cache = new MemoryCache();
+    MemoryCacheManager cacheManager = new MemoryCacheManager();
+    cacheManager.addCache(cacheName, cache);
+
+    MemoryCacheFacade cacheProviderFacade = new MemoryCacheFacade();
+    cacheProviderFacade.setCacheManager(cacheManager);
+
+    MemoryCachingModel model = new MemoryCachingModel(cacheName);
+    model.setPerElement(true);
+
+    SingleModelCachingInterceptor interceptor = new SingleModelCachingInterceptor();
+    interceptor.setCacheProviderFacade(cacheProviderFacade);
+    interceptor.model = model;
+    interceptor.setCacheKeyGenerator(new ArgumentsCacheKeyGenerator());
+
+    target = new RepositoryStub();
+    ProxyFactory proxyFactory = new ProxyFactory(target);
+    proxyFactory.addAdvice(interceptor);
+    proxy = (Repository) proxyFactory.getProxy();
+  }
+
+  private List list(String first) {
+    return Arrays.asList(new String[] { first });
+  }
+
+  private List list(String first, String second) {
+    return Arrays.asList(new String[] { first, second });
+  }
+
+  private List list(String first, String second, String third) {
+    return Arrays.asList(new String[] { first, second, third });
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryCacheManager;
+import org.springmodules.cache.key.HashCodeCacheKeyGenerator;
+import org.springmodules.cache.provider.memory.MemoryCacheFacade;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+
+/**
+ * Unit Tests for the refresh-ahead and stale-while-revalidate modes of
+ * <code>{@link AbstractCachingInterceptor}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class RefreshAheadCachingTests extends TestCase {
+
+  public static interface Loader {
+    Object load(String id);
+  }
+
+  private static class CountingLoader implements Loader {
+
+    int calls;
+
+    boolean failing;
+
+    public Object load(String id) {
+      calls++;
+      if (failing) throw new IllegalStateException("Unable to load " + id);
+      return id + calls;
+    }
+  }
+
+  private static class QueueingTaskExecutor implements TaskExecutor {
+
+    final List tasks = new ArrayList();
+
+    public void execute(Runnable task) {
+      tasks.add(task);
+    }
+  }
+
+  private static class SingleModelCachingInterceptor extends
+      AbstractCachingInterceptor {
+
+    CachingModel model;
+
+    protected CachingModel model(MethodInvocation mi) {
+      return model;
+    }
+  }
+
+  private SingleModelCachingInterceptor interceptor;
+
+  private MemoryCachingModel model;
+
+  private Loader proxy;
+
+  private CountingLoader target;
+
+  public RefreshAheadCachingTests(String name) {
+    super(name);
+  }
+
+  public void testEntryDueForRefreshIsReturnedAndReloaded() throws Exception {
+    model.setRefreshAfter(20);
+
+    assertEquals("luke1", proxy.load("luke"));
+    Thread.sleep(40);
+
+    assertEquals("luke1", proxy.load("luke"));
+    assertEquals("luke2", proxy.load("luke"));
+    assertEquals(2, target.calls);
+  }
+
+  public void testExpiredEntryBeyondMaxStalenessIsReloadedBeforeReturning()
+      throws Exception {
+    model.setExpireAfter(20);
+
+    assertEquals("han1", proxy.load("han"));
+    Thread.sleep(40);
+
+    assertEquals("han2", proxy.load("han"));
+    assertEquals(2, target.calls);
+  }
+
+  public void testExpiredEntryWithinMaxStalenessIsReturnedAndReloaded()
+      throws Exception {
+    model.setExpireAfter(20);
+    model.setMaxStaleness(60000);
+
+    assertEquals("leia1", proxy.load("leia"));
+    Thread.sleep(40);
+
+    assertEquals("leia1", proxy.load("leia"));
+    assertEquals("leia2", proxy.load("leia"));
+  }
+
+  public void testFailedRefreshKeepsCurrentValue() throws Exception {
+    model.setRefreshAfter(20);
+
+    assertEquals("yoda1", proxy.load("yoda"));
+    Thread.sleep(40);
+    target.failing = true;
+
+    assertEquals("yoda1", proxy.load("yoda"));
+    assertEquals("yoda1", proxy.load("yoda"));
+  }
+
+  public void testFreshEntryIsNotReloaded() {
+    model.setRefreshAfter(60000);
+
+    assertEquals("lando1", proxy.load("lando"));
+    assertEquals("lando1", proxy.load("lando"));
+    assertEquals(1, target.calls);
+  }
+
+  public void testOnlyOneRefreshIsScheduledPerEntry() throws Exception {
+    QueueingTaskExecutor executor = new QueueingTaskExecutor();
+    interceptor.setRefreshExecutor(executor);
+    model.setRefreshAfter(20);
+
+    proxy.load("chewie");
+    Thread.sleep(40);
+    proxy.load("chewie");
+    proxy.load("chewie");
+    assertEquals(1, executor.tasks.size());
+
+    ((Runnable) executor.tasks.get(0)).run();
+    assertEquals("chewie2", proxy.load("chewie"));
+  }
+
+  protected void setUp() {
+    String cacheName = "loaderCache";
+    MemoryCacheManager cacheManager = new MemoryCacheManager();
+    cacheManager.addCache(cacheName, new MemoryCache());
+
+    MemoryCacheFacade cacheProviderFacade = new MemoryCacheFacade();
+    cacheProviderFacade.setCacheManager(cacheManager);
+
+    model = new MemoryCachingModel(cacheName);
+
+    interceptor = new SingleModelCachingInterceptor();
+    interceptor.setCacheProviderFacade(cacheProviderFacade);
+    interceptor.model = model;
+    interceptor.setCacheKeyGenerator(new HashCodeCacheKeyGenerator());
+    interceptor.setRefreshExecutor(new SyncTaskExecutor());
+
+    target = new CountingLoader();
+    ProxyFactory proxyFactory = new ProxyFactory(target);
+    proxyFactory.addAdvice(interceptor);
+    proxy = (Loader) proxyFactory.getProxy();
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryCacheManager;
+import org.springmodules.cache.key.HashCodeCacheKeyGenerator;
+import org.springmodules.cache.provider.memory.MemoryCacheFacade;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+
+/**
+ * Unit Tests for the single-flight mode of
+ * <code>{@link AbstractCachingInterceptor}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class SingleFlightCachingTests extends TestCase {
+
+  public static interface Loader {
+    Object load(String id);
+  }
+
+  private static class SlowLoader implements Loader {
+
+    final AtomicInteger calls = new AtomicInteger();
+
+    long delay;
+
+    public Object load(String id) {
+      calls.incrementAndGet();
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException exception) {
+        Thread.currentThread().interrupt();
+      }
+      return id.toUpperCase();
+    }
+  }
+
+  private static class SingleModelCachingInterceptor extends
+      AbstractCachingInterceptor {
+
+    CachingModel model;
+
+    final ThreadLocal threadModel = new ThreadLocal();
+
+    protected CachingModel model(MethodInvocation mi) {
+      CachingModel m = (CachingModel) threadModel.get();
+      return (m != null) ? m : model;
+    }
+  }
+
+  private static final int THREAD_COUNT = 8;
+
+  private SingleModelCachingInterceptor interceptor;
+
+  private MemoryCachingModel model;
+
+  private MemoryCache otherCache;
+
+  private Loader proxy;
+
+  private SlowLoader target;
+
+  public SingleFlightCachingTests(String name) {
+    super(name);
+  }
+
+  public void testConcurrentMissesInvokeMethodOnce() throws Exception {
+    target.delay = 200;
+    model.setSingleFlight(true);
+
+    Object[] results = loadConcurrently("luke");
+
+    assertEquals(1, target.calls.get());
+    for (int i = 0; i < results.length; i++) {
+      assertEquals("LUKE", results[i]);
+    }
+  }
+
+  public void testConcurrentMissesWithoutSingleFlightInvokeMethodForEachCaller()
+      throws Exception {
+    target.delay = 200;
+
+    loadConcurrently("leia");
+
+    assertEquals(THREAD_COUNT, target.calls.get());
+  }
+
+  public void testConcurrentMissesOfDifferentModelsInvokeMethodForEachModel()
+      throws Exception {
+    target.delay = 200;
+    model.setSingleFlight(true);
+    final MemoryCachingModel otherModel = new MemoryCachingModel("otherCache");
+    otherModel.setSingleFlight(true);
+
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[THREAD_COUNT];
+    for (int i = 0; i < THREAD_COUNT; i++) {
+      final boolean other = (i % 2 == 1);
+      threads[i] = new Thread() {
+        public void run() {
+          if (other) interceptor.threadModel.set(otherModel);
+          try {
+            start.await();
+            proxy.load("yoda");
+          } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      };
+      threads[i].start();
+    }
+    start.countDown();
+    for (int i = 0; i < THREAD_COUNT; i++) {
+      threads[i].join();
+    }
+
+    // the same key in another cache is a different entry
+    assertEquals(2, target.calls.get());
+    assertEquals(1, otherCache.size());
+  }
+
+  public void testWaitingCallersLoadThemselvesAfterTimeout() throws Exception {
+    target.delay = 300;
+    model.setSingleFlight(true);
+    model.setSingleFlightTimeout(10);
+
+    Object[] results = loadConcurrently("han");
+
+    assertTrue(target.calls.get() > 1);
+    for (int i = 0; i < results.length; i++) {
+      assertEquals("HAN", results[i]);
+    }
+  }
+
+  protected void setUp() {
+    String cacheName = "loaderCache";
+    MemoryCacheManager cacheManager = new MemoryCacheManager();
+    cacheManager.addCache(cacheName, new MemoryCache());
+    otherCache = new MemoryCache();
+    cacheManager.addCache("otherCache", otherCache);
+
+    MemoryCacheFacade cacheProviderFacade = new MemoryCacheFacade();
+    cacheProviderFacade.setCacheManager(cacheManager);
+
+    model = new MemoryCachingModel(cacheName);
+
+    interceptor = new SingleModelCachingInterceptor();
+    interceptor.setCacheProviderFacade(cacheProviderFacade);
+    interceptor.model = model;
+    interceptor.setCacheKeyGenerator(new HashCodeCacheKeyGenerator());
+
+    target = new SlowLoader();
+    ProxyFactory proxyFactory = new ProxyFactory(target);
+    proxyFactory.addAdvice(interceptor);
+    proxy = (Loader) proxyFactory.getProxy();
+  }
+
+  private Object[] loadConcurrently(final String id) throws Exception {
+    final Object[] results = new Object[THREAD_COUNT];
+    final CountDownLatch start = new CountDownLatch(1);
+    Thread[] threads = new Thread[THREAD_COUNT];
+
+    for (int i = 0; i < THREAD_COUNT; i++) {
+      final int index = i;
+      threads[i] = new Thread() {
+        public void run() {
+          try {
+            start.await();
+            results[index] = proxy.load(id);
+          } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      };
+      threads[i].start();
+    }
+    start.countDown();
+    for (int i = 0; i < THREAD_COUNT; i++) {
+      threads[i].join();
+    }
+    return results;
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.caching;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryCacheManager;
+import org.springmodules.cache.key.HashCodeCacheKeyGenerator;
+import org.springmodules.cache.provider.CacheProviderFacade;
+import org.springmodules.cache.provider.memory.MemoryCacheFacade;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+import org.springmodules.cache.provider.memory.MemoryFlushingModel;
+
+/**
+ * Unit Tests for the write-behind mode of
+ * <code>{@link AbstractCachingInterceptor}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class WriteBehindCachingTests extends TestCase {
+
+  public static interface Loader {
+    Object load(String id);
+  }
+
+  private static class CountingLoader implements Loader {
+
+    int calls;
+
+    public Object load(String id) {
+      calls++;
+      return id.toUpperCase();
+    }
+  }
+
+  /**
+   * Executor that runs the tasks only when asked to.
+   */
+  private static class ManualExecutor implements TaskExecutor {
+
+    final List tasks = new ArrayList();
+
+    public void execute(Runnable task) {
+      tasks.add(task);
+    }
+
+    void runAll() {
+      while (!tasks.isEmpty()) {
+        ((Runnable) tasks.remove(0)).run();
+      }
+    }
+  }
+
+  private static class SingleModelCachingInterceptor extends
+      AbstractCachingInterceptor {
+
+    CachingModel model;
+
+    protected CachingModel model(MethodInvocation mi) {
+      return model;
+    }
+  }
+
+  private MemoryCache cache;
+
+  private MemoryCacheFacade cacheProviderFacade;
+
+  private ManualExecutor executor;
+
+  private SingleModelCachingInterceptor interceptor;
+
+  private MemoryCachingModel model;
+
+  private Loader proxy;
+
+  private CountingLoader target;
+
+  public WriteBehindCachingTests(String name) {
+    super(name);
+  }
+
+  public void testEntriesAreStoredInBackground() {
+    assertEquals("LUKE", proxy.load("luke"));
+    assertEquals(0, cache.size());
+    assertEquals(1, executor.tasks.size());
+
+    executor.runAll();
+    assertEquals(1, cache.size());
+    assertEquals("LUKE", proxy.load("luke"));
+    assertEquals(1, target.calls);
+  }
+
+  public void testQueuedEntryIsReturnedBeforeBeingStored() {
+    proxy.load("luke");
+    assertEquals("LUKE", proxy.load("luke"));
+    assertEquals(1, target.calls);
+  }
+
+  public void testEntriesAreStoredInBatches() {
+    final List batchSizes = new ArrayList();
+    CacheProviderFacade recorder = (CacheProviderFacade) Proxy.newProxyInstance(
+        getClass().getClassLoader(), new Class[] { CacheProviderFacade.class },
+        new InvocationHandler() {
+          public Object invoke(Object o, Method method, Object[] args) {
+            if ("putAllInCache".equals(method.getName())) {
+              batchSizes.add(new Integer(((Map) args[0]).size()));
+            }
+            return null;
+          }
+        });
+    WriteBehindQueue queue = new WriteBehindQueue();
+    queue.setCache(recorder);
+    queue.setExecutor(executor);
+    queue.setBatchSize(2);
+
+    for (int i = 0; i < 5; i++) {
+      queue.offer("key" + i, model, "value" + i);
+    }
+    assertEquals(1, executor.tasks.size());
+    executor.runAll();
+
+    assertEquals(3, batchSizes.size());
+    assertEquals(new Integer(2), batchSizes.get(0));
+    assertEquals(new Integer(1), batchSizes.get(2));
+    assertEquals(0, queue.size());
+  }
+
+  public void testFlushDiscardsQueuedEntries() {
+    proxy.load("luke");
+    cacheProviderFacade.flushCache(new MemoryFlushingModel(model.getCacheName()));
+
+    // the flushed value is neither returned nor stored afterwards
+    executor.runAll();
+    assertEquals(0, cache.size());
+    assertEquals("LUKE", proxy.load("luke"));
+    assertEquals(2, target.calls);
+  }
+
+  public void testRemovalDiscardsQueuedEntry() {
+    WriteBehindQueue queue = new WriteBehindQueue();
+    queue.setCache(cacheProviderFacade);
+    queue.setExecutor(executor);
+    cacheProviderFacade.addInvalidationListener(queue);
+
+    queue.offer("luke", model, "Luke");
+    queue.offer("leia", model, "Leia");
+    cacheProviderFacade.removeFromCache("luke", model);
+
+    assertNull(queue.pendingValue("luke", model));
+    assertEquals(1, queue.size());
+    executor.runAll();
+    assertNull(cache.get("luke"));
+    assertEquals("Leia", cache.get("leia"));
+  }
+
+  public void testFullQueueStoresInCallerThread() {
+    interceptor.setWriteBehindCapacity(1);
+
+    proxy.load("luke");
+    proxy.load("leia");
+
+    assertEquals(1, cache.size());
+    executor.runAll();
+    assertEquals(2, cache.size());
+  }
+
+  public void testRepeatedKeysAreCoalesced() {
+    WriteBehindQueue queue = new WriteBehindQueue();
+    MemoryCacheFacade cacheProviderFacade = new MemoryCacheFacade();
+    MemoryCacheManager cacheManager = new MemoryCacheManager();
+    cacheManager.addCache(model.getCacheName(), cache);
+    cacheProviderFacade.setCacheManager(cacheManager);
+    queue.setCache(cacheProviderFacade);
+    queue.setExecutor(executor);
+
+    queue.offer("luke", model, "Luke");
+    queue.offer("luke", model, "Luke Skywalker");
+    assertEquals(1, queue.size());
+    assertEquals("Luke Skywalker", queue.pendingValue("luke", model));
+
+    executor.runAll();
+    assertEquals("Luke Skywalker", cache.get("luke"));
+    assertNull(queue.pendingValue("luke", model));
+  }
+
+  protected void setUp() {
+    String cacheName = "loaderCache";
+    cache = new MemoryCache();
+    MemoryCacheManager cacheManager = new MemoryCacheManager();
+    cacheManager.addCache(cacheName, cache);
+
+    cacheProviderFacade = new MemoryCacheFacade();
+    cacheProviderFacade.setCacheManager(cacheManager);
+
+    model = new MemoryCachingModel(cacheName);
+    model.setWriteBehind(true);
+    executor = new ManualExecutor();
+
+    interceptor = new SingleModelCachingInterceptor();
+    interceptor.setCacheProviderFacade(cacheProviderFacade);
+    interceptor.model = model;
+    interceptor.setCacheKeyGenerator(new HashCodeCacheKeyGenerator());
+    interceptor.setWriteBehindExecutor(executor);
+
+    target = new CountingLoader();
+    ProxyFactory proxyFactory = new ProxyFactory(target);
+    proxyFactory.addAdvice(interceptor);
+    proxy = (Loader) proxyFactory.getProxy();
+  }
+}
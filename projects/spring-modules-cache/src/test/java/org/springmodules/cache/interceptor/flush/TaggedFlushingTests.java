@@ -0,0 +1,248 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.interceptor.flush;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.core.task.TaskExecutor;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.FlushingModel;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryCacheManager;
+import org.springmodules.cache.interceptor.caching.AbstractCachingInterceptor;
+import org.springmodules.cache.key.HashCodeCacheKeyGenerator;
+import org.springmodules.cache.provider.memory.MemoryCacheFacade;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+import org.springmodules.cache.provider.memory.MemoryFlushingModel;
+import org.springmodules.cache.tag.TagIndex;
+
+/**
+ * Unit Tests for the invalidation of tagged entries by
+ * <code>{@link AbstractFlushingInterceptor}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class TaggedFlushingTests extends TestCase {
+
+  public static interface UserService {
+
+    String getUser(String id);
+
+    String getGroup(String group);
+
+    void updateUser(String id);
+
+    void updateGroup(String group);
+  }
+
+  private static class CountingUserService implements UserService {
+
+    final Map loads = new HashMap();
+
+    public String getGroup(String group) {
+      return load("group:" + group);
+    }
+
+    public String getUser(String id) {
+      return load("user:" + id);
+    }
+
+    public void updateGroup(String group) {
+      // nothing to update.
+    }
+
+    public void updateUser(String id) {
+      // nothing to update.
+    }
+
+    int loadCount(String name) {
+      Integer count = (Integer) loads.get(name);
+      return (count != null) ? count.intValue() : 0;
+    }
+
+    private String load(String name) {
+      loads.put(name, new Integer(loadCount(name) + 1));
+      return name.toUpperCase();
+    }
+  }
+
+  private class NameMatchingCachingInterceptor extends
+      AbstractCachingInterceptor {
+
+    protected CachingModel model(MethodInvocation mi) {
+      String name = mi.getMethod().getName();
+      if (name.equals("getUser")) return userModel;
+      return name.equals("getGroup") ? groupModel : null;
+    }
+  }
+
+  private class NameMatchingFlushingInterceptor extends
+      AbstractFlushingInterceptor {
+
+    protected FlushingModel getModel(MethodInvocation mi) {
+      String name = mi.getMethod().getName();
+      if (name.equals("updateUser")) return updateUserModel;
+      return name.equals("updateGroup") ? updateGroupModel : null;
+    }
+  }
+
+  private NameMatchingCachingInterceptor cachingInterceptor;
+
+  private MemoryCachingModel groupModel;
+
+  private UserService proxy;
+
+  private CountingUserService service;
+
+  private TagIndex tagIndex;
+
+  private MemoryFlushingModel updateGroupModel;
+
+  private MemoryFlushingModel updateUserModel;
+
+  private MemoryCachingModel userModel;
+
+  public TaggedFlushingTests(String name) {
+    super(name);
+  }
+
+  public void testFlushingModelWithoutTagsFlushesCaches() {
+    updateUserModel.setTags(null);
+    proxy.getUser("luke");
+    proxy.getGroup("jedi");
+
+    proxy.updateUser("luke");
+    proxy.getUser("luke");
+    proxy.getGroup("jedi");
+    assertEquals(2, service.loadCount("user:luke"));
+    assertEquals(2, service.loadCount("group:jedi"));
+  }
+
+  public void testTagHavingMaxEntriesIsInvalidatedBeforeNewEntry() {
+    tagIndex.setMaxEntriesPerTag(2);
+    proxy.getUser("luke");
+    proxy.getUser("leia");
+    assertEquals(2, tagIndex.getEntryCount("group:jedi"));
+
+    proxy.getUser("han");
+    assertEquals(1, tagIndex.getEntryCount("group:jedi"));
+
+    proxy.getUser("luke");
+    proxy.getUser("han");
+    assertEquals(2, service.loadCount("user:luke"));
+    assertEquals(1, service.loadCount("user:han"));
+  }
+
+  /**
+   * Tags are invalidated with a bulk removal, which the write-behind queue of
+   * the caching interceptor listens to.
+   */
+  public void testUpdateDiscardsEntryWaitingToBeWrittenBehind() {
+    final List tasks = new ArrayList();
+    cachingInterceptor.setWriteBehindExecutor(new TaskExecutor() {
+      public void execute(Runnable task) {
+        tasks.add(task);
+      }
+    });
+    userModel.setWriteBehind(true);
+
+    proxy.getUser("luke");
+    proxy.updateUser("luke");
+    for (int i = 0; i < tasks.size(); i++) {
+      ((Runnable) tasks.get(i)).run();
+    }
+
+    proxy.getUser("luke");
+    assertEquals(2, service.loadCount("user:luke"));
+  }
+
+  public void testUpdateEvictsOnlyEntriesHavingTag() {
+    proxy.getUser("luke");
+    proxy.getUser("leia");
+    proxy.getGroup("jedi");
+    assertEquals(1, tagIndex.getEntryCount("user:luke"));
+
+    proxy.updateUser("luke");
+    assertEquals(0, tagIndex.getEntryCount("user:luke"));
+
+    proxy.getUser("luke");
+    proxy.getUser("leia");
+    proxy.getGroup("jedi");
+    assertEquals(2, service.loadCount("user:luke"));
+    assertEquals(1, service.loadCount("user:leia"));
+    assertEquals(1, service.loadCount("group:jedi"));
+  }
+
+  public void testUpdateEvictsEntriesOfSeveralModels() {
+    proxy.getUser("luke");
+    proxy.getUser("leia");
+    proxy.getGroup("jedi");
+    proxy.getGroup("sith");
+
+    proxy.updateGroup("jedi");
+    proxy.getUser("luke");
+    proxy.getUser("leia");
+    proxy.getGroup("jedi");
+    proxy.getGroup("sith");
+    assertEquals(2, service.loadCount("user:luke"));
+    assertEquals(2, service.loadCount("user:leia"));
+    assertEquals(2, service.loadCount("group:jedi"));
+    assertEquals(1, service.loadCount("group:sith"));
+  }
+
+  protected void setUp() {
+    MemoryCacheManager cacheManager = new MemoryCacheManager();
+    cacheManager.addCache("users", new MemoryCache());
+    cacheManager.addCache("groups", new MemoryCache());
+
+    MemoryCacheFacade cacheProviderFacade = new MemoryCacheFacade();
+    cacheProviderFacade.setCacheManager(cacheManager);
+
+    userModel = new MemoryCachingModel("users");
+    userModel.setTags(new String[] { "user:{0}", "group:jedi" });
+    groupModel = new MemoryCachingModel("groups");
+    groupModel.setTags(new String[] { "group:{0}" });
+
+    updateUserModel = new MemoryFlushingModel("users,groups");
+    updateUserModel.setTags(new String[] { "user:{0}" });
+    updateGroupModel = new MemoryFlushingModel("users,groups");
+    updateGroupModel.setTags(new String[] { "group:{0}" });
+
+    tagIndex = new TagIndex();
+
+    cachingInterceptor = new NameMatchingCachingInterceptor();
+    cachingInterceptor.setCacheProviderFacade(cacheProviderFacade);
+    cachingInterceptor.setCacheKeyGenerator(new HashCodeCacheKeyGenerator());
+    cachingInterceptor.setTagIndex(tagIndex);
+
+    NameMatchingFlushingInterceptor flushingInterceptor = new NameMatchingFlushingInterceptor();
+    flushingInterceptor.setCacheProviderFacade(cacheProviderFacade);
+    flushingInterceptor.setTagIndex(tagIndex);
+
+    service = new CountingUserService();
+    ProxyFactory proxyFactory = new ProxyFactory(service);
+    proxyFactory.addAdvice(flushingInterceptor);
+    proxyFactory.addAdvice(cachingInterceptor);
+    proxy = (UserService) proxyFactory.getProxy();
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.key;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Unit Tests for <code>{@link ArgumentsCacheKeyGenerator}</code>.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public final class ArgumentsCacheKeyGeneratorTests extends
+    AbstractCacheKeyGeneratorTests {
+
+  private static class Node {
+
+    Node next;
+
+    String value;
+
+    Node(String value) {
+      this.value = value;
+    }
+  }
+
+  private static class Person {
+
+    transient int hits;
+
+    String name;
+
+    Person(String name) {
+      this.name = name;
+    }
+  }
+
+  private static class Employee extends Person {
+
+    int id;
+
+    Employee(String name, int id) {
+      super(name);
+      this.id = id;
+    }
+  }
+
+  private ArgumentsCacheKeyGenerator keyGenerator;
+
+  private Method method;
+
+  public ArgumentsCacheKeyGeneratorTests(String name) {
+    super(name);
+  }
+
+  public void testGenerateKeyWithArgumentsHavingEqualHashCodes() {
+    // "Aa" and "BB" have the same hash code
+    Serializable key1 = executeGenerateArgumentHashCode(method,
+        new Object[] { "Aa" });
+    Serializable key2 = executeGenerateArgumentHashCode(method,
+        new Object[] { "BB" });
+
+    assertEquals(key1.hashCode(), key2.hashCode());
+    assertFalse(key1.equals(key2));
+  }
+
+  public void testGenerateKeyWithArgumentsNotDefiningEquality() {
+    Serializable key1 = executeGenerateArgumentHashCode(method,
+        new Object[] { new Employee("Luke", 1) });
+    Serializable key2 = executeGenerateArgumentHashCode(method,
+        new Object[] { new Employee("Luke", 1) });
+    Serializable key3 = executeGenerateArgumentHashCode(method,
+        new Object[] { new Employee("Luke", 2) });
+
+    assertEquals(key1, key2);
+    assertEquals(key1.hashCode(), key2.hashCode());
+    assertFalse(key1.equals(key3));
+  }
+
+  public void testGenerateKeyIgnoresTransientFields() {
+    Person person = new Person("Leia");
+    Serializable key1 = executeGenerateArgumentHashCode(method,
+        new Object[] { person });
+    person.hits++;
+    Serializable key2 = executeGenerateArgumentHashCode(method,
+        new Object[] { person });
+
+    assertEquals(key1, key2);
+  }
+
+  public void testGenerateKeyWithArgumentsOfDifferentClasses() {
+    Serializable key1 = executeGenerateArgumentHashCode(method,
+        new Object[] { new Person("Han") });
+    Serializable key2 = executeGenerateArgumentHashCode(method,
+        new Object[] { new Employee("Han", 0) });
+
+    assertFalse(key1.equals(key2));
+  }
+
+  public void testGenerateKeyCopiesArrays() {
+    int[] ids = { 1, 2 };
+    Serializable key1 = executeGenerateArgumentHashCode(method,
+        new Object[] { ids, new String[] { "Yoda" } });
+    Serializable key2 = executeGenerateArgumentHashCode(method, new Object[] {
+        new int[] { 1, 2 }, new String[] { "Yoda" } });
+    ids[0] = 3;
+
+    assertEquals(key1, key2);
+  }
+
+  public void testGenerateKeyWithCyclicArgument() {
+    Node node = new Node("Anakin");
+    node.next = node;
+
+    Serializable key1 = executeGenerateArgumentHashCode(method,
+        new Object[] { node });
+    Serializable key2 = executeGenerateArgumentHashCode(method,
+        new Object[] { node });
+
+    assertEquals(key1, key2);
+  }
+
+  public void testGenerateKeyWithDeepArgumentIsSerializable() throws Exception {
+    Node head = new Node("Vader");
+    Node tail = head;
+    for (int i = 0; i < 20; i++) {
+      tail.next = new Node("Vader");
+      tail = tail.next;
+    }
+
+    Serializable key = executeGenerateArgumentHashCode(method,
+        new Object[] { head });
+
+    // the nodes nested too deep are represented by their hash code
+    new ObjectOutputStream(new ByteArrayOutputStream()).writeObject(key);
+  }
+
+  public void testGenerateKeyWithJdkArgumentNotDefiningEquality()
+      throws Exception {
+    Object lock = new Object();
+    StringBuffer buffer = new StringBuffer("Obi-Wan");
+
+    Serializable key1 = executeGenerateArgumentHashCode(method, new Object[] {
+        lock, buffer });
+    Serializable key2 = executeGenerateArgumentHashCode(method, new Object[] {
+        lock, buffer });
+
+    assertEquals(key1, key2);
+    new ObjectOutputStream(new ByteArrayOutputStream()).writeObject(key1);
+  }
+
+  public void testGenerateKeyWithMapsHavingDifferentEntries() {
+    Map foo = new HashMap();
+    foo.put("foo", "foo");
+    Map bar = new HashMap();
+    bar.put("bar", "bar");
+
+    Serializable fooKey = executeGenerateArgumentHashCode(method,
+        new Object[] { foo });
+    Serializable barKey = executeGenerateArgumentHashCode(method,
+        new Object[] { bar });
+
+    assertFalse(fooKey.equals(barKey));
+  }
+
+  public void testGenerateKeyWithoutMethodArguments() {
+    Serializable expected = new ArgumentsCacheKey(method.toString(),
+        new Object[0]);
+    assertEquals(expected, executeGenerateArgumentHashCode(method, null));
+  }
+
+  protected void afterSetUp() throws Exception {
+    keyGenerator = new ArgumentsCacheKeyGenerator();
+    method = String.class.getMethod("toString", new Class[0]);
+  }
+
+  /**
+   * @see AbstractCacheKeyGeneratorTests#getCacheKeyGenerator()
+   */
+  protected CacheKeyGenerator getCacheKeyGenerator() {
+    return keyGenerator;
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.key;
+
+import org.springmodules.AbstractEqualsHashCodeTestCase;
+
+/**
+ * <p>
+ * Unit Tests for <code>{@link ArgumentsCacheKey}</code>.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public final class ArgumentsCacheKeyTests extends AbstractEqualsHashCodeTestCase {
+
+  private ArgumentsCacheKey key;
+
+  public ArgumentsCacheKeyTests(String name) {
+    super(name);
+  }
+
+  public void testEqualsHashCodeRelationship() {
+    assertEqualsHashCodeRelationshipIsCorrect(key, newKey());
+  }
+
+  public void testEqualsIsConsistent() {
+    assertEquals(key, newKey());
+
+    assertFalse(key.equals(new ArgumentsCacheKey("lastIndexOf",
+        new Object[] { "Luke", new int[] { 4 } })));
+    assertFalse(key.equals(new ArgumentsCacheKey("indexOf", new Object[] {
+        "Luke", new int[] { 5 } })));
+  }
+
+  public void testEqualsIsReflexive() {
+    assertEqualsIsReflexive(key);
+  }
+
+  public void testEqualsIsSymmetric() {
+    assertEqualsIsSymmetric(key, newKey());
+  }
+
+  public void testEqualsIsTransitive() {
+    assertEqualsIsTransitive(key, newKey(), newKey());
+  }
+
+  public void testEqualsNullComparison() {
+    assertEqualsNullComparisonReturnsFalse(key);
+  }
+
+  public void testToString() {
+    assertEquals("indexOf[Luke, [4]]", key.toString());
+  }
+
+  protected void setUp() {
+    key = newKey();
+  }
+
+  private ArgumentsCacheKey newKey() {
+    return new ArgumentsCacheKey("indexOf", new Object[] { "Luke",
+        new int[] { 4 } });
+  }
+}
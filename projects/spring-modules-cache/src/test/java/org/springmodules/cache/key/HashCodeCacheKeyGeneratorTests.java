@@ -66,6 +66,19 @@ public final class HashCodeCacheKeyGeneratorTests extends
     assertEquals(expected, actual);
   }
 
+  public void testGenerateKeyWithStableKeys() throws Exception {
+    keyGenerator.setStableKeys(true);
+    Method toStringMethod = String.class.getMethod("toString", new Class[0]);
+
+    HashCodeCalculator hashCodeCalculator = new HashCodeCalculator();
+    hashCodeCalculator.append(toStringMethod.toString().hashCode());
+    Serializable expected = new HashCodeCacheKey(hashCodeCalculator
+        .getCheckSum(), hashCodeCalculator.getHashCode());
+
+    Serializable actual = executeGenerateArgumentHashCode(toStringMethod, null);
+    assertEquals(expected, actual);
+  }
+
   public void testGenerateKeyWithTwoMapsHavingDifferentEntriesAndGeneratingArgumentHashCode()
       throws Exception {
     keyGenerator.setGenerateArgumentHashCode(true);
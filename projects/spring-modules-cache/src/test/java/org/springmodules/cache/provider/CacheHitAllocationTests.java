@@ -0,0 +1,148 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+
+import junit.framework.TestCase;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryCacheManager;
+import org.springmodules.cache.provider.memory.MemoryCacheFacade;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+import org.springmodules.cache.statistics.CacheStatistics;
+
+/**
+ * Counts the bytes allocated by cache hits through
+ * <code>{@link AbstractCacheProviderFacade}</code> with debug logging
+ * disabled. The counts are taken from the thread allocation counter of the
+ * JVM; the tests do nothing if the JVM does not provide one.
+ *
+ * @author Alex Ruiz
+ */
+public class CacheHitAllocationTests extends TestCase {
+
+  private static final String CACHE_NAME = "hitCache";
+
+  private static final int HITS = 100000;
+
+  /**
+   * Bytes the JVM itself may allocate while the hits run, like a one-off
+   * recompilation. A single object per hit would take hundreds of kilobytes.
+   */
+  private static final long JVM_ALLOCATIONS = 512;
+
+  private static final String KEY = "key";
+
+  private Method allocatedBytes;
+
+  private MemoryCacheFacade cacheFacade;
+
+  private MemoryCachingModel cachingModel;
+
+  private Logger facadeLogger;
+
+  private Level facadeLoggerLevel;
+
+  public CacheHitAllocationTests(String name) {
+    super(name);
+  }
+
+  public void testCacheHitDoesNotAllocate() throws Exception {
+    assertHitsDoNotAllocate();
+  }
+
+  public void testCacheHitWithStatisticsDoesNotAllocate() throws Exception {
+    cacheFacade.setStatistics(new CacheStatistics());
+    assertHitsDoNotAllocate();
+  }
+
+  protected void setUp() throws Exception {
+    MemoryCache cache = new MemoryCache();
+    cache.put(KEY, "Luke");
+    MemoryCacheManager cacheManager = new MemoryCacheManager();
+    cacheManager.addCache(CACHE_NAME, cache);
+
+    cacheFacade = new MemoryCacheFacade();
+    cacheFacade.setCacheManager(cacheManager);
+    cachingModel = new MemoryCachingModel(CACHE_NAME);
+
+    facadeLogger = Logger.getLogger(MemoryCacheFacade.class);
+    facadeLoggerLevel = facadeLogger.getLevel();
+    facadeLogger.setLevel(Level.INFO);
+
+    allocatedBytes = allocatedBytesMethod();
+  }
+
+  protected void tearDown() {
+    facadeLogger.setLevel(facadeLoggerLevel);
+  }
+
+  private long allocatedBytes() throws Exception {
+    Object threadBean = ManagementFactory.getThreadMXBean();
+    return ((Long) allocatedBytes.invoke(threadBean, new Object[] { new Long(
+        Thread.currentThread().getId()) })).longValue();
+  }
+
+  /**
+   * Returns <code>getThreadAllocatedBytes(long)</code> of the thread MBean of
+   * the JVM, or <code>null</code> if the JVM does not count allocations.
+   */
+  private Method allocatedBytesMethod() {
+    try {
+      Class beanType = Class.forName("com.sun.management.ThreadMXBean");
+      if (!beanType.isInstance(ManagementFactory.getThreadMXBean())) {
+        return null;
+      }
+      return beanType.getMethod("getThreadAllocatedBytes",
+          new Class[] { long.class });
+    } catch (Exception exception) {
+      return null;
+    }
+  }
+
+  private void assertHitsDoNotAllocate() throws Exception {
+    if (allocatedBytes == null) {
+      return;
+    }
+
+    // warm up, so that the measured hits run compiled code
+    for (int i = 0; i < 5; i++) {
+      hit();
+    }
+
+    long start = allocatedBytes();
+    long overhead = allocatedBytes() - start;
+
+    start = allocatedBytes();
+    hit();
+    long allocated = allocatedBytes() - start - overhead;
+
+    assertTrue(allocated + " bytes allocated by " + HITS + " cache hits",
+        allocated <= JVM_ALLOCATIONS);
+  }
+
+  private void hit() {
+    for (int i = 0; i < HITS; i++) {
+      if (cacheFacade.getFromCache(KEY, cachingModel) == null) {
+        fail();
+      }
+    }
+  }
+}
@@ -27,6 +27,7 @@ import org.springmodules.cache.FlushingModel;
 import org.springmodules.cache.mock.MockCachingModel;
 import org.springmodules.cache.mock.MockFlushingModel;
 import org.springmodules.cache.serializable.SerializableFactory;
+import org.springmodules.cache.serializable.ValueHolder;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
@@ -40,6 +41,28 @@ import java.net.Socket;
  */
 public final class CacheProviderFacadeTests extends TestCase {
 
+	private static class DatedValue implements ValueHolder {
+
+		private static final long serialVersionUID = 1L;
+
+		final long date;
+
+		final Object value;
+
+		DatedValue(Object value, long date) {
+			this.value = value;
+			this.date = date;
+		}
+
+		public Object getValue() {
+			return value;
+		}
+
+		public ValueHolder withValue(Object newValue) {
+			return new DatedValue(newValue, date);
+		}
+	}
+
 	private AbstractCacheProviderFacade cacheProviderFacade;
 
 	private MockControl cacheProviderFacadeControl;
@@ -262,6 +285,58 @@ public final class CacheProviderFacadeTests extends TestCase {
 		factoryControl.verify();
 	}
 
+	public void testMakeSerializableIfNecessaryWhenSerializableIsRequiredAndEntryIsValueHolder() {
+		MockControl factoryControl = MockControl
+				.createControl(SerializableFactory.class);
+		SerializableFactory factory = (SerializableFactory) factoryControl
+				.getMock();
+		cacheProviderFacade.setSerializableFactory(factory);
+
+		cacheProviderFacadeControl.expectAndReturn(cacheProviderFacade
+				.isSerializableCacheElementRequired(), true);
+		cacheProviderFacadeControl.replay();
+
+		Serializable expected = "Leia";
+		Object value = new Object();
+		factoryControl.expectAndReturn(factory.makeSerializableIfNecessary(value),
+				expected);
+		factoryControl.replay();
+
+		// the holder keeps its own data, only its value is made serializable
+		DatedValue actual = (DatedValue) cacheProviderFacade
+				.makeSerializableIfNecessary(new DatedValue(value, 42));
+		assertSame(expected, actual.value);
+		assertEquals(42, actual.date);
+
+		cacheProviderFacadeControl.verify();
+		factoryControl.verify();
+	}
+
+	public void testDeserializeValueIfNecessaryWhenSerializableIsRequiredAndEntryIsValueHolder() {
+		MockControl factoryControl = MockControl
+				.createControl(SerializableFactory.class);
+		SerializableFactory factory = (SerializableFactory) factoryControl
+				.getMock();
+		cacheProviderFacade.setSerializableFactory(factory);
+
+		cacheProviderFacadeControl.expectAndReturn(cacheProviderFacade
+				.isSerializableCacheElementRequired(), true);
+		cacheProviderFacadeControl.replay();
+
+		Serializable stored = "Leia";
+		Object expected = new Object();
+		factoryControl.expectAndReturn(factory.getOriginalValue(stored), expected);
+		factoryControl.replay();
+
+		DatedValue actual = (DatedValue) cacheProviderFacade
+				.deserializeValueIfNecessary(new DatedValue(stored, 42));
+		assertSame(expected, actual.value);
+		assertEquals(42, actual.date);
+
+		cacheProviderFacadeControl.verify();
+		factoryControl.verify();
+	}
+
 	public void testMakeSerializableIfNecessaryWhenSerializableIsRequiredAndSerializableFactoryIsNotNullAndEntryIsSerializable() {
 		cacheProviderFacadeControl.expectAndReturn(cacheProviderFacade
 				.isSerializableCacheElementRequired(), true);
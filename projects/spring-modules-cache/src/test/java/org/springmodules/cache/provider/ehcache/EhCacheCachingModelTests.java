@@ -67,6 +67,19 @@ public final class EhCacheCachingModelTests extends
 		assertFalse(model.equals(model2));
 	}
 
+	public void testEqualsComparesInterceptorOptions() {
+		model.setCacheName("main");
+		EhCacheCachingModel model2 = new EhCacheCachingModel("main");
+		model2.setSingleFlight(true);
+		assertFalse(model.equals(model2));
+
+		model.setSingleFlight(true);
+		assertEqualsHashCodeRelationshipIsCorrect(model, model2);
+
+		model2.setTags(new String[] { "user:{0}" });
+		assertFalse(model.equals(model2));
+	}
+
 	/**
 	 * @see org.springmodules.EqualsHashCodeTestCase#testEqualsIsReflexive()
 	 */
@@ -137,6 +150,16 @@ public final class EhCacheCachingModelTests extends
 		assertEquals(model.toString(), actual);
 	}
 
+	public void testToStringWithInterceptorOptions() {
+		model.setCacheName("main");
+		model.setRefreshAfter(1000);
+		model.setWriteBehind(true);
+		String actual = model.getClass().getName() + "@"
+				+ ObjectUtils.getIdentityHexString(model) + "[cacheName='main', blocking=false, cacheEntryFactory=null"
+				+ ", refreshAfter=1000, writeBehind=true]";
+		assertEquals(model.toString(), actual);
+	}
+
 	protected final void setUp() {
 		model = new EhCacheCachingModel();
 	}
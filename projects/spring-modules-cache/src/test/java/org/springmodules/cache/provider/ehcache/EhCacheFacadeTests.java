@@ -20,13 +20,22 @@ package org.springmodules.cache.provider.ehcache;
 import junit.framework.TestCase;
 import net.sf.ehcache.Cache;
 import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
+import net.sf.ehcache.constructs.blocking.BlockingCache;
+import net.sf.ehcache.constructs.blocking.CacheEntryFactory;
+import net.sf.ehcache.constructs.blocking.SelfPopulatingCache;
+import org.aopalliance.intercept.MethodInvocation;
 import org.easymock.AbstractMatcher;
 import org.easymock.classextension.MockClassControl;
+import org.springframework.aop.framework.ProxyFactory;
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
 import org.springframework.util.ObjectUtils;
 import org.springmodules.cache.CacheException;
+import org.springmodules.cache.CachingModel;
 import org.springmodules.cache.FatalCacheException;
+import org.springmodules.cache.interceptor.caching.AbstractCachingInterceptor;
+import org.springmodules.cache.key.HashCodeCacheKeyGenerator;
 import org.springmodules.cache.provider.CacheAccessException;
 import org.springmodules.cache.provider.CacheModelValidator;
 import org.springmodules.cache.provider.CacheNotFoundException;
@@ -35,6 +44,8 @@ import org.springmodules.cache.provider.ReflectionCacheModelEditor;
 import java.beans.PropertyEditor;
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -45,6 +56,35 @@ import java.util.Map;
  */
 public class EhCacheFacadeTests extends TestCase {
 
+	public static interface Loader {
+		Object load(String id);
+	}
+
+	/**
+	 * Runs a cache access in another thread, so a caller blocked forever fails
+	 * the test instead of hanging it.
+	 */
+	private static abstract class Access extends Thread {
+
+		Object result;
+
+		Access() {
+			setDaemon(true);
+		}
+
+		public final void run() {
+			result = access();
+		}
+
+		abstract Object access();
+
+		Object await() throws InterruptedException {
+			join(2000);
+			assertFalse("the cache access is blocked", isAlive());
+			return result;
+		}
+	}
+
 	protected class ElementMatcher extends AbstractMatcher {
 		/**
 		 * @see AbstractMatcher#argumentMatches(Object,Object)
@@ -96,6 +136,129 @@ public class EhCacheFacadeTests extends TestCase {
 		super(name);
 	}
 
+	public void testCancelCacheUpdateReleasesKeyOfBlockingCache()
+			throws Exception {
+		setUpCache();
+		cachingModel.setBlocking(true);
+
+		// the miss keeps the key locked until a value is put
+		assertNull(cacheFacade.getFromCache(KEY, cachingModel));
+		cacheFacade.cancelCacheUpdate(KEY);
+
+		Access access = new Access() {
+			Object access() {
+				return cacheFacade.getFromCache(KEY, cachingModel);
+			}
+		};
+		access.start();
+		assertNull(access.await());
+	}
+
+	public void testCancelCacheUpdateKeepsKeysMissedByOtherThreads()
+			throws Exception {
+		setUpCache();
+		cachingModel.setBlocking(true);
+		cacheManager.addCache("otherCache");
+		final EhCacheCachingModel otherModel = new EhCacheCachingModel("otherCache");
+		otherModel.setBlocking(true);
+
+		// this thread keeps the key of the first cache locked
+		assertNull(cacheFacade.getFromCache(KEY, cachingModel));
+
+		// another thread misses the same key in another cache and cancels
+		Access cancel = new Access() {
+			Object access() {
+				Object value = cacheFacade.getFromCache(KEY, otherModel);
+				cacheFacade.cancelCacheUpdate(KEY);
+				return value;
+			}
+		};
+		cancel.start();
+		assertNull(cancel.await());
+
+		// the key of the first cache is still locked by this thread
+		Access reader = new Access() {
+			Object access() {
+				return cacheFacade.getFromCache(KEY, cachingModel);
+			}
+		};
+		reader.start();
+		reader.join(200);
+		assertTrue("the lock of another thread was released", reader.isAlive());
+
+		cacheFacade.putInCache(KEY, cachingModel, "Luke");
+		assertEquals("Luke", reader.await());
+
+		// the key of the other cache was released by the cancelling thread
+		Access otherReader = new Access() {
+			Object access() {
+				return cacheFacade.getFromCache(KEY, otherModel);
+			}
+		};
+		otherReader.start();
+		assertNull(otherReader.await());
+	}
+
+	public void testFailingMethodDoesNotBlockLaterCallersOfBlockingCache()
+			throws Exception {
+		setUpCache();
+		cachingModel.setBlocking(true);
+
+		final int[] calls = new int[1];
+		Loader target = new Loader() {
+			public Object load(String id) {
+				if (calls[0]++ == 0) {
+					throw new IllegalStateException("backend down");
+				}
+				return id.toUpperCase();
+			}
+		};
+		AbstractCachingInterceptor interceptor = new AbstractCachingInterceptor() {
+			protected CachingModel model(MethodInvocation mi) {
+				return cachingModel;
+			}
+		};
+		interceptor.setCacheProviderFacade(cacheFacade);
+		interceptor.setCacheKeyGenerator(new HashCodeCacheKeyGenerator());
+		ProxyFactory proxyFactory = new ProxyFactory(target);
+		proxyFactory.addAdvice(interceptor);
+		final Loader proxy = (Loader) proxyFactory.getProxy();
+
+		try {
+			proxy.load("luke");
+			fail();
+		} catch (IllegalStateException exception) {
+			// expected
+		}
+
+		Access access = new Access() {
+			Object access() {
+				return proxy.load("luke");
+			}
+		};
+		access.start();
+		assertEquals("LUKE", access.await());
+	}
+
+	public void testGetAllFromBlockingCacheWithMissingKeysOfSameLock()
+			throws Exception {
+		setUpCache();
+		cachingModel.setBlocking(true);
+
+		// "Aa" and "BB" have the same hash code, so they share a lock
+		Access access = new Access() {
+			Object access() {
+				return cacheFacade.getAllFromCache(Arrays.asList(new String[]{"Aa",
+						"BB"}), cachingModel);
+			}
+		};
+		access.start();
+		assertTrue(((Map) access.await()).isEmpty());
+
+		assertNull(cacheFacade.getFromCache("Aa", cachingModel));
+		cacheFacade.putInCache("Aa", cachingModel, "Luke");
+	}
+
 	/**
 	 * Verifies that the method
 	 * <code>{@link EhCacheFacade#modelValidator()}</code> returns an an
@@ -143,6 +306,81 @@ public class EhCacheFacadeTests extends TestCase {
 		}
 	}
 
+	public void testGetCacheReusesBlockingDecorator() throws Exception {
+		setUpCache();
+		cachingModel.setBlocking(true);
+
+		final Ehcache decorated = cacheFacade.getCache(cachingModel);
+		assertTrue(decorated instanceof BlockingCache);
+		assertSame(decorated, cacheFacade.getCache(cachingModel));
+
+		final int threadCount = 4;
+		final Ehcache[] found = new Ehcache[threadCount];
+		Thread[] threads = new Thread[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			final int index = i;
+			threads[i] = new Thread() {
+				public void run() {
+					found[index] = cacheFacade.getCache(cachingModel);
+				}
+			};
+			threads[i].start();
+		}
+		for (int i = 0; i < threadCount; i++) {
+			threads[i].join();
+			assertSame(decorated, found[i]);
+		}
+	}
+
+	public void testGetCacheReusesSelfPopulatingDecoratorPerFactory() {
+		setUpCache();
+		CacheEntryFactory factory = new CacheEntryFactory() {
+			public Object createEntry(Object key) {
+				return key;
+			}
+		};
+		cachingModel.setCacheEntryFactory(factory);
+
+		Ehcache decorated = cacheFacade.getCache(cachingModel);
+		assertTrue(decorated instanceof SelfPopulatingCache);
+		assertSame(decorated, cacheFacade.getCache(cachingModel));
+
+		EhCacheCachingModel blockingModel = new EhCacheCachingModel(CACHE_NAME);
+		blockingModel.setBlocking(true);
+		Ehcache blocking = cacheFacade.getCache(blockingModel);
+		assertNotSame(decorated, blocking);
+
+		EhCacheCachingModel otherFactoryModel = new EhCacheCachingModel(CACHE_NAME);
+		otherFactoryModel.setCacheEntryFactory(new CacheEntryFactory() {
+			public Object createEntry(Object key) {
+				return null;
+			}
+		});
+		Ehcache otherDecorated = cacheFacade.getCache(otherFactoryModel);
+		assertNotSame(decorated, otherDecorated);
+		assertNotSame(blocking, otherDecorated);
+	}
+
+	public void testGetCacheWithoutDecoratorReturnsCache() {
+		setUpCache();
+		assertSame(cache, cacheFacade.getCache(cachingModel));
+	}
+
+	public void testGetCacheDecoratesReplacedCache() {
+		setUpCache();
+		cachingModel.setBlocking(true);
+		Ehcache decorated = cacheFacade.getCache(cachingModel);
+
+		cacheManager.removeCache(CACHE_NAME);
+		cacheManager.addCache(CACHE_NAME);
+
+		Ehcache redecorated = cacheFacade.getCache(cachingModel);
+		assertNotSame(decorated, redecorated);
+		redecorated.put(new Element(KEY, "value"));
+		assertEquals("value", cacheManager.getCache(CACHE_NAME).get(KEY)
+				.getObjectValue());
+	}
+
 	public void testGetCachingModelEditor() {
 		PropertyEditor editor = cacheFacade.getCachingModelEditor();
 
@@ -256,6 +494,19 @@ public class EhCacheFacadeTests extends TestCase {
 		assertOnGetFromCacheWrapsCatchedException(new IllegalStateException());
 	}
 
+	public void testOnGetAllFromCache() throws Exception {
+		setUpCache();
+		cache.put(new Element("luke", "Luke"));
+		cache.put(new Element("leia", "Leia"));
+
+		Map cachedObjects = cacheFacade.onGetAllFromCache(Arrays.asList(new String[]{
+				"luke", "leia", "han"}), cachingModel);
+
+		assertEquals(2, cachedObjects.size());
+		assertEquals("Luke", cachedObjects.get("luke"));
+		assertEquals("Leia", cachedObjects.get("leia"));
+	}
+
 	public void testOnGetFromCacheWhenCacheIsNotFound() {
 		setUpCache();
 		cachingModel.setCacheName("NonExistingCache");
@@ -325,6 +576,30 @@ public class EhCacheFacadeTests extends TestCase {
 	 * does not store any entry in any cache if the cache specified in the given
 	 * cache model does not exist.
 	 */
+	public void testOnPutAllInCache() throws Exception {
+		setUpCache();
+		Map entries = new HashMap();
+		entries.put("luke", "Luke");
+		entries.put("leia", "Leia");
+
+		cacheFacade.onPutAllInCache(entries, cachingModel);
+
+		assertEquals("Luke", cache.get("luke").getValue());
+		assertEquals("Leia", cache.get("leia").getValue());
+	}
+
+	public void testOnRemoveAllFromCache() throws Exception {
+		setUpCache();
+		cache.put(new Element("luke", "Luke"));
+		cache.put(new Element("leia", "Leia"));
+
+		cacheFacade.onRemoveAllFromCache(Arrays.asList(new String[]{"luke",
+				"leia"}), cachingModel);
+
+		assertNull(cache.get("luke"));
+		assertNull(cache.get("leia"));
+	}
+
 	public void testOnPutInCacheWhenCacheIsNotFound() throws Exception {
 		setUpCache();
 		cachingModel.setCacheName("NonExistingCache");
@@ -29,6 +29,8 @@ import org.springmodules.cache.provider.ReflectionCacheModelEditor;
 
 import java.beans.PropertyEditor;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -145,6 +147,28 @@ public class JbossCacheFacadeTests extends TestCase {
 		assertEquals(objectToCache, cachedObject);
 	}
 
+	public void testOnGetAllFromCache() throws Exception {
+		setUpTreeCache();
+		putInTreeCache("luke", "Luke");
+		putInTreeCache("leia", "Leia");
+
+		Map cachedObjects = cacheFacade.onGetAllFromCache(Arrays
+				.asList(new String[]{"luke", "leia", "han"}), cachingModel);
+
+		assertEquals(2, cachedObjects.size());
+		assertEquals("Luke", cachedObjects.get("luke"));
+		assertEquals("Leia", cachedObjects.get("leia"));
+	}
+
+	public void testOnGetAllFromCacheWithNotExistingNode() throws Exception {
+		setUpTreeCache();
+
+		Map cachedObjects = cacheFacade.onGetAllFromCache(Arrays
+				.asList(new String[]{"luke"}), cachingModel);
+
+		assertTrue(cachedObjects.isEmpty());
+	}
+
 	public void testOnGetFromCacheWhenCacheAccessThrowsException()
 			throws Exception {
 		Method getMethod = TreeCache.class.getDeclaredMethod("get", new Class[]{
@@ -178,6 +202,18 @@ public class JbossCacheFacadeTests extends TestCase {
 		assertEquals(objectToCache, cachedObject);
 	}
 
+	public void testOnPutAllInCache() throws Exception {
+		setUpTreeCache();
+		Map entries = new HashMap();
+		entries.put("luke", "Luke");
+		entries.put("leia", "Leia");
+
+		cacheFacade.onPutAllInCache(entries, cachingModel);
+
+		assertEquals("Luke", getFromTreeCache("luke"));
+		assertEquals("Leia", getFromTreeCache("leia"));
+	}
+
 	public void testOnPutInCacheWhenCacheAccessThrowsException() throws Exception {
 		Method putMethod = TreeCache.class.getDeclaredMethod("put", new Class[]{
 				String.class, Object.class, Object.class});
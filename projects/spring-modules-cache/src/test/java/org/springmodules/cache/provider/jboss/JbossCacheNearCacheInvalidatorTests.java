@@ -0,0 +1,147 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.jboss;
+
+import java.beans.PropertyEditor;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.jboss.cache.Fqn;
+import org.springmodules.cache.CacheException;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.FlushingModel;
+import org.springmodules.cache.provider.AbstractCacheProviderFacade;
+import org.springmodules.cache.provider.CacheModelValidator;
+import org.springmodules.cache.provider.near.NearCacheFacade;
+
+/**
+ * Unit Tests for <code>{@link JbossCacheNearCacheInvalidator}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class JbossCacheNearCacheInvalidatorTests extends TestCase {
+
+	/**
+	 * Stand-in for a remote JBoss Cache: stores entries by node and key.
+	 */
+	private static class RemoteCacheFacade extends AbstractCacheProviderFacade {
+
+		final Map entries = new HashMap();
+
+		public PropertyEditor getCachingModelEditor() {
+			return null;
+		}
+
+		public PropertyEditor getFlushingModelEditor() {
+			return null;
+		}
+
+		public CacheModelValidator modelValidator() {
+			return null;
+		}
+
+		protected boolean isSerializableCacheElementRequired() {
+			return false;
+		}
+
+		protected void onFlushCache(FlushingModel model) throws CacheException {
+			entries.clear();
+		}
+
+		protected Object onGetFromCache(Serializable key, CachingModel model)
+				throws CacheException {
+			return entries.get(entryKey(key, model));
+		}
+
+		protected void onPutInCache(Serializable key, CachingModel model,
+				Object obj) throws CacheException {
+			entries.put(entryKey(key, model), obj);
+		}
+
+		protected void onRemoveFromCache(Serializable key, CachingModel model)
+				throws CacheException {
+			entries.remove(entryKey(key, model));
+		}
+
+		protected void validateCacheManager() {
+			// no cache manager.
+		}
+
+		private String entryKey(Serializable key, CachingModel model) {
+			return ((JbossCacheCachingModel) model).getNode() + ":" + key;
+		}
+	}
+
+	private JbossCacheCachingModel childModel;
+
+	private JbossCacheNearCacheInvalidator invalidator;
+
+	private NearCacheFacade nearCache;
+
+	private JbossCacheCachingModel parentModel;
+
+	private RemoteCacheFacade remoteCache;
+
+	public JbossCacheNearCacheInvalidatorTests(String name) {
+		super(name);
+	}
+
+	public void testLocalModificationIsIgnored() {
+		modifyRemotely("a/b", "luke", "Luke Skywalker");
+		invalidator.nodeModify(Fqn.fromString("a/b"), false, true);
+
+		assertEquals("Luke", nearCache.getFromCache("luke", parentModel));
+	}
+
+	public void testRemoteModificationInvalidatesModelsUsingNode() {
+		modifyRemotely("a/b", "luke", "Luke Skywalker");
+		modifyRemotely("a/b/c", "leia", "Leia Organa");
+		invalidator.nodeModify(Fqn.fromString("a/b"), true, false);
+		assertEquals("Luke", nearCache.getFromCache("luke", parentModel));
+
+		invalidator.nodeModify(Fqn.fromString("a/b"), false, false);
+
+		assertEquals("Luke Skywalker", nearCache.getFromCache("luke", parentModel));
+		assertEquals("Leia", nearCache.getFromCache("leia", childModel));
+	}
+
+	public void testRemoteRemovalInvalidatesModelsUsingChildNodes() {
+		remoteCache.entries.clear();
+		invalidator.nodeRemove(Fqn.fromString("a"), false, false);
+
+		assertNull(nearCache.getFromCache("luke", parentModel));
+		assertNull(nearCache.getFromCache("leia", childModel));
+	}
+
+	protected void setUp() {
+		remoteCache = new RemoteCacheFacade();
+		nearCache = new NearCacheFacade();
+		nearCache.setCacheProviderFacade(remoteCache);
+		invalidator = new JbossCacheNearCacheInvalidator(nearCache);
+
+		parentModel = new JbossCacheCachingModel("a/b");
+		childModel = new JbossCacheCachingModel("a/b/c");
+		nearCache.putInCache("luke", parentModel, "Luke");
+		nearCache.putInCache("leia", childModel, "Leia");
+	}
+
+	private void modifyRemotely(String node, String key, String value) {
+		remoteCache.entries.put(node + ":" + key, value);
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.memory;
+
+import java.beans.PropertyEditor;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springmodules.cache.FatalCacheException;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryCacheManager;
+import org.springmodules.cache.provider.CacheModelValidator;
+import org.springmodules.cache.provider.CacheNotFoundException;
+import org.springmodules.cache.provider.ReflectionCacheModelEditor;
+import org.springmodules.cache.statistics.CacheStatistics;
+import org.springmodules.cache.statistics.ModelStatistics;
+
+/**
+ * Unit Tests for <code>{@link MemoryCacheFacade}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class MemoryCacheFacadeTests extends TestCase {
+
+	private static final String CACHE_NAME = "testCache";
+
+	private static final String KEY = "key";
+
+	private MemoryCache cache;
+
+	private MemoryCacheFacade cacheFacade;
+
+	private MemoryCacheManager cacheManager;
+
+	private MemoryCachingModel cachingModel;
+
+	private MemoryFlushingModel flushingModel;
+
+	public MemoryCacheFacadeTests(String name) {
+		super(name);
+	}
+
+	public void testGetCacheModelValidator() {
+		CacheModelValidator validator = cacheFacade.modelValidator();
+		assertNotNull(validator);
+		assertEquals(MemoryModelValidator.class, validator.getClass());
+	}
+
+	public void testGetCacheWithNotExistingCache() {
+		try {
+			cacheFacade.getCache("AnotherCache");
+			fail();
+		} catch (CacheNotFoundException exception) {
+			// we are expecting this exception.
+		}
+	}
+
+	public void testGetCachingModelEditor() {
+		PropertyEditor editor = cacheFacade.getCachingModelEditor();
+
+		assertEquals(ReflectionCacheModelEditor.class, editor.getClass());
+		ReflectionCacheModelEditor modelEditor = (ReflectionCacheModelEditor) editor;
+		assertEquals(MemoryCachingModel.class, modelEditor.getCacheModelClass());
+		assertNull(modelEditor.getCacheModelPropertyEditors());
+	}
+
+	public void testGetFlushingModelEditor() {
+		PropertyEditor editor = cacheFacade.getFlushingModelEditor();
+
+		assertEquals(ReflectionCacheModelEditor.class, editor.getClass());
+		ReflectionCacheModelEditor modelEditor = (ReflectionCacheModelEditor) editor;
+		assertEquals(MemoryFlushingModel.class, modelEditor.getCacheModelClass());
+		Map propertyEditors = modelEditor.getCacheModelPropertyEditors();
+		assertEquals(1, propertyEditors.size());
+		assertSame(StringArrayPropertyEditor.class, propertyEditors.get("cacheNames").getClass());
+	}
+
+	public void testIsSerializableCacheElementRequired() {
+		assertFalse(cacheFacade.isSerializableCacheElementRequired());
+	}
+
+	public void testOnFlushCache() {
+		cache.put(KEY, "A Value");
+		cacheFacade.onFlushCache(flushingModel);
+		assertTrue(cache.isEmpty());
+	}
+
+	public void testOnFlushCacheWhenCacheIsNotFound() {
+		flushingModel.setCacheNames("NonExistingCache");
+		try {
+			cacheFacade.onFlushCache(flushingModel);
+			fail();
+		} catch (CacheNotFoundException exception) {
+			// we are expecting this exception.
+		}
+	}
+
+	public void testGetAllFromCache() {
+		cache.put("luke", "Luke");
+		cache.put("leia", "Leia");
+
+		Map cachedObjects = cacheFacade.getAllFromCache(Arrays.asList(new String[]{
+				"luke", "leia", "han"}), cachingModel);
+
+		assertEquals(2, cachedObjects.size());
+		assertEquals("Luke", cachedObjects.get("luke"));
+		assertEquals("Leia", cachedObjects.get("leia"));
+	}
+
+	public void testGetAllFromCacheWithoutModel() {
+		cache.put(KEY, "An Object");
+		assertTrue(cacheFacade.getAllFromCache(Arrays.asList(new String[]{KEY}),
+				null).isEmpty());
+	}
+
+	public void testOnGetFromCache() {
+		Object expected = new Object();
+		cache.put(KEY, expected);
+		assertSame(expected, cacheFacade.onGetFromCache(KEY, cachingModel));
+	}
+
+	public void testOnGetFromCacheWhenKeyIsNotFound() {
+		assertNull(cacheFacade.onGetFromCache("NonExistingKey", cachingModel));
+	}
+
+	public void testOnPutInCacheStoresNonSerializableObject() {
+		Object expected = new Object();
+		cacheFacade.putInCache(KEY, cachingModel, expected);
+		assertSame(expected, cache.get(KEY));
+	}
+
+	public void testOnPutInCacheUsesTimeToLiveOfModel() throws Exception {
+		cachingModel.setTimeToLive(1);
+		cacheFacade.onPutInCache(KEY, cachingModel, "An Object");
+		Thread.sleep(20);
+		assertNull(cache.get(KEY));
+	}
+
+	public void testOnPutInCacheWhenCacheIsNotFound() {
+		cachingModel.setCacheName("NonExistingCache");
+		try {
+			cacheFacade.onPutInCache(KEY, cachingModel, "An Object");
+			fail();
+		} catch (CacheNotFoundException exception) {
+			// we are expecting this exception.
+		}
+	}
+
+	public void testPutAllInCache() {
+		Map entries = new HashMap();
+		entries.put("luke", "Luke");
+		entries.put("leia", "Leia");
+
+		cacheFacade.putAllInCache(entries, cachingModel);
+
+		assertEquals("Luke", cache.get("luke"));
+		assertEquals("Leia", cache.get("leia"));
+	}
+
+	public void testRemoveAllFromCache() {
+		cache.put("luke", "Luke");
+		cache.put("leia", "Leia");
+
+		cacheFacade.removeAllFromCache(Arrays.asList(new String[]{"luke", "leia"}),
+				cachingModel);
+
+		assertEquals(0, cache.size());
+	}
+
+	public void testOnRemoveFromCache() {
+		cache.put(KEY, "An Object");
+		cacheFacade.onRemoveFromCache(KEY, cachingModel);
+		assertFalse(cache.containsKey(KEY));
+	}
+
+	public void testStatisticsRecordCacheOperations() {
+		CacheStatistics statistics = new CacheStatistics();
+		cacheFacade.setStatistics(statistics);
+
+		cacheFacade.putInCache(KEY, cachingModel, "Luke");
+		cacheFacade.getFromCache(KEY, cachingModel);
+		cacheFacade.getFromCache("leia", cachingModel);
+		cacheFacade.removeFromCache(KEY, cachingModel);
+		cacheFacade.flushCache(flushingModel);
+
+		ModelStatistics modelStatistics = statistics.forModel(cachingModel);
+		assertEquals(1, modelStatistics.getPutCount());
+		assertEquals(1, modelStatistics.getHitCount());
+		assertEquals(1, modelStatistics.getMissCount());
+		assertEquals(0.5, modelStatistics.getHitRatio(), 0);
+		assertEquals(1, modelStatistics.getRemoveCount());
+		assertEquals(1, statistics.forModel(flushingModel).getFlushCount());
+	}
+
+	public void testStatisticsReportEvictionsOfMemoryCache() {
+		cacheManager.addCache("smallCache", new MemoryCache(1));
+		MemoryCachingModel model = new MemoryCachingModel("smallCache");
+		CacheStatistics statistics = new CacheStatistics();
+		cacheFacade.setStatistics(statistics);
+
+		cacheFacade.putInCache("luke", model, "Luke");
+		cacheFacade.putInCache("leia", model, "Leia");
+
+		assertEquals(1, statistics.forModel(model).getEvictionCount());
+	}
+
+	public void testValidateCacheManagerWithCacheManagerEqualToNull() {
+		cacheFacade.setCacheManager(null);
+		try {
+			cacheFacade.validateCacheManager();
+			fail();
+		} catch (FatalCacheException exception) {
+			// we are expecting this exception.
+		}
+	}
+
+	protected void setUp() {
+		cache = new MemoryCache();
+		cacheManager = new MemoryCacheManager();
+		cacheManager.addCache(CACHE_NAME, cache);
+
+		cacheFacade = new MemoryCacheFacade();
+		cacheFacade.setCacheManager(cacheManager);
+
+		cachingModel = new MemoryCachingModel(CACHE_NAME);
+		flushingModel = new MemoryFlushingModel(CACHE_NAME);
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.memory;
+
+import junit.framework.TestCase;
+
+import org.springmodules.cache.provider.InvalidCacheModelException;
+
+/**
+ * <p>
+ * Unit Tests for <code>{@link MemoryModelValidator}</code>.
+ * </p>
+ *
+ * @author Alex Ruiz
+ */
+public final class MemoryModelValidatorTests extends TestCase {
+
+  private MemoryCachingModel cachingModel;
+
+  private MemoryFlushingModel flushingModel;
+
+  private MemoryModelValidator validator;
+
+  public MemoryModelValidatorTests(String name) {
+    super(name);
+  }
+
+  public void testValidateCachingModel() {
+    cachingModel.setCacheName("mapping");
+    cachingModel.setTimeToLive(-1);
+    validator.validateCachingModel(cachingModel);
+  }
+
+  public void testValidateCachingModelWithEmptyCacheName() {
+    cachingModel.setCacheName("");
+    assertValidateCachingModelThrowsException(cachingModel);
+  }
+
+  public void testValidateCachingModelWithInvalidTimeToLive() {
+    cachingModel.setCacheName("mapping");
+    cachingModel.setTimeToLive(-2);
+    assertValidateCachingModelThrowsException(cachingModel);
+  }
+
+  public void testValidateCachingModelWithArgumentNotBeingCachingModel() {
+    assertValidateCachingModelThrowsException("Anakin");
+  }
+
+  public void testValidateFlushingModel() {
+    flushingModel.setCacheNames("services,pojos");
+    validator.validateFlushingModel(flushingModel);
+  }
+
+  public void testValidateFlushingModelWithEmptyCacheNamesCsv() {
+    flushingModel.setCacheNames("");
+    try {
+      validator.validateFlushingModel(flushingModel);
+      fail();
+    } catch (InvalidCacheModelException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  protected void setUp() {
+    cachingModel = new MemoryCachingModel();
+    flushingModel = new MemoryFlushingModel();
+    validator = new MemoryModelValidator();
+  }
+
+  private void assertValidateCachingModelThrowsException(Object model) {
+    try {
+      validator.validateCachingModel(model);
+      fail();
+    } catch (InvalidCacheModelException exception) {
+      // we are expecting this exception.
+    }
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.springmodules.cache.FatalCacheException;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryCacheManager;
+import org.springmodules.cache.impl.MemoryUsage;
+import org.springmodules.cache.impl.OffHeapCache;
+import org.springmodules.cache.provider.CacheNotFoundException;
+
+/**
+ * Unit Tests for <code>{@link OffHeapCacheFacade}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class OffHeapCacheFacadeTests extends TestCase {
+
+	private static final String CACHE_NAME = "reports";
+
+	private static final String KEY = "key";
+
+	private OffHeapCacheFacade cacheFacade;
+
+	private MemoryCache heapCache;
+
+	private MemoryCachingModel heapModel;
+
+	private MemoryCachingModel offHeapModel;
+
+	public OffHeapCacheFacadeTests(String name) {
+		super(name);
+	}
+
+	public void testGetMemoryUsage() {
+		assertNull(cacheFacade.getMemoryUsage(CACHE_NAME));
+		assertEquals(0, cacheFacade.getMemoryUsage().getBytesUsed());
+
+		cacheFacade.putInCache(KEY, offHeapModel, "Annual report");
+		MemoryUsage usage = cacheFacade.getMemoryUsage(CACHE_NAME);
+		assertEquals(1, usage.getEntryCount());
+		assertTrue(usage.getBytesUsed() > 0);
+		assertEquals(usage.getBytesUsed(), cacheFacade.getMemoryUsage()
+				.getBytesUsed());
+	}
+
+	public void testModelsSelectHeapOrOffHeapCache() {
+		List report = new ArrayList(Arrays.asList(new String[] { "Q1", "Q2" }));
+		cacheFacade.putInCache(KEY, offHeapModel, report);
+		assertFalse(heapCache.containsKey(KEY));
+
+		List cached = (List) cacheFacade.getFromCache(KEY, offHeapModel);
+		assertEquals(report, cached);
+		assertNotSame(report, cached);
+
+		cacheFacade.putInCache(KEY, heapModel, report);
+		assertSame(report, heapCache.get(KEY));
+		assertSame(report, cacheFacade.getFromCache(KEY, heapModel));
+	}
+
+	public void testOnFlushCacheClearsHeapAndOffHeapCaches() {
+		cacheFacade.putInCache(KEY, offHeapModel, "Annual report");
+		cacheFacade.putInCache(KEY, heapModel, "Annual report");
+
+		cacheFacade.flushCache(new MemoryFlushingModel(CACHE_NAME));
+		assertNull(cacheFacade.getFromCache(KEY, offHeapModel));
+		assertNull(cacheFacade.getFromCache(KEY, heapModel));
+	}
+
+	public void testOnFlushCacheWithNotExistingCache() {
+		cacheFacade.setFailQuietlyEnabled(false);
+		try {
+			cacheFacade.flushCache(new MemoryFlushingModel("AnotherCache"));
+			fail();
+		} catch (CacheNotFoundException exception) {
+			// we are expecting this exception.
+		}
+	}
+
+	public void testOnRemoveFromCache() {
+		cacheFacade.putInCache(KEY, offHeapModel, "Annual report");
+		cacheFacade.removeAllFromCache(Collections.singletonList(KEY),
+				offHeapModel);
+		assertNull(cacheFacade.getFromCache(KEY, offHeapModel));
+		assertEquals(0, cacheFacade.getMemoryUsage(CACHE_NAME).getBytesUsed());
+	}
+
+	public void testRegisteredOffHeapCacheIsUsed() {
+		OffHeapCache cache = new OffHeapCache(4096, 64);
+		cacheFacade.setOffHeapCaches(Collections.singletonMap(CACHE_NAME, cache));
+
+		cacheFacade.putInCache(KEY, offHeapModel, "Annual report");
+		assertEquals("Annual report", cache.get(KEY));
+	}
+
+	public void testValidateCacheManagerWithInvalidMaxBytes() {
+		cacheFacade.setMaxBytes(0);
+		try {
+			cacheFacade.validateCacheManager();
+			fail();
+		} catch (FatalCacheException exception) {
+			// we are expecting this exception.
+		}
+	}
+
+	protected void setUp() {
+		heapCache = new MemoryCache();
+		MemoryCacheManager cacheManager = new MemoryCacheManager();
+		cacheManager.addCache(CACHE_NAME, heapCache);
+
+		cacheFacade = new OffHeapCacheFacade();
+		cacheFacade.setCacheManager(cacheManager);
+		cacheFacade.setMaxBytes(1 << 20);
+
+		heapModel = new MemoryCachingModel(CACHE_NAME);
+		offHeapModel = new MemoryCachingModel(CACHE_NAME);
+		offHeapModel.setOffHeap(true);
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.near;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.springmodules.cache.FatalCacheException;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryCacheManager;
+import org.springmodules.cache.provider.memory.MemoryCacheFacade;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+import org.springmodules.cache.provider.memory.MemoryFlushingModel;
+import org.springmodules.cache.statistics.CacheStatistics;
+import org.springmodules.cache.statistics.ModelStatistics;
+
+/**
+ * Unit Tests for <code>{@link NearCacheFacade}</code>. The remote cache is
+ * a <code>{@link MemoryCacheFacade}</code> whose statistics count the
+ * accesses to the remote tier.
+ *
+ * @author Alex Ruiz
+ */
+public class NearCacheFacadeTests extends TestCase {
+
+  private static final String CACHE_NAME = "remoteCache";
+
+  private MemoryCachingModel cachingModel;
+
+  private NearCacheFacade nearCache;
+
+  private MemoryCache remoteCache;
+
+  private CacheStatistics remoteStatistics;
+
+  public NearCacheFacadeTests(String name) {
+    super(name);
+  }
+
+  public void testFlushCacheClearsNearCache() {
+    nearCache.putInCache("luke", cachingModel, "Luke");
+    nearCache.flushCache(new MemoryFlushingModel(CACHE_NAME));
+
+    assertNull(nearCache.getFromCache("luke", cachingModel));
+    assertEquals(0, remoteCache.size());
+  }
+
+  public void testGetAllFromCacheReadsOnlyMissingEntriesFromRemoteCache() {
+    remoteCache.put("luke", "Luke");
+    remoteCache.put("leia", "Leia");
+    nearCache.getFromCache("luke", cachingModel);
+
+    Map found = nearCache.getAllFromCache(Arrays.asList(new String[] { "luke",
+        "leia", "han" }), cachingModel);
+
+    assertEquals(2, found.size());
+    assertEquals("Leia", found.get("leia"));
+    // one single read plus one bulk read of "leia" and "han"
+    assertEquals(2, remoteGets().getHitCount());
+    assertEquals(1, remoteGets().getMissCount());
+
+    nearCache.getFromCache("leia", cachingModel);
+    assertEquals(2, remoteGets().getHitCount());
+  }
+
+  public void testGetFromCacheReadsHotEntriesLocally() {
+    remoteCache.put("luke", "Luke");
+
+    for (int i = 0; i < 5; i++) {
+      assertEquals("Luke", nearCache.getFromCache("luke", cachingModel));
+    }
+    assertEquals(1, remoteGets().getHitCount());
+  }
+
+  public void testGetFromCacheWithMissingEntry() {
+    assertNull(nearCache.getFromCache("han", cachingModel));
+    assertNull(nearCache.getFromCache("han", cachingModel));
+    assertEquals(2, remoteGets().getMissCount());
+  }
+
+  public void testInvalidateForcesReadFromRemoteCache() {
+    nearCache.putInCache("luke", cachingModel, "Luke");
+    remoteCache.put("luke", "Luke Skywalker");
+
+    assertEquals("Luke", nearCache.getFromCache("luke", cachingModel));
+    nearCache.invalidate(cachingModel, "luke");
+    assertEquals("Luke Skywalker", nearCache.getFromCache("luke", cachingModel));
+  }
+
+  public void testInvalidateModel() {
+    nearCache.putInCache("luke", cachingModel, "Luke");
+    nearCache.putInCache("leia", cachingModel, "Leia");
+    remoteCache.clear();
+
+    nearCache.invalidate(cachingModel);
+
+    assertNull(nearCache.getFromCache("luke", cachingModel));
+    assertNull(nearCache.getFromCache("leia", cachingModel));
+  }
+
+  public void testNearCacheIsBounded() {
+    nearCache.setMaxElements(1);
+    CacheStatistics statistics = new CacheStatistics();
+    nearCache.setStatistics(statistics);
+
+    nearCache.putInCache("luke", cachingModel, "Luke");
+    nearCache.putInCache("leia", cachingModel, "Leia");
+
+    assertEquals(1, statistics.forModel(cachingModel).getEvictionCount());
+    assertEquals("Luke", nearCache.getFromCache("luke", cachingModel));
+    assertEquals(1, remoteGets().getHitCount());
+  }
+
+  public void testPutAllInCacheWritesThrough() {
+    Map entries = new HashMap();
+    entries.put("luke", "Luke");
+    entries.put("leia", "Leia");
+
+    nearCache.putAllInCache(entries, cachingModel);
+
+    assertEquals("Leia", remoteCache.get("leia"));
+    assertEquals("Leia", nearCache.getFromCache("leia", cachingModel));
+    assertEquals(0, remoteGets().getHitCount());
+  }
+
+  public void testPutInCacheWritesThrough() {
+    nearCache.putInCache("luke", cachingModel, "Luke");
+
+    assertEquals("Luke", remoteCache.get("luke"));
+    assertEquals("Luke", nearCache.getFromCache("luke", cachingModel));
+    assertEquals(0, remoteGets().getHitCount());
+  }
+
+  public void testRemoveAllFromCacheInvalidatesNearCache() {
+    nearCache.putInCache("luke", cachingModel, "Luke");
+    nearCache.putInCache("leia", cachingModel, "Leia");
+
+    nearCache.removeAllFromCache(Arrays.asList(new String[] { "luke", "leia" }),
+        cachingModel);
+
+    assertNull(nearCache.getFromCache("luke", cachingModel));
+    assertNull(nearCache.getFromCache("leia", cachingModel));
+  }
+
+  public void testRemoveFromCacheInvalidatesNearCache() {
+    nearCache.putInCache("luke", cachingModel, "Luke");
+    nearCache.removeFromCache("luke", cachingModel);
+
+    assertNull(remoteCache.get("luke"));
+    assertNull(nearCache.getFromCache("luke", cachingModel));
+  }
+
+  public void testTimeToLive() throws Exception {
+    nearCache.setTimeToLive(20);
+    nearCache.putInCache("luke", cachingModel, "Luke");
+    remoteCache.put("luke", "Luke Skywalker");
+
+    Thread.sleep(50);
+    assertEquals("Luke Skywalker", nearCache.getFromCache("luke", cachingModel));
+  }
+
+  public void testValidateCacheManagerWithoutRemoteCache() {
+    nearCache.setCacheProviderFacade(null);
+    try {
+      nearCache.afterPropertiesSet();
+      fail();
+    } catch (FatalCacheException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  protected void setUp() {
+    remoteCache = new MemoryCache();
+    MemoryCacheManager cacheManager = new MemoryCacheManager();
+    cacheManager.addCache(CACHE_NAME, remoteCache);
+
+    remoteStatistics = new CacheStatistics();
+    MemoryCacheFacade remoteFacade = new MemoryCacheFacade();
+    remoteFacade.setCacheManager(cacheManager);
+    remoteFacade.setStatistics(remoteStatistics);
+
+    nearCache = new NearCacheFacade();
+    nearCache.setCacheProviderFacade(remoteFacade);
+    nearCache.afterPropertiesSet();
+
+    cachingModel = new MemoryCachingModel(CACHE_NAME);
+  }
+
+  private ModelStatistics remoteGets() {
+    return remoteStatistics.forModel(cachingModel);
+  }
+}
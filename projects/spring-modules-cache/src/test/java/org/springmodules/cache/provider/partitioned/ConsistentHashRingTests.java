@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.partitioned;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit Tests for <code>{@link ConsistentHashRing}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class ConsistentHashRingTests extends TestCase {
+
+  private static final int KEY_COUNT = 10000;
+
+  public ConsistentHashRingTests(String name) {
+    super(name);
+  }
+
+  public void testAddingNodeMovesFewKeys() {
+    CacheNode[] fourNodes = nodes(4);
+    CacheNode[] fiveNodes = new CacheNode[5];
+    System.arraycopy(fourNodes, 0, fiveNodes, 0, 4);
+    fiveNodes[4] = new LocalCacheNode("node4");
+
+    ConsistentHashRing before = new ConsistentHashRing(fourNodes, 160);
+    ConsistentHashRing after = new ConsistentHashRing(fiveNodes, 160);
+
+    int moved = 0;
+    for (int i = 0; i < KEY_COUNT; i++) {
+      CacheNode owner = after.nodeFor("key" + i);
+      if (owner != before.nodeFor("key" + i)) {
+        assertSame("keys should only move to the new node", fiveNodes[4],
+            owner);
+        moved++;
+      }
+    }
+    // a fifth of the keys on average
+    assertTrue("moved " + moved + " keys", moved < KEY_COUNT * 35 / 100);
+  }
+
+  public void testKeysAreSpreadEvenly() {
+    CacheNode[] nodes = nodes(4);
+    ConsistentHashRing ring = new ConsistentHashRing(nodes, 160);
+
+    int[] counts = new int[nodes.length];
+    for (int i = 0; i < KEY_COUNT; i++) {
+      CacheNode owner = ring.nodeFor("key" + i);
+      for (int j = 0; j < nodes.length; j++) {
+        if (owner == nodes[j]) counts[j]++;
+      }
+    }
+    for (int i = 0; i < counts.length; i++) {
+      assertTrue(nodes[i] + " owns " + counts[i] + " keys",
+          counts[i] > KEY_COUNT / nodes.length / 2);
+    }
+  }
+
+  public void testNodeForIsStable() {
+    ConsistentHashRing ring = new ConsistentHashRing(nodes(3), 160);
+    ConsistentHashRing sameRing = new ConsistentHashRing(nodes(3), 160);
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals(ring.nodeFor(new Integer(i)).getName(), sameRing.nodeFor(
+          new Integer(i)).getName());
+    }
+  }
+
+  private CacheNode[] nodes(int count) {
+    CacheNode[] nodes = new CacheNode[count];
+    for (int i = 0; i < count; i++) {
+      nodes[i] = new LocalCacheNode("node" + i);
+    }
+    return nodes;
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.provider.partitioned;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.springmodules.cache.FatalCacheException;
+import org.springmodules.cache.provider.CacheAccessException;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+import org.springmodules.cache.provider.memory.MemoryFlushingModel;
+
+/**
+ * Unit Tests for <code>{@link PartitionedCacheFacade}</code>. The nodes are
+ * <code>{@link LocalCacheNode}</code>s counting the requests they receive.
+ *
+ * @author Alex Ruiz
+ */
+public class PartitionedCacheFacadeTests extends TestCase {
+
+  private static class CountingCacheNode extends LocalCacheNode {
+
+    int requests;
+
+    CountingCacheNode(String name) {
+      super(name);
+    }
+
+    public Object get(String cacheName, Serializable key) {
+      requests++;
+      return super.get(cacheName, key);
+    }
+
+    public Map getAll(String cacheName, Collection keys) {
+      requests++;
+      return super.getAll(cacheName, keys);
+    }
+
+    public void putAll(String cacheName, Map entries, long timeToLive) {
+      requests++;
+      super.putAll(cacheName, entries, timeToLive);
+    }
+
+    public void removeAll(String cacheName, Collection keys) {
+      requests++;
+      super.removeAll(cacheName, keys);
+    }
+  }
+
+  private static final String CACHE_NAME = "partitionedCache";
+
+  private static final int NODE_COUNT = 4;
+
+  private MemoryCachingModel cachingModel;
+
+  private PartitionedCacheFacade facade;
+
+  private CountingCacheNode[] nodes;
+
+  public PartitionedCacheFacadeTests(String name) {
+    super(name);
+  }
+
+  public void testCapacityGrowsWithNodes() {
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i].setMaxElements(100);
+    }
+    for (int i = 0; i < 200; i++) {
+      facade.putInCache("key" + i, cachingModel, "value" + i);
+    }
+    for (int i = 0; i < 200; i++) {
+      assertEquals("value" + i, facade.getFromCache("key" + i, cachingModel));
+    }
+  }
+
+  public void testEachEntryIsStoredByOneNode() {
+    for (int i = 0; i < 100; i++) {
+      facade.putInCache("key" + i, cachingModel, "value" + i);
+    }
+
+    int total = 0;
+    for (int i = 0; i < nodes.length; i++) {
+      int size = nodes[i].size(CACHE_NAME);
+      assertTrue(nodes[i] + " should store some entries", size > 0);
+      total += size;
+    }
+    assertEquals(100, total);
+
+    CacheNode owner = facade.getNode("key7");
+    assertEquals("value7", owner.get(CACHE_NAME, "key7"));
+  }
+
+  public void testFlushCacheClearsAllNodes() {
+    for (int i = 0; i < 20; i++) {
+      facade.putInCache("key" + i, cachingModel, "value" + i);
+    }
+    facade.flushCache(new MemoryFlushingModel(CACHE_NAME));
+
+    for (int i = 0; i < nodes.length; i++) {
+      assertEquals(0, nodes[i].size(CACHE_NAME));
+    }
+  }
+
+  public void testGetAllFromCacheSendsOneRequestPerNode() {
+    Map entries = new HashMap();
+    List keys = new ArrayList();
+    for (int i = 0; i < 50; i++) {
+      entries.put("key" + i, "value" + i);
+      keys.add("key" + i);
+    }
+    facade.putAllInCache(entries, cachingModel);
+    assertRequestsPerNode(1);
+
+    Map found = facade.getAllFromCache(keys, cachingModel);
+    assertEquals(entries, found);
+    assertRequestsPerNode(2);
+
+    facade.removeAllFromCache(keys, cachingModel);
+    assertRequestsPerNode(3);
+    assertNull(facade.getFromCache("key1", cachingModel));
+  }
+
+  public void testNodeFailureIsWrapped() {
+    facade.setNodes(new CacheNode[] { new LocalCacheNode("broken") {
+      public Object get(String cacheName, Serializable key) {
+        throw new IllegalStateException("node unreachable");
+      }
+    } });
+    try {
+      facade.getFromCache("key", cachingModel);
+      fail();
+    } catch (CacheAccessException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  public void testRemoveFromCache() {
+    facade.putInCache("luke", cachingModel, "Luke");
+    facade.removeFromCache("luke", cachingModel);
+
+    assertNull(facade.getFromCache("luke", cachingModel));
+  }
+
+  public void testSetNodesReplacesAllNodes() {
+    facade.putInCache("luke", cachingModel, "Luke");
+    CountingCacheNode newNode = new CountingCacheNode("newNode");
+    facade.setNodes(new CacheNode[] { newNode });
+
+    assertSame(newNode, facade.getNode("luke"));
+    assertNull(facade.getFromCache("luke", cachingModel));
+    facade.putInCache("luke", cachingModel, "Luke");
+    assertEquals(1, newNode.size(CACHE_NAME));
+    facade.flushCache(new MemoryFlushingModel(CACHE_NAME));
+    assertEquals(0, newNode.size(CACHE_NAME));
+
+    // the previous nodes are neither read nor flushed anymore
+    int previousEntries = 0;
+    for (int i = 0; i < nodes.length; i++) {
+      previousEntries += nodes[i].size(CACHE_NAME);
+    }
+    assertEquals(1, previousEntries);
+  }
+
+  public void testValidateCacheManagerWithDuplicatedNodeNames() {
+    facade.setNodes(new CacheNode[] { new LocalCacheNode("node"),
+        new LocalCacheNode("node") });
+    try {
+      facade.afterPropertiesSet();
+      fail();
+    } catch (FatalCacheException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  public void testValidateCacheManagerWithoutNodes() {
+    facade.setNodes(null);
+    try {
+      facade.afterPropertiesSet();
+      fail();
+    } catch (FatalCacheException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  protected void setUp() {
+    nodes = new CountingCacheNode[NODE_COUNT];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = new CountingCacheNode("node" + i);
+    }
+
+    facade = new PartitionedCacheFacade();
+    facade.setNodes(nodes);
+    facade.afterPropertiesSet();
+
+    cachingModel = new MemoryCachingModel(CACHE_NAME);
+  }
+
+  private void assertRequestsPerNode(int expected) {
+    for (int i = 0; i < nodes.length; i++) {
+      assertEquals(nodes[i].toString(), expected, nodes[i].requests);
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.serializable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.springmodules.cache.provider.InvalidObjectInCacheException;
+import org.springmodules.cache.provider.ObjectCannotBeCachedException;
+import org.springmodules.cache.serializable.BinarySerializableFactory.BinaryWrapper;
+
+/**
+ * Unit Tests for <code>{@link BinarySerializableFactory}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class BinarySerializableFactoryTests extends TestCase {
+
+  static enum Rank {
+    PADAWAN, KNIGHT, MASTER
+  }
+
+  static class Jedi {
+
+    Jedi master;
+
+    Rank rank;
+
+    transient String mood = "calm";
+
+    private boolean alive;
+
+    private char initial;
+
+    private double height;
+
+    private long midichlorians;
+
+    private int[] scores;
+
+    private String[] aliases;
+
+    private List padawans = new ArrayList();
+
+    private Map ships = new HashMap();
+
+    private Date born;
+
+    private BigDecimal credits;
+
+    private Puppy puppy;
+  }
+
+  static class Droid {
+
+    Droid(String name) {
+      // no constructor without arguments
+    }
+  }
+
+  private BinarySerializableFactory serializableFactory;
+
+  public BinarySerializableFactoryTests(String name) {
+    super(name);
+  }
+
+  public void testGetOriginalValueWithArgumentEqualToNull() {
+    assertNull(serializableFactory.getOriginalValue(null));
+  }
+
+  public void testGetOriginalValueWithArgumentNotBeingBinaryWrapper() {
+    Object obj = "R2-D2";
+    assertSame(obj, serializableFactory.getOriginalValue(obj));
+  }
+
+  public void testGetOriginalValueWithInvalidBytes() {
+    try {
+      serializableFactory.getOriginalValue(new BinaryWrapper(new byte[] { 99 }));
+      fail();
+    } catch (InvalidObjectInCacheException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  public void testMakeSerializableIfNecessaryWithArgumentEqualToNull() {
+    assertNull(serializableFactory.makeSerializableIfNecessary(null));
+  }
+
+  public void testMakeSerializableIfNecessaryWithNotSerializableArgument()
+      throws Exception {
+    Puppy puppy = new Puppy("Scooby");
+
+    Object actual = serializableFactory.makeSerializableIfNecessary(puppy);
+
+    assertTrue(actual instanceof BinaryWrapper);
+    SerializationAssert.assertIsSerializable(actual);
+    assertEquals(puppy, serializableFactory.getOriginalValue(actual));
+  }
+
+  public void testMakeSerializableIfNecessaryWithSerializableArgument() {
+    Object obj = "Luke Skywalker";
+    Object actual = serializableFactory.makeSerializableIfNecessary(obj);
+    assertSame(obj, actual);
+  }
+
+  public void testMakeSerializableIfNecessaryWithObjectWithoutDefaultConstructor() {
+    try {
+      serializableFactory.makeSerializableIfNecessary(new Droid("R2-D2"));
+      fail();
+    } catch (ObjectCannotBeCachedException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  public void testObjectGraphIsRestored() {
+    Jedi yoda = new Jedi();
+    yoda.rank = Rank.MASTER;
+    yoda.alive = true;
+    yoda.initial = 'Y';
+    yoda.height = 0.66;
+    yoda.midichlorians = -17700000000L;
+    yoda.scores = new int[] { 1, -2, 300000 };
+    yoda.aliases = new String[] { "Master Yoda", null };
+    yoda.born = new Date(-28800000L);
+    yoda.credits = new BigDecimal("12.50");
+    yoda.puppy = new Puppy("Scooby");
+    yoda.ships.put("X-Wing", new Integer(1));
+    yoda.ships.put("Names", new TreeSet(yoda.ships.keySet()));
+
+    Jedi luke = new Jedi();
+    luke.rank = Rank.KNIGHT;
+    luke.master = yoda;
+    yoda.padawans.add(luke);
+    yoda.padawans.add(luke);
+
+    Jedi copy = (Jedi) serializableFactory.getOriginalValue(serializableFactory
+        .makeSerializableIfNecessary(yoda));
+
+    assertEquals(Rank.MASTER, copy.rank);
+    assertTrue(copy.alive);
+    assertEquals('Y', copy.initial);
+    assertEquals(0.66, copy.height, 0);
+    assertEquals(-17700000000L, copy.midichlorians);
+    assertEquals(300000, copy.scores[2]);
+    assertEquals(-2, copy.scores[1]);
+    assertEquals("Master Yoda", copy.aliases[0]);
+    assertNull(copy.aliases[1]);
+    assertEquals(yoda.born, copy.born);
+    assertEquals(yoda.credits, copy.credits);
+    assertEquals(yoda.puppy, copy.puppy);
+    assertEquals(yoda.ships, copy.ships);
+    assertEquals("calm", copy.mood);
+
+    Jedi padawan = (Jedi) copy.padawans.get(0);
+    assertSame(padawan, copy.padawans.get(1));
+    assertSame(copy, padawan.master);
+    assertEquals(Rank.KNIGHT, padawan.rank);
+  }
+
+  public void testRegisteredClassesAreWrittenAsIdentifiers() {
+    List puppies = new ArrayList();
+    puppies.add(new Puppy("Scooby"));
+    Jedi jedi = new Jedi();
+    jedi.padawans = puppies;
+
+    int unregisteredSize = binarySize(jedi);
+    serializableFactory.setRegisteredClasses(new Class[] { Jedi.class,
+        Puppy.class });
+    int registeredSize = binarySize(jedi);
+
+    assertTrue(registeredSize < unregisteredSize);
+    assertEquals(jedi.padawans, ((Jedi) serializableFactory
+        .getOriginalValue(serializableFactory.makeSerializableIfNecessary(jedi))).padawans);
+  }
+
+  public void testBinaryFormIsSmallerThanXml() {
+    // written by XStreamSerializableFactory
+    String xml = "<org.springmodules.cache.serializable.Puppy>\n"
+        + "  <name>Scooby</name>\n"
+        + "</org.springmodules.cache.serializable.Puppy>";
+    Puppy puppy = new Puppy("Scooby");
+
+    assertTrue(binarySize(puppy) < xml.length());
+    serializableFactory.setRegisteredClasses(new Class[] { Puppy.class });
+    assertTrue(binarySize(puppy) < xml.length() / 8);
+  }
+
+  protected void setUp() {
+    serializableFactory = new BinarySerializableFactory();
+  }
+
+  private int binarySize(Object obj) {
+    return ((BinaryWrapper) serializableFactory.makeSerializableIfNecessary(obj))
+        .getValue().length;
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springmodules.cache.FatalCacheException;
+import org.springmodules.cache.impl.MemoryCache;
+import org.springmodules.cache.impl.MemoryCacheManager;
+import org.springmodules.cache.provider.memory.MemoryCacheFacade;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+import org.springmodules.cache.provider.near.NearCacheFacade;
+
+/**
+ * Unit Tests for <code>{@link CacheSnapshotManager}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class CacheSnapshotManagerTests extends TestCase {
+
+  /**
+   * Value which can be saved but not read back.
+   */
+  private static class UnreadableValue implements Serializable {
+
+    private static final long serialVersionUID = 2183367284436738021L;
+
+    private void readObject(ObjectInputStream input) throws IOException {
+      throw new InvalidObjectException("Not readable");
+    }
+  }
+
+  private MemoryCache cache;
+
+  private MemoryCacheFacade cacheFacade;
+
+  private Map cachingModels;
+
+  private File file;
+
+  private CacheSnapshotManager snapshotManager;
+
+  public CacheSnapshotManagerTests(String name) {
+    super(name);
+  }
+
+  public void testAfterPropertiesSetWithFacadeNotListingKeys() {
+    snapshotManager.setCacheProviderFacade(new NearCacheFacade());
+    try {
+      snapshotManager.afterPropertiesSet();
+      fail();
+    } catch (FatalCacheException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  public void testAfterPropertiesSetWithoutCachingModels() {
+    snapshotManager.setCachingModels(Collections.EMPTY_MAP);
+    try {
+      snapshotManager.afterPropertiesSet();
+      fail();
+    } catch (FatalCacheException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  public void testRestoreKeepsEntriesStoredMeanwhile() throws Exception {
+    cache.put("Luke", "Jedi");
+    cache.put("Han", "Smuggler");
+    snapshotManager.afterPropertiesSet();
+    snapshotManager.destroy();
+
+    replaceCache();
+    cache.put("Luke", "Jedi Master");
+    assertEquals(1, newSnapshotManager().restore());
+    assertEquals("Jedi Master", cache.get("Luke"));
+    assertEquals("Smuggler", cache.get("Han"));
+  }
+
+  public void testRestoreSkipsEntriesWhichCannotBeRead() throws Exception {
+    cache.put("Luke", "Jedi");
+    cache.put("Vader", new UnreadableValue());
+    cache.put("Han", "Smuggler");
+    snapshotManager.afterPropertiesSet();
+    assertEquals(3, snapshotManager.snapshot());
+
+    replaceCache();
+    assertEquals(2, newSnapshotManager().restore());
+    assertEquals("Jedi", cache.get("Luke"));
+    assertEquals("Smuggler", cache.get("Han"));
+    assertFalse(cache.containsKey("Vader"));
+  }
+
+  public void testRestoreSkipsOldSnapshot() throws Exception {
+    cache.put("Luke", "Jedi");
+    snapshotManager.afterPropertiesSet();
+    snapshotManager.destroy();
+
+    CacheSnapshotManager restarted = newSnapshotManager();
+    restarted.setMaxAge(1);
+    Thread.sleep(10);
+    replaceCache();
+    restarted.afterPropertiesSet();
+
+    assertTrue(restarted.isRestored());
+    assertTrue(cache.isEmpty());
+  }
+
+  public void testRestoreSkipsUnknownModels() throws Exception {
+    cache.put("Luke", "Jedi");
+    snapshotManager.afterPropertiesSet();
+    snapshotManager.destroy();
+
+    cachingModels.clear();
+    cachingModels.put("rebels", new MemoryCachingModel("rebels"));
+    replaceCache();
+
+    assertEquals(0, newSnapshotManager().restore());
+    assertTrue(cache.isEmpty());
+  }
+
+  public void testSnapshotAndRestore() throws Exception {
+    for (int i = 0; i < 250; i++) {
+      cache.put(new Integer(i), "Clone " + i);
+    }
+    cache.put("droid", new Object());
+    snapshotManager.setBatchSize(100);
+    snapshotManager.afterPropertiesSet();
+    assertEquals(250, snapshotManager.snapshot());
+
+    restart();
+    assertEquals(250, cache.size());
+    assertEquals("Clone 42", cache.get(new Integer(42)));
+  }
+
+  public void testSnapshotIsNotTakenWhileRestoring() throws Exception {
+    assertEquals(-1, snapshotManager.snapshot());
+    assertFalse(file.exists());
+  }
+
+  protected void setUp() throws Exception {
+    file = File.createTempFile("cache", ".snapshot");
+    file.delete();
+
+    cache = new MemoryCache();
+    cacheFacade = new MemoryCacheFacade();
+    cacheFacade.setCacheManager(cacheManager(cache));
+
+    cachingModels = new HashMap();
+    cachingModels.put("characters", new MemoryCachingModel("characters"));
+    snapshotManager = newSnapshotManager();
+  }
+
+  protected void tearDown() {
+    file.delete();
+  }
+
+  private MemoryCacheManager cacheManager(MemoryCache newCache) {
+    MemoryCacheManager cacheManager = new MemoryCacheManager();
+    cacheManager.addCache("characters", newCache);
+    cacheManager.addCache("rebels", new MemoryCache());
+    return cacheManager;
+  }
+
+  private CacheSnapshotManager newSnapshotManager() {
+    CacheSnapshotManager newSnapshotManager = new CacheSnapshotManager();
+    newSnapshotManager.setCacheProviderFacade(cacheFacade);
+    newSnapshotManager.setCachingModels(cachingModels);
+    newSnapshotManager.setFile(file);
+    newSnapshotManager.setRestoreExecutor(new SyncTaskExecutor());
+    return newSnapshotManager;
+  }
+
+  private void replaceCache() {
+    cache = new MemoryCache();
+    cacheFacade.setCacheManager(cacheManager(cache));
+  }
+
+  /**
+   * Simulates a restart: replaces the cache with an empty one and restores the
+   * snapshot.
+   */
+  private void restart() throws Exception {
+    replaceCache();
+    CacheSnapshotManager restarted = newSnapshotManager();
+    restarted.afterPropertiesSet();
+    assertTrue(restarted.isRestored());
+  }
+}
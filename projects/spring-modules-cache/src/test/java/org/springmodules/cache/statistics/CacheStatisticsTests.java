@@ -0,0 +1,136 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.statistics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+import org.springmodules.cache.CacheModel;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+
+/**
+ * Unit Tests for <code>{@link CacheStatistics}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class CacheStatisticsTests extends TestCase {
+
+  private static final String MODEL_NAME = "MemoryCachingModel[cacheName='customers', timeToLive=0]";
+
+  private MemoryCachingModel model;
+
+  private CacheStatistics statistics;
+
+  public CacheStatisticsTests(String name) {
+    super(name);
+  }
+
+  public void testEstimatedTimeSavedIsNegativeWithoutHits() {
+    ModelStatistics modelStatistics = statistics.forModel(model);
+    modelStatistics.recordGet(false, 1000);
+    modelStatistics.recordLoad(true, 5000000);
+    modelStatistics.recordPut(1000);
+
+    assertTrue(modelStatistics.getEstimatedTimeSaved() < 0);
+
+    modelStatistics.recordGet(true, 1000);
+    assertTrue(modelStatistics.getEstimatedTimeSaved() > 0);
+  }
+
+  public void testForModelReturnsSameStatisticsForEqualModels() {
+    ModelStatistics modelStatistics = statistics.forModel(model);
+    assertSame(modelStatistics, statistics.forModel(new MemoryCachingModel(
+        "customers")));
+    assertEquals(MODEL_NAME, modelStatistics.getName());
+  }
+
+  public void testGetEvictionCountWithoutCounter() {
+    assertEquals(-1, statistics.forModel(model).getEvictionCount());
+  }
+
+  public void testGetEvictionCountUsesFirstCounter() {
+    statistics.forModel(model, new EvictionCounter() {
+      public long getEvictionCount(CacheModel m) {
+        return 5;
+      }
+    });
+    statistics.forModel(model, null);
+    assertEquals(5, statistics.getEvictionCount(MODEL_NAME));
+  }
+
+  public void testGetStatisticsWithUnknownModel() {
+    try {
+      statistics.getStatistics("unknown");
+      fail();
+    } catch (IllegalArgumentException exception) {
+      // we are expecting this exception.
+    }
+  }
+
+  public void testMBeanExposesStatistics() throws Exception {
+    ModelStatistics modelStatistics = statistics.forModel(model);
+    modelStatistics.recordGet(true, 1000);
+    modelStatistics.recordGet(false, 1000);
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("org.springmodules.cache:type=CacheStatistics");
+    server.registerMBean(statistics, name);
+    try {
+      String[] names = (String[]) server.getAttribute(name, "ModelNames");
+      assertEquals(1, names.length);
+      assertEquals(MODEL_NAME, names[0]);
+
+      Object hits = server.invoke(name, "getHitCount",
+          new Object[] { MODEL_NAME }, new String[] { String.class.getName() });
+      assertEquals(new Long(1), hits);
+
+      server.invoke(name, "reset", null, null);
+      assertEquals(0, modelStatistics.getHitCount());
+    } finally {
+      server.unregisterMBean(name);
+    }
+  }
+
+  public void testRecordGetAll() {
+    ModelStatistics modelStatistics = statistics.forModel(model);
+    modelStatistics.recordGetAll(3, 1, 1000);
+
+    assertEquals(3, modelStatistics.getHitCount());
+    assertEquals(1, modelStatistics.getMissCount());
+    assertEquals(0.75, statistics.getHitRatio(MODEL_NAME), 0);
+  }
+
+  public void testRecordLoad() {
+    ModelStatistics modelStatistics = statistics.forModel(model);
+    modelStatistics.recordLoad(true, 2000000);
+    modelStatistics.recordLoad(true, 4000000);
+    modelStatistics.recordLoad(false, 1000000);
+
+    assertEquals(2, modelStatistics.getLoadCount());
+    assertEquals(1, modelStatistics.getLoadFailureCount());
+    assertEquals(3, modelStatistics.getAverageLoadTime(), 0);
+    assertEquals(4, modelStatistics.getMaxLoadTime(), 0);
+  }
+
+  protected void setUp() {
+    model = new MemoryCachingModel("customers");
+    statistics = new CacheStatistics();
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.statistics;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit Tests for <code>{@link LatencyHistogram}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class LatencyHistogramTests extends TestCase {
+
+  private LatencyHistogram histogram;
+
+  public LatencyHistogramTests(String name) {
+    super(name);
+  }
+
+  public void testConcurrentRecordsAreNotLost() throws Exception {
+    final int recordsPerThread = 10000;
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        public void run() {
+          for (int j = 0; j < recordsPerThread; j++) {
+            histogram.record(j);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].join();
+    }
+    assertEquals(threads.length * recordsPerThread, histogram.getCount());
+    assertEquals(recordsPerThread - 1, histogram.getMax());
+  }
+
+  public void testMeanAndMax() {
+    histogram.record(100);
+    histogram.record(300);
+
+    assertEquals(2, histogram.getCount());
+    assertEquals(200, histogram.getMean(), 0);
+    assertEquals(300, histogram.getMax());
+    assertEquals(400, histogram.getTotal());
+  }
+
+  public void testPercentileIsWithinFactorOfTwo() {
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i * 1000);
+    }
+    long median = histogram.percentile(50);
+    assertTrue(median >= 50000);
+    assertTrue(median < 100000);
+    assertEquals(100000, histogram.percentile(100));
+  }
+
+  public void testPercentileWithoutRecords() {
+    assertEquals(0, histogram.percentile(99));
+  }
+
+  public void testReset() {
+    histogram.record(100);
+    histogram.reset();
+
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+    assertEquals(0, histogram.percentile(50));
+  }
+
+  protected void setUp() {
+    histogram = new LatencyHistogram();
+  }
+}
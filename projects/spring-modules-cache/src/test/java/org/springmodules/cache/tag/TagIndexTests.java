@@ -0,0 +1,128 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.tag;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import org.springmodules.cache.CachingModel;
+import org.springmodules.cache.provider.CacheProviderFacade;
+import org.springmodules.cache.provider.memory.MemoryCachingModel;
+
+/**
+ * Unit Tests for <code>{@link TagIndex}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class TagIndexTests extends TestCase {
+
+  /**
+   * Key whose comparison with another key of the same tag runs the given task,
+   * so the task runs while the key is being recorded under the tag.
+   */
+  private static class InterleavingKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+
+    private transient Runnable task;
+
+    InterleavingKey(String newId) {
+      id = newId;
+    }
+
+    public boolean equals(Object obj) {
+      if (task != null) {
+        Runnable toRun = task;
+        task = null;
+        toRun.run();
+      }
+      return obj instanceof InterleavingKey
+          && id.equals(((InterleavingKey) obj).id);
+    }
+
+    public int hashCode() {
+      // the same hash code for all the keys, so they are compared
+      return 0;
+    }
+  }
+
+  private static final Set TAGS = Collections.singleton("hot");
+
+  private CacheProviderFacade cache;
+
+  private CachingModel model;
+
+  private Set removedKeys;
+
+  private TagIndex tagIndex;
+
+  public void testEntryTaggedWhileTagIsInvalidatedStaysInIndex()
+      throws Exception {
+    InterleavingKey first = new InterleavingKey("first");
+    tagIndex.tag(first, model, TAGS, cache);
+
+    // another thread invalidates the tag while the second key is recorded
+    InterleavingKey second = new InterleavingKey("second");
+    second.task = new Runnable() {
+      public void run() {
+        Thread invalidation = new Thread() {
+          public void run() {
+            tagIndex.invalidate(TAGS, cache);
+          }
+        };
+        invalidation.start();
+        try {
+          invalidation.join();
+        } catch (InterruptedException exception) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    tagIndex.tag(second, model, TAGS, cache);
+    assertTrue(removedKeys.contains(first));
+    assertFalse(removedKeys.contains(second));
+
+    assertEquals(1, tagIndex.getEntryCount("hot"));
+    tagIndex.invalidate(TAGS, cache);
+    assertTrue(removedKeys.contains(second));
+  }
+
+  protected void setUp() {
+    removedKeys = Collections.synchronizedSet(new HashSet());
+    cache = (CacheProviderFacade) Proxy.newProxyInstance(getClass()
+        .getClassLoader(), new Class[] { CacheProviderFacade.class },
+        new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("removeAllFromCache".equals(method.getName())) {
+              removedKeys.addAll((Collection) args[0]);
+            }
+            return null;
+          }
+        });
+    model = new MemoryCachingModel("users");
+    tagIndex = new TagIndex();
+  }
+}
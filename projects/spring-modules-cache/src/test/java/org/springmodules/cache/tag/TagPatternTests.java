@@ -0,0 +1,111 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.cache.tag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit Tests for <code>{@link TagPattern}</code>.
+ *
+ * @author Alex Ruiz
+ */
+public class TagPatternTests extends TestCase {
+
+  public static class User {
+
+    private final String id;
+
+    public User(String newId) {
+      id = newId;
+    }
+
+    public String getId() {
+      return id;
+    }
+  }
+
+  public TagPatternTests(String name) {
+    super(name);
+  }
+
+  public void testCompileWithInvalidPatterns() {
+    String[] invalid = { "", " ", "user:{0", "user:0}", "user:{0}:{1}",
+        "user:{name}", "user:{-1}" };
+    for (int i = 0; i < invalid.length; i++) {
+      try {
+        TagPattern.compile(invalid[i]);
+        fail(invalid[i]);
+      } catch (IllegalArgumentException exception) {
+        // we are expecting this exception.
+      }
+    }
+  }
+
+  public void testCompileWithNullPatterns() {
+    assertEquals(0, TagPattern.compile((String[]) null).length);
+  }
+
+  public void testTagsFromArguments() {
+    TagPattern[] patterns = TagPattern.compile(new String[] { "users",
+        "user:{0}", "user:{1.id}:roles" });
+    Collection tags = TagPattern.tags(patterns, new Object[] { "luke",
+        new User("leia") }, null);
+    assertEquals(Arrays.asList(new String[] { "users", "user:luke",
+        "user:leia:roles" }), new ArrayList(tags));
+  }
+
+  public void testTagsFromCollectionsAndArrays() {
+    List users = Arrays.asList(new User[] { new User("luke"), new User("leia") });
+    TagPattern[] patterns = TagPattern.compile(new String[] { "user:{0.id}",
+        "group:{1}" });
+    Collection tags = TagPattern.tags(patterns, new Object[] { users,
+        new int[] { 1, 2 } }, null);
+    assertEquals(Arrays.asList(new String[] { "user:luke", "user:leia",
+        "group:1", "group:2" }), new ArrayList(tags));
+  }
+
+  public void testTagsFromResult() {
+    TagPattern pattern = TagPattern.compile("user:{result.id}");
+    assertTrue(pattern.isResultDependent());
+
+    TagPattern[] patterns = new TagPattern[] { pattern };
+    assertEquals(Arrays.asList(new String[] { "user:han" }), new ArrayList(
+        TagPattern.tags(patterns, new Object[0], new User("han"))));
+    assertTrue(TagPattern.tags(patterns, new Object[0], null).isEmpty());
+  }
+
+  public void testTagsWithMissingArgument() {
+    TagPattern[] patterns = TagPattern.compile(new String[] { "user:{0}",
+        "user:{1}" });
+    assertEquals(Arrays.asList(new String[] { "user:luke" }), new ArrayList(
+        TagPattern.tags(patterns, new Object[] { "luke" }, null)));
+    assertTrue(TagPattern.tags(patterns, new Object[] { null }, null)
+        .isEmpty());
+  }
+
+  public void testToStringReturnsPattern() {
+    assertEquals("user:{0.id}", TagPattern.compile(" user:{0.id} ")
+        .toString());
+    assertTrue(Arrays.equals(new String[] { "a", "b:{0}" }, TagPattern
+        .sources(TagPattern.compile(new String[] { "a", "b:{0}" }))));
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.benchmark;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the benchmarks matching the given regular expression (all of them
+ * by default) from a single thread, the indexers measured starting their
+ * own threads. The results are written in JSON to
+ * <code>target/benchmark-results/lucene.json</code>, to be compared with
+ * the results of another release or another machine.
+ * 
+ * <p>Usage: <code>java -jar target/benchmarks.jar [regexp]</code>
+ * 
+ * @author Thierry Templier
+ */
+public final class BenchmarkRunner {
+
+	private static final TimeValue ITERATION_TIME = TimeValue.seconds(2);
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : ".*";
+
+		File results = new File("target", "benchmark-results");
+		results.mkdirs();
+
+		new Runner(new OptionsBuilder().include(include)
+				.threads(1).forks(1).warmupIterations(3)
+				.warmupTime(ITERATION_TIME).measurementIterations(5)
+				.measurementTime(ITERATION_TIME)
+				.resultFormat(ResultFormatType.JSON)
+				.result(new File(results, "lucene.json").getPath())
+				.build()).run();
+	}
+}
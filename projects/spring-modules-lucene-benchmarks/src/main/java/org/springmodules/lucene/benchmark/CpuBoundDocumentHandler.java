@@ -0,0 +1,65 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.springmodules.lucene.index.document.handler.file.AbstractInputStreamDocumentHandler;
+import org.springmodules.lucene.util.IOUtils;
+
+/**
+ * Text document handler spending processor time as the handlers parsing
+ * binary formats (PDF, Word, Excel) do, by digesting the text of the file
+ * a configurable number of times before building the document.
+ * 
+ * @author Thierry Templier
+ */
+public class CpuBoundDocumentHandler extends AbstractInputStreamDocumentHandler {
+
+	private int rounds;
+
+	public CpuBoundDocumentHandler(int rounds) {
+		this.rounds = rounds;
+	}
+
+	protected Document doGetDocumentWithInputStream(Map description, InputStream inputStream) throws IOException {
+		String contents = IOUtils.getContents(inputStream);
+		byte[] digest = contents.getBytes("UTF-8");
+		try {
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-1");
+			for(int cpt=0; cpt<rounds; cpt++) {
+				messageDigest.update(digest);
+				messageDigest.update(contents.getBytes("UTF-8"));
+				digest = messageDigest.digest();
+			}
+		} catch(NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex.getMessage());
+		}
+
+		Document document = new Document();
+		document.add(new Field("contents", contents, Field.Store.NO, Field.Index.TOKENIZED));
+		document.add(new Field("digest", new String(digest, "ISO-8859-1"), Field.Store.YES, Field.Index.NO));
+		document.add(new Field("filename", (String)description.get(FILENAME), Field.Store.YES, Field.Index.UN_TOKENIZED));
+		return document;
+	}
+}
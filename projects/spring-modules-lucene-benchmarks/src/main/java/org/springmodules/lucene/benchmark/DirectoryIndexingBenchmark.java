@@ -0,0 +1,107 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.RAMDirectory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springmodules.lucene.index.document.handler.file.ExtensionDocumentMatching;
+import org.springmodules.lucene.index.factory.SimpleIndexFactory;
+import org.springmodules.lucene.index.object.directory.ConcurrentDirectoryIndexer;
+import org.springmodules.lucene.index.object.directory.DefaultDirectoryIndexer;
+
+/**
+ * Indexing of a synthetic corpus of 2000 files into an empty in-memory
+ * index, by the DefaultDirectoryIndexer ("default") and by the
+ * ConcurrentDirectoryIndexer with 1 to 8 extraction threads, to show how
+ * the pipeline scales with the number of cores.
+ * 
+ * <p>The "text" handler is the TextDocumentHandler, whose extraction is
+ * cheap, so the index writer is the bottleneck. The "cpuBound" handler
+ * digests the text of the file before building the document, like the
+ * parsing of binary formats.
+ * 
+ * @author Thierry Templier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DirectoryIndexingBenchmark {
+
+	private static final int CPU_BOUND_ROUNDS = 200;
+
+	@Param({ "default", "1", "2", "4", "8" })
+	public String extraction;
+
+	@Param({ "text", "cpuBound" })
+	public String handler;
+
+	private SyntheticCorpus corpus;
+
+	private RAMDirectory directory;
+
+	private DefaultDirectoryIndexer indexer;
+
+	@Benchmark
+	public int index() throws IOException {
+		indexer.index(corpus.getBaseDirectory().getAbsolutePath());
+		return directory.list().length;
+	}
+
+	@Setup(Level.Trial)
+	public void createCorpus() throws IOException {
+		corpus = new SyntheticCorpus(20, 100, 300);
+	}
+
+	@Setup(Level.Invocation)
+	public void createIndexer() throws IOException {
+		directory = new RAMDirectory();
+		IndexWriter writer = new IndexWriter(directory, new SimpleAnalyzer(), true);
+		writer.close();
+
+		SimpleIndexFactory indexFactory = new SimpleIndexFactory(directory, new SimpleAnalyzer());
+		if( "default".equals(extraction) ) {
+			indexer = new DefaultDirectoryIndexer(indexFactory);
+		} else {
+			ConcurrentDirectoryIndexer concurrentIndexer = new ConcurrentDirectoryIndexer(indexFactory);
+			concurrentIndexer.setExtractionThreads(Integer.parseInt(extraction));
+			indexer = concurrentIndexer;
+		}
+		if( "cpuBound".equals(handler) ) {
+			indexer.registerDocumentHandler(new ExtensionDocumentMatching("txt"),
+					new CpuBoundDocumentHandler(CPU_BOUND_ROUNDS));
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteCorpus() {
+		corpus.delete();
+	}
+}
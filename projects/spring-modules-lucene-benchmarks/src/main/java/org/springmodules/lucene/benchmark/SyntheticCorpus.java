@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Directory tree of text files made of words drawn from a fixed
+ * vocabulary, created in a temporary directory. The generator is
+ * seeded, so every run indexes the same corpus.
+ * 
+ * @author Thierry Templier
+ */
+public class SyntheticCorpus {
+
+	private static final long SEED = 42;
+
+	private static final int VOCABULARY_SIZE = 5000;
+
+	private File baseDirectory;
+
+	/**
+	 * Create the corpus.
+	 * @param directories the number of sub directories
+	 * @param filesPerDirectory the number of files in each sub directory
+	 * @param wordsPerFile the number of words of each file
+	 */
+	public SyntheticCorpus(int directories, int filesPerDirectory, int wordsPerFile) throws IOException {
+		Random random = new Random(SEED);
+		String[] vocabulary = createVocabulary(random);
+
+		baseDirectory = File.createTempFile("corpus", "");
+		baseDirectory.delete();
+		baseDirectory.mkdir();
+		for(int dir=0; dir<directories; dir++) {
+			File directory = new File(baseDirectory, "dir" + dir);
+			directory.mkdir();
+			for(int cpt=0; cpt<filesPerDirectory; cpt++) {
+				writeFile(new File(directory, "file" + cpt + ".txt"), vocabulary, wordsPerFile, random);
+			}
+		}
+	}
+
+	private String[] createVocabulary(Random random) {
+		String[] vocabulary = new String[VOCABULARY_SIZE];
+		for(int cpt=0; cpt<vocabulary.length; cpt++) {
+			char[] word = new char[3 + random.nextInt(8)];
+			for(int letter=0; letter<word.length; letter++) {
+				word[letter] = (char)('a' + random.nextInt(26));
+			}
+			vocabulary[cpt] = new String(word);
+		}
+		return vocabulary;
+	}
+
+	private void writeFile(File file, String[] vocabulary, int words, Random random) throws IOException {
+		FileWriter writer = new FileWriter(file);
+		try {
+			for(int cpt=0; cpt<words; cpt++) {
+				writer.write(vocabulary[random.nextInt(vocabulary.length)]);
+				writer.write(cpt % 12==11 ? '\n' : ' ');
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	public File getBaseDirectory() {
+		return baseDirectory;
+	}
+
+	/**
+	 * Delete the files of the corpus.
+	 */
+	public void delete() {
+		delete(baseDirectory);
+	}
+
+	private void delete(File file) {
+		File[] files = file.listFiles();
+		if( files!=null ) {
+			for(int cpt=0; cpt<files.length; cpt++) {
+				delete(files[cpt]);
+			}
+		}
+		file.delete();
+	}
+}
@@ -27,6 +27,7 @@ import org.springframework.beans.factory.xml.BeanDefinitionParserDelegate;
 import org.springframework.beans.factory.xml.ParserContext;
 import org.springframework.util.xml.DomUtils;
 import org.springmodules.lucene.index.factory.concurrent.LockIndexFactory;
+import org.springmodules.lucene.index.factory.concurrent.ReadWriteIndexFactory;
 import org.springmodules.lucene.index.support.FSDirectoryFactoryBean;
 import org.springmodules.lucene.index.support.RAMDirectoryFactoryBean;
 import org.springmodules.lucene.index.support.SimpleIndexFactoryBean;
@@ -40,6 +41,7 @@ import org.w3c.dom.Element;
  */
 class IndexBeanDefinitionParser extends AbstractLuceneBeanDefinitionParser implements BeanDefinitionParser {
 	private static final String LOCK = "lock";
+	private static final String READ_WRITE = "read-write";
 	private static final String CHANNEL = "channel";
 	private static final String TARGET_INDEX_FACTORY_ATTRIBUTE = "targetIndexFactory";
 	public static final String FS_DIRECTORY_ID_PREFIX = "fsDirectory-";
@@ -97,6 +99,14 @@ class IndexBeanDefinitionParser extends AbstractLuceneBeanDefinitionParser imple
 			concurrentIndexFactoryBeanDefinition.getPropertyValues()
 				.addPropertyValue(TARGET_INDEX_FACTORY_ATTRIBUTE, new RuntimeBeanReference(idIndexFactory));
 
+			registry.registerBeanDefinition(id, concurrentIndexFactoryBeanDefinition);
+		} else if( READ_WRITE.equals(concurrent)) {
+			RootBeanDefinition concurrentIndexFactoryBeanDefinition = new RootBeanDefinition(
+																		ReadWriteIndexFactory.class);
+			concurrentIndexFactoryBeanDefinition.setPropertyValues(new MutablePropertyValues());
+			concurrentIndexFactoryBeanDefinition.getPropertyValues()
+				.addPropertyValue(TARGET_INDEX_FACTORY_ATTRIBUTE, new RuntimeBeanReference(idIndexFactory));
+
 			registry.registerBeanDefinition(id, concurrentIndexFactoryBeanDefinition);
 		}
 	}
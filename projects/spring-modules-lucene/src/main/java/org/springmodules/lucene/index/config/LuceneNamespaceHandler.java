@@ -32,10 +32,12 @@ import org.springframework.beans.factory.xml.NamespaceHandlerSupport;
  * The &lt;index&gt; tag can configure too a concurrent IndexFactory for
  * applications which need to make concurrent access on an index. The
  * <code>concurrent</code> attribute allows to specify the kind of strategy
- * to use. The values lock and channel are possible in order to specify
- * respectively a concurrency management based on a lock and on a channel.
+ * to use. The values lock, read-write and channel are possible in order to
+ * specify respectively a concurrency management based on a lock, on shared
+ * readers and a single writer, and on a channel.
  * For more information, see the javadocs of classes
- * {@link org.springmodules.lucene.index.factory.concurrent.LockIndexFactory}
+ * {@link org.springmodules.lucene.index.factory.concurrent.LockIndexFactory},
+ * {@link org.springmodules.lucene.index.factory.concurrent.ReadWriteIndexFactory}
  * and {@link org.springmodules.lucene.index.factory.concurrent.ChannelIndexFactory}.
  * 
  * The following code shows a sample of use of the &lt;index&gt; tag:
@@ -37,7 +37,12 @@ import edu.emory.mathcs.backport.java.util.concurrent.locks.ReentrantLock;
  * and {@link #getIndexWriter()} and is released by the close calls of these
  * wrapped instances.
  * 
+ * The same lock guards readers and writers, so a single reader or writer
+ * can be used at a time. Use the {@link ReadWriteIndexFactory} to let
+ * readers work in parallel.
+ * 
  * @author Thierry Templier
+ * @see ReadWriteIndexFactory
  */
 public class LockIndexFactory extends AbstractConcurrentIndexFactory {
 	private static final String CLOSE_METHOD_NAME = "close";
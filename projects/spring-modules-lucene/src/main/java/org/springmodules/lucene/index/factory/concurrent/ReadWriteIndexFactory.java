@@ -0,0 +1,197 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.index.factory.concurrent;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springmodules.lucene.index.LuceneIndexAccessException;
+import org.springmodules.lucene.index.factory.LuceneIndexReader;
+import org.springmodules.lucene.index.factory.LuceneIndexWriter;
+
+import edu.emory.mathcs.backport.java.util.concurrent.Semaphore;
+import edu.emory.mathcs.backport.java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent {@link org.springmodules.lucene.index.factory.IndexFactory}
+ * letting any number of readers work in parallel with a single writer.
+ * 
+ * <p>Readers share one reader of the target factory, opened once and
+ * reopened only after the index has been modified through this factory.
+ * Each modification increments a generation, read before a shared reader
+ * is opened: a reader opened while the index is being modified is out of
+ * date as soon as the modification ends.
+ * A reader handed out keeps using the reader it was given until it is
+ * closed, so searches in progress are never disturbed by a writer. The
+ * shared reader is closed once it is out of date and all its users
+ * have closed their reader.
+ * 
+ * <p>Writers are handed out one at a time: getting a writer waits until
+ * the previous one is closed. Readers deleting documents or changing
+ * norms take the same write permit for the rest of their lifetime,
+ * since Lucene doesn't allow these modifications while a writer is open.
+ * 
+ * <p>Unlike the {@link LockIndexFactory}, readers and writers are plain
+ * wrappers delegating to the target instances, without dynamic proxies.
+ * 
+ * <p>Modifications made to the index without this factory, for example
+ * by another process, are not detected: the shared reader keeps showing
+ * the index as it was when the reader was opened.
+ * 
+ * @author Thierry Templier
+ * @see LockIndexFactory
+ */
+public class ReadWriteIndexFactory extends AbstractConcurrentIndexFactory {
+
+	private static final Log logger = LogFactory.getLog(ReadWriteIndexFactory.class);
+
+	private final AtomicLong generation = new AtomicLong();
+
+	private volatile SharedIndexReader sharedReader;
+
+	private Semaphore writePermit;
+
+	/**
+	 * @see org.springmodules.lucene.index.factory.concurrent.ConcurrentIndexFactory#initConcurrentResources()
+	 */
+	public void initConcurrentResources() throws Exception {
+		writePermit = new Semaphore(1, true);
+	}
+
+	/**
+	 * Release the reference of the factory on the shared reader. The
+	 * shared reader is closed once the readers still using it are closed.
+	 * 
+	 * @see org.springmodules.lucene.index.factory.concurrent.ConcurrentIndexFactory#destroyConcurrentResources()
+	 */
+	public void destroyConcurrentResources() throws Exception {
+		SharedIndexReader current;
+		synchronized(this) {
+			current = sharedReader;
+			sharedReader = null;
+		}
+		if( current!=null ) {
+			current.release();
+		}
+	}
+
+	/**
+	 * Return a reader sharing the current reader of the index with the
+	 * other callers. The reader must be closed once used.
+	 * 
+	 * @return a reader on the index
+	 */
+	public LuceneIndexReader getIndexReader() {
+		return new ReadWriteLuceneIndexReader(this, acquireSharedReader());
+	}
+
+	/**
+	 * Wait until no other writer is in use and return a writer on the
+	 * index. The writer must be closed once used, in order to let other
+	 * writers work on the index.
+	 * 
+	 * @return a writer on the index
+	 */
+	public LuceneIndexWriter getIndexWriter() {
+		acquireWritePermit();
+		try {
+			return new ReadWriteLuceneIndexWriter(this, getTargetIndexFactory().getIndexWriter());
+		} catch(RuntimeException ex) {
+			releaseWritePermit();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Take a reference on the current shared reader, opening a new one
+	 * if there is none or if the index has been modified since it was
+	 * opened.
+	 */
+	private SharedIndexReader acquireSharedReader() {
+		SharedIndexReader current = sharedReader;
+		if( current!=null && isCurrent(current) && current.acquire() ) {
+			return current;
+		}
+
+		synchronized(this) {
+			current = sharedReader;
+			if( current==null || !isCurrent(current) ) {
+				// read before opening, so a concurrent modification makes the new reader out of date
+				long openedGeneration = generation.get();
+				SharedIndexReader newReader;
+				try {
+					newReader = new SharedIndexReader(getTargetIndexFactory().getIndexReader(), openedGeneration);
+				} catch(LuceneIndexAccessException ex) {
+					if( current==null ) {
+						throw ex;
+					}
+					// the index may be locked by a writer: keep the previous reader
+					logger.debug("Unable to reopen the shared index reader", ex);
+					newReader = null;
+				}
+				if( newReader!=null ) {
+					sharedReader = newReader;
+					releaseQuietly(current);
+					current = newReader;
+				}
+			}
+			// cannot fail: the factory holds a reference on the current reader
+			current.acquire();
+			return current;
+		}
+	}
+
+	private boolean isCurrent(SharedIndexReader reader) {
+		return reader.getGeneration()==generation.get();
+	}
+
+	private void releaseQuietly(SharedIndexReader reader) {
+		if( reader==null ) {
+			return;
+		}
+		try {
+			reader.release();
+		} catch(IOException ex) {
+			logger.warn("Unable to close the previous shared index reader", ex);
+		}
+	}
+
+	/**
+	 * Wait for the permit required to modify the index.
+	 */
+	void acquireWritePermit() {
+		try {
+			writePermit.acquire();
+		} catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new LuceneIndexAccessException("Interrupted while waiting to modify the index", ex);
+		}
+	}
+
+	void releaseWritePermit() {
+		writePermit.release();
+	}
+
+	/**
+	 * Notify the factory that the index has been modified, so that the
+	 * next reader asked for is reopened.
+	 */
+	void indexModified() {
+		generation.incrementAndGet();
+	}
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.index.factory.concurrent;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.index.TermFreqVector;
+import org.apache.lucene.index.TermPositions;
+import org.apache.lucene.index.IndexReader.FieldOption;
+import org.apache.lucene.search.Searcher;
+import org.apache.lucene.store.Directory;
+import org.springmodules.lucene.index.LuceneIndexAccessException;
+import org.springmodules.lucene.index.factory.LuceneIndexReader;
+import org.springmodules.lucene.search.factory.LuceneSearcher;
+
+/**
+ * Reader handed out by a {@link ReadWriteIndexFactory}.
+ * 
+ * <p>Read calls are delegated to the reader shared by all the callers.
+ * The first call modifying the index (deletions and norms) takes the
+ * write permit of the factory and switches to a private reader, so
+ * that modifications never run concurrently with an index writer.
+ * Modifications of documents given by their number are refused if the
+ * index has been modified since the shared reader was opened.
+ * Closing the reader releases the shared reader and, if the index was
+ * modified, closes the private reader and releases the write permit.
+ * 
+ * @author Thierry Templier
+ * @see ReadWriteIndexFactory
+ */
+class ReadWriteLuceneIndexReader implements LuceneIndexReader {
+
+	private final ReadWriteIndexFactory indexFactory;
+
+	private final SharedIndexReader sharedReader;
+
+	private LuceneIndexReader writableReader;
+
+	private boolean sameVersion;
+
+	private boolean closed;
+
+	ReadWriteLuceneIndexReader(ReadWriteIndexFactory indexFactory, SharedIndexReader sharedReader) {
+		this.indexFactory = indexFactory;
+		this.sharedReader = sharedReader;
+	}
+
+	/**
+	 * Return the reader to delegate read calls to: the private reader
+	 * if the index has been modified through this reader, the shared
+	 * reader otherwise.
+	 */
+	private synchronized LuceneIndexReader getReader() {
+		checkNotClosed();
+		return writableReader!=null ? writableReader : sharedReader.getTarget();
+	}
+
+	/**
+	 * Return the private reader used to modify the index, opening it
+	 * after having acquired the write permit of the factory.
+	 */
+	private synchronized LuceneIndexReader getWritableReader() {
+		checkNotClosed();
+		if( writableReader==null ) {
+			indexFactory.acquireWritePermit();
+			try {
+				writableReader = indexFactory.getTargetIndexFactory().getIndexReader();
+				sameVersion = (writableReader.getVersion()==sharedReader.getTarget().getVersion());
+			} catch(RuntimeException ex) {
+				indexFactory.releaseWritePermit();
+				throw ex;
+			}
+		}
+		return writableReader;
+	}
+
+	/**
+	 * Return the private reader used to modify documents given by their
+	 * number. Numbers come from the shared reader, so the private reader
+	 * is only used if it shows the index in the same version: once the
+	 * index has been modified, the same number may designate another
+	 * document.
+	 * 
+	 * @throws LuceneIndexAccessException if the index has been modified
+	 * since the shared reader was opened
+	 */
+	private synchronized LuceneIndexReader getWritableReaderForDocument() {
+		LuceneIndexReader reader = getWritableReader();
+		if( !sameVersion ) {
+			throw new LuceneIndexAccessException("The index has been modified since the reader was opened");
+		}
+		return reader;
+	}
+
+	private void checkNotClosed() {
+		if( closed ) {
+			throw new LuceneIndexAccessException("The index reader is closed");
+		}
+	}
+
+	/**
+	 * @see LuceneIndexReader#close()
+	 */
+	public synchronized void close() throws IOException {
+		if( closed ) {
+			return;
+		}
+		closed = true;
+		try {
+			if( writableReader!=null ) {
+				try {
+					writableReader.close();
+				} finally {
+					indexFactory.indexModified();
+					indexFactory.releaseWritePermit();
+				}
+			}
+		} finally {
+			sharedReader.release();
+		}
+	}
+
+	/**
+	 * @see LuceneIndexReader#createNativeSearcher()
+	 */
+	public Searcher createNativeSearcher() {
+		return getReader().createNativeSearcher();
+	}
+
+	/**
+	 * @see LuceneIndexReader#createSearcher()
+	 */
+	public LuceneSearcher createSearcher() {
+		return getReader().createSearcher();
+	}
+
+	/**
+	 * @see LuceneIndexReader#deleteDocument(int)
+	 */
+	public void deleteDocument(int docNum) throws IOException {
+		getWritableReaderForDocument().deleteDocument(docNum);
+	}
+
+	/**
+	 * @see LuceneIndexReader#deleteDocuments(Term)
+	 */
+	public int deleteDocuments(Term term) throws IOException {
+		return getWritableReader().deleteDocuments(term);
+	}
+
+	/**
+	 * @see LuceneIndexReader#directory()
+	 */
+	public Directory directory() {
+		return getReader().directory();
+	}
+
+	/**
+	 * @see LuceneIndexReader#docFreq(Term)
+	 */
+	public int docFreq(Term t) throws IOException {
+		return getReader().docFreq(t);
+	}
+
+	/**
+	 * @see LuceneIndexReader#document(int)
+	 */
+	public Document document(int n) throws IOException {
+		return getReader().document(n);
+	}
+
+	/**
+	 * @see LuceneIndexReader#getFieldNames(FieldOption)
+	 */
+	public Collection getFieldNames(FieldOption fldOption) {
+		return getReader().getFieldNames(fldOption);
+	}
+
+	/**
+	 * @see LuceneIndexReader#getTermFreqVector(int, String)
+	 */
+	public TermFreqVector getTermFreqVector(int docNumber, String field) throws IOException {
+		return getReader().getTermFreqVector(docNumber, field);
+	}
+
+	/**
+	 * @see LuceneIndexReader#getTermFreqVectors(int)
+	 */
+	public TermFreqVector[] getTermFreqVectors(int docNumber) throws IOException {
+		return getReader().getTermFreqVectors(docNumber);
+	}
+
+	/**
+	 * @see LuceneIndexReader#getVersion()
+	 */
+	public long getVersion() {
+		return getReader().getVersion();
+	}
+
+	/**
+	 * @see LuceneIndexReader#hasDeletions()
+	 */
+	public boolean hasDeletions() {
+		return getReader().hasDeletions();
+	}
+
+	/**
+	 * @see LuceneIndexReader#hasNorms(String)
+	 */
+	public boolean hasNorms(String field) throws IOException {
+		return getReader().hasNorms(field);
+	}
+
+	/**
+	 * @see LuceneIndexReader#isCurrent()
+	 */
+	public boolean isCurrent() throws IOException {
+		return getReader().isCurrent();
+	}
+
+	/**
+	 * @see LuceneIndexReader#isDeleted(int)
+	 */
+	public boolean isDeleted(int n) {
+		return getReader().isDeleted(n);
+	}
+
+	/**
+	 * @see LuceneIndexReader#maxDoc()
+	 */
+	public int maxDoc() {
+		return getReader().maxDoc();
+	}
+
+	/**
+	 * @see LuceneIndexReader#norms(String)
+	 */
+	public byte[] norms(String field) throws IOException {
+		return getReader().norms(field);
+	}
+
+	/**
+	 * @see LuceneIndexReader#norms(String, byte[], int)
+	 */
+	public void norms(String field, byte[] bytes, int offset) throws IOException {
+		getReader().norms(field, bytes, offset);
+	}
+
+	/**
+	 * @see LuceneIndexReader#numDocs()
+	 */
+	public int numDocs() {
+		return getReader().numDocs();
+	}
+
+	/**
+	 * @see LuceneIndexReader#setNorm(int, String, byte)
+	 */
+	public void setNorm(int doc, String field, byte value) throws IOException {
+		getWritableReaderForDocument().setNorm(doc, field, value);
+	}
+
+	/**
+	 * @see LuceneIndexReader#setNorm(int, String, float)
+	 */
+	public void setNorm(int doc, String field, float value) throws IOException {
+		getWritableReaderForDocument().setNorm(doc, field, value);
+	}
+
+	/**
+	 * @see LuceneIndexReader#termDocs()
+	 */
+	public TermDocs termDocs() throws IOException {
+		return getReader().termDocs();
+	}
+
+	/**
+	 * @see LuceneIndexReader#termDocs(Term)
+	 */
+	public TermDocs termDocs(Term term) throws IOException {
+		return getReader().termDocs(term);
+	}
+
+	/**
+	 * @see LuceneIndexReader#termPositions()
+	 */
+	public TermPositions termPositions() throws IOException {
+		return getReader().termPositions();
+	}
+
+	/**
+	 * @see LuceneIndexReader#termPositions(Term)
+	 */
+	public TermPositions termPositions(Term term) throws IOException {
+		return getReader().termPositions(term);
+	}
+
+	/**
+	 * @see LuceneIndexReader#terms()
+	 */
+	public TermEnum terms() throws IOException {
+		return getReader().terms();
+	}
+
+	/**
+	 * @see LuceneIndexReader#terms(Term)
+	 */
+	public TermEnum terms(Term t) throws IOException {
+		return getReader().terms(t);
+	}
+
+	/**
+	 * @see LuceneIndexReader#undeleteAll()
+	 */
+	public void undeleteAll() throws IOException {
+		getWritableReader().undeleteAll();
+	}
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.index.factory.concurrent;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Similarity;
+import org.apache.lucene.store.Directory;
+import org.springmodules.lucene.index.LuceneIndexAccessException;
+import org.springmodules.lucene.index.factory.LuceneIndexWriter;
+
+/**
+ * Writer handed out by a {@link ReadWriteIndexFactory}. It holds the
+ * write permit of the factory until it is closed. Closing it also
+ * notifies the factory that the shared reader is out of date.
+ * 
+ * @author Thierry Templier
+ * @see ReadWriteIndexFactory
+ */
+class ReadWriteLuceneIndexWriter implements LuceneIndexWriter {
+
+	private final ReadWriteIndexFactory indexFactory;
+
+	private final LuceneIndexWriter target;
+
+	private boolean closed;
+
+	ReadWriteLuceneIndexWriter(ReadWriteIndexFactory indexFactory, LuceneIndexWriter target) {
+		this.indexFactory = indexFactory;
+		this.target = target;
+	}
+
+	private synchronized LuceneIndexWriter getWriter() {
+		if( closed ) {
+			throw new LuceneIndexAccessException("The index writer is closed");
+		}
+		return target;
+	}
+
+	/**
+	 * @see LuceneIndexWriter#close()
+	 */
+	public synchronized void close() throws IOException {
+		if( closed ) {
+			return;
+		}
+		closed = true;
+		try {
+			target.close();
+		} finally {
+			indexFactory.indexModified();
+			indexFactory.releaseWritePermit();
+		}
+	}
+
+	/**
+	 * @see LuceneIndexWriter#addDocument(Document)
+	 */
+	public void addDocument(Document doc) throws IOException {
+		getWriter().addDocument(doc);
+	}
+
+	/**
+	 * @see LuceneIndexWriter#addDocument(Document, Analyzer)
+	 */
+	public void addDocument(Document doc, Analyzer analyzer) throws IOException {
+		getWriter().addDocument(doc, analyzer);
+	}
+
+	/**
+	 * @see LuceneIndexWriter#addIndexes(Directory[])
+	 */
+	public void addIndexes(Directory[] dirs) throws IOException {
+		getWriter().addIndexes(dirs);
+	}
+
+	/**
+	 * @see LuceneIndexWriter#addIndexes(IndexReader[])
+	 */
+	public void addIndexes(IndexReader[] readers) throws IOException {
+		getWriter().addIndexes(readers);
+	}
+
+	/**
+	 * @see LuceneIndexWriter#docCount()
+	 */
+	public int docCount() {
+		return getWriter().docCount();
+	}
+
+	/**
+	 * @see LuceneIndexWriter#getAnalyzer()
+	 */
+	public Analyzer getAnalyzer() {
+		return getWriter().getAnalyzer();
+	}
+
+	/**
+	 * @see LuceneIndexWriter#getCommitLockTimeout()
+	 */
+	public long getCommitLockTimeout() {
+		return getWriter().getCommitLockTimeout();
+	}
+
+	/**
+	 * @see LuceneIndexWriter#getDirectory()
+	 */
+	public Directory getDirectory() {
+		return getWriter().getDirectory();
+	}
+
+	/**
+	 * @see LuceneIndexWriter#getInfoStream()
+	 */
+	public PrintStream getInfoStream() {
+		return getWriter().getInfoStream();
+	}
+
+	/**
+	 * @see LuceneIndexWriter#getMaxBufferedDocs()
+	 */
+	public int getMaxBufferedDocs() {
+		return getWriter().getMaxBufferedDocs();
+	}
+
+	/**
+	 * @see LuceneIndexWriter#getMaxFieldLength()
+	 */
+	public int getMaxFieldLength() {
+		return getWriter().getMaxFieldLength();
+	}
+
+	/**
+	 * @see LuceneIndexWriter#getMaxMergeDocs()
+	 */
+	public int getMaxMergeDocs() {
+		return getWriter().getMaxMergeDocs();
+	}
+
+	/**
+	 * @see LuceneIndexWriter#getMergeFactor()
+	 */
+	public int getMergeFactor() {
+		return getWriter().getMergeFactor();
+	}
+
+	/**
+	 * @see LuceneIndexWriter#getSimilarity()
+	 */
+	public Similarity getSimilarity() {
+		return getWriter().getSimilarity();
+	}
+
+	/**
+	 * @see LuceneIndexWriter#getTermIndexInterval()
+	 */
+	public int getTermIndexInterval() {
+		return getWriter().getTermIndexInterval();
+	}
+
+	/**
+	 * @see LuceneIndexWriter#getUseCompoundFile()
+	 */
+	public boolean getUseCompoundFile() {
+		return getWriter().getUseCompoundFile();
+	}
+
+	/**
+	 * @see LuceneIndexWriter#getWriteLockTimeout()
+	 */
+	public long getWriteLockTimeout() {
+		return getWriter().getWriteLockTimeout();
+	}
+
+	/**
+	 * @see LuceneIndexWriter#optimize()
+	 */
+	public void optimize() throws IOException {
+		getWriter().optimize();
+	}
+
+	/**
+	 * @see LuceneIndexWriter#setCommitLockTimeout(long)
+	 */
+	public void setCommitLockTimeout(long commitLockTimeout) {
+		getWriter().setCommitLockTimeout(commitLockTimeout);
+	}
+
+	/**
+	 * @see LuceneIndexWriter#setInfoStream(PrintStream)
+	 */
+	public void setInfoStream(PrintStream infoStream) {
+		getWriter().setInfoStream(infoStream);
+	}
+
+	/**
+	 * @see LuceneIndexWriter#setMaxBufferedDocs(int)
+	 */
+	public void setMaxBufferedDocs(int maxBufferedDocs) {
+		getWriter().setMaxBufferedDocs(maxBufferedDocs);
+	}
+
+	/**
+	 * @see LuceneIndexWriter#setMaxFieldLength(int)
+	 */
+	public void setMaxFieldLength(int maxFieldLength) {
+		getWriter().setMaxFieldLength(maxFieldLength);
+	}
+
+	/**
+	 * @see LuceneIndexWriter#setMaxMergeDocs(int)
+	 */
+	public void setMaxMergeDocs(int maxMergeDocs) {
+		getWriter().setMaxMergeDocs(maxMergeDocs);
+	}
+
+	/**
+	 * @see LuceneIndexWriter#setMergeFactor(int)
+	 */
+	public void setMergeFactor(int mergeFactor) {
+		getWriter().setMergeFactor(mergeFactor);
+	}
+
+	/**
+	 * @see LuceneIndexWriter#setSimilarity(Similarity)
+	 */
+	public void setSimilarity(Similarity similarity) {
+		getWriter().setSimilarity(similarity);
+	}
+
+	/**
+	 * @see LuceneIndexWriter#setTermIndexInterval(int)
+	 */
+	public void setTermIndexInterval(int interval) {
+		getWriter().setTermIndexInterval(interval);
+	}
+
+	/**
+	 * @see LuceneIndexWriter#setUseCompoundFile(boolean)
+	 */
+	public void setUseCompoundFile(boolean value) {
+		getWriter().setUseCompoundFile(value);
+	}
+
+	/**
+	 * @see LuceneIndexWriter#setWriteLockTimeout(long)
+	 */
+	public void setWriteLockTimeout(long writeLockTimeout) {
+		getWriter().setWriteLockTimeout(writeLockTimeout);
+	}
+}
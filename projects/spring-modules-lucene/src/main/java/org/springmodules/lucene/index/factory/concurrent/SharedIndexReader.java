@@ -0,0 +1,94 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.index.factory.concurrent;
+
+import java.io.IOException;
+
+import org.springmodules.lucene.index.factory.LuceneIndexReader;
+
+import edu.emory.mathcs.backport.java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference counted reader shared by the callers of a
+ * {@link ReadWriteIndexFactory}. The factory holds one reference as long
+ * as the reader is the current one, and every reader handed out holds
+ * another one. The target reader is closed when the last reference is
+ * released.
+ * 
+ * @author Thierry Templier
+ * @see ReadWriteIndexFactory
+ */
+final class SharedIndexReader {
+
+	private final long generation;
+
+	private final AtomicInteger references = new AtomicInteger(1);
+
+	private final LuceneIndexReader target;
+
+	/**
+	 * @param target the target reader
+	 * @param generation the modification generation of the factory read
+	 * before the target reader was opened
+	 */
+	SharedIndexReader(LuceneIndexReader target, long generation) {
+		this.target = target;
+		this.generation = generation;
+	}
+
+	/**
+	 * Take a reference on the reader, unless it is already closed.
+	 * 
+	 * @return false if the reader is closed
+	 */
+	boolean acquire() {
+		for(;;) {
+			int current = references.get();
+			if( current<=0 ) {
+				return false;
+			}
+			if( references.compareAndSet(current, current + 1) ) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Release a reference on the reader, and close the target reader if
+	 * it was the last one.
+	 * 
+	 * @throws IOException if thrown by the target reader
+	 */
+	void release() throws IOException {
+		if( references.decrementAndGet()==0 ) {
+			target.close();
+		}
+	}
+
+	LuceneIndexReader getTarget() {
+		return target;
+	}
+
+	/**
+	 * Return the modification generation of the factory read before this
+	 * reader was opened. The reader is out of date once the generation of
+	 * the factory is different.
+	 */
+	long getGeneration() {
+		return generation;
+	}
+}
@@ -23,8 +23,9 @@ import org.springmodules.lucene.index.document.handler.database.SqlRequest;
  * 
  * @author Thierry Templier
  * @see org.springmodules.lucene.index.object.database.DatabaseIndexingListener
+ * @see org.springmodules.lucene.index.object.database.DatabaseIndexingProgressListener
  */
-public class DatabaseIndexingListenerAdapter implements DatabaseIndexingListener {
+public class DatabaseIndexingListenerAdapter implements DatabaseIndexingProgressListener {
 
 	/**
 	 * @see org.springmodules.lucene.index.object.database.DatabaseIndexingListener#beforeIndexingRequest(org.springmodules.lucene.index.object.database.SqlRequest)
@@ -38,6 +39,12 @@ public class DatabaseIndexingListenerAdapter implements DatabaseIndexingListener
 	public void afterIndexingRequest(SqlRequest request) {
 	}
 
+	/**
+	 * @see org.springmodules.lucene.index.object.database.DatabaseIndexingProgressListener#onProgressIndexingRequest(org.springmodules.lucene.index.document.handler.database.SqlRequest, long)
+	 */
+	public void onProgressIndexingRequest(SqlRequest request, long indexedRows) {
+	}
+
 	/**
 	 * @see org.springmodules.lucene.index.object.database.DatabaseIndexingListener#onErrorIndexingRequest(org.springmodules.lucene.index.object.database.SqlRequest, java.lang.Exception)
 	 */
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.index.object.database;
+
+import org.springmodules.lucene.index.document.handler.database.SqlRequest;
+
+/**
+ * Database indexing listener to be also notified of the progress of
+ * the streaming indexing of the request rows.
+ * 
+ * <p>The DatabaseIndexer only calls this callback on listeners which
+ * implement this interface, so existing DatabaseIndexingListener
+ * implementations are not affected.
+ * 
+ * @author Thierry Templier
+ * @see org.springmodules.lucene.index.object.database.DatabaseIndexingListener
+ * @see org.springmodules.lucene.index.object.database.DefaultDatabaseIndexer#setStreaming(boolean)
+ */
+public interface DatabaseIndexingProgressListener extends DatabaseIndexingListener {
+
+	/**
+	 * This callback method is called during the streaming indexing of
+	 * the request rows, every time a batch of documents has been added
+	 * to the index.
+	 * @param request the sql request being executed
+	 * @param indexedRows the number of rows indexed so far for the request
+	 * @see DefaultDatabaseIndexer#setBatchSize(int)
+	 */
+	void onProgressIndexingRequest(SqlRequest request, long indexedRows);
+}
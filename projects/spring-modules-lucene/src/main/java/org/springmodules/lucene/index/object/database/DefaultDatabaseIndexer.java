@@ -31,6 +31,9 @@ import javax.sql.DataSource;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.IndexWriter;
 import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.SqlParameter;
 import org.springframework.jdbc.object.MappingSqlQuery;
 import org.springmodules.lucene.index.LuceneIndexAccessException;
@@ -43,6 +46,11 @@ import org.springmodules.lucene.index.factory.IndexWriterFactoryUtils;
 import org.springmodules.lucene.index.factory.LuceneIndexWriter;
 import org.springmodules.lucene.index.object.AbstractIndexer;
 
+import edu.emory.mathcs.backport.java.util.concurrent.ExecutionException;
+import edu.emory.mathcs.backport.java.util.concurrent.ExecutorService;
+import edu.emory.mathcs.backport.java.util.concurrent.Executors;
+import edu.emory.mathcs.backport.java.util.concurrent.Future;
+
 /**
  * <b>This is the central class in the lucene database indexing package.</b>
  * It simplifies the use of lucene to index a database specifying the requests
@@ -66,6 +74,13 @@ import org.springmodules.lucene.index.object.AbstractIndexer;
  * and given to services as bean reference. Note: The IndexFactory should
  * always be configured as a bean in the application context, in the first case
  * given to the service directly, in the second case to the prepared template.
+ *
+ * <p>By default, the rows of a request are all mapped to documents before
+ * being added to the index. For large tables, the streaming mode reads
+ * them with a forward-only cursor (whose JDBC fetch size can be specified)
+ * and adds the documents to the index by batches, notifying the listeners
+ * of the progress after each batch. The registered requests can also be
+ * executed in parallel, sharing the same IndexWriter.
  * 
  * @author Thierry Templier
  * @see org.springmodules.lucene.index.object.AbstractIndexer
@@ -76,8 +91,19 @@ import org.springmodules.lucene.index.object.AbstractIndexer;
  * @see org.springmodules.lucene.index.factory.IndexWriterFactoryUtils#releaseIndexWriter(IndexFactory, IndexWriter)
  */
 public class DefaultDatabaseIndexer extends AbstractIndexer implements DatabaseIndexer {
+
+	/**
+	 * Default number of documents added to the index between two
+	 * progress notifications in streaming mode.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
 	private Map requestDocumentHandlers;
 	private List listeners;
+	private boolean streaming = false;
+	private int fetchSize = 0;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private int concurrentRequests = 1;
 
 	/**
 	 * Construct a new DatabaseIndexer, given an IndexFactory to obtain IndexWriter.
@@ -91,6 +117,82 @@ public class DefaultDatabaseIndexer extends AbstractIndexer implements DatabaseI
 		registerDefautHandlers();
 	}
 
+	/**
+	 * Return if the rows of the requests are streamed to the index.
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Set if the rows of the requests are streamed to the index. In this
+	 * case, the rows are read with a forward-only cursor and the resulting
+	 * documents are added to the index by batches, instead of mapping every
+	 * row of a request before indexing them. Default is false.
+	 * @see #setFetchSize(int)
+	 * @see #setBatchSize(int)
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Return the JDBC fetch size used in streaming mode.
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * Set the JDBC fetch size used in streaming mode, that is the number
+	 * of rows the driver fetches from the database at a time. Default is
+	 * 0, meaning the driver default.
+	 * @see java.sql.Statement#setFetchSize(int)
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Return the number of documents added to the index by batch in
+	 * streaming mode.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Set the number of documents added to the index by batch in streaming
+	 * mode. The listeners are notified of the progress after each batch.
+	 * Default is 1000.
+	 * @see DatabaseIndexingProgressListener#onProgressIndexingRequest(SqlRequest, long)
+	 */
+	public void setBatchSize(int batchSize) {
+		if( batchSize<=0 ) {
+			throw new IllegalArgumentException("The batch size must be positive.");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Return the maximum number of requests executed in parallel.
+	 */
+	public int getConcurrentRequests() {
+		return concurrentRequests;
+	}
+
+	/**
+	 * Set the maximum number of requests executed in parallel. They share
+	 * the same IndexWriter and the listeners are then notified from several
+	 * threads. Default is 1, the requests being executed one after the other.
+	 */
+	public void setConcurrentRequests(int concurrentRequests) {
+		if( concurrentRequests<=0 ) {
+			throw new IllegalArgumentException("The number of concurrent requests must be positive.");
+		}
+		this.concurrentRequests = concurrentRequests;
+	}
+
 	/**
 	 * This method specifies the default handlers to automatically
 	 * register when the indexer is instantiated.
@@ -223,6 +325,25 @@ public class DefaultDatabaseIndexer extends AbstractIndexer implements DatabaseI
 		}
 	}
 
+	/**
+	 * This method is used to fire the "on progress request" event to
+	 * every listeners implementing DatabaseIndexingProgressListener.
+	 * 
+	 * <p>This event will be fired in streaming mode every time a batch
+	 * of documents has been added to the index.
+	 * 
+	 * @param request the request being executed
+	 * @param indexedRows the number of rows indexed so far
+	 */
+	protected void fireListenersOnProgressRequest(SqlRequest request, long indexedRows) {
+		for(Iterator i=listeners.iterator();i.hasNext();) {
+			Object listener=i.next();
+			if( listener instanceof DatabaseIndexingProgressListener ) {
+				((DatabaseIndexingProgressListener)listener).onProgressIndexingRequest(request, indexedRows);
+			}
+		}
+	}
+
 	/**
 	 * This method is used to fire the "on error request" event to
 	 * every listeners.
@@ -261,6 +382,33 @@ public class DefaultDatabaseIndexer extends AbstractIndexer implements DatabaseI
 		}
 	}
 
+	/**
+	 * This method executes the sql request and streams the resulting rows
+	 * to the index. The rows are read with a forward-only cursor using the
+	 * configured fetch size and the documents are added to the index by
+	 * batches.
+	 * 
+	 * @param writer the IndexWriter instance to use
+	 * @param dataSource the datasource to use
+	 * @param request the request to execute
+	 * @param handler the handler to use to index the rows
+	 * @see StreamingIndexingCallbackHandler
+	 */
+	private void indexResultSqlInBatches(LuceneIndexWriter writer, DataSource dataSource,
+											SqlRequest request, SqlDocumentHandler handler) {
+		int[] types = request.getTypes()!=null ? request.getTypes() : new int[0];
+		Object[] params = request.getParams()!=null ? request.getParams() : new Object[0];
+		PreparedStatementCreatorFactory statementFactory = new PreparedStatementCreatorFactory(request.getSql(), types);
+		statementFactory.setResultSetType(ResultSet.TYPE_FORWARD_ONLY);
+		statementFactory.setUpdatableResults(false);
+
+		JdbcTemplate template = new JdbcTemplate(dataSource);
+		template.setFetchSize(fetchSize);
+		StreamingIndexingCallbackHandler callbackHandler = new StreamingIndexingCallbackHandler(writer, request, handler);
+		template.query(statementFactory.newPreparedStatementCreator(params), callbackHandler);
+		callbackHandler.flush();
+	}
+
 	/**
 	 * This method adds a list of Lucene documents to an index using an
 	 * corresponding IndexWriter instance.
@@ -301,20 +449,77 @@ public class DefaultDatabaseIndexer extends AbstractIndexer implements DatabaseI
 									SqlRequest request, SqlDocumentHandler handler) {
 		try {
 			fireListenersOnBeforeRequest(request);
-			List documents = indexResultSql(dataSource, request, handler);
-			if( documents!=null ) {
-				addDocumentsInIndex(writer, documents);
+			if( streaming ) {
+				indexResultSqlInBatches(writer, dataSource, request, handler);
+			} else {
+				List documents = indexResultSql(dataSource, request, handler);
+				if( documents!=null ) {
+					addDocumentsInIndex(writer, documents);
+				}
 			}
 			fireListenersOnAfterRequest(request);
 		} catch(DataAccessException ex) {
 			logger.error("Error during indexing the request", ex);
 			fireListenersOnErrorRequest(request, ex);
+		} catch(LuceneIndexAccessException ex) {
+			logger.error("Error during indexing the request", ex);
+			fireListenersOnErrorRequest(request, ex);
 		} catch(IOException ex) {
 			logger.error("Error during indexing the request", ex);
 			fireListenersOnErrorRequest(request, ex);
 		}
 	}
 
+	/**
+	 * This method executes the requests in parallel with at most
+	 * concurrentRequests threads, sharing the same IndexWriter. It
+	 * returns once every request has been executed and then rethrows
+	 * the first unexpected exception thrown by a request.
+	 * 
+	 * <p>A failing request does not interrupt the others: they are run
+	 * to completion so that the index is not left with partially indexed
+	 * requests besides the failing one.
+	 * 
+	 * @param writer the IndexWriter instance to use
+	 * @param dataSource the datasource to use
+	 * @param requests the requests to execute
+	 * @see #doHandleRequest(LuceneIndexWriter, DataSource, SqlRequest, SqlDocumentHandler)
+	 */
+	private void doHandleRequestsInParallel(final LuceneIndexWriter writer,
+									final DataSource dataSource, Set requests) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrentRequests, requests.size()));
+		try {
+			List futures = new ArrayList();
+			for(Iterator i=requests.iterator(); i.hasNext();) {
+				final SqlRequest request = (SqlRequest)i.next();
+				final SqlDocumentHandler handler = (SqlDocumentHandler)requestDocumentHandlers.get(request);
+				futures.add(executor.submit(new Runnable() {
+					public void run() {
+						doHandleRequest(writer, dataSource, request, handler);
+					}
+				}));
+			}
+			Throwable failure = null;
+			for(Iterator i=futures.iterator(); i.hasNext();) {
+				Future future = (Future)i.next();
+				try {
+					future.get();
+				} catch(ExecutionException ex) {
+					if( failure==null ) {
+						failure = ex.getCause();
+					}
+				}
+			}
+			if( failure instanceof Exception ) {
+				throw (Exception)failure;
+			} else if( failure!=null ) {
+				throw (Error)failure;
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	/**
 	 * This method is the entry point to index a database using the specified
 	 * datasource. It uses the registred requests and their corresponding handlers.
@@ -339,19 +544,27 @@ public class DefaultDatabaseIndexer extends AbstractIndexer implements DatabaseI
 	 * the other requests will be executed. However the error will notify to
 	 * specified listeners.
 	 *  
+	 * <p>The requests are executed in parallel if more than one
+	 * concurrent request is configured.
+	 *  
 	 * @param dataSource the datasource to use
 	 * @param optimizeIndex if the index must be optimized after
 	 * the request indexing
 	 * @see #doHandleRequest(DataSource, SqlRequest, SqlDocumentHandler, boolean)
+	 * @see #setConcurrentRequests(int)
 	 */
 	public void index(DataSource dataSource, boolean optimizeIndex) {
 		LuceneIndexWriter writer = IndexWriterFactoryUtils.getIndexWriter(getIndexFactory());
 		try {
 			Set requests = requestDocumentHandlers.keySet();
-			for(Iterator i=requests.iterator(); i.hasNext();) {
-				SqlRequest request = (SqlRequest)i.next();
-				SqlDocumentHandler handler = (SqlDocumentHandler)requestDocumentHandlers.get(request);
-				doHandleRequest(writer, dataSource, request, handler);
+			if( concurrentRequests>1 && requests.size()>1 ) {
+				doHandleRequestsInParallel(writer, dataSource, requests);
+			} else {
+				for(Iterator i=requests.iterator(); i.hasNext();) {
+					SqlRequest request = (SqlRequest)i.next();
+					SqlDocumentHandler handler = (SqlDocumentHandler)requestDocumentHandlers.get(request);
+					doHandleRequest(writer, dataSource, request, handler);
+				}
 			}
 			//Optimize the index
 			if( optimizeIndex ) {
@@ -368,6 +581,58 @@ public class DefaultDatabaseIndexer extends AbstractIndexer implements DatabaseI
 		}
 	}
 
+	/**
+	 * This is the RowCallbackHandler used in streaming mode to delegate the
+	 * indexing of each row to the getDocument of the specified SqlDocumentHandler.
+	 * The documents are added to the index by batches and the listeners are
+	 * notified of the progress after each one.
+	 */
+	private class StreamingIndexingCallbackHandler implements RowCallbackHandler {
+
+		private LuceneIndexWriter writer;
+		private SqlRequest request;
+		private DocumentHandler handler;
+		private List documents;
+		private long indexedRows;
+
+		public StreamingIndexingCallbackHandler(LuceneIndexWriter writer, SqlRequest request, DocumentHandler handler) {
+			this.writer = writer;
+			this.request = request;
+			this.handler = handler;
+			this.documents = new ArrayList(batchSize);
+		}
+
+		public void processRow(ResultSet rs) throws SQLException {
+			try {
+				Document document = handler.getDocument(request.getDescription(), rs);
+				if( document!=null ) {
+					documents.add(document);
+				}
+			} catch (SQLException ex) {
+				throw ex;
+			} catch (Exception ex) {
+				throw new LuceneIndexingException("Error during the indexing of the ResultSet.", ex);
+			}
+			indexedRows++;
+			if( documents.size()>=batchSize ) {
+				flush();
+			}
+		}
+
+		public void flush() {
+			if( documents.isEmpty() ) {
+				return;
+			}
+			try {
+				addDocumentsInIndex(writer, documents);
+			} catch(IOException ex) {
+				throw new LuceneIndexAccessException("Error during adding documents to the index", ex);
+			}
+			documents.clear();
+			fireListenersOnProgressRequest(request, indexedRows);
+		}
+	}
+
 	/**
 	 * This is the sub class MappingSqlQuery used to delegate the mapRow callback
 	 * to the getDocument of the specified SqlDocumentHandler for each result row
@@ -0,0 +1,572 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.index.object.directory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.springmodules.lucene.index.LuceneIndexAccessException;
+import org.springmodules.lucene.index.LuceneIndexingException;
+import org.springmodules.lucene.index.document.handler.DocumentHandler;
+import org.springmodules.lucene.index.document.handler.DocumentHandlerManager;
+import org.springmodules.lucene.index.factory.IndexFactory;
+import org.springmodules.lucene.index.factory.IndexWriterFactoryUtils;
+import org.springmodules.lucene.index.factory.LuceneIndexWriter;
+import org.springmodules.lucene.util.IOUtils;
+
+import edu.emory.mathcs.backport.java.util.concurrent.ArrayBlockingQueue;
+import edu.emory.mathcs.backport.java.util.concurrent.BlockingQueue;
+import edu.emory.mathcs.backport.java.util.concurrent.ExecutorService;
+import edu.emory.mathcs.backport.java.util.concurrent.Executors;
+import edu.emory.mathcs.backport.java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Directory indexer which indexes the files as a pipeline of three stages
+ * running concurrently, in order to use several processors for the
+ * extraction of the file contents, generally the most expensive part of
+ * the indexing (PDF, Word or Excel files for example).
+ * 
+ * <p>A discovery thread walks the directory tree and queues the files to
+ * index. A pool of extraction threads gets the document of each file with
+ * its document handler. The calling thread adds the extracted documents
+ * to the index by batches, using the same IndexWriter as the other indexers.
+ * The queues between the stages are bounded, so a stage waits for the next
+ * one when it goes faster and the memory used remains bounded whatever the
+ * size of the directory.
+ * 
+ * <p>The document handlers are called concurrently and must be thread-safe,
+ * which is the case of the handlers provided by the support. The contents
+ * of the fields based on a Reader are read by the extraction threads, since
+ * the file is closed before the document is added to the index.
+ * 
+ * <p>The listeners are notified from the different stages, so from several
+ * threads. The documents are not added to the index in the order of the
+ * files and the afterIndexingDirectory event is fired once the files of
+ * the directory have been queued, not indexed.
+ * 
+ * <p>An unexpected exception in any stage, for example thrown by a listener,
+ * stops the whole pipeline at once and is rethrown by the index method. The
+ * documents already added to the index are kept.
+ * 
+ * <p>The incremental mode is supported, the changed files being detected
+ * before the start of the stages.
+ * 
+ * @author Thierry Templier
+ * @see org.springmodules.lucene.index.object.directory.DefaultDirectoryIndexer
+ * @see #setExtractionThreads(int)
+ * @see #setQueueSize(int)
+ * @see #setBatchSize(int)
+ */
+public class ConcurrentDirectoryIndexer extends DefaultDirectoryIndexer {
+
+	/**
+	 * Default capacity of the queues between the stages.
+	 */
+	public static final int DEFAULT_QUEUE_SIZE = 64;
+
+	/**
+	 * Default maximum number of documents added to the index by batch.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 32;
+
+	private static final Object END_OF_FILES = new Object();
+
+	private static final Object END_OF_DOCUMENTS = new Object();
+
+	private static final Object STAGE_FAILED = new Object();
+
+	private int extractionThreads = Runtime.getRuntime().availableProcessors();
+
+	private int queueSize = DEFAULT_QUEUE_SIZE;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * Construct a new ConcurrentDirectoryIndexer, given an IndexFactory
+	 * to obtain IndexWriter.
+	 * 
+	 * @param indexFactory IndexFactory to obtain IndexWriter
+	 */
+	public ConcurrentDirectoryIndexer(IndexFactory indexFactory) {
+		super(indexFactory);
+	}
+
+	/**
+	 * Construct a new ConcurrentDirectoryIndexer, given an IndexFactory to
+	 * obtain IndexWriter and a DocumentHandlerManager which has been
+	 * configured with Spring.
+	 * 
+	 * @param indexFactory IndexFactory to obtain IndexWriter
+	 * @param documentHandlerManager DocumentHandlerManager which will be used by the indexer
+	 */
+	public ConcurrentDirectoryIndexer(IndexFactory indexFactory, DocumentHandlerManager documentHandlerManager) {
+		super(indexFactory, documentHandlerManager);
+	}
+
+	/**
+	 * Return the number of threads extracting the documents.
+	 */
+	public int getExtractionThreads() {
+		return extractionThreads;
+	}
+
+	/**
+	 * Set the number of threads extracting the documents. Default is
+	 * the number of available processors.
+	 */
+	public void setExtractionThreads(int extractionThreads) {
+		if( extractionThreads<=0 ) {
+			throw new IllegalArgumentException("The number of extraction threads must be positive.");
+		}
+		this.extractionThreads = extractionThreads;
+	}
+
+	/**
+	 * Return the capacity of the queues between the stages.
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * Set the capacity of the queues between the stages, that is the number
+	 * of files waiting for extraction and the number of documents waiting
+	 * to be added to the index. Default is 64.
+	 */
+	public void setQueueSize(int queueSize) {
+		if( queueSize<=0 ) {
+			throw new IllegalArgumentException("The queue size must be positive.");
+		}
+		this.queueSize = queueSize;
+	}
+
+	/**
+	 * Return the maximum number of documents added to the index by batch.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Set the maximum number of documents added to the index by batch,
+	 * that is without waiting for the extraction threads. Default is 32.
+	 */
+	public void setBatchSize(int batchSize) {
+		if( batchSize<=0 ) {
+			throw new IllegalArgumentException("The batch size must be positive.");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * This method is the entry point to index a directory recursively. It
+	 * starts the discovery and extraction stages and adds the extracted
+	 * documents to the index until every file has been handled.
+	 * 
+	 * <p>In this case, the index will be optimized at the end 
+	 * if the value of the optimizeIndex parameter is true.
+	 * 
+	 * <p>If there is an error during executing a file, the other files will be
+	 * executed. However the error will notify to specified listeners.
+	 *  
+	 * @param dirToParse the base directory to index recursively
+	 * @param optimizeIndex if the index must be optimized after
+	 * the request indexing
+	 * @see IndexWriterFactoryUtils#getIndexWriter(IndexFactory)
+	 * @see IndexWriterFactoryUtils#releaseIndexWriter(IndexFactory, LuceneIndexWriter)
+	 */
+	public void index(String dirToParse, boolean optimizeIndex) {
+		if( !checkBaseDirectory(dirToParse) ) {
+			throw new LuceneIndexingException("The base directory doesn't exist!");
+		}
+
+		File file = new File(dirToParse);
+		Set filesToIndex = null;
+		if( isIncremental() ) {
+			try {
+				filesToIndex = prepareIncrementalIndexing(file);
+			} catch(IOException ex) {
+				logger.error("Error during preparing the indexing of the directory : "+dirToParse, ex);
+				throw new LuceneIndexAccessException("Error during preparing the indexing of the directory : "+dirToParse, ex);
+			}
+		}
+
+		LuceneIndexWriter writer = IndexWriterFactoryUtils.getIndexWriter(getIndexFactory());
+		Pipeline pipeline = new Pipeline(Executors.newFixedThreadPool(extractionThreads + 1));
+		try {
+			for(int cpt=0; cpt<extractionThreads; cpt++) {
+				pipeline.start(new DocumentExtraction(pipeline));
+			}
+			pipeline.start(new FileDiscovery(pipeline, file, filesToIndex));
+
+			writeDocuments(writer, pipeline);
+			pipeline.checkFailure();
+
+			//Optimize the index
+			if( optimizeIndex ) {
+				writer.optimize();
+			}
+		} catch(IOException ex) {
+			logger.error("Error during indexing the directory : "+dirToParse, ex);
+			throw new LuceneIndexAccessException("Error during indexing the directory : "+dirToParse, ex);
+		} catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new LuceneIndexingException("Indexing of the directory "+dirToParse+" interrupted", ex);
+		} finally {
+			pipeline.shutdown();
+			IndexWriterFactoryUtils.releaseIndexWriter(getIndexFactory(), writer);
+		}
+	}
+
+	/**
+	 * This method adds the extracted documents to the index until every
+	 * extraction thread has finished or a stage has failed. It takes all
+	 * the available documents at once, up to batchSize.
+	 * 
+	 * @param writer the IndexWriter used to index files
+	 * @param pipeline the pipeline providing the extracted documents
+	 */
+	private void writeDocuments(LuceneIndexWriter writer, Pipeline pipeline) throws InterruptedException {
+		BlockingQueue documents = pipeline.getDocuments();
+		List batch = new ArrayList(batchSize);
+		int runningExtractions = extractionThreads;
+		while( runningExtractions>0 && !pipeline.isFailed() ) {
+			batch.add(documents.take());
+			documents.drainTo(batch, batchSize - 1);
+			for(Iterator i = batch.iterator(); i.hasNext() && !pipeline.isFailed();) {
+				Object element = i.next();
+				if( element==END_OF_DOCUMENTS ) {
+					runningExtractions--;
+				} else if( element!=STAGE_FAILED ) {
+					addDocument(writer, (ExtractedDocument)element);
+				}
+			}
+			batch.clear();
+		}
+	}
+
+	/**
+	 * This method adds an extracted document to the index and fires
+	 * the afterIndexingFile or onErrorIndexingFile event.
+	 * 
+	 * @param writer the IndexWriter used to index files
+	 * @param extractedDocument the document extracted from a file
+	 */
+	private void addDocument(LuceneIndexWriter writer, ExtractedDocument extractedDocument) {
+		File file = extractedDocument.getFile();
+		try {
+			if( extractedDocument.getDocument()!=null ) {
+				writer.addDocument(extractedDocument.getDocument());
+			}
+			fireListenersOnAfterFile(file);
+		} catch(IOException ex) {
+			logger.error("Error during indexing the file "+file.getName(), ex);
+			fireListenersOnErrorFile(file, ex);
+		}
+	}
+
+	/**
+	 * This method gets the document corresponding to a file if there is
+	 * a registred document handler which matches. It fires the same events
+	 * as the indexing of a file by the DefaultDirectoryIndexer, except the
+	 * afterIndexingFile one fired once the document is added to the index.
+	 * 
+	 * @param file the file to index
+	 * @return the extracted document or null if the file must not be indexed
+	 */
+	private ExtractedDocument extractDocument(File file) {
+		fireListenersOnBeforeFile(file);
+		DocumentHandler handler = doGetDocumentHandler(file);
+		if( handler==null ) {
+			fireListenersOnNoHandlerAvailable(file);
+			return null;
+		}
+
+		FileInputStream inputStream = null;
+		try {
+			inputStream = new FileInputStream(file);
+			Document document = doCallHandler(file, inputStream, handler);
+			if( document!=null && isIncremental() ) {
+				addFileState(document, file);
+			}
+			return new ExtractedDocument(file, readReaderFields(document));
+		} catch(IOException ex) {
+			fireListenersOnErrorFile(file, ex);
+		} catch(Exception ex) {
+			logger.error("Error during indexing the file "+file.getName(), ex);
+			fireListenersOnErrorFile(file, ex);
+		} finally {
+			IOUtils.closeInputStream(inputStream);
+		}
+		return null;
+	}
+
+	/**
+	 * This method replaces the fields of the document based on a Reader
+	 * with fields containing the text read, since the Reader can't be used
+	 * anymore once the file is closed. The other properties of the fields
+	 * are kept.
+	 * 
+	 * @param document the document returned by the handler
+	 * @return the document to add to the index
+	 */
+	protected Document readReaderFields(Document document) throws IOException {
+		if( document==null || !hasReaderFields(document) ) {
+			return document;
+		}
+
+		Document readDocument = new Document();
+		readDocument.setBoost(document.getBoost());
+		for(Enumeration e = document.fields(); e.hasMoreElements(); ) {
+			Field field = (Field)e.nextElement();
+			if( field.readerValue()!=null ) {
+				Field readField = new Field(field.name(), IOUtils.getContents(field.readerValue()),
+										Field.Store.NO, Field.Index.TOKENIZED, getTermVector(field));
+				readField.setBoost(field.getBoost());
+				readDocument.add(readField);
+			} else {
+				readDocument.add(field);
+			}
+		}
+		return readDocument;
+	}
+
+	private boolean hasReaderFields(Document document) {
+		for(Enumeration e = document.fields(); e.hasMoreElements(); ) {
+			Field field = (Field)e.nextElement();
+			if( field.readerValue()!=null ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Field.TermVector getTermVector(Field field) {
+		if( !field.isTermVectorStored() ) {
+			return Field.TermVector.NO;
+		} else if( field.isStorePositionWithTermVector() && field.isStoreOffsetWithTermVector() ) {
+			return Field.TermVector.WITH_POSITIONS_OFFSETS;
+		} else if( field.isStorePositionWithTermVector() ) {
+			return Field.TermVector.WITH_POSITIONS;
+		} else if( field.isStoreOffsetWithTermVector() ) {
+			return Field.TermVector.WITH_OFFSETS;
+		} else {
+			return Field.TermVector.YES;
+		}
+	}
+
+	/**
+	 * Discovery stage, walking the directory tree and queueing the files
+	 * in name order. It fires the directory events. In incremental mode,
+	 * only the changed and new files are queued.
+	 */
+	private class FileDiscovery implements Runnable {
+
+		private Pipeline pipeline;
+		private File baseFile;
+		private Set filesToIndex;
+		private BlockingQueue files;
+
+		public FileDiscovery(Pipeline pipeline, File baseFile, Set filesToIndex) {
+			this.pipeline = pipeline;
+			this.baseFile = baseFile;
+			this.filesToIndex = filesToIndex;
+			this.files = pipeline.getFiles();
+		}
+
+		public void run() {
+			try {
+				if( baseFile.isDirectory() ) {
+					discoverDirectory(baseFile);
+				} else {
+					discoverFile(baseFile);
+				}
+				for(int cpt=0; cpt<extractionThreads; cpt++) {
+					files.put(END_OF_FILES);
+				}
+			} catch(Throwable t) {
+				pipeline.stop(t);
+			}
+		}
+
+		private void discoverDirectory(File dirToParse) throws InterruptedException {
+			fireListenersOnBeforeDirectory(dirToParse);
+			File[] dirFiles = dirToParse.listFiles();
+			if( dirFiles==null ) {
+				return;
+			}
+
+			Arrays.sort(dirFiles, new Comparator() {
+				public int compare(Object o1, Object o2) {
+					File f1 = (File) o1;
+					File f2 = (File) o2;
+					return f1.getName().compareTo(f2.getName());
+				}
+			});
+
+			for(int cpt=0; cpt<dirFiles.length; cpt++) {
+				File currentFile = dirFiles[cpt];
+				if( currentFile.isDirectory() ) {
+					discoverDirectory(currentFile);
+				} else {
+					discoverFile(currentFile);
+				}
+			}
+			fireListenersOnAfterDirectory(dirToParse);
+		}
+
+		private void discoverFile(File file) throws InterruptedException {
+			if( filesToIndex==null || filesToIndex.contains(file) ) {
+				files.put(file);
+			}
+		}
+	}
+
+	/**
+	 * Extraction stage, getting the document of each queued file until
+	 * the end of the discovery.
+	 */
+	private class DocumentExtraction implements Runnable {
+
+		private Pipeline pipeline;
+		private BlockingQueue files;
+		private BlockingQueue documents;
+
+		public DocumentExtraction(Pipeline pipeline) {
+			this.pipeline = pipeline;
+			this.files = pipeline.getFiles();
+			this.documents = pipeline.getDocuments();
+		}
+
+		public void run() {
+			try {
+				while( !pipeline.isFailed() ) {
+					Object element = files.take();
+					if( element==END_OF_FILES ) {
+						break;
+					}
+					ExtractedDocument document = extractDocument((File)element);
+					if( document!=null ) {
+						documents.put(document);
+					}
+				}
+				documents.put(END_OF_DOCUMENTS);
+			} catch(Throwable t) {
+				pipeline.stop(t);
+			}
+		}
+	}
+
+	/**
+	 * Queues and threads of the stages of an indexing, and first failure
+	 * of a stage. A failure interrupts the threads of the other stages and
+	 * wakes up the calling thread adding the documents to the index.
+	 */
+	private class Pipeline {
+
+		private ExecutorService executor;
+		private BlockingQueue files;
+		private BlockingQueue documents;
+		private AtomicReference failure = new AtomicReference();
+
+		public Pipeline(ExecutorService executor) {
+			this.executor = executor;
+			this.files = new ArrayBlockingQueue(queueSize);
+			this.documents = new ArrayBlockingQueue(queueSize);
+		}
+
+		public BlockingQueue getFiles() {
+			return files;
+		}
+
+		public BlockingQueue getDocuments() {
+			return documents;
+		}
+
+		public void start(Runnable stage) {
+			executor.execute(stage);
+		}
+
+		public boolean isFailed() {
+			return failure.get()!=null;
+		}
+
+		/**
+		 * Stop the pipeline after the failure of a stage. Only the first
+		 * failure is kept, the next ones being generally the interruptions
+		 * of the other stages.
+		 */
+		public void stop(Throwable t) {
+			if( failure.compareAndSet(null, t) ) {
+				executor.shutdownNow();
+				//If the queue is full, the calling thread isn't blocked
+				//and will check the failure before its next take
+				documents.offer(STAGE_FAILED);
+			}
+		}
+
+		/**
+		 * Rethrow the failure of a stage if any.
+		 */
+		public void checkFailure() {
+			Throwable t = (Throwable)failure.get();
+			if( t instanceof RuntimeException ) {
+				throw (RuntimeException)t;
+			} else if( t instanceof Error ) {
+				throw (Error)t;
+			} else if( t!=null ) {
+				throw new LuceneIndexingException("Error during indexing the directory", (Exception)t);
+			}
+		}
+
+		public void shutdown() {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Document extracted from a file, waiting to be added to the index.
+	 */
+	private static class ExtractedDocument {
+
+		private File file;
+		private Document document;
+
+		public ExtractedDocument(File file, Document document) {
+			this.file = file;
+			this.document = document;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public Document getDocument() {
+			return document;
+		}
+	}
+}
@@ -23,19 +23,27 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
 import org.springmodules.lucene.index.LuceneIndexAccessException;
 import org.springmodules.lucene.index.LuceneIndexingException;
 import org.springmodules.lucene.index.document.handler.DocumentHandler;
 import org.springmodules.lucene.index.document.handler.DocumentHandlerManager;
 import org.springmodules.lucene.index.document.handler.file.AbstractInputStreamDocumentHandler;
 import org.springmodules.lucene.index.factory.IndexFactory;
+import org.springmodules.lucene.index.factory.IndexReaderFactoryUtils;
 import org.springmodules.lucene.index.factory.IndexWriterFactoryUtils;
+import org.springmodules.lucene.index.factory.LuceneIndexReader;
 import org.springmodules.lucene.index.factory.LuceneIndexWriter;
 import org.springmodules.lucene.index.object.AbstractDocumentManagerIndexer;
 import org.springmodules.lucene.util.IOUtils;
@@ -70,6 +78,12 @@ import org.springmodules.lucene.util.IOUtils;
  * and given to services as bean reference. Note: The IndexFactory should
  * always be configured as a bean in the application context, in the first case
  * given to the service directly, in the second case to the prepared template.
+ *
+ * <p>In incremental mode, the path and the state of each file (size and
+ * last modification date) are added to its document. The next indexings
+ * of the directory only index again the files changed since, and remove
+ * from the index the documents of the files deleted since. A directory must always be indexed with the same mode,
+ * otherwise its files are indexed twice.
  * 
  * @author Thierry Templier
  * @see org.springmodules.lucene.index.object.AbstractIndexer
@@ -85,7 +99,18 @@ import org.springmodules.lucene.util.IOUtils;
  */
 public class DefaultDirectoryIndexer extends AbstractDocumentManagerIndexer implements DirectoryIndexer {
 
+	/**
+	 * Field containing the absolute path of the file in incremental mode.
+	 */
+	public static final String PATH_FIELD = "file.path";
+
+	/**
+	 * Field containing the state of the file in incremental mode.
+	 */
+	public static final String STATE_FIELD = "file.state";
+
 	private List listeners;
+	private boolean incremental = false;
 
 	/**
 	 * Construct a new DirectoryIndexer, given an IndexFactory to obtain IndexWriter.
@@ -113,6 +138,22 @@ public class DefaultDirectoryIndexer extends AbstractDocumentManagerIndexer impl
 		this.listeners = new ArrayList();
 	}
 
+	/**
+	 * Return if only the files changed since the last indexing are indexed.
+	 */
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	/**
+	 * Set if only the files changed since the last indexing are indexed.
+	 * In this case, the documents of the changed and deleted files are
+	 * removed from the index before the indexing. Default is false.
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
 	/**
 	 * This method is used to add a listener to be notified during the
 	 * indexing execution.
@@ -252,11 +293,12 @@ public class DefaultDirectoryIndexer extends AbstractDocumentManagerIndexer impl
 	 * 
 	 * @param writer the IndexWriter used to index files
 	 * @param dirToParse the based directory to index
+	 * @param filesToIndex the files to index in incremental mode, null otherwise
 	 * @throws IOException if thrown by a Lucene method, to be auto-converted
 	 * to a LuceneManipulateIndexException
 	 * @see DocumentIndexingListener
 	 */
-	private void indexDirectory(LuceneIndexWriter writer, File dirToParse) throws IOException {
+	private void indexDirectory(LuceneIndexWriter writer, File dirToParse, Set filesToIndex) throws IOException {
 		fireListenersOnBeforeDirectory(dirToParse);
 		File[] files = dirToParse.listFiles();
 		if( files==null ) {
@@ -274,9 +316,9 @@ public class DefaultDirectoryIndexer extends AbstractDocumentManagerIndexer impl
 		for(int cpt=0; cpt<files.length; cpt++) {
 			File currentFile = files[cpt];
 			if (currentFile.isDirectory()) {
-				indexDirectory(writer, currentFile);
-			} else {
-				indexFile(writer, currentFile);
+				indexDirectory(writer, currentFile, filesToIndex);
+			} else if( filesToIndex==null || filesToIndex.contains(currentFile) ) {
+				indexFile(writer, currentFile, filesToIndex!=null);
 			}
 		}
 		fireListenersOnAfterDirectory(dirToParse);
@@ -294,7 +336,7 @@ public class DefaultDirectoryIndexer extends AbstractDocumentManagerIndexer impl
 	 * @throws IOException if thrown by a Lucene method, to be auto-converted
 	 * to a LuceneManipulateIndexException
 	 */
-	private Document doCallHandler(File file,FileInputStream inputStream, DocumentHandler handler) throws Exception {
+	protected Document doCallHandler(File file,FileInputStream inputStream, DocumentHandler handler) throws Exception {
 		Map description = new HashMap();
 		description.put(AbstractInputStreamDocumentHandler.FILENAME, file.getAbsolutePath());
 		return handler.getDocument(description, inputStream);
@@ -314,12 +356,13 @@ public class DefaultDirectoryIndexer extends AbstractDocumentManagerIndexer impl
 	 * 
 	 * @param writer the IndexWriter used to index files
 	 * @param file the file to index
+	 * @param addState if the state of the file must be added to its document
 	 * @throws IOException if thrown by a Lucene method, to be auto-converted
 	 * to a LuceneManipulateIndexException
 	 * @see #doCallHandler(File, FileInputStream, DocumentHandler)
 	 * @see DocumentIndexingListener
 	 */
-	private void indexFile(LuceneIndexWriter writer, File file) throws IOException {
+	private void indexFile(LuceneIndexWriter writer, File file, boolean addState) throws IOException {
 		fireListenersOnBeforeFile(file);
 		DocumentHandler handler = doGetDocumentHandler(file);
 		if( handler!=null ) {
@@ -328,6 +371,9 @@ public class DefaultDirectoryIndexer extends AbstractDocumentManagerIndexer impl
 				inputStream = new FileInputStream(file);
 				Document document = doCallHandler(file, inputStream, handler);
 				if( document!=null ) {
+					if( addState ) {
+						addFileState(document, file);
+					}
 					writer.addDocument(document);
 				}
 				fireListenersOnAfterFile(file);
@@ -344,6 +390,128 @@ public class DefaultDirectoryIndexer extends AbstractDocumentManagerIndexer impl
 		}
 	}
 
+	/**
+	 * This method adds the path and the state of a file to its document
+	 * in order to detect its changes during the next incremental indexings.
+	 * 
+	 * @param document the document of the file
+	 * @param file the indexed file
+	 * @see #setIncremental(boolean)
+	 */
+	protected void addFileState(Document document, File file) throws IOException {
+		IndexedFileState state = IndexedFileState.fromFile(file);
+		document.add(new Field(PATH_FIELD, state.getPath(), Field.Store.YES, Field.Index.UN_TOKENIZED));
+		document.add(new Field(STATE_FIELD, state.toText(), Field.Store.NO, Field.Index.UN_TOKENIZED));
+	}
+
+	/**
+	 * This method prepares the incremental indexing of a directory or a
+	 * file. It compares the files with the states stored in the index,
+	 * removes from the index the documents of the changed and deleted files
+	 * and returns the files to index, that is the changed and new ones.
+	 * 
+	 * <p>It uses an IndexReader since the documents can only be deleted
+	 * with it, and must then be called before getting the IndexWriter.
+	 * 
+	 * @param baseFile the base directory or file to index
+	 * @return the files to index
+	 * @throws IOException if thrown by a Lucene method
+	 * @see IndexReaderFactoryUtils#getIndexReader(IndexFactory)
+	 * @see IndexReaderFactoryUtils#releaseIndexReader(IndexFactory, LuceneIndexReader)
+	 */
+	protected Set prepareIncrementalIndexing(File baseFile) throws IOException {
+		LuceneIndexReader reader = IndexReaderFactoryUtils.getIndexReader(getIndexFactory());
+		try {
+			Map indexedStates = getIndexedFileStates(reader, baseFile.getAbsolutePath());
+			Set filesToIndex = new HashSet();
+			collectFilesToIndex(baseFile, indexedStates, filesToIndex);
+
+			//The remaining states are the ones of changed and deleted files
+			for(Iterator i = indexedStates.keySet().iterator(); i.hasNext();) {
+				String path = (String)i.next();
+				reader.deleteDocuments(new Term(PATH_FIELD, path));
+			}
+			if( logger.isDebugEnabled() ) {
+				logger.debug(filesToIndex.size()+" files to index and "+indexedStates.size()+
+						" outdated documents removed in "+baseFile.getAbsolutePath());
+			}
+			return filesToIndex;
+		} finally {
+			IndexReaderFactoryUtils.releaseIndexReader(getIndexFactory(), reader);
+		}
+	}
+
+	/**
+	 * This method reads from the index the states of the indexed files
+	 * contained in the base directory, or of the base file itself.
+	 * 
+	 * @param reader the IndexReader to use
+	 * @param basePath the path of the base directory or file
+	 * @return the states of the indexed files by path
+	 */
+	private Map getIndexedFileStates(LuceneIndexReader reader, String basePath) throws IOException {
+		Map states = new HashMap();
+		TermEnum terms = reader.terms(new Term(STATE_FIELD, basePath));
+		try {
+			do {
+				Term term = terms.term();
+				if( term==null || !STATE_FIELD.equals(term.field()) || !term.text().startsWith(basePath) ) {
+					break;
+				}
+				IndexedFileState state = IndexedFileState.parse(term.text());
+				if( state!=null && isInBaseFile(state.getPath(), basePath) && hasDocument(reader, term) ) {
+					states.put(state.getPath(), state);
+				}
+			} while( terms.next() );
+		} finally {
+			terms.close();
+		}
+		return states;
+	}
+
+	private boolean isInBaseFile(String path, String basePath) {
+		return path.equals(basePath) || path.startsWith(basePath + File.separator);
+	}
+
+	/**
+	 * The terms of deleted documents remain until the segments are merged.
+	 */
+	private boolean hasDocument(LuceneIndexReader reader, Term term) throws IOException {
+		TermDocs termDocs = reader.termDocs(term);
+		try {
+			return termDocs.next();
+		} finally {
+			termDocs.close();
+		}
+	}
+
+	/**
+	 * This method walks the directory and adds the files which are not
+	 * up to date in the index to the files to index. The states of the
+	 * up to date files are removed from the indexed states.
+	 * 
+	 * @param file the directory or file to check
+	 * @param indexedStates the states of the indexed files by path
+	 * @param filesToIndex the files to index
+	 */
+	private void collectFilesToIndex(File file, Map indexedStates, Set filesToIndex) throws IOException {
+		if( file.isDirectory() ) {
+			File[] files = file.listFiles();
+			if( files!=null ) {
+				for(int cpt=0; cpt<files.length; cpt++) {
+					collectFilesToIndex(files[cpt], indexedStates, filesToIndex);
+				}
+			}
+		} else {
+			IndexedFileState state = (IndexedFileState)indexedStates.get(file.getAbsolutePath());
+			if( state!=null && state.isUpToDate(file) ) {
+				indexedStates.remove(file.getAbsolutePath());
+			} else {
+				filesToIndex.add(file);
+			}
+		}
+	}
+
 	/**
 	 * This method is used to intercept the exception if the
 	 * handler corresponding to the file is not found.
@@ -353,7 +521,7 @@ public class DefaultDirectoryIndexer extends AbstractDocumentManagerIndexer impl
 	 * @param file the file to use
 	 * @return the corresponding document handler
 	 */
-	private DocumentHandler doGetDocumentHandler(File file) {
+	protected DocumentHandler doGetDocumentHandler(File file) {
 		DocumentHandler handler = null;
 		try {
 			handler = getDocumentHandler(file.getPath());
@@ -381,7 +549,7 @@ public class DefaultDirectoryIndexer extends AbstractDocumentManagerIndexer impl
 	 * @param dirToParse the directory to check
 	 * @return true if it exists, otherwise false
 	 */
-	private boolean checkBaseDirectory(String dirToParse) {
+	protected boolean checkBaseDirectory(String dirToParse) {
 		File dir = new File(dirToParse);
 		return dir.exists();
 	}
@@ -402,8 +570,9 @@ public class DefaultDirectoryIndexer extends AbstractDocumentManagerIndexer impl
 	 * @param dirToParse the base directory to index recursively
 	 * @param optimizeIndex if the index must be optimized after
 	 * the request indexing
-	 * @see #indexDirectory(IndexWriter, File)
-	 * @see #indexFile(IndexWriter, File)
+	 * @see #indexDirectory(LuceneIndexWriter, File, Set)
+	 * @see #indexFile(LuceneIndexWriter, File, boolean)
+	 * @see #prepareIncrementalIndexing(File)
 	 * @see IndexWriterFactoryUtils#getIndexWriter(IndexFactory)
 	 * @see IndexWriterFactoryUtils#releaseIndexWriter(IndexFactory, IndexWriter)
 	 */
@@ -412,14 +581,24 @@ public class DefaultDirectoryIndexer extends AbstractDocumentManagerIndexer impl
 			throw new LuceneIndexingException("The base directory doesn't exist!");
 		}
 
+		File file = new File(dirToParse);
+		Set filesToIndex = null;
+		if( incremental ) {
+			try {
+				filesToIndex = prepareIncrementalIndexing(file);
+			} catch(IOException ex) {
+				logger.error("Error during preparing the indexing of the directory : "+dirToParse, ex);
+				throw new LuceneIndexAccessException("Error during preparing the indexing of the directory : "+dirToParse, ex);
+			}
+		}
+
 		LuceneIndexWriter writer = IndexWriterFactoryUtils.getIndexWriter(getIndexFactory());
 		try {
-			File file = new File(dirToParse);
 			//Indexing the directory
 			if( file.isDirectory() ) {
-				indexDirectory(writer, new File(dirToParse));
-			} else {
-				indexFile(writer, file);
+				indexDirectory(writer, file, filesToIndex);
+			} else if( filesToIndex==null || filesToIndex.contains(file) ) {
+				indexFile(writer, file, incremental);
 			}
 			//Optimize the index
 			if( optimizeIndex ) {
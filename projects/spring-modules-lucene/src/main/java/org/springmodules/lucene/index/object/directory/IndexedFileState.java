@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.index.object.directory;
+
+import java.io.File;
+
+/**
+ * State of an indexed file, that is its path, size and last modification
+ * date, used by the incremental indexing to detect the files changed since
+ * their indexing.
+ * 
+ * <p>The state is kept in the index as a single term, so the states of
+ * the files of a directory can be read without loading the documents.
+ * The path comes first so the terms are sorted by path, and the other
+ * values are parsed from the end since the path can contain any character.
+ * 
+ * @author Thierry Templier
+ * @see DefaultDirectoryIndexer#setIncremental(boolean)
+ */
+class IndexedFileState {
+
+	private static final char SEPARATOR = '|';
+
+	private String path;
+	private long size;
+	private long lastModified;
+
+	public IndexedFileState(String path, long size, long lastModified) {
+		this.path = path;
+		this.size = size;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Create the current state of a file.
+	 * @param file the file
+	 */
+	public static IndexedFileState fromFile(File file) {
+		return new IndexedFileState(file.getAbsolutePath(), file.length(), file.lastModified());
+	}
+
+	/**
+	 * Parse the state of a file from the text of its term.
+	 * @param text the text of the term
+	 * @return the state or null if the text is not a valid state
+	 */
+	public static IndexedFileState parse(String text) {
+		int lastModifiedSeparator = text.lastIndexOf(SEPARATOR);
+		int sizeSeparator = lastModifiedSeparator>0 ? text.lastIndexOf(SEPARATOR, lastModifiedSeparator - 1) : -1;
+		if( sizeSeparator<0 ) {
+			return null;
+		}
+		try {
+			return new IndexedFileState(text.substring(0, sizeSeparator),
+					Long.parseLong(text.substring(sizeSeparator + 1, lastModifiedSeparator)),
+					Long.parseLong(text.substring(lastModifiedSeparator + 1)));
+		} catch(NumberFormatException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Check if a file is unchanged since this state, that is if its size
+	 * and last modification date are the same.
+	 * @param file the file to check
+	 */
+	public boolean isUpToDate(File file) {
+		return size==file.length() && lastModified==file.lastModified();
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Return the text of the term representing this state.
+	 */
+	public String toText() {
+		StringBuffer text = new StringBuffer(path);
+		text.append(SEPARATOR).append(size);
+		text.append(SEPARATOR).append(lastModified);
+		return text.toString();
+	}
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.search.factory;
+
+import java.io.IOException;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Searcher;
+import org.apache.lucene.store.Directory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springmodules.lucene.index.factory.IndexFactory;
+import org.springmodules.lucene.index.factory.LuceneIndexReader;
+import org.springmodules.lucene.index.factory.SimpleLuceneIndexReader;
+import org.springmodules.lucene.search.LuceneSearchException;
+
+import edu.emory.mathcs.backport.java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This is the factory to share a single searcher between all the
+ * searches made on a single Lucene index, and to reopen it when the
+ * index changes.
+ * 
+ * <p>Every searcher returned by {@link #getSearcher()} holds a reference
+ * on the current shared searcher, released when it is closed. When the
+ * factory is refreshed and the index has changed since the shared
+ * searcher was opened, a new searcher is opened and replaces the
+ * current one for the next searches. The previous searcher is closed
+ * when the searches still using it are finished. Searches thus never
+ * wait for an index to be opened.
+ * 
+ * <p>The factory can be refreshed explicitly with {@link #refresh()},
+ * for example after having committed changes to the index, or in the
+ * background every <code>refreshInterval</code> milliseconds. Checking
+ * if the index has changed only reads its version, so the interval can
+ * be short.
+ * 
+ * @author Thierry Templier
+ * @see org.springmodules.lucene.search.factory.SearcherFactory
+ * @see #setRefreshInterval(long)
+ */
+public class SharedSearcherFactory extends AbstractSingleSearcherFactory
+						implements RefreshableSearcherFactory, InitializingBean, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(SharedSearcherFactory.class);
+
+	private volatile SharedSearcher sharedSearcher;
+
+	private long refreshInterval;
+
+	private Timer refreshTimer;
+
+	/**
+	 * Construct a new SharedSearcherFactory for bean usage.
+	 * Note: The Directory or the IndexFactory has to be set before
+	 * using the instance.
+	 * @see AbstractSingleSearcherFactory#setDirectory(Directory)
+	 * @see AbstractSingleSearcherFactory#setIndexFactory(IndexFactory)
+	 */
+	public SharedSearcherFactory() {
+	}
+
+	/**
+	 * Construct a new SharedSearcherFactory, given an Directory to obtain
+	 * a Searcher.
+	 * @param directory Directory to obtain Searcher
+	 */
+	public SharedSearcherFactory(Directory directory) {
+		setDirectory(directory);
+	}
+
+	/**
+	 * Construct a new SharedSearcherFactory, given an IndexFactory to
+	 * obtain a Searcher.
+	 * @param indexFactory IndexFactory to obtain Searcher
+	 */
+	public SharedSearcherFactory(IndexFactory indexFactory) {
+		setIndexFactory(indexFactory);
+	}
+
+	/**
+	 * Return the number of milliseconds between two background checks
+	 * of the index.
+	 */
+	public long getRefreshInterval() {
+		return refreshInterval;
+	}
+
+	/**
+	 * Set the number of milliseconds between two background checks of
+	 * the index. A new searcher is opened in the background when the
+	 * index has changed. Zero, the default, disables background refreshes.
+	 */
+	public void setRefreshInterval(long refreshInterval) {
+		this.refreshInterval = refreshInterval;
+	}
+
+	/**
+	 * This method opens the shared searcher and starts the background
+	 * refreshes if a refresh interval is specified.
+	 * @see org.springframework.beans.factory.InitializingBean#afterPropertiesSet()
+	 */
+	public void afterPropertiesSet() throws Exception {
+		if( getDirectory()==null && getIndexFactory()==null ) {
+			throw new LuceneSearchException("Either a Directory or an IndexFactory must be specified.");
+		}
+		sharedSearcher = openSearcher();
+
+		if( refreshInterval>0 ) {
+			refreshTimer = new Timer(true);
+			refreshTimer.schedule(new TimerTask() {
+				public void run() {
+					try {
+						refresh();
+					} catch(RuntimeException ex) {
+						logger.warn("Unable to refresh the shared searcher", ex);
+					}
+				}
+			}, refreshInterval, refreshInterval);
+		}
+	}
+
+	/**
+	 * This method stops the background refreshes and releases the shared
+	 * searcher. It is closed once the searches still using it are finished.
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	public void destroy() throws Exception {
+		if( refreshTimer!=null ) {
+			refreshTimer.cancel();
+			refreshTimer = null;
+		}
+		SharedSearcher current;
+		synchronized(this) {
+			current = sharedSearcher;
+			sharedSearcher = null;
+		}
+		if( current!=null ) {
+			current.release();
+		}
+	}
+
+	/**
+	 * This method returns a searcher sharing the current searcher of the
+	 * index. The searcher must be closed once the search is finished.
+	 * 
+	 * @return a Searcher instance
+	 * @see org.springmodules.lucene.search.factory.SearcherFactory#getSearcher()
+	 */
+	public LuceneSearcher getSearcher() throws IOException {
+		for(;;) {
+			SharedSearcher current = sharedSearcher;
+			if( current==null ) {
+				throw new LuceneSearchException("The searcher factory is not initialized or has been destroyed.");
+			}
+			if( current.acquire() ) {
+				return new SharedLuceneSearcher(current);
+			}
+			// replaced and closed meanwhile: use the new one
+		}
+	}
+
+	/**
+	 * Open a new shared searcher if the index has changed since the
+	 * current one was opened. The current searcher keeps being used
+	 * until the new one is opened.
+	 * @see org.springmodules.lucene.search.factory.RefreshableSearcherFactory#refresh()
+	 */
+	public void refresh() {
+		try {
+			synchronized(this) {
+				SharedSearcher current = sharedSearcher;
+				if( current==null || current.isCurrent() ) {
+					return;
+				}
+				if( logger.isDebugEnabled() ) {
+					logger.debug("Index changed, reopening the shared searcher");
+				}
+				sharedSearcher = openSearcher();
+				current.release();
+			}
+		} catch(IOException ex) {
+			throw new LuceneSearchException("Unable to refresh the shared searcher", ex);
+		}
+	}
+
+	/**
+	 * Open a new searcher on the configured index (from a Directory
+	 * or an IndexFactory).
+	 */
+	private SharedSearcher openSearcher() throws IOException {
+		LuceneIndexReader indexReader;
+		if( getDirectory()!=null ) {
+			indexReader = new SimpleLuceneIndexReader(IndexReader.open(getDirectory()));
+		} else {
+			indexReader = getIndexFactory().getIndexReader();
+		}
+		return new SharedSearcher(indexReader);
+	}
+
+	/**
+	 * Reference counted searcher. The factory holds one reference as
+	 * long as the searcher is the current one, and every searcher
+	 * returned by the factory holds another one.
+	 */
+	private static class SharedSearcher {
+
+		private final AtomicInteger references = new AtomicInteger(1);
+
+		private final LuceneIndexReader indexReader;
+
+		private final Searcher searcher;
+
+		public SharedSearcher(LuceneIndexReader indexReader) {
+			this.indexReader = indexReader;
+			this.searcher = indexReader.createNativeSearcher();
+		}
+
+		public boolean acquire() {
+			for(;;) {
+				int current = references.get();
+				if( current<=0 ) {
+					return false;
+				}
+				if( references.compareAndSet(current, current + 1) ) {
+					return true;
+				}
+			}
+		}
+
+		public boolean isCurrent() throws IOException {
+			return indexReader.isCurrent();
+		}
+
+		public void release() throws IOException {
+			if( references.decrementAndGet()==0 ) {
+				try {
+					searcher.close();
+				} finally {
+					indexReader.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Searcher returned by the factory, releasing its reference on the
+	 * shared searcher when closed.
+	 */
+	private static class SharedLuceneSearcher extends SimpleLuceneSearcher {
+
+		private SharedSearcher sharedSearcher;
+
+		public SharedLuceneSearcher(SharedSearcher sharedSearcher) {
+			super(sharedSearcher.searcher);
+			this.sharedSearcher = sharedSearcher;
+		}
+
+		public synchronized void close() throws IOException {
+			if( sharedSearcher!=null ) {
+				SharedSearcher released = sharedSearcher;
+				sharedSearcher = null;
+				released.release();
+			}
+		}
+	}
+}
@@ -20,6 +20,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.Properties;
 
 import org.springframework.core.io.Resource;
@@ -68,4 +69,22 @@ public abstract class IOUtils {
 		}
 		return contents.toString();
 	}
+
+	/**
+	 * This method reads the whole content of the Reader parameter.
+	 * Contrary to getContents(InputStream), the line separators
+	 * are kept unchanged.
+	 * 
+	 * @param reader the Reader to read
+	 * @return the content read
+	 */
+	public static String getContents(Reader reader) throws IOException {
+		StringBuffer contents = new StringBuffer();
+		char[] buffer = new char[4096];
+		int read;
+		while( (read = reader.read(buffer))!=-1 ) {
+			contents.append(buffer, 0, read);
+		}
+		return contents.toString();
+	}
 }
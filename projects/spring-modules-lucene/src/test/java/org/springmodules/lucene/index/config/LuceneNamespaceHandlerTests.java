@@ -31,6 +31,7 @@ import org.springmodules.lucene.index.document.handler.file.ExtensionDocumentHan
 import org.springmodules.lucene.index.document.handler.file.ExtensionDocumentMatching;
 import org.springmodules.lucene.index.factory.SimpleIndexFactory;
 import org.springmodules.lucene.index.factory.concurrent.LockIndexFactory;
+import org.springmodules.lucene.index.factory.concurrent.ReadWriteIndexFactory;
 
 /**
  * @author Thierry Templier
@@ -162,6 +163,15 @@ public class LuceneNamespaceHandlerTests extends TestCase {
 		LockIndexFactory channelIndexFactory4 = (LockIndexFactory)context.getBean("fsDirectory4");
 		assertNotNull(channelIndexFactory4);
 		assertSame(indexFactory4, channelIndexFactory4.getTargetIndexFactory());
+
+		//Directory 5
+		SimpleIndexFactory indexFactory5 = (SimpleIndexFactory)context.getBean("target-fsDirectory5");
+		assertNotNull(indexFactory5);
+		assertSame(analyzer, indexFactory5.getAnalyzer());
+
+		ReadWriteIndexFactory readWriteIndexFactory5 = (ReadWriteIndexFactory)context.getBean("fsDirectory5");
+		assertNotNull(readWriteIndexFactory5);
+		assertSame(indexFactory5, readWriteIndexFactory5.getTargetIndexFactory());
 	}
 
 	private String getConfigDocumentHandlerLocation() {
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.index.factory.concurrent;
+
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.RAMDirectory;
+import org.springmodules.lucene.index.LuceneIndexAccessException;
+import org.springmodules.lucene.index.factory.LuceneIndexReader;
+import org.springmodules.lucene.index.factory.LuceneIndexWriter;
+import org.springmodules.lucene.index.factory.MockIndexFactory;
+import org.springmodules.lucene.index.factory.SimpleIndexFactory;
+
+/**
+ * @author Thierry Templier
+ */
+public class ReadWriteIndexFactoryTests extends TestCase {
+
+	private RAMDirectory directory;
+	private MockIndexFactory targetIndexFactory;
+	private ReadWriteIndexFactory indexFactory;
+
+	private Document createDocument(String id) {
+		Document document = new Document();
+		document.add(new Field("id", id, Field.Store.YES, Field.Index.UN_TOKENIZED));
+		document.add(new Field("field", "a sample", Field.Store.YES, Field.Index.TOKENIZED));
+		return document;
+	}
+
+	protected void setUp() throws Exception {
+		directory = new RAMDirectory();
+		IndexWriter writer = new IndexWriter(directory, new SimpleAnalyzer(), true);
+		writer.addDocument(createDocument("1"));
+		writer.addDocument(createDocument("2"));
+		writer.close();
+
+		SimpleIndexFactory simpleIndexFactory = new SimpleIndexFactory(directory, new SimpleAnalyzer());
+		targetIndexFactory = new MockIndexFactory();
+		targetIndexFactory.setTargetIndexFactory(simpleIndexFactory);
+
+		indexFactory = new ReadWriteIndexFactory();
+		indexFactory.setTargetIndexFactory(targetIndexFactory);
+		indexFactory.afterPropertiesSet();
+	}
+
+	protected void tearDown() throws Exception {
+		indexFactory.destroy();
+		directory.close();
+	}
+
+	public void testReadersShareTargetReader() throws Exception {
+		LuceneIndexReader indexReader1 = indexFactory.getIndexReader();
+		LuceneIndexReader indexReader2 = indexFactory.getIndexReader();
+		assertEquals(2, indexReader1.numDocs());
+		assertEquals(2, indexReader2.numDocs());
+		indexReader1.close();
+		indexReader2.close();
+
+		LuceneIndexReader indexReader3 = indexFactory.getIndexReader();
+		assertEquals(2, indexReader3.numDocs());
+		indexReader3.close();
+
+		assertEquals(1, targetIndexFactory.getCallNumberReader());
+	}
+
+	public void testReaderDoesNotBlockWriter() throws Exception {
+		LuceneIndexReader indexReader = indexFactory.getIndexReader();
+
+		final Exception[] failure = new Exception[1];
+		Thread writerThread = new Thread() {
+			public void run() {
+				try {
+					LuceneIndexWriter indexWriter = indexFactory.getIndexWriter();
+					indexWriter.addDocument(createDocument("3"));
+					indexWriter.close();
+				} catch(Exception ex) {
+					failure[0] = ex;
+				}
+			}
+		};
+		writerThread.start();
+		writerThread.join(5000);
+		assertFalse(writerThread.isAlive());
+		assertNull(failure[0]);
+
+		// the reader in use still sees the index as it was
+		assertEquals(2, indexReader.numDocs());
+		indexReader.close();
+
+		LuceneIndexReader newIndexReader = indexFactory.getIndexReader();
+		assertEquals(3, newIndexReader.numDocs());
+		newIndexReader.close();
+		assertEquals(2, targetIndexFactory.getCallNumberReader());
+	}
+
+	public void testWritersAreExclusive() throws Exception {
+		LuceneIndexWriter indexWriter = indexFactory.getIndexWriter();
+
+		final boolean[] acquired = new boolean[1];
+		final Exception[] failure = new Exception[1];
+		Thread writerThread = new Thread() {
+			public void run() {
+				try {
+					LuceneIndexWriter otherIndexWriter = indexFactory.getIndexWriter();
+					acquired[0] = true;
+					otherIndexWriter.close();
+				} catch(Exception ex) {
+					failure[0] = ex;
+				}
+			}
+		};
+		writerThread.start();
+		writerThread.join(200);
+		assertFalse(acquired[0]);
+
+		indexWriter.close();
+		writerThread.join(5000);
+		assertTrue(acquired[0]);
+		assertNull(failure[0]);
+	}
+
+	public void testReaderOpenedDuringModificationIsReopened() throws Exception {
+		SimpleIndexFactory modifyingIndexFactory = new SimpleIndexFactory(directory, new SimpleAnalyzer()) {
+			private boolean modified;
+
+			public LuceneIndexReader getIndexReader() {
+				LuceneIndexReader indexReader = super.getIndexReader();
+				if( !modified ) {
+					// a writer commits while the shared reader is being opened
+					modified = true;
+					try {
+						IndexWriter writer = new IndexWriter(directory, new SimpleAnalyzer(), false);
+						writer.addDocument(createDocument("3"));
+						writer.close();
+					} catch(IOException ex) {
+						throw new LuceneIndexAccessException("Unable to modify the index", ex);
+					}
+					indexFactory.indexModified();
+				}
+				return indexReader;
+			}
+		};
+		indexFactory.setTargetIndexFactory(modifyingIndexFactory);
+
+		LuceneIndexReader indexReader = indexFactory.getIndexReader();
+		assertEquals(2, indexReader.numDocs());
+		indexReader.close();
+
+		LuceneIndexReader newIndexReader = indexFactory.getIndexReader();
+		assertEquals(3, newIndexReader.numDocs());
+		newIndexReader.close();
+	}
+
+	public void testDeleteDocumentsThroughReader() throws Exception {
+		LuceneIndexReader searchReader = indexFactory.getIndexReader();
+
+		LuceneIndexReader indexReader = indexFactory.getIndexReader();
+		assertEquals(1, indexReader.deleteDocuments(new Term("id", "1")));
+		assertEquals(1, indexReader.numDocs());
+		indexReader.close();
+
+		assertEquals(2, searchReader.numDocs());
+		searchReader.close();
+
+		LuceneIndexReader newIndexReader = indexFactory.getIndexReader();
+		assertEquals(1, newIndexReader.numDocs());
+		newIndexReader.close();
+	}
+
+	public void testDeleteDocumentOfModifiedIndex() throws Exception {
+		LuceneIndexReader indexReader = indexFactory.getIndexReader();
+		assertEquals("1", indexReader.document(0).get("id"));
+
+		// the first document is removed: the numbers of the others change
+		LuceneIndexReader otherIndexReader = indexFactory.getIndexReader();
+		otherIndexReader.deleteDocuments(new Term("id", "1"));
+		otherIndexReader.close();
+		LuceneIndexWriter indexWriter = indexFactory.getIndexWriter();
+		indexWriter.optimize();
+		indexWriter.close();
+
+		try {
+			indexReader.deleteDocument(0);
+			fail();
+		} catch(LuceneIndexAccessException ex) {
+		}
+		indexReader.close();
+
+		LuceneIndexReader newIndexReader = indexFactory.getIndexReader();
+		assertEquals(1, newIndexReader.numDocs());
+		assertEquals("2", newIndexReader.document(0).get("id"));
+		newIndexReader.close();
+	}
+
+	public void testClosedReader() throws Exception {
+		LuceneIndexReader indexReader = indexFactory.getIndexReader();
+		indexReader.close();
+		indexReader.close();
+
+		try {
+			indexReader.numDocs();
+			fail();
+		} catch(LuceneIndexAccessException ex) {
+		}
+
+		LuceneIndexReader otherIndexReader = indexFactory.getIndexReader();
+		assertEquals(2, otherIndexReader.numDocs());
+		otherIndexReader.close();
+	}
+}
@@ -18,22 +18,31 @@ package org.springmodules.lucene.index.object.database;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import junit.framework.TestCase;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.SimpleAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.RAMDirectory;
 import org.easymock.AbstractMatcher;
 import org.easymock.MockControl;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.BadSqlGrammarException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springmodules.lucene.index.LuceneIndexAccessException;
 import org.springmodules.lucene.index.document.handler.database.SqlDocumentHandler;
 import org.springmodules.lucene.index.document.handler.database.SqlRequest;
 import org.springmodules.lucene.index.factory.IndexFactory;
 import org.springmodules.lucene.index.factory.LuceneIndexWriter;
+import org.springmodules.lucene.index.factory.SimpleIndexFactory;
 
 /**
  * @author Thierry Templier
@@ -413,4 +422,158 @@ public class DatabaseIndexerTests extends TestCase {
 		listenerControl.verify();
 	}
 
+	private void insertRows(int count) {
+		for(int cpt=2; cpt<count+2; cpt++) {
+			this.template.update("insert into TEST (TEST_ID, TEST_NAME) values(?, ?)",
+					new Object[] { new Integer(cpt), "test " + cpt });
+		}
+	}
+
+	private RAMDirectory createDirectory() throws Exception {
+		RAMDirectory directory = new RAMDirectory();
+		IndexWriter writer = new IndexWriter(directory, new SimpleAnalyzer(), true);
+		writer.close();
+		return directory;
+	}
+
+	private SqlDocumentHandler createNameDocumentHandler() {
+		return new SqlDocumentHandler() {
+			public Document getDocument(SqlRequest request, ResultSet rs) throws SQLException {
+				Document document = new Document();
+				document.add(new Field("name", rs.getString("TEST_NAME"), Field.Store.YES, Field.Index.TOKENIZED));
+				return document;
+			}
+		};
+	}
+
+	final public void testIndexDataSourceWithStreaming() throws Exception {
+		insertRows(24);
+		RAMDirectory directory = createDirectory();
+
+		DefaultDatabaseIndexer indexer = new DefaultDatabaseIndexer(new SimpleIndexFactory(directory, new SimpleAnalyzer()));
+		indexer.setStreaming(true);
+		indexer.setFetchSize(5);
+		indexer.setBatchSize(10);
+		SqlRequest request = new SqlRequest("select * from TEST where TEST_ID>?",
+				new Object[] { new Integer(0) }, new int[] { java.sql.Types.INTEGER });
+		indexer.registerDocumentHandler(request, createNameDocumentHandler());
+
+		final List progress = new ArrayList();
+		final boolean[] completed = new boolean[] { false };
+		indexer.addListener(new DatabaseIndexingListenerAdapter() {
+			public void onProgressIndexingRequest(SqlRequest request, long indexedRows) {
+				progress.add(new Long(indexedRows));
+			}
+
+			public void afterIndexingRequest(SqlRequest request) {
+				completed[0] = true;
+			}
+		});
+
+		indexer.index(this.dataSource);
+
+		assertTrue(completed[0]);
+		assertEquals(3, progress.size());
+		assertEquals(new Long(10), progress.get(0));
+		assertEquals(new Long(20), progress.get(1));
+		assertEquals(new Long(25), progress.get(2));
+
+		IndexReader reader = IndexReader.open(directory);
+		assertEquals(25, reader.numDocs());
+		reader.close();
+	}
+
+	final public void testIndexDataSourceWithStreamingAndSqlError() throws Exception {
+		RAMDirectory directory = createDirectory();
+
+		DefaultDatabaseIndexer indexer = new DefaultDatabaseIndexer(new SimpleIndexFactory(directory, new SimpleAnalyzer()));
+		indexer.setStreaming(true);
+		indexer.registerDocumentHandler(new SqlRequest("select * from test1"), createNameDocumentHandler());
+
+		final List errors = new ArrayList();
+		indexer.addListener(new DatabaseIndexingListenerAdapter() {
+			public void onErrorIndexingRequest(SqlRequest request, Exception ex) {
+				errors.add(ex);
+			}
+		});
+
+		indexer.index(this.dataSource);
+
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0) instanceof DataAccessException);
+	}
+
+	final public void testIndexDataSourceWithConcurrentRequests() throws Exception {
+		insertRows(9);
+		RAMDirectory directory = createDirectory();
+
+		DefaultDatabaseIndexer indexer = new DefaultDatabaseIndexer(new SimpleIndexFactory(directory, new SimpleAnalyzer()));
+		indexer.setStreaming(true);
+		indexer.setBatchSize(3);
+		indexer.setConcurrentRequests(3);
+		indexer.registerDocumentHandler(new SqlRequest("select * from TEST where TEST_ID<=5"), createNameDocumentHandler());
+		indexer.registerDocumentHandler(new SqlRequest("select * from TEST where TEST_ID>5"), createNameDocumentHandler());
+		indexer.registerDocumentHandler(new SqlRequest("select * from TEST"), createNameDocumentHandler());
+
+		final List completed = Collections.synchronizedList(new ArrayList());
+		indexer.addListener(new DatabaseIndexingListenerAdapter() {
+			public void afterIndexingRequest(SqlRequest request) {
+				completed.add(request);
+			}
+		});
+
+		indexer.index(this.dataSource);
+
+		assertEquals(3, completed.size());
+		IndexReader reader = IndexReader.open(directory);
+		assertEquals(20, reader.numDocs());
+		reader.close();
+	}
+
+	final public void testIndexDataSourceWithConcurrentRequestsCompletesOtherRequestsOnFailure() throws Exception {
+		insertRows(9);
+		RAMDirectory directory = createDirectory();
+
+		DefaultDatabaseIndexer indexer = new DefaultDatabaseIndexer(new SimpleIndexFactory(directory, new SimpleAnalyzer()));
+		indexer.setStreaming(true);
+		indexer.setBatchSize(3);
+		indexer.setConcurrentRequests(3);
+		final SqlDocumentHandler nameHandler = createNameDocumentHandler();
+		SqlDocumentHandler slowHandler = new SqlDocumentHandler() {
+			public Document getDocument(SqlRequest request, ResultSet rs) throws SQLException {
+				try {
+					Thread.sleep(20);
+				} catch(InterruptedException ex) {
+					throw new SQLException("Interrupted");
+				}
+				return nameHandler.getDocument(request, rs);
+			}
+		};
+		indexer.registerDocumentHandler(new SqlRequest("select * from TEST where TEST_ID<=5"), slowHandler);
+		indexer.registerDocumentHandler(new SqlRequest("select * from TEST where TEST_ID>5"), slowHandler);
+		indexer.registerDocumentHandler(new SqlRequest("select * from TEST"), new SqlDocumentHandler() {
+			public Document getDocument(SqlRequest request, ResultSet rs) throws SQLException {
+				throw new IllegalStateException("Unexpected row");
+			}
+		});
+
+		final List completed = Collections.synchronizedList(new ArrayList());
+		indexer.addListener(new DatabaseIndexingListenerAdapter() {
+			public void afterIndexingRequest(SqlRequest request) {
+				completed.add(request);
+			}
+		});
+
+		try {
+			indexer.index(this.dataSource);
+			fail();
+		} catch(LuceneIndexAccessException ex) {
+		}
+
+		assertEquals(2, completed.size());
+		IndexReader reader = IndexReader.open(directory);
+		assertEquals(10, reader.numDocs());
+		reader.close();
+	}
+
 }
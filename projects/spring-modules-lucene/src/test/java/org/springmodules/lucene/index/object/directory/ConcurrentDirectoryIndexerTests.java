@@ -0,0 +1,330 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.index.object.directory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Hits;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.springmodules.lucene.index.LuceneIndexingException;
+import org.springmodules.lucene.index.document.handler.AbstractDocumentHandler;
+import org.springmodules.lucene.index.document.handler.DocumentHandler;
+import org.springmodules.lucene.index.document.handler.file.ExtensionDocumentMatching;
+import org.springmodules.lucene.index.document.handler.file.TextDocumentHandler;
+import org.springmodules.lucene.index.factory.SimpleIndexFactory;
+
+/**
+ * @author Thierry Templier
+ */
+public class ConcurrentDirectoryIndexerTests extends TestCase {
+
+	private RAMDirectory directory;
+	private File baseDirectory;
+
+	protected void setUp() throws Exception {
+		this.directory = new RAMDirectory();
+		IndexWriter writer = new IndexWriter(directory, new SimpleAnalyzer(), true);
+		writer.close();
+
+		//Creation of 3 directories of 20 text files and 2 other files
+		this.baseDirectory = File.createTempFile("concurrent", "indexer");
+		this.baseDirectory.delete();
+		this.baseDirectory.mkdir();
+		for(int dir=0; dir<3; dir++) {
+			File subDirectory = new File(baseDirectory, "dir" + dir);
+			subDirectory.mkdir();
+			for(int cpt=0; cpt<20; cpt++) {
+				writeFile(new File(subDirectory, "file" + cpt + ".txt"), "a sample word" + dir + "x" + cpt);
+			}
+			writeFile(new File(subDirectory, "file.foo"), "not indexed");
+			writeFile(new File(subDirectory, "file.err"), "in error");
+		}
+	}
+
+	protected void tearDown() throws Exception {
+		delete(baseDirectory);
+		this.directory = null;
+	}
+
+	private void writeFile(File file, String contents) throws IOException {
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(contents);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private void delete(File file) {
+		File[] files = file.listFiles();
+		if( files!=null ) {
+			for(int cpt=0; cpt<files.length; cpt++) {
+				delete(files[cpt]);
+			}
+		}
+		file.delete();
+	}
+
+	private ConcurrentDirectoryIndexer createIndexer() {
+		ConcurrentDirectoryIndexer indexer = new ConcurrentDirectoryIndexer(
+				new SimpleIndexFactory(directory, new SimpleAnalyzer()));
+		indexer.setExtractionThreads(4);
+		indexer.setQueueSize(2);
+		indexer.setBatchSize(3);
+		indexer.registerDocumentHandler(new ExtensionDocumentMatching("err"), new AbstractDocumentHandler() {
+			public boolean supports(Class clazz) {
+				return true;
+			}
+
+			protected Document doGetDocument(Map description, Object object) throws Exception {
+				throw new Exception("Extraction error");
+			}
+		});
+		return indexer;
+	}
+
+	final public void testIndex() throws Exception {
+		ConcurrentDirectoryIndexer indexer = createIndexer();
+		CountingListener listener = new CountingListener();
+		indexer.addListener(listener);
+
+		indexer.index(baseDirectory.getAbsolutePath(), true);
+
+		assertEquals(4, listener.beforeDirectories);
+		assertEquals(4, listener.afterDirectories);
+		assertEquals(66, listener.beforeFiles);
+		assertEquals(60, listener.afterFiles);
+		assertEquals(3, listener.errorFiles);
+		assertEquals(3, listener.notAvailableHandlers);
+
+		IndexReader reader = IndexReader.open(directory);
+		assertEquals(60, reader.numDocs());
+		reader.close();
+
+		//The contents read from the files are indexed
+		IndexSearcher searcher = new IndexSearcher(directory);
+		Hits hits = searcher.search(new TermQuery(new Term("contents", "sample")));
+		assertEquals(60, hits.length());
+		searcher.close();
+	}
+
+	final public void testIndexFile() throws Exception {
+		ConcurrentDirectoryIndexer indexer = createIndexer();
+		indexer.index(new File(baseDirectory, "dir0/file1.txt").getAbsolutePath());
+
+		IndexReader reader = IndexReader.open(directory);
+		assertEquals(1, reader.numDocs());
+		reader.close();
+	}
+
+	final public void testIndexIfDirectoryNotExist() throws Exception {
+		ConcurrentDirectoryIndexer indexer = createIndexer();
+		try {
+			indexer.index(new File(baseDirectory, "test").getAbsolutePath());
+			fail();
+		} catch(LuceneIndexingException ex) {
+		}
+	}
+
+	final public void testIndexWithListenerError() throws Exception {
+		ConcurrentDirectoryIndexer indexer = createIndexer();
+		final IllegalStateException error = new IllegalStateException();
+		indexer.addListener(new FileDocumentIndexingListenerAdapter() {
+			public void beforeIndexingFile(File file) {
+				if( file.getName().equals("file5.txt") ) {
+					throw error;
+				}
+			}
+		});
+
+		try {
+			indexer.index(baseDirectory.getAbsolutePath());
+			fail();
+		} catch(IllegalStateException ex) {
+			assertSame(error, ex);
+		}
+	}
+
+	final public void testIndexWithListenerErrorStopsOtherStages() throws Exception {
+		ConcurrentDirectoryIndexer indexer = createIndexer();
+		CountingListener listener = new CountingListener();
+		indexer.addListener(listener);
+		indexer.addListener(new FileDocumentIndexingListenerAdapter() {
+			public void beforeIndexingFile(File file) {
+				if( file.getName().equals("file5.txt") ) {
+					throw new IllegalStateException();
+				}
+			}
+		});
+
+		try {
+			indexer.index(baseDirectory.getAbsolutePath());
+			fail();
+		} catch(IllegalStateException ex) {
+		}
+
+		//The first file5.txt is the 18th file of dir0, the pipeline
+		//must stop before handling the files of the other directories
+		assertTrue(listener.beforeFiles<30);
+	}
+
+	final public void testIndexWithSlowExtractionThrottlesDiscovery() throws Exception {
+		//Creation of 20 directories of one file, the discovery of
+		//each file being observed with the directory events
+		delete(baseDirectory);
+		baseDirectory.mkdir();
+		for(int dir=0; dir<20; dir++) {
+			File subDirectory = new File(baseDirectory, "dir" + (dir<10 ? "0" : "") + dir);
+			subDirectory.mkdir();
+			writeFile(new File(subDirectory, "file.slow"), "a sample word");
+		}
+
+		ConcurrentDirectoryIndexer indexer = new ConcurrentDirectoryIndexer(
+				new SimpleIndexFactory(directory, new SimpleAnalyzer()));
+		indexer.setExtractionThreads(1);
+		indexer.setQueueSize(1);
+		final CountingListener listener = new CountingListener();
+		indexer.addListener(listener);
+		final int[] discoveredDirectories = new int[] { -1 };
+		indexer.registerDocumentHandler(new ExtensionDocumentMatching("slow"),
+				new SlowDocumentHandler(new TextDocumentHandler()) {
+			protected void onFirstDocument() {
+				synchronized(listener) {
+					discoveredDirectories[0] = listener.beforeDirectories;
+				}
+			}
+		});
+
+		indexer.index(baseDirectory.getAbsolutePath());
+
+		//The base directory, the directory of the file being extracted, the
+		//one of the queued file and the one whose file is waiting to be queued
+		assertTrue(discoveredDirectories[0]>0);
+		assertTrue(discoveredDirectories[0]<=4);
+		assertEquals(20, listener.afterFiles);
+	}
+
+	final public void testIndexSpreadsExtractionOverSeveralThreads() throws Exception {
+		for(int cpt=0; cpt<8; cpt++) {
+			writeFile(new File(baseDirectory, "file" + cpt + ".slow"), "a sample word");
+		}
+
+		ConcurrentDirectoryIndexer indexer = createIndexer();
+		final Set extractionThreads = Collections.synchronizedSet(new HashSet());
+		indexer.registerDocumentHandler(new ExtensionDocumentMatching("slow"),
+				new SlowDocumentHandler(new TextDocumentHandler()) {
+			protected void onDocument() {
+				extractionThreads.add(Thread.currentThread());
+			}
+		});
+
+		indexer.index(baseDirectory.getAbsolutePath());
+
+		assertTrue(extractionThreads.size()>1);
+		assertFalse(extractionThreads.contains(Thread.currentThread()));
+		IndexReader reader = IndexReader.open(directory);
+		assertEquals(68, reader.numDocs());
+		reader.close();
+	}
+
+	/**
+	 * Document handler taking some time to extract each document
+	 * and delegating the extraction to another handler. The other
+	 * stages have this time to go on after the first extraction.
+	 */
+	private static class SlowDocumentHandler implements DocumentHandler {
+
+		private DocumentHandler target;
+		private boolean first = true;
+
+		public SlowDocumentHandler(DocumentHandler target) {
+			this.target = target;
+		}
+
+		public boolean supports(Class clazz) {
+			return target.supports(clazz);
+		}
+
+		public Document getDocument(Map description, Object object) throws Exception {
+			onDocument();
+			Thread.sleep(50);
+			synchronized(this) {
+				if( first ) {
+					first = false;
+					onFirstDocument();
+				}
+			}
+			return target.getDocument(description, object);
+		}
+
+		protected void onFirstDocument() {
+		}
+
+		protected void onDocument() {
+		}
+	}
+
+	private static class CountingListener implements FileDocumentIndexingListener {
+
+		private int beforeDirectories;
+		private int afterDirectories;
+		private int beforeFiles;
+		private int afterFiles;
+		private int errorFiles;
+		private int notAvailableHandlers;
+
+		public synchronized void beforeIndexingDirectory(File file) {
+			beforeDirectories++;
+		}
+
+		public synchronized void afterIndexingDirectory(File file) {
+			afterDirectories++;
+		}
+
+		public synchronized void beforeIndexingFile(File file) {
+			beforeFiles++;
+		}
+
+		public synchronized void afterIndexingFile(File file) {
+			afterFiles++;
+		}
+
+		public synchronized void onErrorIndexingFile(File file, Exception ex) {
+			errorFiles++;
+		}
+
+		public synchronized void onNotAvailableHandler(File file) {
+			notAvailableHandlers++;
+		}
+	}
+
+}
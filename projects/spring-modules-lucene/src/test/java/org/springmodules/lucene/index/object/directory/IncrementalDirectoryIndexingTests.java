@@ -0,0 +1,216 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.index.object.directory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Hits;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.springmodules.lucene.index.factory.SimpleIndexFactory;
+
+/**
+ * @author Thierry Templier
+ */
+public class IncrementalDirectoryIndexingTests extends TestCase {
+
+	private RAMDirectory directory;
+	private File baseDirectory;
+	private List indexedFiles;
+
+	protected void setUp() throws Exception {
+		this.directory = new RAMDirectory();
+		IndexWriter writer = new IndexWriter(directory, new SimpleAnalyzer(), true);
+		writer.close();
+
+		this.baseDirectory = File.createTempFile("incremental", "indexer");
+		this.baseDirectory.delete();
+		this.baseDirectory.mkdir();
+		new File(baseDirectory, "sub").mkdir();
+		writeFile("file1.txt", "first sample");
+		writeFile("file2.txt", "second sample");
+		writeFile("sub/file3.txt", "third sample");
+
+		this.indexedFiles = Collections.synchronizedList(new ArrayList());
+	}
+
+	protected void tearDown() throws Exception {
+		delete(baseDirectory);
+		this.directory = null;
+	}
+
+	private File writeFile(String name, String contents) throws IOException {
+		File file = new File(baseDirectory, name);
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(contents);
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	private void delete(File file) {
+		File[] files = file.listFiles();
+		if( files!=null ) {
+			for(int cpt=0; cpt<files.length; cpt++) {
+				delete(files[cpt]);
+			}
+		}
+		file.delete();
+	}
+
+	private DefaultDirectoryIndexer createIndexer(DefaultDirectoryIndexer indexer) {
+		indexer.setIncremental(true);
+		indexer.addListener(new FileDocumentIndexingListenerAdapter() {
+			public void afterIndexingFile(File file) {
+				indexedFiles.add(file.getName());
+			}
+		});
+		return indexer;
+	}
+
+	private DefaultDirectoryIndexer createIndexer() {
+		return createIndexer(new DefaultDirectoryIndexer(new SimpleIndexFactory(directory, new SimpleAnalyzer())));
+	}
+
+	private void index(DefaultDirectoryIndexer indexer) {
+		indexedFiles.clear();
+		indexer.index(baseDirectory.getAbsolutePath());
+	}
+
+	private int getNumDocs() throws IOException {
+		IndexReader reader = IndexReader.open(directory);
+		try {
+			return reader.numDocs();
+		} finally {
+			reader.close();
+		}
+	}
+
+	private int search(String word) throws IOException {
+		IndexSearcher searcher = new IndexSearcher(directory);
+		try {
+			Hits hits = searcher.search(new TermQuery(new Term("contents", word)));
+			return hits.length();
+		} finally {
+			searcher.close();
+		}
+	}
+
+	final public void testIndexUnchangedDirectory() throws Exception {
+		DefaultDirectoryIndexer indexer = createIndexer();
+		index(indexer);
+		assertEquals(3, indexedFiles.size());
+		assertEquals(3, getNumDocs());
+
+		index(indexer);
+		assertEquals(0, indexedFiles.size());
+		assertEquals(3, getNumDocs());
+	}
+
+	final public void testIndexChangedDirectory() throws Exception {
+		DefaultDirectoryIndexer indexer = createIndexer();
+		index(indexer);
+
+		File file1 = writeFile("file1.txt", "first modified sample");
+		file1.setLastModified(file1.lastModified() + 10000);
+		new File(baseDirectory, "sub/file3.txt").delete();
+		writeFile("sub/file4.txt", "fourth sample");
+
+		index(indexer);
+		assertEquals(2, indexedFiles.size());
+		assertTrue(indexedFiles.contains("file1.txt"));
+		assertTrue(indexedFiles.contains("file4.txt"));
+		assertEquals(3, getNumDocs());
+		assertEquals(1, search("modified"));
+		assertEquals(0, search("third"));
+		assertEquals(1, search("fourth"));
+		assertEquals(3, search("sample"));
+	}
+
+	final public void testIndexSubDirectory() throws Exception {
+		DefaultDirectoryIndexer indexer = createIndexer();
+		index(indexer);
+
+		//The files outside the sub directory are kept
+		new File(baseDirectory, "sub/file3.txt").delete();
+		indexer.index(new File(baseDirectory, "sub").getAbsolutePath());
+		assertEquals(2, getNumDocs());
+		assertEquals(1, search("first"));
+	}
+
+	final public void testIndexTouchedFile() throws Exception {
+		DefaultDirectoryIndexer indexer = createIndexer();
+		index(indexer);
+
+		File file2 = new File(baseDirectory, "file2.txt");
+		file2.setLastModified(file2.lastModified() + 10000);
+		File file1 = writeFile("file1.txt", "first sampla");
+		file1.setLastModified(file1.lastModified() + 10000);
+
+		//The touched file is indexed again to store its new date
+		index(indexer);
+		assertEquals(2, indexedFiles.size());
+		assertTrue(indexedFiles.contains("file1.txt"));
+		assertTrue(indexedFiles.contains("file2.txt"));
+		assertEquals(3, getNumDocs());
+
+		index(indexer);
+		assertEquals(0, indexedFiles.size());
+		assertEquals(3, getNumDocs());
+	}
+
+	final public void testIndexWithConcurrentIndexer() throws Exception {
+		ConcurrentDirectoryIndexer concurrentIndexer = new ConcurrentDirectoryIndexer(
+				new SimpleIndexFactory(directory, new SimpleAnalyzer()));
+		concurrentIndexer.setExtractionThreads(2);
+		DefaultDirectoryIndexer indexer = createIndexer(concurrentIndexer);
+		index(indexer);
+		assertEquals(3, indexedFiles.size());
+
+		writeFile("file5.txt", "fifth sample");
+		index(indexer);
+		assertEquals(1, indexedFiles.size());
+		assertEquals(4, getNumDocs());
+		assertEquals(4, search("sample"));
+	}
+
+	final public void testParseFileState() throws Exception {
+		IndexedFileState state = new IndexedFileState("/dir|1/file|2.txt", 12, 34);
+		IndexedFileState parsedState = IndexedFileState.parse(state.toText());
+		assertEquals("/dir|1/file|2.txt", parsedState.getPath());
+		assertEquals(12, parsedState.getSize());
+		assertEquals(34, parsedState.getLastModified());
+
+		assertNull(IndexedFileState.parse("/file.txt"));
+		assertNull(IndexedFileState.parse("/file.txt|a|b"));
+	}
+
+}
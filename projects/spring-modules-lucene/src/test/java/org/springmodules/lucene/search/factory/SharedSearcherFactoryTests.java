@@ -0,0 +1,154 @@
+/*
+ * Copyright 2002-2007 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springmodules.lucene.search.factory;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.springmodules.lucene.AbstractLuceneTestCase;
+import org.springmodules.lucene.search.LuceneSearchException;
+
+/**
+ * @author Thierry Templier
+ */
+public class SharedSearcherFactoryTests extends AbstractLuceneTestCase {
+
+	private void addDocument() throws Exception {
+		IndexWriter writer = new IndexWriter(directory, new SimpleAnalyzer(), false);
+		try {
+			Document document = new Document();
+			document.add(new Field("id", "4", Field.Store.YES, Field.Index.UN_TOKENIZED));
+			document.add(new Field("field", "a new sample", Field.Store.YES, Field.Index.TOKENIZED));
+			writer.addDocument(document);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private int search(LuceneSearcher searcher) throws Exception {
+		return searcher.search(new TermQuery(new Term("field", "sample"))).length();
+	}
+
+	final public void testWithoutConfiguration() throws Exception {
+		SharedSearcherFactory searcherFactory = new SharedSearcherFactory();
+		try {
+			searcherFactory.afterPropertiesSet();
+			fail();
+		} catch(LuceneSearchException ex) {}
+	}
+
+	final public void testGetSearcherBeforeInitialization() throws Exception {
+		SharedSearcherFactory searcherFactory = new SharedSearcherFactory(directory);
+		try {
+			searcherFactory.getSearcher();
+			fail();
+		} catch(LuceneSearchException ex) {}
+	}
+
+	final public void testGetSearcherWithIndexFactory() throws Exception {
+		SharedSearcherFactory searcherFactory = new SharedSearcherFactory(indexFactory);
+		searcherFactory.afterPropertiesSet();
+
+		LuceneSearcher searcher1 = searcherFactory.getSearcher();
+		LuceneSearcher searcher2 = searcherFactory.getSearcher();
+		assertEquals(3, search(searcher1));
+		searcher1.close();
+		// closing a searcher twice releases the shared searcher once
+		searcher1.close();
+		assertEquals(3, search(searcher2));
+		searcher2.close();
+
+		searcherFactory.destroy();
+	}
+
+	final public void testRefreshWithoutChanges() throws Exception {
+		SharedSearcherFactory searcherFactory = new SharedSearcherFactory(directory);
+		searcherFactory.afterPropertiesSet();
+
+		LuceneSearcher searcher = searcherFactory.getSearcher();
+		searcherFactory.refresh();
+		searcher.close();
+
+		searcher = searcherFactory.getSearcher();
+		assertEquals(3, search(searcher));
+		searcher.close();
+
+		searcherFactory.destroy();
+	}
+
+	final public void testRefreshAfterCommit() throws Exception {
+		SharedSearcherFactory searcherFactory = new SharedSearcherFactory(directory);
+		searcherFactory.afterPropertiesSet();
+
+		LuceneSearcher oldSearcher = searcherFactory.getSearcher();
+		addDocument();
+
+		LuceneSearcher searcher = searcherFactory.getSearcher();
+		assertEquals(3, search(searcher));
+		searcher.close();
+
+		searcherFactory.refresh();
+		searcher = searcherFactory.getSearcher();
+		assertEquals(4, search(searcher));
+		searcher.close();
+
+		// the previous searcher stays usable until closed
+		assertEquals(3, search(oldSearcher));
+		oldSearcher.close();
+
+		searcherFactory.destroy();
+	}
+
+	final public void testScheduledRefresh() throws Exception {
+		SharedSearcherFactory searcherFactory = new SharedSearcherFactory(directory);
+		searcherFactory.setRefreshInterval(20);
+		searcherFactory.afterPropertiesSet();
+
+		addDocument();
+
+		int hits = 0;
+		for(int i=0; i<100 && hits!=4; i++) {
+			Thread.sleep(20);
+			LuceneSearcher searcher = searcherFactory.getSearcher();
+			hits = search(searcher);
+			searcher.close();
+		}
+		assertEquals(4, hits);
+
+		searcherFactory.destroy();
+	}
+
+	final public void testDestroy() throws Exception {
+		SharedSearcherFactory searcherFactory = new SharedSearcherFactory(directory);
+		searcherFactory.afterPropertiesSet();
+
+		LuceneSearcher searcher = searcherFactory.getSearcher();
+		searcherFactory.destroy();
+		// searches in progress finish on the released searcher
+		assertEquals(3, search(searcher));
+		searcher.close();
+
+		try {
+			searcherFactory.getSearcher();
+			fail();
+		} catch(LuceneSearchException ex) {}
+	}
+
+}